@@ -499,6 +499,18 @@ public class BundleBuildingServiceImpl implements BundleBuildingService {
       }
       creator.setAdditionalBeanPropertyOverrides(cmdOverrides);
 
+      String taskOutputCache = getTaskOutputCache();
+      if (taskOutputCache != null) {
+        // reuse the outputs of earlier builds with the same inputs
+        creator.setTaskOutputCachePath(new File(taskOutputCache));
+        creator.addFingerprintInputPath(new File(response.getBundleInputDirectory()));
+        creator.addFingerprintInputValue(request.getBundleStartDateString());
+        creator.addFingerprintInputValue(request.getBundleEndDateString());
+        creator.addFingerprintInputValue(String.valueOf(request.getPredate()));
+        creator.addFingerprintInputValue(String.valueOf(request.getConsolidateFlag()));
+        creator.addFingerprintInputValue(String.valueOf(request.getNotInServiceDSCList()));
+      }
+
 
       BeanDefinitionBuilder propertyOverrides = BeanDefinitionBuilder.genericBeanDefinition(PropertyOverrideConfigurer.class);
       propertyOverrides.addPropertyValue("properties", cmdOverrides);
@@ -646,6 +658,12 @@ public class BundleBuildingServiceImpl implements BundleBuildingService {
     
   }
 
+  private String getTaskOutputCache() {
+    if (configurationService == null)
+      return null;
+    return configurationService.getConfigurationValueAsString("admin.bundleTaskOutputCache", null);
+  }
+
   private boolean isStifTaskApplicable() {
     boolean isStifTaskApplicable = true; // on by default for NYC
     
@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.onebusaway.api.model.ResponseBean;
+import org.onebusaway.api.model.transit.AgencyV2Bean;
+import org.onebusaway.api.model.transit.ListWithReferencesBean;
+import org.onebusaway.api.model.transit.ReferencesBean;
+import org.onebusaway.api.model.transit.RouteV2Bean;
+import org.onebusaway.api.model.transit.StopV2Bean;
+import org.onebusaway.api.model.transit.TripDetailsV2Bean;
+import org.onebusaway.api.model.transit.TripStatusV2Bean;
+import org.onebusaway.api.model.transit.TripStopTimeV2Bean;
+import org.onebusaway.api.model.transit.TripStopTimesV2Bean;
+import org.onebusaway.api.model.transit.TripV2Bean;
+import org.onebusaway.api.model.transit.VehicleStatusV2Bean;
+import org.onebusaway.geospatial.model.CoordinatePoint;
+import org.onebusaway.transit_data.model.EAccessibility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares writing the largest where/* JSON responses with json-lib, the way
+ * the API webapp's CustomJsonLibHandler and the REST plugin do it (a json-lib tree, a
+ * String, then UTF-8 bytes), against streaming them with
+ * {@link JsonBeanWriter}. The responses are synthetic trips-for-route and
+ * vehicles-for-agency results with full schedules, status and references.
+ * 
+ * Run with {@code -prof gc} to see the allocation rate of each serializer
+ * ({@code gc.alloc.rate.norm} is bytes allocated per response).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonResponseBenchmark {
+
+  private static final String CHARSET = "UTF-8";
+
+  @Param({"jsonlib", "streaming"})
+  public String serializer;
+
+  @Param({"tripsForRoute", "vehiclesForAgency"})
+  public String response;
+
+  /**
+   * The number of trips or vehicles in the response
+   */
+  @Param({"100"})
+  public int tripCount;
+
+  @Param({"40"})
+  public int stopsPerTrip;
+
+  private ResponseBean _response;
+
+  private JsonBeanWriter _writer;
+
+  @Setup
+  public void setup() {
+    _writer = new JsonBeanWriter(new JsonLibFallback());
+    if (response.equals("tripsForRoute"))
+      _response = createTripsForRoute();
+    else
+      _response = createVehiclesForAgency();
+  }
+
+  @Benchmark
+  public long write() throws IOException {
+    CountingOutputStream out = new CountingOutputStream();
+    if (serializer.equals("jsonlib")) {
+      StringWriter writer = new StringWriter();
+      writer.write(JSONObject.fromObject(_response).toString());
+      out.write(writer.toString().getBytes(CHARSET));
+    } else {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET),
+          8 * 1024);
+      _writer.write(_response, writer);
+      writer.flush();
+    }
+    return out.getCount();
+  }
+
+  /****
+   * Synthetic Responses
+   ****/
+
+  private ResponseBean createTripsForRoute() {
+    ReferencesBean references = createReferences();
+    List<TripDetailsV2Bean> trips = new ArrayList<TripDetailsV2Bean>();
+    for (int i = 0; i < tripCount; i++) {
+      TripDetailsV2Bean details = new TripDetailsV2Bean();
+      details.setTripId(getTripId(i));
+      details.setServiceDate(1286262000000L);
+      details.setSchedule(createSchedule(i));
+      details.setStatus(createStatus(i));
+      details.setSituationIds(new ArrayList<String>());
+      trips.add(details);
+    }
+    return new ResponseBean(2, 200, "OK",
+        new ListWithReferencesBean<TripDetailsV2Bean>(trips, false, references));
+  }
+
+  private ResponseBean createVehiclesForAgency() {
+    ReferencesBean references = createReferences();
+    List<VehicleStatusV2Bean> vehicles = new ArrayList<VehicleStatusV2Bean>();
+    for (int i = 0; i < tripCount; i++) {
+      VehicleStatusV2Bean vehicle = new VehicleStatusV2Bean();
+      vehicle.setVehicleId("1_" + (4000 + i));
+      vehicle.setTripId(getTripId(i));
+      vehicle.setPhase("in_progress");
+      vehicle.setStatus("SCHEDULED");
+      vehicle.setLastUpdateTime(1286290800000L + i * 1000);
+      vehicle.setLastLocationUpdateTime(1286290800000L + i * 1000);
+      vehicle.setLocation(new CoordinatePoint(47.6 + i * 0.0001,
+          -122.3 - i * 0.0001));
+      vehicle.setTripStatus(createStatus(i));
+      vehicles.add(vehicle);
+    }
+    return new ResponseBean(2, 200, "OK",
+        new ListWithReferencesBean<VehicleStatusV2Bean>(vehicles, false,
+            references));
+  }
+
+  private ReferencesBean createReferences() {
+
+    ReferencesBean references = new ReferencesBean();
+
+    AgencyV2Bean agency = new AgencyV2Bean();
+    agency.setId("1");
+    agency.setName("Metro Transit");
+    agency.setUrl("http://metro.kingcounty.gov/");
+    agency.setTimezone("America/Los_Angeles");
+    agency.setLang("en");
+    agency.setPhone("206-553-3000");
+    references.addAgency(agency);
+
+    RouteV2Bean route = new RouteV2Bean();
+    route.setId("1_10");
+    route.setAgencyId("1");
+    route.setShortName("10");
+    route.setLongName("Capitol Hill - Downtown Seattle");
+    route.setType(3);
+    references.addRoute(route);
+
+    for (int i = 0; i < stopsPerTrip; i++) {
+      StopV2Bean stop = new StopV2Bean();
+      stop.setId(getStopId(i));
+      stop.setCode(Integer.toString(10000 + i));
+      stop.setName("E Pine St & " + (i + 1) + "th Ave");
+      stop.setLat(47.615 + i * 0.001);
+      stop.setLon(-122.32 + i * 0.001);
+      stop.setDirection(i % 2 == 0 ? "E" : "W");
+      stop.setWheelchairBoarding(EAccessibility.UNKNOWN);
+      stop.setRouteIds(Arrays.asList("1_10"));
+      references.addStop(stop);
+    }
+
+    for (int i = 0; i < tripCount; i++) {
+      TripV2Bean trip = new TripV2Bean();
+      trip.setId(getTripId(i));
+      trip.setRouteId("1_10");
+      trip.setTripHeadsign("Capitol Hill");
+      trip.setServiceId("1_WEEK");
+      trip.setShapeId("1_10001");
+      trip.setDirectionId(Integer.toString(i % 2));
+      trip.setBlockId("1_" + (2000 + i));
+      references.addTrip(trip);
+    }
+
+    return references;
+  }
+
+  private TripStopTimesV2Bean createSchedule(int trip) {
+    List<TripStopTimeV2Bean> stopTimes = new ArrayList<TripStopTimeV2Bean>();
+    int departure = 6 * 3600 + trip * 600;
+    for (int i = 0; i < stopsPerTrip; i++) {
+      TripStopTimeV2Bean stopTime = new TripStopTimeV2Bean();
+      stopTime.setStopId(getStopId(i));
+      stopTime.setArrivalTime(departure + i * 90);
+      stopTime.setDepartureTime(departure + i * 90 + 15);
+      stopTime.setDistanceAlongTrip(i * 287.35);
+      stopTimes.add(stopTime);
+    }
+    TripStopTimesV2Bean schedule = new TripStopTimesV2Bean();
+    schedule.setTimeZone("America/Los_Angeles");
+    schedule.setStopTimes(stopTimes);
+    schedule.setPreviousTripId(trip > 0 ? getTripId(trip - 1) : null);
+    schedule.setNextTripId(getTripId(trip + 1));
+    return schedule;
+  }
+
+  private TripStatusV2Bean createStatus(int trip) {
+    TripStatusV2Bean status = new TripStatusV2Bean();
+    status.setActiveTripId(getTripId(trip));
+    status.setServiceDate(1286262000000L);
+    status.setPhase("in_progress");
+    status.setStatus("SCHEDULED");
+    status.setPredicted(trip % 2 == 0);
+    status.setScheduleDeviation(trip % 5 * 60);
+    status.setPosition(new CoordinatePoint(47.615 + trip * 0.0001,
+        -122.32 + trip * 0.0001));
+    status.setOrientation(87.5);
+    status.setDistanceAlongTrip(trip * 153.25);
+    status.setScheduledDistanceAlongTrip(trip * 150.0);
+    status.setTotalDistanceAlongTrip(stopsPerTrip * 287.35);
+    status.setClosestStop(getStopId(trip % stopsPerTrip));
+    status.setClosestStopTimeOffset(-30);
+    status.setNextStop(getStopId((trip + 1) % stopsPerTrip));
+    status.setNextStopTimeOffset(60);
+    status.setLastUpdateTime(1286290800000L);
+    status.setVehicleId("1_" + (4000 + trip));
+    status.setSituationIds(new ArrayList<String>());
+    return status;
+  }
+
+  private static String getTripId(int index) {
+    return "1_" + (15000000 + index);
+  }
+
+  private static String getStopId(int index) {
+    return "1_" + (1000 + index);
+  }
+
+  /**
+   * Same as the fallback in CustomStreamingJsonHandler, which lives in the
+   * webapp
+   */
+  private static class JsonLibFallback implements JsonBeanWriter.Fallback {
+
+    @Override
+    public void write(Object value, Writer out) throws IOException {
+      if (value instanceof Collection<?> || value.getClass().isArray())
+        out.write(JSONArray.fromObject(value).toString());
+      else
+        out.write(JSONObject.fromObject(value).toString());
+    }
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+
+    private long _count = 0;
+
+    @Override
+    public void write(int b) {
+      _count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      _count += len;
+    }
+
+    public long getCount() {
+      return _count;
+    }
+  }
+}
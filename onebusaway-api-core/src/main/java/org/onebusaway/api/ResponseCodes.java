@@ -32,4 +32,6 @@ public class ResponseCodes {
   public static final int RESPONSE_OUT_OF_SERVICE_AREA = 440;
 
   public static final int RESPONSE_SERVICE_EXCEPTION = 500;
+
+  public static final int RESPONSE_SERVICE_UNAVAILABLE = 503;
 }
@@ -0,0 +1,589 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.impl;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes a response object graph as JSON directly to a {@link Writer}, without
+ * building an intermediate JSON tree or String. The output is the same as
+ * json-lib's {@code JSONObject.fromObject(value).toString()} (or
+ * {@code JSONArray.fromObject} for arrays and collections) with the default
+ * configuration: bean properties in {@link Introspector} order, null
+ * properties replaced by a default for their declared type, and json-lib's
+ * number formatting and string escaping.
+ * 
+ * The properties of each bean class are introspected once and cached, along
+ * with a {@link MethodHandle} for each getter and the pre-quoted property key.
+ * 
+ * Values that json-lib doesn't write literally are left to a {@link Fallback}.
+ * Strings that look like JSON, JavaScript keywords or functions are parsed or
+ * written unquoted by json-lib depending on where they appear, and non-finite
+ * doubles, maps and exotic number types have their own rules, so when a bean
+ * or a collection contains one of these the whole bean or collection is handed
+ * to the fallback. Responses built from the API model beans never hit that
+ * path in practice.
+ * 
+ * Instances are thread-safe and meant to be shared.
+ */
+public class JsonBeanWriter {
+
+  private static final List<String> EXCLUDED_PROPERTIES = Arrays.asList(
+      "class", "declaringClass", "metaClass");
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Serializes the values {@link JsonBeanWriter} doesn't write itself, the way
+   * json-lib would.
+   */
+  public interface Fallback {
+
+    /**
+     * @param value a bean, collection, array or map
+     * @param out the JSON is written here
+     */
+    public void write(Object value, Writer out) throws IOException;
+  }
+
+  private final Fallback _fallback;
+
+  private final ConcurrentMap<Class<?>, BeanWriter> _beanWriters = new ConcurrentHashMap<Class<?>, BeanWriter>();
+
+  public JsonBeanWriter(Fallback fallback) {
+    if (fallback == null)
+      throw new IllegalArgumentException("fallback is required");
+    _fallback = fallback;
+  }
+
+  /**
+   * Writes an array or collection as a JSON array and anything else as a JSON
+   * object.
+   * 
+   * @param value the response object, not null
+   * @param out the JSON is written here
+   */
+  public void write(Object value, Writer out) throws IOException {
+    if (value instanceof String || value instanceof Number
+        || value instanceof Boolean || value instanceof Character
+        || value instanceof Enum<?> || value instanceof Class<?>)
+      _fallback.write(value, out);
+    else
+      writeValue(value, out);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeValue(Object value, Writer out) throws IOException {
+    if (value instanceof String) {
+      writeString((String) value, out);
+    } else if (value instanceof Integer || value instanceof Long
+        || value instanceof Short || value instanceof Byte
+        || value instanceof Boolean) {
+      out.write(value.toString());
+    } else if (value instanceof Double) {
+      writeDouble(((Double) value).doubleValue(), out);
+    } else if (value instanceof Float) {
+      writeFloat(((Float) value).floatValue(), out);
+    } else if (value instanceof Character) {
+      writeString(value.toString(), out);
+    } else if (value instanceof Enum<?>) {
+      writeString(((Enum<?>) value).name(), out);
+    } else if (value instanceof Class<?>) {
+      writeString(((Class<?>) value).getName(), out);
+    } else if (value instanceof Collection<?>) {
+      writeCollection((Collection<?>) value, out);
+    } else if (value instanceof Object[]) {
+      writeCollection(Arrays.asList((Object[]) value), out);
+    } else {
+      BeanWriter writer = getBeanWriter(value.getClass());
+      if (writer.isWritable(value))
+        writer.write(this, value, out);
+      else
+        _fallback.write(value, out);
+    }
+  }
+
+  private void writeCollection(Collection<?> values, Writer out)
+      throws IOException {
+
+    for (Object value : values) {
+      if (isUnsafe(value)) {
+        _fallback.write(values, out);
+        return;
+      }
+    }
+
+    out.write('[');
+    boolean first = true;
+    for (Object value : values) {
+      if (!first)
+        out.write(',');
+      first = false;
+      if (value == null)
+        out.write("null");
+      else
+        writeValue(value, out);
+    }
+    out.write(']');
+  }
+
+  private BeanWriter getBeanWriter(Class<?> type) {
+    BeanWriter writer = _beanWriters.get(type);
+    if (writer == null) {
+      writer = createBeanWriter(type);
+      BeanWriter existing = _beanWriters.putIfAbsent(type, writer);
+      if (existing != null)
+        writer = existing;
+    }
+    return writer;
+  }
+
+  private BeanWriter createBeanWriter(Class<?> type) {
+
+    /**
+     * Maps, primitive arrays, json-lib's own types and anything with public
+     * fields get json-lib's treatment. So do classes whose getters json-lib
+     * can't call, so that we fail the same way it does.
+     */
+    if (!Modifier.isPublic(type.getModifiers()) || isJsonLibType(type)
+        || Map.class.isAssignableFrom(type) || type.isArray()
+        || hasPublicInstanceFields(type))
+      return new BeanWriter(null, null);
+
+    BeanInfo beanInfo;
+    try {
+      beanInfo = Introspector.getBeanInfo(type);
+    } catch (IntrospectionException ex) {
+      return new BeanWriter(null, null);
+    }
+
+    List<Property> properties = new ArrayList<Property>();
+    List<Property> scanned = new ArrayList<Property>();
+
+    for (PropertyDescriptor desc : beanInfo.getPropertyDescriptors()) {
+      String name = desc.getName();
+      Method readMethod = desc.getReadMethod();
+      if (EXCLUDED_PROPERTIES.contains(name) || readMethod == null)
+        continue;
+      if (!Modifier.isPublic(readMethod.getDeclaringClass().getModifiers()))
+        return new BeanWriter(null, null);
+      Property property;
+      try {
+        property = new Property(name, readMethod);
+      } catch (IllegalAccessException ex) {
+        return new BeanWriter(null, null);
+      }
+      properties.add(property);
+      if (property.isScanned())
+        scanned.add(property);
+    }
+
+    return new BeanWriter(properties.toArray(new Property[properties.size()]),
+        scanned.toArray(new Property[scanned.size()]));
+  }
+
+  private static boolean hasPublicInstanceFields(Class<?> type) {
+    for (Field field : type.getFields()) {
+      if (!Modifier.isStatic(field.getModifiers()))
+        return true;
+    }
+    return false;
+  }
+
+  private static boolean isUnsafe(Object value) {
+    if (value == null)
+      return false;
+    if (value instanceof String)
+      return isUnsafeString((String) value);
+    if (value instanceof Double)
+      return !isFinite(((Double) value).doubleValue());
+    if (value instanceof Float)
+      return !isFinite(((Float) value).floatValue());
+    if (value instanceof Number)
+      return !(value instanceof Integer || value instanceof Long
+          || value instanceof Short || value instanceof Byte);
+    if (value instanceof Character)
+      return isUnsafeString(value.toString());
+    if (value instanceof CharSequence)
+      return true;
+    return isJsonLibType(value.getClass());
+  }
+
+  /**
+   * json-lib parses strings that look like JSON, turns JavaScript keywords
+   * into literals and writes functions unquoted.
+   */
+  private static boolean isUnsafeString(String value) {
+    if (value.isEmpty())
+      return false;
+    switch (value.charAt(0)) {
+      case '[':
+      case '{':
+      case '"':
+      case '\'':
+        return true;
+      case 'n':
+        return value.equals("null");
+      case 't':
+        return value.equals("true");
+      case 'f':
+        return value.equals("false") || value.startsWith("function");
+      case 'u':
+        return value.equals("undefined");
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isJsonLibType(Class<?> type) {
+    return type.getName().startsWith("net.sf.json.");
+  }
+
+  private static boolean isFinite(double value) {
+    return !Double.isNaN(value) && !Double.isInfinite(value);
+  }
+
+  /**
+   * json-lib widens floats through their decimal string
+   */
+  private static void writeFloat(float value, Writer out) throws IOException {
+    writeDouble(Double.parseDouble(Float.toString(value)), out);
+  }
+
+  /**
+   * json-lib drops trailing zeros, and then a trailing decimal point, from
+   * plain decimal notation
+   */
+  private static void writeDouble(double value, Writer out) throws IOException {
+    String s = Double.toString(value);
+    if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+      int end = s.length();
+      while (s.charAt(end - 1) == '0')
+        end--;
+      if (s.charAt(end - 1) == '.')
+        end--;
+      out.write(s, 0, end);
+    } else {
+      out.write(s);
+    }
+  }
+
+  private static void writeString(String value, Writer out) throws IOException {
+    out.write('"');
+    int len = value.length();
+    int start = 0;
+    char previous = 0;
+    for (int i = 0; i < len; i++) {
+      char c = value.charAt(i);
+      char prev = previous;
+      previous = c;
+      if (c >= ' ' && c != '"' && c != '\\' && (c != '/' || prev != '<'))
+        continue;
+      if (i > start)
+        out.write(value, start, i - start);
+      start = i + 1;
+      out.write('\\');
+      switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+          out.write(c);
+          break;
+        case '\b':
+          out.write('b');
+          break;
+        case '\t':
+          out.write('t');
+          break;
+        case '\n':
+          out.write('n');
+          break;
+        case '\f':
+          out.write('f');
+          break;
+        case '\r':
+          out.write('r');
+          break;
+        default:
+          out.write('u');
+          out.write('0');
+          out.write('0');
+          out.write(HEX[c >> 4]);
+          out.write(HEX[c & 0xf]);
+      }
+    }
+    if (len > start)
+      out.write(value, start, len - start);
+    out.write('"');
+  }
+
+  private static String quote(String value) {
+    StringWriter out = new StringWriter();
+    try {
+      writeString(value, out);
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+    return out.toString();
+  }
+
+  private static RuntimeException propagate(Throwable ex) throws IOException {
+    if (ex instanceof IOException)
+      throw (IOException) ex;
+    if (ex instanceof RuntimeException)
+      throw (RuntimeException) ex;
+    if (ex instanceof Error)
+      throw (Error) ex;
+    throw new IllegalStateException(ex);
+  }
+
+  private enum EPropertyKind {
+    INT, LONG, DOUBLE, FLOAT, BOOLEAN, CHAR, OBJECT
+  }
+
+  /**
+   * Writes the properties of one bean class, or defers to the fallback when
+   * {@link #_properties} is null
+   */
+  private static final class BeanWriter {
+
+    private final Property[] _properties;
+
+    /**
+     * The properties whose values have to be checked with
+     * {@link JsonBeanWriter#isUnsafe(Object)} before writing
+     */
+    private final Property[] _scannedProperties;
+
+    public BeanWriter(Property[] properties, Property[] scannedProperties) {
+      _properties = properties;
+      _scannedProperties = scannedProperties;
+    }
+
+    public boolean isWritable(Object bean) throws IOException {
+      if (_properties == null)
+        return false;
+      for (Property property : _scannedProperties) {
+        if (property.isUnsafe(bean))
+          return false;
+      }
+      return true;
+    }
+
+    public void write(JsonBeanWriter writer, Object bean, Writer out)
+        throws IOException {
+      out.write('{');
+      for (int i = 0; i < _properties.length; i++) {
+        if (i > 0)
+          out.write(',');
+        _properties[i].write(writer, bean, out);
+      }
+      out.write('}');
+    }
+  }
+
+  private static final class Property {
+
+    /**
+     * The quoted property name followed by a colon
+     */
+    private final char[] _key;
+
+    private final EPropertyKind _kind;
+
+    /**
+     * Bound to the {@link EPropertyKind} return type, so primitives are read
+     * without boxing
+     */
+    private final MethodHandle _getter;
+
+    /**
+     * What json-lib writes for a null value of the declared type
+     */
+    private final String _nullValue;
+
+    private final boolean _scanned;
+
+    public Property(String name, Method readMethod)
+        throws IllegalAccessException {
+
+      Class<?> type = readMethod.getReturnType();
+
+      _key = (quote(name) + ":").toCharArray();
+      _kind = getKind(type);
+      _nullValue = getNullValue(type);
+      _scanned = isScanned(type);
+
+      Class<?> handleType = Object.class;
+      switch (_kind) {
+        case INT:
+          handleType = int.class;
+          break;
+        case LONG:
+          handleType = long.class;
+          break;
+        case DOUBLE:
+          handleType = double.class;
+          break;
+        case FLOAT:
+          handleType = float.class;
+          break;
+        case BOOLEAN:
+          handleType = boolean.class;
+          break;
+        case CHAR:
+          handleType = char.class;
+          break;
+        default:
+          break;
+      }
+
+      MethodHandle getter = MethodHandles.publicLookup().unreflect(readMethod);
+      _getter = getter.asType(MethodType.methodType(handleType, Object.class));
+    }
+
+    public boolean isScanned() {
+      return _scanned;
+    }
+
+    public boolean isUnsafe(Object bean) throws IOException {
+      try {
+        switch (_kind) {
+          case DOUBLE:
+            return !isFinite((double) _getter.invokeExact(bean));
+          case FLOAT:
+            return !isFinite((float) _getter.invokeExact(bean));
+          case CHAR:
+            return isUnsafeString(String.valueOf((char) _getter.invokeExact(bean)));
+          case OBJECT:
+            return JsonBeanWriter.isUnsafe((Object) _getter.invokeExact(bean));
+          default:
+            return false;
+        }
+      } catch (Throwable ex) {
+        throw propagate(ex);
+      }
+    }
+
+    public void write(JsonBeanWriter writer, Object bean, Writer out)
+        throws IOException {
+      out.write(_key);
+      try {
+        switch (_kind) {
+          case INT:
+            out.write(Integer.toString((int) _getter.invokeExact(bean)));
+            break;
+          case LONG:
+            out.write(Long.toString((long) _getter.invokeExact(bean)));
+            break;
+          case DOUBLE:
+            writeDouble((double) _getter.invokeExact(bean), out);
+            break;
+          case FLOAT:
+            writeFloat((float) _getter.invokeExact(bean), out);
+            break;
+          case BOOLEAN:
+            out.write((boolean) _getter.invokeExact(bean) ? "true" : "false");
+            break;
+          case CHAR:
+            writeString(String.valueOf((char) _getter.invokeExact(bean)), out);
+            break;
+          default:
+            Object value = (Object) _getter.invokeExact(bean);
+            if (value == null)
+              out.write(_nullValue);
+            else
+              writer.writeValue(value, out);
+        }
+      } catch (Throwable ex) {
+        throw propagate(ex);
+      }
+    }
+
+    private static EPropertyKind getKind(Class<?> type) {
+      if (type == int.class || type == short.class || type == byte.class)
+        return EPropertyKind.INT;
+      if (type == long.class)
+        return EPropertyKind.LONG;
+      if (type == double.class)
+        return EPropertyKind.DOUBLE;
+      if (type == float.class)
+        return EPropertyKind.FLOAT;
+      if (type == boolean.class)
+        return EPropertyKind.BOOLEAN;
+      if (type == char.class)
+        return EPropertyKind.CHAR;
+      return EPropertyKind.OBJECT;
+    }
+
+    /**
+     * Mirrors json-lib's DefaultDefaultValueProcessor
+     */
+    private static String getNullValue(Class<?> type) {
+      if (type.isArray() || Collection.class.isAssignableFrom(type))
+        return "[]";
+      if (Number.class.isAssignableFrom(type))
+        return "0";
+      if (type == Boolean.class)
+        return "false";
+      if (String.class.isAssignableFrom(type) || type == Character.class)
+        return "\"\"";
+      return "null";
+    }
+
+    /**
+     * Whether a property of this declared type can hold a value that
+     * {@link JsonBeanWriter#isUnsafe(Object)} rejects
+     */
+    private static boolean isScanned(Class<?> type) {
+      if (type.isPrimitive())
+        return type == double.class || type == float.class
+            || type == char.class;
+      if (type == Integer.class || type == Long.class || type == Short.class
+          || type == Byte.class || type == Boolean.class || type.isEnum()
+          || type.isArray() || Collection.class.isAssignableFrom(type))
+        return false;
+      return type.isAssignableFrom(String.class)
+          || type.isAssignableFrom(Character.class)
+          || type.isAssignableFrom(Double.class)
+          || type.isAssignableFrom(Float.class)
+          || Number.class.isAssignableFrom(type)
+          || CharSequence.class.isAssignableFrom(type) || isJsonLibType(type);
+    }
+  }
+}
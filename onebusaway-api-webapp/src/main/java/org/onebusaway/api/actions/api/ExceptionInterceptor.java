@@ -17,12 +17,15 @@ package org.onebusaway.api.actions.api;
 
 import java.util.Map;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.onebusaway.api.ResponseCodes;
 import org.onebusaway.api.model.ResponseBean;
 import org.onebusaway.exceptions.NoSuchRouteServiceException;
 import org.onebusaway.exceptions.NoSuchStopServiceException;
 import org.onebusaway.exceptions.NoSuchTripServiceException;
 import org.onebusaway.exceptions.OutOfServiceAreaServiceException;
+import org.onebusaway.exceptions.ServiceUnavailableServiceException;
 
 import com.opensymphony.xwork2.ActionContext;
 import com.opensymphony.xwork2.ActionInvocation;
@@ -30,6 +33,7 @@ import com.opensymphony.xwork2.ActionProxy;
 import com.opensymphony.xwork2.inject.Inject;
 import com.opensymphony.xwork2.interceptor.AbstractInterceptor;
 
+import org.apache.struts2.ServletActionContext;
 import org.apache.struts2.rest.ContentTypeHandlerManager;
 import org.apache.struts2.rest.DefaultHttpHeaders;
 import org.slf4j.Logger;
@@ -55,6 +59,14 @@ public class ExceptionInterceptor extends AbstractInterceptor {
     try {
       return invocation.invoke();
     } catch (Exception ex) {
+      HttpServletResponse res = ServletActionContext.getResponse();
+      if (res != null && res.isCommitted()) {
+        // part of the body is already sent: an error response appended to it
+        // would just corrupt it further
+        _log.warn("exception after response was committed: url="
+            + getActionAsUrl(invocation), ex);
+        throw ex;
+      }
       ActionProxy proxy = invocation.getProxy();
       ResponseBean response = getExceptionAsResponseBean(invocation, ex);
       DefaultHttpHeaders methodResult = new DefaultHttpHeaders().withStatus(response.getCode());
@@ -75,6 +87,11 @@ public class ExceptionInterceptor extends AbstractInterceptor {
       return new ResponseBean(V1, ResponseCodes.RESPONSE_OUT_OF_SERVICE_AREA,
           ex.getMessage(), null);
     }
+    else if (ex instanceof ServiceUnavailableServiceException) {
+      // expected while a bundle loads, so no stack trace
+      return new ResponseBean(V1, ResponseCodes.RESPONSE_SERVICE_UNAVAILABLE,
+          ex.getMessage(), null);
+    }
     else {
       String url = getActionAsUrl(invocation);
       _log.warn("exception for action: url=" + url, ex);
@@ -17,9 +17,16 @@ package org.onebusaway.api.actions.api.gtfs_realtime;
 
 import java.util.Date;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.struts2.interceptor.ServletRequestAware;
 import org.apache.struts2.rest.DefaultHttpHeaders;
 import org.onebusaway.api.actions.api.ApiActionSupport;
 import org.onebusaway.api.services.AgencyAndIdModificationStrategy;
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshot;
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshotService;
+import org.onebusaway.api.services.GtfsRealtimeFeedSource;
+import org.onebusaway.api.services.SerializedFeedMessage;
 import org.onebusaway.exceptions.ServiceException;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.transit_data.services.TransitDataService;
@@ -32,7 +39,8 @@ import com.google.transit.realtime.GtfsRealtimeConstants;
 import com.opensymphony.xwork2.conversion.annotations.TypeConversion;
 import com.opensymphony.xwork2.validator.annotations.RequiredFieldValidator;
 
-public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
+public abstract class GtfsRealtimeActionSupport extends ApiActionSupport
+    implements ServletRequestAware {
 
   private static final long serialVersionUID = 1L;
 
@@ -44,12 +52,19 @@ public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
   @Autowired(required = false)
   protected AgencyAndIdModificationStrategy _stopIdModificationStrategy;
 
+  @Autowired(required = false)
+  protected GtfsRealtimeFeedSnapshotService _snapshotService;
+
+  private HttpServletRequest _request;
+
   private String _agencyId;
 
   private long _time;
 
   private boolean _removeAgencyIds = true;
 
+  private boolean _differential = false;
+
   public GtfsRealtimeActionSupport() {
     super(V2);
   }
@@ -58,6 +73,15 @@ public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
     _service = service;
   }
 
+  public void setSnapshotService(GtfsRealtimeFeedSnapshotService snapshotService) {
+    _snapshotService = snapshotService;
+  }
+
+  @Override
+  public void setServletRequest(HttpServletRequest request) {
+    _request = request;
+  }
+
   @RequiredFieldValidator
   public void setId(String id) {
     _agencyId = id;
@@ -76,6 +100,16 @@ public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
     _removeAgencyIds = removeAgencyIds;
   }
 
+  /**
+   * Ask for DIFFERENTIAL updates: the response only has the entities that
+   * changed since the version named by the request's If-None-Match header, or
+   * the full dataset with stable entity ids when that version is unknown. See
+   * {@link GtfsRealtimeFeedSnapshot}.
+   */
+  public void setDifferential(boolean differential) {
+    _differential = differential;
+  }
+
   public DefaultHttpHeaders show() throws ServiceException {
     if (!isVersion(V2))
       return setUnknownVersionResponse();
@@ -83,6 +117,17 @@ public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
     if (hasErrors())
       return setValidationErrorsResponse();
 
+    /**
+     * The current feed is shared by all clients. Feeds for a specific time are
+     * still built on demand.
+     */
+    if (_time == 0 && _snapshotService != null) {
+      GtfsRealtimeFeedSnapshot snapshot = _snapshotService.getSnapshot(
+          getFeedId(), _agencyId, createFeedSource());
+      if (snapshot != null)
+        return setSnapshotResponse(snapshot);
+    }
+
     long time = SystemTime.currentTimeMillis();
     if (_time != 0)
       time = _time;
@@ -98,6 +143,14 @@ public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
   protected abstract void fillFeedMessage(FeedMessage.Builder feed,
       String agencyId, long timestamp);
 
+  /**
+   * @return an id for the feed built by this action, including any option
+   *         that changes its content
+   */
+  protected String getFeedId() {
+    return getClass().getName() + (_removeAgencyIds ? "" : "?removeAgencyIds=false");
+  }
+
   protected String normalizeId(String id) {
     if (_removeAgencyIds) {
       int index = id.indexOf('_');
@@ -117,4 +170,56 @@ public abstract class GtfsRealtimeActionSupport extends ApiActionSupport {
       id = newId;
     return id;
   }
+
+  private DefaultHttpHeaders setSnapshotResponse(
+      GtfsRealtimeFeedSnapshot snapshot) {
+    SerializedFeedMessage message = snapshot.getFullDataset();
+    if (_differential) {
+      String etag = _request != null ? _request.getHeader("If-None-Match")
+          : null;
+      if (etag != null && etag.equals(snapshot.getPreviousETag()))
+        message = snapshot.getDifferential();
+      else
+        message = snapshot.getKeyedFullDataset();
+    }
+    /**
+     * A request with the current ETag gets a 304 from DefaultHttpHeaders
+     */
+    return setOkResponse(message).withETag(snapshot.getETag());
+  }
+
+  /**
+   * The snapshot service keeps the source between requests and calls it from
+   * its refresh thread, so the source wraps a fresh copy of this action that
+   * only has the injected services and the id options, not the request or the
+   * response of the action that registered it.
+   */
+  private GtfsRealtimeFeedSource createFeedSource() {
+    GtfsRealtimeActionSupport action;
+    try {
+      action = getClass().newInstance();
+    } catch (Exception ex) {
+      throw new IllegalStateException("error creating feed source for "
+          + getClass().getName(), ex);
+    }
+    action._service = _service;
+    action._stopIdModificationStrategy = _stopIdModificationStrategy;
+    action._removeAgencyIds = _removeAgencyIds;
+    return new FeedSource(action);
+  }
+
+  private static class FeedSource implements GtfsRealtimeFeedSource {
+
+    private final GtfsRealtimeActionSupport _action;
+
+    public FeedSource(GtfsRealtimeActionSupport action) {
+      _action = action;
+    }
+
+    @Override
+    public void fillFeedMessage(FeedMessage.Builder feed, String agencyId,
+        long time) {
+      _action.fillFeedMessage(feed, agencyId, time);
+    }
+  }
 }
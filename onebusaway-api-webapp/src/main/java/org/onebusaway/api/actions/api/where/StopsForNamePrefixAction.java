@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.actions.api.where;
+
+import java.io.IOException;
+
+import org.apache.struts2.rest.DefaultHttpHeaders;
+import org.onebusaway.api.actions.api.ApiActionSupport;
+import org.onebusaway.api.impl.MaxCountSupport;
+import org.onebusaway.api.model.transit.BeanFactoryV2;
+import org.onebusaway.exceptions.ServiceException;
+import org.onebusaway.transit_data.model.StopsBean;
+import org.onebusaway.transit_data.services.TransitDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Typeahead search for stops by name: returns the best matching stops for a
+ * partially typed stop name, best match first.
+ */
+public class StopsForNamePrefixAction extends ApiActionSupport {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int V2 = 2;
+
+  @Autowired
+  private TransitDataService _service;
+
+  private String _prefix;
+
+  private MaxCountSupport _maxCount = new MaxCountSupport(10, 50);
+
+  public StopsForNamePrefixAction() {
+    super(V2);
+  }
+
+  public void setPrefix(String prefix) {
+    _prefix = prefix;
+  }
+
+  public void setMaxCount(int maxCount) {
+    _maxCount.setMaxCount(maxCount);
+  }
+
+  public DefaultHttpHeaders index() throws IOException, ServiceException {
+
+    int maxCount = _maxCount.getMaxCount();
+
+    if (_prefix == null || _prefix.trim().isEmpty())
+      addFieldError("prefix", "required");
+    if (maxCount <= 0)
+      addFieldError("maxCount", "must be greater than zero");
+
+    if (hasErrors())
+      return setValidationErrorsResponse();
+
+    if (!isVersion(V2))
+      return setUnknownVersionResponse();
+
+    StopsBean result = _service.getStopsByNamePrefix(_prefix, maxCount);
+    BeanFactoryV2 factory = getBeanFactoryV2();
+    return setOkResponse(factory.getResponse(result));
+  }
+}
@@ -33,6 +33,7 @@ import org.onebusaway.api.actions.siri.model.RouteResult;
 import org.onebusaway.api.actions.siri.model.StopOnRoute;
 import org.onebusaway.api.actions.siri.model.StopRouteDirection;
 import org.onebusaway.api.actions.siri.service.RealtimeServiceV2;
+import org.onebusaway.container.remoting.RemoteBatch;
 import org.onebusaway.geospatial.model.CoordinateBounds;
 import org.onebusaway.geospatial.model.EncodedPolylineBean;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -837,16 +838,26 @@ public class RealtimeServiceV2Impl implements RealtimeServiceV2 {
           if (!stopGroupBean.getStopIds().isEmpty()) {
             stopsOnRoute = new ArrayList<StopOnRoute>();
 
+            // one round trip for all the stops, when the transport supports it
+            RemoteBatch<TransitDataService> batch = RemoteBatch.create(
+                TransitDataService.class, _transitDataService);
+            List<StopBean> stopBeans = new ArrayList<StopBean>();
+            List<RemoteBatch.Result<Boolean>> stopHasUpcomingScheduledService = new ArrayList<RemoteBatch.Result<Boolean>>();
+
             for (String stopId : stopGroupBean.getStopIds()) {
               // service in this direction
               StopBean stopBean = stopIdToStopBeanMap.get(stopId);
-              
-              Boolean stopHasUpcomingScheduledService = _transitDataService.stopHasUpcomingScheduledService(
+              stopBeans.add(stopBean);
+              stopHasUpcomingScheduledService.add(batch.submit(batch.record().stopHasUpcomingScheduledService(
                   (routeBean.getAgency()!=null?routeBean.getAgency().getId():null),
                     SystemTime.currentTimeMillis(), stopBean.getId(), routeBean.getId(),
-                    stopGroupBean.getId());  
-              stopsOnRoute.add(new StopOnRoute(stopBean, stopHasUpcomingScheduledService));
+                    stopGroupBean.getId())));
             }
+
+            batch.execute();
+
+            for (int i = 0; i < stopBeans.size(); i++)
+              stopsOnRoute.add(new StopOnRoute(stopBeans.get(i), stopHasUpcomingScheduledService.get(i).get()));
           }
           directions.add(new RouteDirection(stopGroupBean, polylines, stopsOnRoute, routeHasUpcomingScheduledService));
         }
@@ -19,12 +19,14 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.opensymphony.xwork2.ActionInvocation;
 import org.apache.struts2.ServletActionContext;
 import org.apache.struts2.rest.handler.ContentTypeHandler;
 import org.onebusaway.api.model.ResponseBean;
+import org.onebusaway.api.services.SerializedFeedMessage;
 
 import com.google.protobuf.Message;
 
@@ -44,7 +46,9 @@ public class CustomProtocolBufferHandler implements ContentTypeHandler {
   public String fromObject(Object obj, String resultCode, Writer stream)
       throws IOException {
     ResponseBean response = (ResponseBean) obj;
-    if (response.getData() != null && response.getData() instanceof Message) {
+    if (response.getData() instanceof SerializedFeedMessage) {
+      writeSerializedMessage((SerializedFeedMessage) response.getData());
+    } else if (response.getData() != null && response.getData() instanceof Message) {
       Message message = (Message) response.getData();
       /**
        * Instead of writing to the output Writer, we write directly to the
@@ -62,7 +66,9 @@ public class CustomProtocolBufferHandler implements ContentTypeHandler {
   @Override
   public String fromObject(ActionInvocation actionInvocation, Object obj, String s, Writer stream) throws IOException {
     ResponseBean response = (ResponseBean) obj;
-    if (response.getData() != null && response.getData() instanceof Message) {
+    if (response.getData() instanceof SerializedFeedMessage) {
+      writeSerializedMessage((SerializedFeedMessage) response.getData());
+    } else if (response.getData() != null && response.getData() instanceof Message) {
       Message message = (Message) response.getData();
       /**
        * Instead of writing to the output Writer, we write directly to the
@@ -86,4 +92,21 @@ public class CustomProtocolBufferHandler implements ContentTypeHandler {
   public String getExtension() {
     return "pb";
   }
+
+  /**
+   * Copies the already serialized message, gzipped if the client accepts it,
+   * straight to the response.
+   */
+  private void writeSerializedMessage(SerializedFeedMessage message)
+      throws IOException {
+    HttpServletRequest req = ServletActionContext.getRequest();
+    HttpServletResponse res = ServletActionContext.getResponse();
+    String acceptEncoding = req.getHeader("Accept-Encoding");
+    boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+    res.addHeader("Vary", "Accept-Encoding");
+    if (gzip)
+      res.setHeader("Content-Encoding", "gzip");
+    res.setContentLength(message.getSize(gzip));
+    message.writeTo(res.getOutputStream(), gzip);
+  }
 }
@@ -22,6 +22,7 @@ import java.io.Writer;
 import com.opensymphony.xwork2.ActionInvocation;
 import org.apache.struts2.rest.handler.ContentTypeHandler;
 import org.onebusaway.api.model.ResponseBean;
+import org.onebusaway.api.services.SerializedFeedMessage;
 
 import com.google.protobuf.Message;
 
@@ -41,7 +42,9 @@ public class CustomProtocolBufferTextHandler implements ContentTypeHandler {
   public String fromObject(Object obj, String resultCode, Writer stream)
       throws IOException {
     ResponseBean response = (ResponseBean) obj;
-    if (response.getData() != null && response.getData() instanceof Message) {
+    if (response.getData() instanceof SerializedFeedMessage) {
+      stream.write(((SerializedFeedMessage) response.getData()).getMessage().toString());
+    } else if (response.getData() != null && response.getData() instanceof Message) {
       Message message = (Message) response.getData();
       stream.write(message.toString());
     } else {
@@ -53,7 +56,9 @@ public class CustomProtocolBufferTextHandler implements ContentTypeHandler {
   @Override
   public String fromObject(ActionInvocation actionInvocation, Object obj, String s, Writer stream) throws IOException {
     ResponseBean response = (ResponseBean) obj;
-    if (response.getData() != null && response.getData() instanceof Message) {
+    if (response.getData() instanceof SerializedFeedMessage) {
+      stream.write(((SerializedFeedMessage) response.getData()).getMessage().toString());
+    } else if (response.getData() != null && response.getData() instanceof Message) {
       Message message = (Message) response.getData();
       stream.write(message.toString());
     } else {
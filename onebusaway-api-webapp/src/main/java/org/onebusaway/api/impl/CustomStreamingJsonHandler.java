@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.impl;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.opensymphony.xwork2.ActionInvocation;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.struts2.ServletActionContext;
+
+/**
+ * Writes JSON responses with {@link JsonBeanWriter}, streaming them to the
+ * servlet response instead of building a json-lib tree and a String for each
+ * one. The output, including JSONP wrapping with the "callback" parameter, is
+ * the same as {@link CustomJsonLibHandler}, which still handles reading JSON
+ * and the values {@link JsonBeanWriter} leaves to json-lib.
+ * 
+ * The REST plugin buffers whatever a handler writes to its Writer in a
+ * StringWriter before copying it to the response, so, like
+ * {@link CustomProtocolBufferHandler}, we write directly to the response
+ * output stream when there is one. Responses up to
+ * {@link #MAX_BUFFERED_RESPONSE} bytes are still buffered, so they get a
+ * Content-Length and an exception while writing them leaves the response
+ * uncommitted for the error response written by the ExceptionInterceptor.
+ * Only larger responses are streamed as they are written.
+ */
+public class CustomStreamingJsonHandler extends CustomJsonLibHandler {
+
+  private static final String CHARSET = "UTF-8";
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  static final int MAX_BUFFERED_RESPONSE = 64 * 1024;
+
+  private final JsonBeanWriter _writer = new JsonBeanWriter(
+      new JsonLibFallback());
+
+  @Override
+  public String fromObject(Object obj, String resultCode, Writer stream)
+      throws IOException {
+    writeObject(obj, stream);
+    return null;
+  }
+
+  @Override
+  public String fromObject(ActionInvocation actionInvocation, Object obj,
+      String resultCode, Writer stream) throws IOException {
+    writeObject(obj, stream);
+    return null;
+  }
+
+  private void writeObject(Object obj, Writer stream) throws IOException {
+
+    if (obj == null)
+      return;
+
+    String callback = null;
+    HttpServletRequest req = ServletActionContext.getRequest();
+    if (req != null)
+      callback = req.getParameter("callback");
+
+    Writer out = stream;
+    ResponseOutputStream body = null;
+    HttpServletResponse res = ServletActionContext.getResponse();
+    if (res != null) {
+      res.setContentType(getContentType());
+      res.setCharacterEncoding(CHARSET);
+      body = new ResponseOutputStream(res, MAX_BUFFERED_RESPONSE);
+      out = new BufferedWriter(new OutputStreamWriter(body, CHARSET),
+          BUFFER_SIZE);
+    }
+
+    if (callback != null) {
+      out.write(callback);
+      out.write('(');
+    }
+    _writer.write(obj, out);
+    if (callback != null)
+      out.write(')');
+
+    out.flush();
+    if (body != null)
+      body.finish();
+  }
+
+  /**
+   * Holds the response body in memory until it grows past a threshold, and
+   * only then starts writing to the response output stream
+   */
+  private static class ResponseOutputStream extends OutputStream {
+
+    private final HttpServletResponse _response;
+
+    private final int _threshold;
+
+    private ByteArrayOutputStream _buffer = new ByteArrayOutputStream(
+        BUFFER_SIZE);
+
+    private OutputStream _out;
+
+    public ResponseOutputStream(HttpServletResponse response, int threshold) {
+      _response = response;
+      _threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (_out == null && _buffer.size() + len > _threshold) {
+        _out = _response.getOutputStream();
+        _buffer.writeTo(_out);
+        _buffer = null;
+      }
+      if (_out != null)
+        _out.write(b, off, len);
+      else
+        _buffer.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      // the buffered body is only written out by finish()
+      if (_out != null)
+        _out.flush();
+    }
+
+    /**
+     * Writes out the buffered body, if it never grew past the threshold
+     */
+    public void finish() throws IOException {
+      if (_out == null) {
+        _response.setContentLength(_buffer.size());
+        _out = _response.getOutputStream();
+        _buffer.writeTo(_out);
+        _buffer = null;
+      }
+      _out.flush();
+    }
+  }
+
+  private static class JsonLibFallback implements JsonBeanWriter.Fallback {
+
+    @Override
+    public void write(Object value, Writer out) throws IOException {
+      if (value instanceof Collection<?> || value.getClass().isArray())
+        out.write(JSONArray.fromObject(value).toString());
+      else
+        out.write(JSONObject.fromObject(value).toString());
+    }
+  }
+}
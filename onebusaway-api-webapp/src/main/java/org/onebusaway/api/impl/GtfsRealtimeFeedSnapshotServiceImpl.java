@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshot;
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshotService;
+import org.onebusaway.api.services.GtfsRealtimeFeedSource;
+import org.onebusaway.exceptions.ServiceException;
+import org.onebusaway.transit_data.services.TransitDataService;
+import org.onebusaway.util.SystemTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtimeConstants;
+
+/**
+ * Rebuilds every GTFS-realtime feed that has been requested recently once per
+ * refresh interval, on a single background thread, so that the cost of
+ * building a feed no longer grows with the number of clients polling it. The
+ * interval should roughly match how often the real-time data behind the feeds
+ * is updated.
+ * 
+ * Feeds are only registered for agencies the {@link TransitDataService} knows
+ * about, and at most maxFeeds of them at a time; any other request is left to
+ * the caller to build on demand.
+ */
+@Component
+class GtfsRealtimeFeedSnapshotServiceImpl implements
+    GtfsRealtimeFeedSnapshotService {
+
+  private static Logger _log = LoggerFactory.getLogger(GtfsRealtimeFeedSnapshotServiceImpl.class);
+
+  private final ConcurrentMap<String, FeedEntry> _entries = new ConcurrentHashMap<String, FeedEntry>();
+
+  private TransitDataService _transitDataService;
+
+  private boolean _enabled = true;
+
+  private int _refreshInterval = 10;
+
+  private int _idleTimeout = 5 * 60;
+
+  private int _maxFeeds = 100;
+
+  private ScheduledExecutorService _executor;
+
+  @Autowired
+  public void setTransitDataService(TransitDataService transitDataService) {
+    _transitDataService = transitDataService;
+  }
+
+  public void setEnabled(boolean enabled) {
+    _enabled = enabled;
+  }
+
+  /**
+   * @param refreshInterval how often requested feeds are rebuilt, in seconds
+   */
+  public void setRefreshInterval(int refreshInterval) {
+    _refreshInterval = refreshInterval;
+  }
+
+  /**
+   * @param idleTimeout how long a feed is kept up to date without being
+   *          requested, in seconds
+   */
+  public void setIdleTimeout(int idleTimeout) {
+    _idleTimeout = idleTimeout;
+  }
+
+  /**
+   * @param maxFeeds the most feeds kept up to date at a time
+   */
+  public void setMaxFeeds(int maxFeeds) {
+    _maxFeeds = maxFeeds;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!_enabled)
+      return;
+    _executor = Executors.newSingleThreadScheduledExecutor();
+    _executor.scheduleWithFixedDelay(new RefreshTask(), _refreshInterval,
+        _refreshInterval, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (_executor != null)
+      _executor.shutdownNow();
+  }
+
+  /****
+   * {@link GtfsRealtimeFeedSnapshotService} Interface
+   ****/
+
+  @Override
+  public GtfsRealtimeFeedSnapshot getSnapshot(String feedId, String agencyId,
+      GtfsRealtimeFeedSource source) {
+
+    if (!_enabled)
+      return null;
+
+    String key = feedId + " " + agencyId;
+    FeedEntry entry = _entries.get(key);
+    if (entry == null) {
+      if (_entries.size() >= _maxFeeds) {
+        _log.debug("too many gtfs-realtime feeds, not registering {}", key);
+        return null;
+      }
+      if (!isKnownAgency(agencyId))
+        return null;
+      FeedEntry newEntry = new FeedEntry(agencyId, source);
+      entry = _entries.putIfAbsent(key, newEntry);
+      if (entry == null)
+        entry = newEntry;
+    }
+    return entry.getSnapshot();
+  }
+
+  /****
+   * Package-Private Methods
+   ****/
+
+  void refreshFeeds() {
+
+    long idleSince = System.currentTimeMillis() - _idleTimeout * 1000L;
+
+    for (Iterator<Map.Entry<String, FeedEntry>> it = _entries.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<String, FeedEntry> entry = it.next();
+      FeedEntry feed = entry.getValue();
+      if (feed.getLastAccess() < idleSince) {
+        _log.debug("dropping idle gtfs-realtime feed {}", entry.getKey());
+        it.remove();
+        continue;
+      }
+      try {
+        feed.refresh();
+      } catch (RuntimeException ex) {
+        _log.warn("error refreshing gtfs-realtime feed " + entry.getKey()
+            + ", still serving the previous snapshot", ex);
+      }
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private boolean isKnownAgency(String agencyId) {
+    if (agencyId == null)
+      return false;
+    try {
+      return _transitDataService.getAgency(agencyId) != null;
+    } catch (ServiceException ex) {
+      _log.debug("not registering gtfs-realtime feed for agency " + agencyId,
+          ex);
+      return false;
+    }
+  }
+
+  private static class FeedEntry {
+
+    private final String _agencyId;
+
+    private final GtfsRealtimeFeedSource _source;
+
+    private volatile GtfsRealtimeFeedSnapshot _snapshot;
+
+    private volatile long _lastAccess;
+
+    public FeedEntry(String agencyId, GtfsRealtimeFeedSource source) {
+      _agencyId = agencyId;
+      _source = source;
+    }
+
+    public long getLastAccess() {
+      return _lastAccess;
+    }
+
+    public GtfsRealtimeFeedSnapshot getSnapshot() {
+      _lastAccess = System.currentTimeMillis();
+      GtfsRealtimeFeedSnapshot snapshot = _snapshot;
+      if (snapshot == null) {
+        synchronized (this) {
+          snapshot = _snapshot;
+          if (snapshot == null)
+            snapshot = refresh();
+        }
+      }
+      return snapshot;
+    }
+
+    public synchronized GtfsRealtimeFeedSnapshot refresh() {
+      long time = SystemTime.currentTimeMillis();
+      FeedMessage.Builder feed = FeedMessage.newBuilder();
+      FeedHeader.Builder header = feed.getHeaderBuilder();
+      header.setGtfsRealtimeVersion(GtfsRealtimeConstants.VERSION);
+      header.setTimestamp(time / 1000);
+      _source.fillFeedMessage(feed, _agencyId, time);
+      GtfsRealtimeFeedSnapshot snapshot = GtfsRealtimeFeedSnapshot.create(
+          feed.build(), time, _snapshot);
+      _snapshot = snapshot;
+      return snapshot;
+    }
+  }
+
+  private class RefreshTask implements Runnable {
+    @Override
+    public void run() {
+      refreshFeeds();
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.services;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+
+/**
+ * One published version of a GTFS-realtime feed, built once by
+ * {@link GtfsRealtimeFeedSnapshotService} and then served to every client until
+ * the next version replaces it. A snapshot carries three encodings of the
+ * feed:
+ * 
+ * <ul>
+ * <li>{@link #getFullDataset()} - the feed as the actions have always built it,
+ * with entity ids numbered from 1</li>
+ * <li>{@link #getKeyedFullDataset()} - the same entities, but with ids that
+ * stay the same from one version to the next (the vehicle id for vehicle
+ * positions, trip and vehicle id for trip updates, a digest of the content for
+ * anything else)</li>
+ * <li>{@link #getDifferential()} - a DIFFERENTIAL feed with the keyed entities
+ * that were added or changed since the previous version, plus deletions for the
+ * ones that disappeared</li>
+ * </ul>
+ * 
+ * A client applying differential updates starts from the keyed full dataset and
+ * from then on asks for the differential with the ETag of the version it
+ * holds; if that is not {@link #getPreviousETag()}, it has missed a version and
+ * must be sent the keyed full dataset again.
+ */
+public final class GtfsRealtimeFeedSnapshot {
+
+  private final long _time;
+
+  private final String _etag;
+
+  private final String _previousETag;
+
+  private final SerializedFeedMessage _fullDataset;
+
+  private final SerializedFeedMessage _keyedFullDataset;
+
+  private final SerializedFeedMessage _differential;
+
+  private final Map<String, FeedEntity> _entitiesByKey;
+
+  private GtfsRealtimeFeedSnapshot(long time, String etag, String previousETag,
+      SerializedFeedMessage fullDataset,
+      SerializedFeedMessage keyedFullDataset,
+      SerializedFeedMessage differential, Map<String, FeedEntity> entitiesByKey) {
+    _time = time;
+    _etag = etag;
+    _previousETag = previousETag;
+    _fullDataset = fullDataset;
+    _keyedFullDataset = keyedFullDataset;
+    _differential = differential;
+    _entitiesByKey = entitiesByKey;
+  }
+
+  /**
+   * 
+   * @param feed a full dataset
+   * @param time the time the feed was built
+   * @param previous the version this snapshot replaces, or null if there is none
+   * @return the new snapshot
+   */
+  public static GtfsRealtimeFeedSnapshot create(FeedMessage feed, long time,
+      GtfsRealtimeFeedSnapshot previous) {
+
+    SerializedFeedMessage fullDataset = SerializedFeedMessage.create(feed);
+
+    Map<String, FeedEntity> entitiesByKey = new LinkedHashMap<String, FeedEntity>();
+    FeedMessage.Builder keyed = FeedMessage.newBuilder();
+    keyed.setHeader(feed.getHeader());
+    for (FeedEntity entity : feed.getEntityList()) {
+      String key = getEntityKey(entity);
+      String uniqueKey = key;
+      for (int i = 2; entitiesByKey.containsKey(uniqueKey); i++)
+        uniqueKey = key + "#" + i;
+      FeedEntity keyedEntity = entity.toBuilder().setId(uniqueKey).build();
+      entitiesByKey.put(uniqueKey, keyedEntity);
+      keyed.addEntity(keyedEntity);
+    }
+
+    Map<String, FeedEntity> previousEntities = previous != null
+        ? previous._entitiesByKey : Collections.<String, FeedEntity> emptyMap();
+    FeedMessage.Builder differential = FeedMessage.newBuilder();
+    differential.setHeader(feed.getHeader().toBuilder().setIncrementality(
+        FeedHeader.Incrementality.DIFFERENTIAL));
+    for (Map.Entry<String, FeedEntity> entry : entitiesByKey.entrySet()) {
+      if (!entry.getValue().equals(previousEntities.get(entry.getKey())))
+        differential.addEntity(entry.getValue());
+    }
+    for (String key : previousEntities.keySet()) {
+      if (!entitiesByKey.containsKey(key))
+        differential.addEntityBuilder().setId(key).setIsDeleted(true);
+    }
+
+    return new GtfsRealtimeFeedSnapshot(time, computeETag(fullDataset),
+        previous != null ? previous._etag : null, fullDataset,
+        SerializedFeedMessage.create(keyed.build()),
+        SerializedFeedMessage.create(differential.build()), entitiesByKey);
+  }
+
+  /**
+   * @return the time the snapshot was built
+   */
+  public long getTime() {
+    return _time;
+  }
+
+  /**
+   * The tag is weak: the same version of the feed is sent plain or gzipped,
+   * with numbered or keyed entity ids, and as text, so the bytes of a response
+   * depend on more than the tag.
+   * 
+   * @return a weak HTTP entity tag identifying this version of the feed
+   */
+  public String getETag() {
+    return _etag;
+  }
+
+  /**
+   * @return the entity tag of the version this snapshot replaced, or null
+   */
+  public String getPreviousETag() {
+    return _previousETag;
+  }
+
+  public SerializedFeedMessage getFullDataset() {
+    return _fullDataset;
+  }
+
+  public SerializedFeedMessage getKeyedFullDataset() {
+    return _keyedFullDataset;
+  }
+
+  public SerializedFeedMessage getDifferential() {
+    return _differential;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static String getEntityKey(FeedEntity entity) {
+    if (entity.hasTripUpdate()) {
+      TripUpdate tripUpdate = entity.getTripUpdate();
+      return "trip_update_" + tripUpdate.getTrip().getTripId() + "_"
+          + tripUpdate.getVehicle().getId();
+    }
+    if (entity.hasVehicle())
+      return "vehicle_" + entity.getVehicle().getVehicle().getId();
+    return "entity_"
+        + digest(entity.toBuilder().clearId().build().toByteArray());
+  }
+
+  private static String computeETag(SerializedFeedMessage message) {
+    CRC32 crc = new CRC32();
+    byte[] bytes = message.getBytes();
+    crc.update(bytes, 0, bytes.length);
+    return "W/\"" + Long.toHexString(crc.getValue()) + "-"
+        + Integer.toHexString(bytes.length) + "\"";
+  }
+
+  private static String digest(byte[] bytes) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-1").digest(bytes);
+      StringBuilder b = new StringBuilder(hash.length * 2);
+      for (byte v : hash) {
+        b.append(Character.forDigit((v >> 4) & 0xf, 16));
+        b.append(Character.forDigit(v & 0xf, 16));
+      }
+      return b.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
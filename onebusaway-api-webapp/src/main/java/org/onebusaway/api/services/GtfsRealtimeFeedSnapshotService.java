@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.services;
+
+/**
+ * Builds each requested GTFS-realtime feed once per refresh interval, in the
+ * background, and hands the same {@link GtfsRealtimeFeedSnapshot} to every
+ * client that asks for it in the meantime.
+ */
+public interface GtfsRealtimeFeedSnapshotService {
+
+  /**
+   * Returns the latest snapshot of a feed. The first request for a feed builds
+   * it on the calling thread and registers the source for refreshing; feeds that
+   * are not requested for a while are dropped again.
+   * 
+   * @param feedId identifies the feed and any option that changes its content
+   * @param agencyId the agency the feed is for
+   * @param source fills in the feed when there is no snapshot yet and on every
+   *          refresh
+   * @return the latest snapshot, or null if the caller should build the feed
+   *         itself: snapshots are disabled, the agency is unknown or too many
+   *         feeds are registered already
+   */
+  public GtfsRealtimeFeedSnapshot getSnapshot(String feedId, String agencyId,
+      GtfsRealtimeFeedSource source);
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.services;
+
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+
+/**
+ * Fills in the entities of a GTFS-realtime feed for a
+ * {@link GtfsRealtimeFeedSnapshotService}. A source is kept for as long as its
+ * feed is being requested and is called again on every refresh, from a
+ * background thread, so it must not depend on the request that registered it.
+ */
+public interface GtfsRealtimeFeedSource {
+
+  public void fillFeedMessage(FeedMessage.Builder feed, String agencyId,
+      long time);
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+
+/**
+ * A GTFS-realtime {@link FeedMessage} together with its serialized bytes, plain
+ * and gzipped, so that the message can be written to any number of responses
+ * without being serialized again.
+ * 
+ * @see GtfsRealtimeFeedSnapshot
+ */
+public final class SerializedFeedMessage {
+
+  private final FeedMessage _message;
+
+  private final byte[] _bytes;
+
+  private final byte[] _gzipBytes;
+
+  private SerializedFeedMessage(FeedMessage message, byte[] bytes,
+      byte[] gzipBytes) {
+    _message = message;
+    _bytes = bytes;
+    _gzipBytes = gzipBytes;
+  }
+
+  public static SerializedFeedMessage create(FeedMessage message) {
+    byte[] bytes = message.toByteArray();
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+          bytes.length / 4 + 64);
+      GZIPOutputStream out = new GZIPOutputStream(buffer);
+      out.write(bytes);
+      out.close();
+      return new SerializedFeedMessage(message, bytes, buffer.toByteArray());
+    } catch (IOException ex) {
+      throw new IllegalStateException("error compressing feed message", ex);
+    }
+  }
+
+  public FeedMessage getMessage() {
+    return _message;
+  }
+
+  /**
+   * @param gzip true for the size of the gzipped message
+   * @return the size of the serialized message, in bytes
+   */
+  public int getSize(boolean gzip) {
+    return gzip ? _gzipBytes.length : _bytes.length;
+  }
+
+  /**
+   * Writes the serialized message, gzipped or not, to the specified stream.
+   */
+  public void writeTo(OutputStream out, boolean gzip) throws IOException {
+    out.write(gzip ? _gzipBytes : _bytes);
+  }
+
+  byte[] getBytes() {
+    return _bytes;
+  }
+}
@@ -16,15 +16,22 @@
 package org.onebusaway.api.actions.api.gtfs_realtime;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.onebusaway.api.model.ResponseBean;
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshot;
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshotService;
+import org.onebusaway.api.services.GtfsRealtimeFeedSource;
 import org.onebusaway.geospatial.model.CoordinatePoint;
 import org.onebusaway.transit_data.model.ListBean;
 import org.onebusaway.transit_data.model.RouteBean;
@@ -34,6 +41,7 @@ import org.onebusaway.transit_data.model.trips.TripStatusBean;
 import org.onebusaway.transit_data.services.TransitDataService;
 
 import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
 import com.google.transit.realtime.GtfsRealtime.FeedMessage;
 import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
 
@@ -133,4 +141,64 @@ public class VehiclePositionsForAgencyActionTest {
       assertEquals(-122.1, vehiclePosition.getPosition().getLongitude(), 0.01);
     }
   }
+
+  @Test
+  public void testSnapshot() {
+
+    FeedMessage.Builder feed = FeedMessage.newBuilder();
+    feed.getHeaderBuilder().setGtfsRealtimeVersion("1.0");
+    feed.addEntityBuilder().setId("1").getVehicleBuilder().getVehicleBuilder().setId("v1");
+    GtfsRealtimeFeedSnapshot previous = GtfsRealtimeFeedSnapshot.create(
+        feed.build(), 1000, null);
+    feed.addEntityBuilder().setId("2").getVehicleBuilder().getVehicleBuilder().setId("v2");
+    GtfsRealtimeFeedSnapshot snapshot = GtfsRealtimeFeedSnapshot.create(
+        feed.build(), 2000, previous);
+
+    GtfsRealtimeFeedSnapshotService snapshotService = Mockito.mock(GtfsRealtimeFeedSnapshotService.class);
+    Mockito.when(
+        snapshotService.getSnapshot(Mockito.eq(VehiclePositionsForAgencyAction.class.getName()),
+            Mockito.eq("1"), Mockito.any(GtfsRealtimeFeedSource.class))).thenReturn(
+        snapshot);
+    _action.setSnapshotService(snapshotService);
+    _action.setId("1");
+
+    _action.show();
+    assertSame(snapshot.getFullDataset(), _action.getModel().getData());
+
+    HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(
+        previous.getETag());
+    _action.setServletRequest(request);
+    _action.setDifferential(true);
+
+    _action.show();
+    assertSame(snapshot.getDifferential(), _action.getModel().getData());
+    FeedMessage differential = snapshot.getDifferential().getMessage();
+    assertEquals(FeedHeader.Incrementality.DIFFERENTIAL,
+        differential.getHeader().getIncrementality());
+    assertEquals(1, differential.getEntityCount());
+    assertEquals("vehicle_v2", differential.getEntity(0).getId());
+
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn("\"unknown\"");
+    _action.show();
+    assertSame(snapshot.getKeyedFullDataset(), _action.getModel().getData());
+
+    Mockito.verifyZeroInteractions(_service);
+
+    /**
+     * The source kept by the snapshot service fills the feed through a copy
+     * of the action that shares only its services and id options
+     */
+    ArgumentCaptor<GtfsRealtimeFeedSource> source = ArgumentCaptor.forClass(GtfsRealtimeFeedSource.class);
+    Mockito.verify(snapshotService, Mockito.times(3)).getSnapshot(
+        Mockito.anyString(), Mockito.anyString(), source.capture());
+
+    Mockito.when(_service.getAllVehiclesForAgency(Mockito.eq("1"), Mockito.anyLong())).thenReturn(
+        new ListBean<VehicleStatusBean>(new ArrayList<VehicleStatusBean>(), false));
+    FeedMessage.Builder filled = FeedMessage.newBuilder();
+    filled.getHeaderBuilder().setGtfsRealtimeVersion("1.0");
+    source.getValue().fillFeedMessage(filled, "1", 2000);
+    assertEquals(0, filled.getEntityCount());
+    Mockito.verify(_service).getAllVehiclesForAgency("1", 2000);
+  }
 }
@@ -0,0 +1,267 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.ServletActionContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onebusaway.api.model.ResponseBean;
+import org.onebusaway.api.model.transit.AgencyV2Bean;
+import org.onebusaway.api.model.transit.EntryWithReferencesBean;
+import org.onebusaway.api.model.transit.ListWithReferencesBean;
+import org.onebusaway.api.model.transit.ReferencesBean;
+import org.onebusaway.api.model.transit.RouteV2Bean;
+import org.onebusaway.api.model.transit.StopV2Bean;
+import org.onebusaway.api.model.transit.TripDetailsV2Bean;
+import org.onebusaway.api.model.transit.TripStatusV2Bean;
+import org.onebusaway.api.model.transit.TripStopTimeV2Bean;
+import org.onebusaway.api.model.transit.TripStopTimesV2Bean;
+import org.onebusaway.api.model.transit.TripV2Bean;
+import org.onebusaway.geospatial.model.CoordinatePoint;
+import org.onebusaway.transit_data.model.EAccessibility;
+
+import com.opensymphony.xwork2.ActionContext;
+
+/**
+ * Checks that {@link CustomStreamingJsonHandler} writes exactly what
+ * {@link CustomJsonLibHandler} does.
+ */
+public class CustomStreamingJsonHandlerTest {
+
+  private CustomStreamingJsonHandler _handler = new CustomStreamingJsonHandler();
+
+  @Before
+  public void setup() {
+    ActionContext.setContext(new ActionContext(new HashMap<String, Object>()));
+  }
+
+  @After
+  public void teardown() {
+    ActionContext.setContext(null);
+  }
+
+  @Test
+  public void testListWithReferences() throws IOException {
+    ListWithReferencesBean<StopV2Bean> list = new ListWithReferencesBean<StopV2Bean>(
+        Arrays.asList(stop("1_100", "3rd & Pike \"NB\""),
+            stop("1_200", "Line\nbreak </script> \\ \u0007 caf\u00e9"),
+            stop("1_300", "")), true, references());
+    assertSameJson(new ResponseBean(2, 200, "OK", list));
+  }
+
+  @Test
+  public void testEntryWithReferences() throws IOException {
+
+    TripStopTimesV2Bean schedule = new TripStopTimesV2Bean();
+    schedule.setTimeZone("America/Los_Angeles");
+    List<TripStopTimeV2Bean> stopTimes = new ArrayList<TripStopTimeV2Bean>();
+    for (int i = 0; i < 3; i++) {
+      TripStopTimeV2Bean stopTime = new TripStopTimeV2Bean();
+      stopTime.setArrivalTime(8 * 3600 + i * 120);
+      stopTime.setDepartureTime(8 * 3600 + i * 120 + 30);
+      stopTime.setStopId("1_" + i);
+      stopTime.setDistanceAlongTrip(i * 412.5);
+      stopTimes.add(stopTime);
+    }
+    schedule.setStopTimes(stopTimes);
+
+    TripStatusV2Bean status = new TripStatusV2Bean();
+    status.setActiveTripId("1_trip");
+    status.setServiceDate(1286262000000L);
+    status.setPosition(new CoordinatePoint(47.6097, -122.3331));
+    status.setOrientation(90.0);
+    status.setScheduleDeviation(-120);
+    status.setPredicted(true);
+    status.setDistanceAlongTrip(1e-7);
+
+    TripDetailsV2Bean details = new TripDetailsV2Bean();
+    details.setTripId("1_trip");
+    details.setServiceDate(1286262000000L);
+    details.setSchedule(schedule);
+    details.setStatus(status);
+
+    assertSameJson(new ResponseBean(2, 200, "OK",
+        new EntryWithReferencesBean<TripDetailsV2Bean>(details, references())));
+  }
+
+  @Test
+  public void testJsonLookingStrings() throws IOException {
+    ListWithReferencesBean<StopV2Bean> list = new ListWithReferencesBean<StopV2Bean>(
+        Arrays.asList(stop("1_100", "null"), stop("1_200", "[1,2]"),
+            stop("1_300", "function() {}"), stop("1_400", "{\"a\":1}"),
+            stop("1_500", "'quoted'")), false, references());
+    assertSameJson(new ResponseBean(2, 200, "OK", list));
+    assertSameJson(Arrays.asList("true", "plain", "{}"));
+  }
+
+  @Test
+  public void testCollection() throws IOException {
+    assertSameJson(Arrays.asList(stop("1_100", "A"), null, stop("1_200", "B")));
+    assertSameJson(new StopV2Bean[] {stop("1_100", "A")});
+  }
+
+  @Test
+  public void testJsonp() throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter("callback")).thenReturn("handleResponse");
+    ServletActionContext.setRequest(request);
+
+    StringWriter actual = new StringWriter();
+    _handler.fromObject(new ResponseBean(2, 404, "resource not found", null),
+        null, actual);
+    assertEquals(
+        "handleResponse({\"code\":404,\"currentTime\":0,\"data\":null,\"text\":\"resource not found\",\"version\":2})",
+        actual.toString().replaceFirst("\"currentTime\":\\d+", "\"currentTime\":0"));
+    assertSameJson(new ResponseBean(2, 200, "OK", references()));
+  }
+
+  @Test
+  public void testBufferedResponseHasContentLength() throws IOException {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayOutputStream body = mockOutputStream(response);
+    ServletActionContext.setResponse(response);
+
+    List<StopV2Bean> stops = Arrays.asList(stop("1_100", "A"));
+    _handler.fromObject(stops, null, new StringWriter());
+
+    StringWriter expected = new StringWriter();
+    new CustomJsonLibHandler().fromObject(stops, null, expected);
+    assertEquals(expected.toString(), body.toString("UTF-8"));
+    verify(response).setContentLength(body.size());
+  }
+
+  @Test
+  public void testLargeResponseIsStreamed() throws IOException {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayOutputStream body = mockOutputStream(response);
+    ServletActionContext.setResponse(response);
+
+    List<StopV2Bean> stops = new ArrayList<StopV2Bean>();
+    for (int i = 0; i < 1000; i++)
+      stops.add(stop("1_" + i, "Stop " + i));
+    _handler.fromObject(stops, null, new StringWriter());
+
+    StringWriter expected = new StringWriter();
+    new CustomJsonLibHandler().fromObject(stops, null, expected);
+    assertTrue(body.size() > CustomStreamingJsonHandler.MAX_BUFFERED_RESPONSE);
+    assertEquals(expected.toString(), body.toString("UTF-8"));
+    verify(response, never()).setContentLength(anyInt());
+  }
+
+  @Test
+  public void testFailureLeavesBufferedResponseUncommitted()
+      throws IOException {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayOutputStream body = mockOutputStream(response);
+    ServletActionContext.setResponse(response);
+
+    try {
+      _handler.fromObject(Arrays.asList(stop("1_100", "A"), new FailingBean()),
+          null, new StringWriter());
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+
+    assertEquals(0, body.size());
+    verify(response, never()).getOutputStream();
+  }
+
+  private ByteArrayOutputStream mockOutputStream(HttpServletResponse response)
+      throws IOException {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        body.write(b);
+      }
+    });
+    return body;
+  }
+
+  private void assertSameJson(Object value) throws IOException {
+    StringWriter expected = new StringWriter();
+    new CustomJsonLibHandler().fromObject(value, null, expected);
+    StringWriter actual = new StringWriter();
+    _handler.fromObject(value, null, actual);
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  private StopV2Bean stop(String id, String name) {
+    StopV2Bean stop = new StopV2Bean();
+    stop.setId(id);
+    stop.setName(name);
+    stop.setLat(47.653435);
+    stop.setLon(-122.305641);
+    stop.setDirection("N");
+    stop.setWheelchairBoarding(EAccessibility.ACCESSIBLE);
+    stop.setRouteIds(Arrays.asList("1_10", "1_12"));
+    return stop;
+  }
+
+  public static class FailingBean {
+    public String getName() {
+      throw new IllegalStateException("failed");
+    }
+  }
+
+  private ReferencesBean references() {
+    AgencyV2Bean agency = new AgencyV2Bean();
+    agency.setId("1");
+    agency.setName("Metro Transit");
+    agency.setUrl("http://metro.kingcounty.gov/");
+    agency.setTimezone("America/Los_Angeles");
+
+    RouteV2Bean route = new RouteV2Bean();
+    route.setId("1_10");
+    route.setAgencyId("1");
+    route.setShortName("10");
+    route.setType(3);
+
+    TripV2Bean trip = new TripV2Bean();
+    trip.setId("1_trip");
+    trip.setRouteId("1_10");
+    trip.setTripHeadsign("Capitol Hill");
+
+    ReferencesBean references = new ReferencesBean();
+    references.addAgency(agency);
+    references.addRoute(route);
+    references.addTrip(trip);
+    return references;
+  }
+}
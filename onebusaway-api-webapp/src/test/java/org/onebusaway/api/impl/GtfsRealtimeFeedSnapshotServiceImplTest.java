@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.onebusaway.api.services.GtfsRealtimeFeedSnapshot;
+import org.onebusaway.api.services.GtfsRealtimeFeedSource;
+import org.onebusaway.api.services.SerializedFeedMessage;
+import org.onebusaway.transit_data.model.AgencyBean;
+import org.onebusaway.transit_data.services.TransitDataService;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+
+public class GtfsRealtimeFeedSnapshotServiceImplTest {
+
+  private GtfsRealtimeFeedSnapshotServiceImpl _service;
+
+  private VehicleSource _source;
+
+  @Before
+  public void before() {
+    TransitDataService transitDataService = Mockito.mock(TransitDataService.class);
+    Mockito.when(transitDataService.getAgency("1")).thenReturn(new AgencyBean());
+    Mockito.when(transitDataService.getAgency("2")).thenReturn(new AgencyBean());
+
+    _service = new GtfsRealtimeFeedSnapshotServiceImpl();
+    _service.setTransitDataService(transitDataService);
+    _source = new VehicleSource();
+    _source.latitudes.put("v1", 47.0f);
+    _source.latitudes.put("v2", 47.1f);
+  }
+
+  @Test
+  public void testSnapshotIsShared() {
+
+    GtfsRealtimeFeedSnapshot a = _service.getSnapshot("vehicles", "1", _source);
+    GtfsRealtimeFeedSnapshot b = _service.getSnapshot("vehicles", "1",
+        new VehicleSource());
+    assertSame(a, b);
+    assertEquals(1, _source.fillCount);
+
+    _service.refreshFeeds();
+    assertEquals(2, _source.fillCount);
+
+    GtfsRealtimeFeedSnapshot c = _service.getSnapshot("vehicles", "1", _source);
+    assertNotSame(a, c);
+    assertEquals(a.getETag(), c.getPreviousETag());
+
+    _service.getSnapshot("vehicles", "2", _source);
+    assertEquals(3, _source.fillCount);
+  }
+
+  @Test
+  public void testUnknownAgency() {
+    assertNull(_service.getSnapshot("vehicles", "unknown", _source));
+    assertEquals(0, _source.fillCount);
+  }
+
+  @Test
+  public void testMaxFeeds() {
+    _service.setMaxFeeds(1);
+    GtfsRealtimeFeedSnapshot a = _service.getSnapshot("vehicles", "1", _source);
+    assertNull(_service.getSnapshot("vehicles", "2", _source));
+    assertSame(a, _service.getSnapshot("vehicles", "1", _source));
+    assertEquals(1, _source.fillCount);
+  }
+
+  @Test
+  public void testSerializedMessage() throws IOException {
+
+    SerializedFeedMessage full = _service.getSnapshot("vehicles", "1",
+        _source).getFullDataset();
+    FeedMessage message = full.getMessage();
+    assertEquals(2, message.getEntityCount());
+    assertEquals("1", message.getEntity(0).getId());
+    assertEquals("2", message.getEntity(1).getId());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    full.writeTo(out, false);
+    assertEquals(full.getSize(false), out.size());
+    assertEquals(message, FeedMessage.parseFrom(out.toByteArray()));
+
+    out = new ByteArrayOutputStream();
+    full.writeTo(out, true);
+    assertEquals(full.getSize(true), out.size());
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(
+        out.toByteArray()));
+    assertEquals(message, FeedMessage.parseFrom(in));
+  }
+
+  @Test
+  public void testDifferential() {
+
+    GtfsRealtimeFeedSnapshot first = _service.getSnapshot("vehicles", "1",
+        _source);
+    assertNull(first.getPreviousETag());
+    assertTrue(first.getETag().startsWith("W/\""));
+
+    FeedMessage keyed = first.getKeyedFullDataset().getMessage();
+    assertEquals(FeedHeader.Incrementality.FULL_DATASET,
+        keyed.getHeader().getIncrementality());
+    assertEquals(2, keyed.getEntityCount());
+    assertEquals("vehicle_v1", keyed.getEntity(0).getId());
+    assertEquals("vehicle_v2", keyed.getEntity(1).getId());
+
+    _source.latitudes.remove("v1");
+    _source.latitudes.put("v2", 47.2f);
+    _source.latitudes.put("v3", 47.3f);
+    _source.latitudes.put("v4", 47.4f);
+    _service.refreshFeeds();
+
+    _source.latitudes.remove("v4");
+    _service.refreshFeeds();
+
+    GtfsRealtimeFeedSnapshot third = _service.getSnapshot("vehicles", "1",
+        _source);
+    FeedMessage differential = third.getDifferential().getMessage();
+    assertEquals(FeedHeader.Incrementality.DIFFERENTIAL,
+        differential.getHeader().getIncrementality());
+    assertEquals(1, differential.getEntityCount());
+    assertEquals("vehicle_v4", differential.getEntity(0).getId());
+    assertTrue(differential.getEntity(0).getIsDeleted());
+
+    _source.latitudes.put("v2", 47.5f);
+    _source.latitudes.put("v5", 47.6f);
+    _service.refreshFeeds();
+
+    differential = _service.getSnapshot("vehicles", "1", _source).getDifferential().getMessage();
+    assertEquals(2, differential.getEntityCount());
+    FeedEntity changed = differential.getEntity(0);
+    assertEquals("vehicle_v2", changed.getId());
+    assertFalse(changed.getIsDeleted());
+    assertEquals(47.5f, changed.getVehicle().getPosition().getLatitude(), 0.0f);
+    assertEquals("vehicle_v5", differential.getEntity(1).getId());
+  }
+
+  @Test
+  public void testIdleFeedsAreDropped() {
+
+    _service.getSnapshot("vehicles", "1", _source);
+    _service.setIdleTimeout(-1);
+    _service.refreshFeeds();
+    assertEquals(1, _source.fillCount);
+
+    _service.getSnapshot("vehicles", "1", _source);
+    assertEquals(2, _source.fillCount);
+  }
+
+  @Test
+  public void testDisabled() {
+    _service.setEnabled(false);
+    assertNull(_service.getSnapshot("vehicles", "1", _source));
+    assertEquals(0, _source.fillCount);
+  }
+
+  private static class VehicleSource implements GtfsRealtimeFeedSource {
+
+    private final Map<String, Float> latitudes = new LinkedHashMap<String, Float>();
+
+    private int fillCount = 0;
+
+    @Override
+    public void fillFeedMessage(FeedMessage.Builder feed, String agencyId,
+        long time) {
+      fillCount++;
+      for (Map.Entry<String, Float> entry : latitudes.entrySet()) {
+        FeedEntity.Builder entity = feed.addEntityBuilder();
+        entity.setId(Integer.toString(feed.getEntityCount()));
+        VehiclePosition.Builder vehicle = entity.getVehicleBuilder();
+        vehicle.getVehicleBuilder().setId(entry.getKey());
+        vehicle.getPositionBuilder().setLatitude(entry.getValue());
+        vehicle.getPositionBuilder().setLongitude(-122.0f);
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+
+import org.onebusaway.transit_data.model.RouteBean;
+import org.onebusaway.transit_data.model.StopBean;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a cache of stop beans kept on the heap with the same cache stored
+ * by {@link OffHeapCacheBackend}, while requests read entries and replace
+ * others the way expiring API caches do. Besides the time per request, the
+ * benchmark reports the garbage collection time and count accumulated during
+ * each measurement iteration as the {@code gcTimeMillis} and {@code gcCount}
+ * secondary results.
+ * 
+ * The cache holds {@code cacheMegabytes} of serialized beans, about 2GB by
+ * default, which takes several times as much space as live objects on the
+ * heap. Both variants run in the same forked JVM configuration; for a quicker
+ * run, try {@code -p cacheMegabytes=256}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {
+    "-Xms10g", "-Xmx10g", "-XX:MaxDirectMemorySize=4g"})
+public class OffHeapCacheBenchmark {
+
+  private static final int STOPS_PER_ENTRY = 20;
+
+  @Param({"heap", "offheap"})
+  public String backend;
+
+  @Param({"2048"})
+  public int cacheMegabytes;
+
+  private CacheManager _cacheManager;
+
+  private Ehcache _cache;
+
+  private int _entryCount;
+
+  private final Random _random = new Random(42);
+
+  @Setup
+  public void setup() throws IOException {
+
+    long cacheBytes = cacheMegabytes * 1024L * 1024L;
+    _entryCount = (int) (cacheBytes / getSerializedSize(createValue(0)));
+
+    Configuration config = new Configuration();
+    config.setName("OffHeapCacheBenchmark");
+    config.setUpdateCheck(false);
+    _cacheManager = new CacheManager(config);
+
+    CacheConfiguration cacheConfig = new CacheConfiguration("stops",
+        _entryCount);
+    cacheConfig.setEternal(true);
+    // the off-heap backend only decorates regions with copy semantics
+    if (backend.equals("offheap")) {
+      cacheConfig.setCopyOnRead(true);
+      cacheConfig.setCopyOnWrite(true);
+    }
+    _cacheManager.addCache(new Cache(cacheConfig));
+    _cache = _cacheManager.getEhcache("stops");
+
+    if (backend.equals("offheap")) {
+      OffHeapCacheBackend offHeap = new OffHeapCacheBackend();
+      // leave room for chunk rounding
+      offHeap.setMaxBytesOffHeap(cacheBytes + cacheBytes / 4);
+      Ehcache decorated = offHeap.decorate(_cache);
+      _cacheManager.replaceCacheWithDecoratedCache(_cache, decorated);
+      _cache = decorated;
+    }
+
+    for (int i = 0; i < _entryCount; i++)
+      _cache.put(new Element(i, createValue(i)));
+
+    System.gc();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _cacheManager.shutdown();
+  }
+
+  /**
+   * A request reads a cached entry, and every fourth request also recomputes
+   * an entry, turning the old value into garbage
+   */
+  @Benchmark
+  public Object getAndReplace(GcCounters counters) {
+    int key = _random.nextInt(_entryCount);
+    Element element = _cache.get(key);
+    if (key % 4 == 0) {
+      int replaced = _random.nextInt(_entryCount);
+      _cache.put(new Element(replaced, createValue(replaced)));
+    }
+    return element.getObjectValue();
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class GcCounters {
+
+    public long gcTimeMillis;
+
+    public long gcCount;
+
+    private long _startTime;
+
+    private long _startCount;
+
+    @Setup(Level.Iteration)
+    public void start() {
+      gcTimeMillis = 0;
+      gcCount = 0;
+      _startTime = getCollectionTime();
+      _startCount = getCollectionCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+      gcTimeMillis = getCollectionTime() - _startTime;
+      gcCount = getCollectionCount() - _startCount;
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static ArrayList<StopBean> createValue(int index) {
+    ArrayList<StopBean> stops = new ArrayList<StopBean>(STOPS_PER_ENTRY);
+    for (int i = 0; i < STOPS_PER_ENTRY; i++) {
+      StopBean stop = new StopBean();
+      stop.setId("1_" + index + "_" + i);
+      stop.setCode(Integer.toString(i));
+      stop.setName("Stop " + i + " of entry " + index);
+      stop.setDirection("N");
+      stop.setLat(47.6 + i * 0.001);
+      stop.setLon(-122.3 - i * 0.001);
+      List<RouteBean> routes = new ArrayList<RouteBean>();
+      for (int r = 0; r < 3; r++) {
+        RouteBean.Builder route = RouteBean.builder();
+        route.setId("1_" + (index % 100 + r));
+        route.setShortName(Integer.toString(index % 100 + r));
+        route.setLongName("Route " + (index % 100 + r));
+        route.setType(3);
+        routes.add(route.create());
+      }
+      stop.setRoutes(routes);
+      stops.add(stop);
+    }
+    return stops;
+  }
+
+  private static int getSerializedSize(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(new Element(0, value));
+    out.close();
+    return bytes.size();
+  }
+
+  private static long getCollectionTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+      time += Math.max(0, bean.getCollectionTime());
+    return time;
+  }
+
+  private static long getCollectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+      count += Math.max(0, bean.getCollectionCount());
+    return count;
+  }
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.onebusaway.geospatial.model.CoordinatePoint;
+import org.onebusaway.transit_data.model.AgencyBean;
+import org.onebusaway.transit_data.model.ArrivalAndDepartureBean;
+import org.onebusaway.transit_data.model.EAccessibility;
+import org.onebusaway.transit_data.model.ListBean;
+import org.onebusaway.transit_data.model.RouteBean;
+import org.onebusaway.transit_data.model.StopBean;
+import org.onebusaway.transit_data.model.StopWithArrivalsAndDeparturesBean;
+import org.onebusaway.transit_data.model.StopsForRouteBean;
+import org.onebusaway.transit_data.model.TripStopTimeBean;
+import org.onebusaway.transit_data.model.TripStopTimesBean;
+import org.onebusaway.transit_data.model.VehicleStatusBean;
+import org.onebusaway.transit_data.model.service_alerts.ServiceAlertBean;
+import org.onebusaway.transit_data.model.trips.TripBean;
+import org.onebusaway.transit_data.model.trips.TripDetailsBean;
+import org.onebusaway.transit_data.model.trips.TripStatusBean;
+import org.onebusaway.transit_data.services.TransitDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.remoting.caucho.HessianServiceExporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The server half of {@link RemotingTransportBenchmark}, run in its own JVM so
+ * that the benchmark measures real socket round trips. It exports a
+ * {@link TransitDataService} with canned responses twice, at {@code /hessian}
+ * with Spring's {@link HessianServiceExporter} (what the
+ * transit-data-federation-webapp uses today) and at {@code /binary} with
+ * {@link BinaryRemotingServiceExporter}, prints {@code port=NNNN} once it is
+ * listening and exits when its standard input is closed.
+ */
+public class RemotingBenchmarkServer {
+
+  private static Logger _log = LoggerFactory.getLogger(RemotingBenchmarkServer.class);
+
+  public static final String PORT_PREFIX = "port=";
+
+  public static void main(String[] args) throws Exception {
+
+    int vehicleCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int stopsPerTrip = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+    TransitDataService service = createService(vehicleCount, stopsPerTrip);
+
+    final HessianServiceExporter hessian = new HessianServiceExporter();
+    hessian.setService(service);
+    hessian.setServiceInterface(TransitDataService.class);
+    hessian.afterPropertiesSet();
+
+    final BinaryRemotingServiceExporter binary = new BinaryRemotingServiceExporter();
+    binary.setService(service);
+    binary.setServiceInterface(TransitDataService.class);
+    binary.afterPropertiesSet();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(
+        InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/hessian", new ExporterHandler() {
+      @Override
+      protected void invoke(InputStream in, OutputStream out) throws Throwable {
+        hessian.invoke(in, out);
+      }
+    });
+    server.createContext("/binary", new ExporterHandler() {
+      @Override
+      protected void invoke(InputStream in, OutputStream out) throws Throwable {
+        binary.invoke(in, out);
+      }
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    server.setExecutor(executor);
+    server.start();
+
+    System.out.println(PORT_PREFIX + server.getAddress().getPort());
+    System.out.flush();
+
+    /**
+     * Block until the benchmark closes our standard input (or dies)
+     */
+    while (System.in.read() != -1)
+      ;
+
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * A {@link TransitDataService} answering the calls behind the busiest API
+   * endpoints with fixed, realistically sized responses. Every other method
+   * returns null.
+   */
+  static TransitDataService createService(int vehicleCount, int stopsPerTrip) {
+
+    AgencyBean agency = new AgencyBean();
+    agency.setId("1");
+    agency.setName("Metro Transit");
+    agency.setUrl("http://metro.example.com");
+    agency.setTimezone("America/Los_Angeles");
+    agency.setLang("en");
+
+    RouteBean.Builder routeBuilder = RouteBean.builder();
+    routeBuilder.setId("1_100");
+    routeBuilder.setShortName("100");
+    routeBuilder.setLongName("Downtown - University District");
+    routeBuilder.setType(3);
+    routeBuilder.setAgency(agency);
+    RouteBean route = routeBuilder.create();
+
+    List<StopBean> stops = new ArrayList<StopBean>();
+    for (int i = 0; i < stopsPerTrip; i++) {
+      StopBean stop = new StopBean();
+      stop.setId("1_" + (10000 + i));
+      stop.setCode(Integer.toString(10000 + i));
+      stop.setName("Main St & " + (i + 1) + "th Ave");
+      stop.setDirection(i % 2 == 0 ? "N" : "S");
+      stop.setLat(47.6 + i * 0.001);
+      stop.setLon(-122.3 - i * 0.001);
+      stop.setWheelchairBoarding(EAccessibility.ACCESSIBLE);
+      List<RouteBean> routes = new ArrayList<RouteBean>();
+      routes.add(route);
+      stop.setRoutes(routes);
+      stops.add(stop);
+    }
+
+    long serviceDate = 1300000000000L;
+    long now = serviceDate + 8 * 60 * 60 * 1000;
+
+    final ListBean<VehicleStatusBean> vehicles = new ListBean<VehicleStatusBean>();
+    vehicles.setList(new ArrayList<VehicleStatusBean>());
+    final ListBean<TripDetailsBean> trips = new ListBean<TripDetailsBean>();
+    trips.setList(new ArrayList<TripDetailsBean>());
+    List<ArrivalAndDepartureBean> arrivals = new ArrayList<ArrivalAndDepartureBean>();
+
+    for (int i = 0; i < vehicleCount; i++) {
+
+      TripBean trip = new TripBean();
+      trip.setId("1_trip" + i);
+      trip.setRoute(route);
+      trip.setRouteShortName("100");
+      trip.setTripHeadsign("University District");
+      trip.setServiceId("1_WEEKDAY");
+      trip.setShapeId("1_shape" + (i % 4));
+      trip.setDirectionId(Integer.toString(i % 2));
+      trip.setBlockId("1_block" + i);
+      trip.setTotalTripDistance(12500.0);
+
+      TripStatusBean status = new TripStatusBean();
+      status.setActiveTrip(trip);
+      status.setServiceDate(serviceDate);
+      status.setPhase("in_progress");
+      status.setStatus("default");
+      status.setPredicted(true);
+      status.setVehicleId("1_" + (4000 + i));
+      status.setLocation(new CoordinatePoint(47.6 + i * 0.0001, -122.3));
+      status.setOrientation(90.0);
+      status.setDistanceAlongTrip(i * 100.0);
+      status.setScheduledDistanceAlongTrip(i * 100.0 + 50.0);
+      status.setTotalDistanceAlongTrip(12500.0);
+      status.setClosestStop(stops.get(i % stopsPerTrip));
+      status.setNextStop(stops.get((i + 1) % stopsPerTrip));
+      status.setNextStopTimeOffset(60);
+      status.setScheduleDeviation(i % 5 * 60);
+      status.setLastUpdateTime(now);
+      status.setLastLocationUpdateTime(now);
+      status.setSituations(new ArrayList<ServiceAlertBean>());
+
+      VehicleStatusBean vehicle = new VehicleStatusBean();
+      vehicle.setVehicleId(status.getVehicleId());
+      vehicle.setPhase("in_progress");
+      vehicle.setStatus("default");
+      vehicle.setLastUpdateTime(now);
+      vehicle.setLastLocationUpdateTime(now);
+      vehicle.setLocation(status.getLocation());
+      vehicle.setTrip(trip);
+      vehicle.setTripStatus(status);
+      vehicles.getList().add(vehicle);
+
+      List<TripStopTimeBean> stopTimes = new ArrayList<TripStopTimeBean>();
+      for (int j = 0; j < stopsPerTrip; j++) {
+        TripStopTimeBean stopTime = new TripStopTimeBean();
+        stopTime.setStop(stops.get(j));
+        stopTime.setArrivalTime(8 * 60 * 60 + i * 600 + j * 90);
+        stopTime.setDepartureTime(8 * 60 * 60 + i * 600 + j * 90 + 30);
+        stopTime.setDistanceAlongTrip(j * 312.5);
+        stopTimes.add(stopTime);
+      }
+      TripStopTimesBean schedule = new TripStopTimesBean();
+      schedule.setStopTimes(stopTimes);
+      schedule.setTimeZone("America/Los_Angeles");
+
+      TripDetailsBean details = new TripDetailsBean();
+      details.setTripId(trip.getId());
+      details.setServiceDate(serviceDate);
+      details.setTrip(trip);
+      details.setSchedule(schedule);
+      details.setStatus(status);
+      details.setSituations(new ArrayList<ServiceAlertBean>());
+      trips.getList().add(details);
+
+      ArrivalAndDepartureBean arrival = new ArrivalAndDepartureBean();
+      arrival.setTrip(trip);
+      arrival.setServiceDate(serviceDate);
+      arrival.setVehicleId(status.getVehicleId());
+      arrival.setStop(stops.get(0));
+      arrival.setStopSequence(0);
+      arrival.setArrivalEnabled(true);
+      arrival.setDepartureEnabled(true);
+      arrival.setScheduledArrivalTime(now + i * 60000);
+      arrival.setScheduledDepartureTime(now + i * 60000 + 30000);
+      arrival.setPredictedArrivalTime(now + i * 60000 + 60000);
+      arrival.setPredictedDepartureTime(now + i * 60000 + 90000);
+      arrival.setPredicted(true);
+      arrival.setStatus("default");
+      arrival.setDistanceFromStop(i * 100.0);
+      arrival.setNumberOfStopsAway(i % stopsPerTrip);
+      arrival.setRouteShortName("100");
+      arrival.setTripHeadsign("University District");
+      arrival.setTripStatus(status);
+      arrival.setTotalStopsInTrip(stopsPerTrip);
+      if (arrivals.size() < 30)
+        arrivals.add(arrival);
+    }
+
+    final StopWithArrivalsAndDeparturesBean stopWithArrivals = new StopWithArrivalsAndDeparturesBean(
+        stops.get(0), arrivals, stops.subList(1, Math.min(5, stopsPerTrip)),
+        new ArrayList<ServiceAlertBean>());
+
+    final StopsForRouteBean stopsForRoute = new StopsForRouteBean();
+    stopsForRoute.setRoute(route);
+    stopsForRoute.setStops(stops);
+
+    return (TransitDataService) Proxy.newProxyInstance(
+        TransitDataService.class.getClassLoader(),
+        new Class<?>[] {TransitDataService.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getAllVehiclesForAgency"))
+              return vehicles;
+            if (name.equals("getTripsForRoute"))
+              return trips;
+            if (name.equals("getStopWithArrivalsAndDepartures"))
+              return stopWithArrivals;
+            if (name.equals("getStopsForRoute"))
+              return stopsForRoute;
+            if (name.equals("stopHasUpcomingScheduledService"))
+              return Boolean.TRUE;
+            if (name.equals("toString"))
+              return "CannedTransitDataService";
+            if (name.equals("hashCode"))
+              return System.identityHashCode(proxy);
+            if (name.equals("equals"))
+              return proxy == args[0];
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Buffers each response so it can be sent with a Content-Length, which keeps
+   * the client's connection open for the next request.
+   */
+  private static abstract class ExporterHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+      InputStream in = exchange.getRequestBody();
+      try {
+        invoke(in, out);
+      } catch (Throwable ex) {
+        _log.error("error invoking service", ex);
+        exchange.sendResponseHeaders(500, -1);
+        exchange.close();
+        return;
+      } finally {
+        in.close();
+      }
+      exchange.sendResponseHeaders(200, out.size());
+      OutputStream body = exchange.getResponseBody();
+      out.writeTo(body);
+      body.close();
+    }
+
+    protected abstract void invoke(InputStream in, OutputStream out)
+        throws Throwable;
+  }
+}
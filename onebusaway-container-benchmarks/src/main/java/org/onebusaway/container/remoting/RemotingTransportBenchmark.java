@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.transit_data.model.ArrivalsAndDeparturesQueryBean;
+import org.onebusaway.transit_data.model.ListBean;
+import org.onebusaway.transit_data.model.StopBean;
+import org.onebusaway.transit_data.model.StopWithArrivalsAndDeparturesBean;
+import org.onebusaway.transit_data.model.StopsForRouteBean;
+import org.onebusaway.transit_data.model.VehicleStatusBean;
+import org.onebusaway.transit_data.model.trips.TripDetailsBean;
+import org.onebusaway.transit_data.model.trips.TripDetailsInclusionBean;
+import org.onebusaway.transit_data.model.trips.TripsForRouteQueryBean;
+import org.onebusaway.transit_data.services.TransitDataService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.remoting.caucho.HessianProxyFactoryBean;
+
+/**
+ * Compares the Hessian transport between the API webapps and the
+ * transit-data-federation-webapp with {@link BinaryRemotingProxyFactoryBean},
+ * for the {@link TransitDataService} calls behind the busiest API endpoints.
+ * The service runs in a second JVM ({@link RemotingBenchmarkServer}) so every
+ * call is a real HTTP round trip over the loopback interface.
+ *
+ * {@link #stopsForRouteWithService()} mirrors the SIRI route lookup: one
+ * stops-for-route call followed by an upcoming-service check for every stop,
+ * which the binary transport sends as a single {@link RemoteBatch} and Hessian
+ * as one request per stop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RemotingTransportBenchmark {
+
+  @Param({"hessian", "binary"})
+  public String transport;
+
+  @Param({"100"})
+  public int vehicleCount;
+
+  @Param({"40"})
+  public int stopsPerTrip;
+
+  private Process _server;
+
+  private TransitDataService _service;
+
+  private BinaryRemotingProxyFactoryBean _binaryProxy;
+
+  private TripsForRouteQueryBean _tripsQuery;
+
+  private ArrivalsAndDeparturesQueryBean _arrivalsQuery;
+
+  @Setup
+  public void setup() throws Exception {
+
+    String java = System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java";
+    ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+        System.getProperty("java.class.path"),
+        RemotingBenchmarkServer.class.getName(),
+        Integer.toString(vehicleCount), Integer.toString(stopsPerTrip));
+    builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    _server = builder.start();
+
+    int port = readPort(_server);
+    String url = "http://localhost:" + port + "/" + transport;
+
+    if (transport.equals("hessian")) {
+      HessianProxyFactoryBean factory = new HessianProxyFactoryBean();
+      factory.setServiceUrl(url);
+      factory.setServiceInterface(TransitDataService.class);
+      factory.afterPropertiesSet();
+      _service = (TransitDataService) factory.getObject();
+    } else if (transport.equals("binary")) {
+      _binaryProxy = new BinaryRemotingProxyFactoryBean();
+      _binaryProxy.setServiceUrl(url);
+      _binaryProxy.setServiceInterface(TransitDataService.class);
+      _binaryProxy.afterPropertiesSet();
+      _service = (TransitDataService) _binaryProxy.getObject();
+    } else {
+      throw new IllegalArgumentException("unknown transport: " + transport);
+    }
+
+    TripDetailsInclusionBean inclusion = new TripDetailsInclusionBean();
+    inclusion.setIncludeTripBean(true);
+    inclusion.setIncludeTripSchedule(true);
+    inclusion.setIncludeTripStatus(true);
+    _tripsQuery = new TripsForRouteQueryBean();
+    _tripsQuery.setRouteId("1_100");
+    _tripsQuery.setTime(System.currentTimeMillis());
+    _tripsQuery.setInclusion(inclusion);
+
+    _arrivalsQuery = new ArrivalsAndDeparturesQueryBean();
+    _arrivalsQuery.setTime(System.currentTimeMillis());
+    _arrivalsQuery.setMinutesBefore(5);
+    _arrivalsQuery.setMinutesAfter(35);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    if (_binaryProxy != null)
+      _binaryProxy.destroy();
+    if (_server != null) {
+      _server.getOutputStream().close();
+      _server.waitFor(10, TimeUnit.SECONDS);
+      _server.destroy();
+    }
+  }
+
+  @Benchmark
+  public ListBean<VehicleStatusBean> vehiclesForAgency() {
+    return _service.getAllVehiclesForAgency("1", System.currentTimeMillis());
+  }
+
+  @Benchmark
+  public ListBean<TripDetailsBean> tripsForRoute() {
+    return _service.getTripsForRoute(_tripsQuery);
+  }
+
+  @Benchmark
+  public StopWithArrivalsAndDeparturesBean arrivalsAndDeparturesForStop()
+      throws Exception {
+    return _service.getStopWithArrivalsAndDepartures("1_10000", _arrivalsQuery);
+  }
+
+  @Benchmark
+  public int stopsForRouteWithService() {
+    StopsForRouteBean stopsForRoute = _service.getStopsForRoute("1_100");
+    long time = System.currentTimeMillis();
+    RemoteBatch<TransitDataService> batch = RemoteBatch.create(
+        TransitDataService.class, _service);
+    List<RemoteBatch.Result<Boolean>> results = new ArrayList<RemoteBatch.Result<Boolean>>();
+    for (StopBean stop : stopsForRoute.getStops())
+      results.add(batch.submit(batch.record().stopHasUpcomingScheduledService(
+          "1", time, stop.getId(), "1_100", "0")));
+    batch.execute();
+    int count = 0;
+    for (RemoteBatch.Result<Boolean> result : results) {
+      if (Boolean.TRUE.equals(result.get()))
+        count++;
+    }
+    return count;
+  }
+
+  private static int readPort(Process process) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        process.getInputStream(), "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith(RemotingBenchmarkServer.PORT_PREFIX))
+        return Integer.parseInt(line.substring(RemotingBenchmarkServer.PORT_PREFIX.length()));
+    }
+    throw new IOException("remoting benchmark server exited before listening");
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache;
+
+import net.sf.ehcache.Ehcache;
+
+/**
+ * Chooses where the entries of a cache region are stored. By default, EhCache
+ * keeps them on the Java heap; a backend can decorate the region to store them
+ * elsewhere, such as
+ * {@link org.onebusaway.container.cache.offheap.OffHeapCacheBackend}.
+ * 
+ * Backends are selected per cache name with
+ * {@link CacheableMethodManager#setCacheBackends(java.util.Map)}, or per
+ * region with
+ * {@link org.onebusaway.container.spring.ehcache.EhCacheFactoryBean#setBackend(CacheBackend)}
+ * .
+ */
+public interface CacheBackend {
+
+  /**
+   * 
+   * @param cache a cache region registered with its cache manager
+   * @return the cache to register under the region's name in its place
+   */
+  public Ehcache decorate(Ehcache cache);
+}
@@ -57,4 +57,16 @@ public @interface Cacheable {
   Class<? extends CacheableMethodKeyFactory> keyFactory() default CacheableMethodKeyFactory.class;
   
   boolean isValueSerializable() default true;
+
+  /**
+   * A hit on an entry that has used up this fraction of its time-to-live
+   * reloads it in the background. The reload calls the method from a
+   * refresh-ahead thread, without the caller's transaction, request or other
+   * thread-bound context, so it should only be enabled for methods whose
+   * result depends on their arguments alone. The default, negative, uses
+   * {@link CacheableMethodManager#setRefreshAhead(double)}; zero disables it.
+   * 
+   * @return a fraction of the time-to-live, between 0 and 1
+   */
+  double refreshAhead() default -1;
 }
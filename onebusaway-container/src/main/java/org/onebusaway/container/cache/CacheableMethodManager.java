@@ -17,10 +17,28 @@ package org.onebusaway.container.cache;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
 
 import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.ObjectExistsException;
 
@@ -28,6 +46,8 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.Signature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.MBeanExporter;
 
 /**
  * Support class providing functionality for caching the output of arbitrary
@@ -35,6 +55,15 @@ import org.slf4j.LoggerFactory;
  * 
  * EhCache is used as the backing cache store.
  * 
+ * Concurrent misses on the same key are coalesced: one caller runs the method
+ * while the others wait for and share its result, so an expired popular key is
+ * only recomputed once (see {@link #setSingleFlight(boolean)}). Optionally, a
+ * hit on an entry that is close to expiring reloads it in the background (see
+ * {@link #setRefreshAhead(double)}). Hit, miss and load statistics for each
+ * cache are published over JMX as {@link CacheableMethodStatistics}. Where
+ * the entries of a cache are stored can be chosen per cache name with
+ * {@link #setCacheBackends(Map)}.
+ * 
  * @author bdferris
  * @see Cacheable
  * @see CacheableAnnotationInterceptor
@@ -53,6 +82,24 @@ public class CacheableMethodManager {
 
   private String _cacheNamePrefix;
 
+  private boolean _singleFlight = true;
+
+  private long _singleFlightTimeout = 30 * 1000;
+
+  private double _refreshAhead = 0;
+
+  private int _refreshAheadThreads = 2;
+
+  private int _refreshAheadQueueSize = 1000;
+
+  private ExecutorService _refreshAheadExecutor;
+
+  private MBeanExporter _mbeanExporter;
+
+  private Map<String, CacheBackend> _cacheBackends = new HashMap<String, CacheBackend>();
+
+  private Set<String> _decoratedCacheNames = new HashSet<String>();
+
   public void setCacheManager(CacheManager cacheManager) {
     _cacheManager = cacheManager;
   }
@@ -66,20 +113,110 @@ public class CacheableMethodManager {
     _cacheNamePrefix = cacheNamePrefix;
   }
 
+  /**
+   * 
+   * @param singleFlight when true (the default), concurrent misses on the same
+   *          key wait for a single call to the underlying method
+   */
+  public void setSingleFlight(boolean singleFlight) {
+    _singleFlight = singleFlight;
+  }
+
+  /**
+   * 
+   * @param singleFlightTimeout how long, in ms, a miss waits for a concurrent
+   *          load of the same key before giving up on it and calling the
+   *          underlying method itself, so a stuck load can't hold up every
+   *          caller of the key. Zero or less waits as long as the load takes.
+   */
+  public void setSingleFlightTimeout(long singleFlightTimeout) {
+    _singleFlightTimeout = singleFlightTimeout;
+  }
+
+  /**
+   * A hit on an entry that has used up the specified fraction of its
+   * time-to-live reloads it in the background, so that popular keys are
+   * replaced before they expire. Zero (the default) disables refresh-ahead;
+   * {@link Cacheable#refreshAhead()} overrides it per method.
+   * 
+   * The reload calls the method on a refresh-ahead thread rather than the
+   * calling thread, so whatever is bound to the caller's thread - an open
+   * transaction or Hibernate session, the current request, the security
+   * context - is not available to it. Only enable refresh-ahead for methods
+   * whose result depends on their arguments alone.
+   * 
+   * @param refreshAhead a fraction of the time-to-live, between 0 and 1
+   */
+  public void setRefreshAhead(double refreshAhead) {
+    _refreshAhead = refreshAhead;
+  }
+
+  public void setRefreshAheadThreads(int refreshAheadThreads) {
+    _refreshAheadThreads = refreshAheadThreads;
+  }
+
+  /**
+   * 
+   * @param refreshAheadQueueSize the number of refresh-ahead loads that can be
+   *          waiting for a thread; beyond it, entries are left to expire
+   */
+  public void setRefreshAheadQueueSize(int refreshAheadQueueSize) {
+    _refreshAheadQueueSize = refreshAheadQueueSize;
+  }
+
+  /**
+   * 
+   * @param cacheBackends backends for the entries of specific caches, keyed by
+   *          cache name as returned by {@link #getCacheName(ProceedingJoinPoint)}
+   *          . Other caches keep their entries on the heap. A backend is only
+   *          applied to the cache of a method whose values are
+   *          {@link Cacheable#isValueSerializable()}, and the cache region must
+   *          be configured with {@code copyOnRead} and {@code copyOnWrite}, so
+   *          callers get copies whether or not the backend is in use.
+   */
+  public void setCacheBackends(Map<String, CacheBackend> cacheBackends) {
+    _cacheBackends = new HashMap<String, CacheBackend>(cacheBackends);
+  }
+
+  @Autowired(required = false)
+  public void setMBeanExporter(MBeanExporter mbeanExporter) {
+    _mbeanExporter = mbeanExporter;
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (_refreshAheadExecutor != null) {
+      _refreshAheadExecutor.shutdownNow();
+      _refreshAheadExecutor = null;
+    }
+  }
+
   public Object evaluate(ProceedingJoinPoint pjp) throws Throwable {
 
     CacheEntry entry = getCache(pjp);
     CacheableMethodKeyFactory keyFactory = entry.getKeyFactory();
-    Cache cache = entry.getCache();
+    Ehcache cache = entry.getCache();
     CacheKeyInfo keyInfo = keyFactory.createKey(pjp);
     Serializable key = keyInfo.getKey();
-
-    Element element = cache.get(key);
-
-    if (element == null || keyInfo.isCacheRefreshIndicated()) {
-      Object retVal = pjp.proceed();
-      element = new Element(key, retVal);
-      cache.put(element);
+    CacheableMethodStatistics statistics = entry.getStatistics();
+
+    Element element = null;
+
+    if (keyInfo.isCacheRefreshIndicated()) {
+      statistics.recordMiss(false);
+      element = load(entry, key, pjp);
+    } else {
+      element = cache.get(key);
+      if (element != null) {
+        statistics.recordHit();
+        if (isRefreshAheadDue(entry, element))
+          refreshAhead(entry, key, pjp, element);
+      } else if (_singleFlight) {
+        element = loadOnce(entry, key, pjp);
+      } else {
+        statistics.recordMiss(false);
+        element = load(entry, key, pjp);
+      }
     }
 
     if (entry.isValueSerializable())
@@ -88,6 +225,17 @@ public class CacheableMethodManager {
       return element.getObjectValue();
   }
 
+  /**
+   * 
+   * @param name a cache name, as returned by
+   *          {@link #getCacheName(ProceedingJoinPoint)}
+   * @return statistics for the cache, or null if no call has used it yet
+   */
+  public CacheableMethodStatistics getStatistics(String name) {
+    CacheEntry entry = _entries.get(name);
+    return entry == null ? null : entry.getStatistics();
+  }
+
   /***************************************************************************
    * Protected Methods
    * 
@@ -117,6 +265,145 @@ public class CacheableMethodManager {
    * Private Methods
    ****/
 
+  /**
+   * Calls the underlying method and caches its result
+   */
+  private Element load(CacheEntry entry, Serializable key,
+      ProceedingJoinPoint pjp) throws Throwable {
+    long start = System.currentTimeMillis();
+    boolean failed = true;
+    try {
+      Object retVal = pjp.proceed();
+      Element element = new Element(key, retVal);
+      entry.getCache().put(element);
+      failed = false;
+      return element;
+    } finally {
+      entry.getStatistics().recordLoad(System.currentTimeMillis() - start,
+          failed);
+    }
+  }
+
+  /**
+   * Loads the key, or waits for a load of the same key already in progress
+   */
+  private Element loadOnce(CacheEntry entry, Serializable key,
+      ProceedingJoinPoint pjp) throws Throwable {
+
+    ConcurrentMap<Serializable, PendingLoad> pendingLoads = entry.getPendingLoads();
+    PendingLoad pending = new PendingLoad();
+    PendingLoad existing = pendingLoads.putIfAbsent(key, pending);
+
+    if (existing != null) {
+      entry.getStatistics().recordMiss(true);
+      Element element = existing.get(_singleFlightTimeout);
+      if (element != null)
+        return element;
+      // the load we were waiting on is taking too long: don't wait any more
+      entry.getStatistics().recordSingleFlightTimeout();
+      _log.warn("timed out waiting for a concurrent load of cache "
+          + entry.getCache().getName() + " key " + key);
+      return load(entry, key, pjp);
+    }
+
+    entry.getStatistics().recordMiss(false);
+
+    try {
+      // A load may have completed between our miss and claiming the key
+      Element element = entry.getCache().get(key);
+      if (element == null)
+        element = load(entry, key, pjp);
+      pending.complete(element, null);
+      return element;
+    } catch (Throwable ex) {
+      pending.complete(null, ex);
+      throw ex;
+    } finally {
+      pendingLoads.remove(key, pending);
+    }
+  }
+
+  private boolean isRefreshAheadDue(CacheEntry entry, Element element) {
+    double refreshAhead = entry.getRefreshAhead();
+    if (refreshAhead <= 0 || element.isEternal())
+      return false;
+    long created = element.getLatestOfCreationAndUpdateTime();
+    long expires = element.getExpirationTime();
+    if (expires == Long.MAX_VALUE || expires <= created)
+      return false;
+    long due = created + (long) ((expires - created) * refreshAhead);
+    return System.currentTimeMillis() >= due;
+  }
+
+  /**
+   * Reloads the key in the background, unless a load of it is already in
+   * progress. Misses on the key in the meantime wait for the reload.
+   */
+  private void refreshAhead(final CacheEntry entry, final Serializable key,
+      final ProceedingJoinPoint pjp, Element current) {
+
+    final PendingLoad pending = new PendingLoad();
+    if (entry.getPendingLoads().putIfAbsent(key, pending) != null)
+      return;
+
+    try {
+      getRefreshAheadExecutor().execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            pending.complete(load(entry, key, pjp), null);
+          } catch (Throwable ex) {
+            _log.warn("error refreshing an entry of cache "
+                + entry.getCache().getName(), ex);
+            pending.complete(null, ex);
+          } finally {
+            entry.getPendingLoads().remove(key, pending);
+          }
+        }
+      });
+      entry.getStatistics().recordRefreshAhead();
+    } catch (RejectedExecutionException ex) {
+      // too many refreshes queued up: the entry is left to expire
+      entry.getPendingLoads().remove(key, pending);
+      pending.complete(current, null);
+    }
+  }
+
+  private synchronized ExecutorService getRefreshAheadExecutor() {
+    if (_refreshAheadExecutor == null) {
+      int threads = Math.max(1, _refreshAheadThreads);
+      _refreshAheadExecutor = new ThreadPoolExecutor(threads, threads, 0L,
+          TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(
+              Math.max(1, _refreshAheadQueueSize)), new ThreadFactory() {
+
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "cacheable-refresh-ahead-"
+                  + _count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return _refreshAheadExecutor;
+  }
+
+  private void registerStatistics(String name,
+      CacheableMethodStatistics statistics) {
+    if (_mbeanExporter == null)
+      return;
+    try {
+      ObjectName objectName = new ObjectName(
+          "org.onebusaway.container.cache:type=CacheableMethodStatistics,name="
+              + ObjectName.quote(name));
+      _mbeanExporter.registerManagedResource(statistics, objectName);
+    } catch (Exception ex) {
+      _log.warn("error registering statistics for cache " + name, ex);
+    }
+  }
+
   private CacheEntry getCache(ProceedingJoinPoint pjp) {
 
     String name = getCacheName(pjp);
@@ -127,38 +414,72 @@ public class CacheableMethodManager {
       Method method = _cacheableMethodKeyFactoryManager.getMatchingMethodForJoinPoint(pjp);
       CacheableMethodKeyFactory keyFactory = getKeyFactory(pjp, method);
       boolean valueSerializable = isValueSerializable(pjp, method);
-      Cache cache = _cacheManager.getCache(name);
+      double refreshAhead = getRefreshAhead(method);
+      Ehcache cache = _cacheManager.getEhcache(name);
       if (cache == null) {
-        cache = createCache(pjp, name);
-        if (cache == null) {
+        Cache created = createCache(pjp, name);
+        if (created == null) {
           if(!_cacheManager.cacheExists(name))
             try {
               _cacheManager.addCache(name);
             } catch (ObjectExistsException oee) {
               _log.error("Cache already exists: " + name);
             }
-          cache = _cacheManager.getCache(name);
         } else {
           try {
-            _cacheManager.addCache(cache);
+            _cacheManager.addCache(created);
           } catch (ObjectExistsException oee) {
             _log.error("Cache already exists: " + name);
           }
         }
+        cache = _cacheManager.getEhcache(name);
       }
+      cache = applyCacheBackend(name, cache, valueSerializable);
       synchronized (_entries) {
-    	  entry = new CacheEntry(keyFactory, valueSerializable, cache);
+    	  entry = new CacheEntry(keyFactory, valueSerializable, refreshAhead,
+    	      cache, new CacheableMethodStatistics(name));
     	  if (_entries.containsKey(name)) {
     		  // another thread beat us here, discard
     		  _log.warn("concurrent attempt to create cache = " + name);
     	  } else {
     		  _entries.put(name, entry);
+    		  registerStatistics(name, entry.getStatistics());
     	  }
       }
     }
     return _entries.get(name);
   }
 
+  /**
+   * Decorates a cache with its configured backend, if any, the first time it
+   * is used
+   */
+  private Ehcache applyCacheBackend(String name, Ehcache cache,
+      boolean valueSerializable) {
+    CacheBackend backend = _cacheBackends.get(name);
+    if (backend == null || cache == null)
+      return cache;
+    if (!valueSerializable) {
+      _log.error("not applying backend to cache " + name
+          + ": its values are not declared serializable");
+      return cache;
+    }
+    synchronized (_decoratedCacheNames) {
+      if (!_decoratedCacheNames.add(name)) {
+        // another thread already decorated it
+        return _cacheManager.getEhcache(name);
+      }
+      try {
+        Ehcache decorated = backend.decorate(cache);
+        _cacheManager.replaceCacheWithDecoratedCache(cache, decorated);
+        return decorated;
+      } catch (CacheException ex) {
+        _log.error("error applying backend to cache " + name, ex);
+        return cache;
+      }
+    }
+  }
+
   private boolean isValueSerializable(ProceedingJoinPoint pjp, Method method) {
     Cacheable c = method.getAnnotation(Cacheable.class);
     if (c == null)
@@ -166,19 +487,35 @@ public class CacheableMethodManager {
     return c.isValueSerializable();
   }
 
+  private double getRefreshAhead(Method method) {
+    Cacheable c = method.getAnnotation(Cacheable.class);
+    if (c == null || c.refreshAhead() < 0)
+      return _refreshAhead;
+    return c.refreshAhead();
+  }
+
   private static class CacheEntry {
 
     private CacheableMethodKeyFactory _keyFactory;
 
     private boolean _valueSerializable;
 
-    private Cache _cache;
+    private double _refreshAhead;
+
+    private Ehcache _cache;
+
+    private CacheableMethodStatistics _statistics;
+
+    private ConcurrentMap<Serializable, PendingLoad> _pendingLoads = new ConcurrentHashMap<Serializable, PendingLoad>();
 
     public CacheEntry(CacheableMethodKeyFactory keyFactory,
-        boolean valueSerializable, Cache cache) {
+        boolean valueSerializable, double refreshAhead, Ehcache cache,
+        CacheableMethodStatistics statistics) {
       _keyFactory = keyFactory;
       _valueSerializable = valueSerializable;
+      _refreshAhead = refreshAhead;
       _cache = cache;
+      _statistics = statistics;
     }
 
     public CacheableMethodKeyFactory getKeyFactory() {
@@ -189,8 +526,53 @@ public class CacheableMethodManager {
       return _valueSerializable;
     }
 
-    public Cache getCache() {
+    public double getRefreshAhead() {
+      return _refreshAhead;
+    }
+
+    public Ehcache getCache() {
       return _cache;
     }
+
+    public CacheableMethodStatistics getStatistics() {
+      return _statistics;
+    }
+
+    public ConcurrentMap<Serializable, PendingLoad> getPendingLoads() {
+      return _pendingLoads;
+    }
+  }
+
+  /**
+   * A load of a key in progress, which callers missing the same key wait on
+   */
+  private static class PendingLoad {
+
+    private final CountDownLatch _done = new CountDownLatch(1);
+
+    private Element _element;
+
+    private Throwable _failure;
+
+    public void complete(Element element, Throwable failure) {
+      _element = element;
+      _failure = failure;
+      _done.countDown();
+    }
+
+    /**
+     * 
+     * @param timeout in ms; zero or less waits until the load completes
+     * @return the loaded element, or null if the load didn't complete in time
+     */
+    public Element get(long timeout) throws Throwable {
+      if (timeout <= 0)
+        _done.await();
+      else if (!_done.await(timeout, TimeUnit.MILLISECONDS))
+        return null;
+      if (_failure != null)
+        throw _failure;
+      return _element;
+    }
   }
 }
\ No newline at end of file
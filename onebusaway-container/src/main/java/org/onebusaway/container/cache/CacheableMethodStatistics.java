@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Hit, miss and load statistics for a single {@link Cacheable} method cache,
+ * as maintained by {@link CacheableMethodManager} and published over JMX.
+ * 
+ * @see CacheableMethodManager
+ */
+@ManagedResource
+public class CacheableMethodStatistics {
+
+  private final String _cacheName;
+
+  private final AtomicLong _hits = new AtomicLong();
+
+  private final AtomicLong _misses = new AtomicLong();
+
+  private final AtomicLong _coalescedMisses = new AtomicLong();
+
+  private final AtomicLong _singleFlightTimeouts = new AtomicLong();
+
+  private final AtomicLong _loads = new AtomicLong();
+
+  private final AtomicLong _loadFailures = new AtomicLong();
+
+  private final AtomicLong _totalLoadTime = new AtomicLong();
+
+  private final AtomicLong _maxLoadTime = new AtomicLong();
+
+  private final AtomicLong _refreshAheads = new AtomicLong();
+
+  public CacheableMethodStatistics(String cacheName) {
+    _cacheName = cacheName;
+  }
+
+  @ManagedAttribute
+  public String getCacheName() {
+    return _cacheName;
+  }
+
+  @ManagedAttribute
+  public long getHits() {
+    return _hits.get();
+  }
+
+  /**
+   * 
+   * @return calls that did not find a value in the cache, including those
+   *         that waited on a concurrent load of the same key
+   */
+  @ManagedAttribute
+  public long getMisses() {
+    return _misses.get();
+  }
+
+  /**
+   * 
+   * @return misses that waited on a concurrent load of the same key instead of
+   *         calling the method themselves
+   */
+  @ManagedAttribute
+  public long getCoalescedMisses() {
+    return _coalescedMisses.get();
+  }
+
+  /**
+   * 
+   * @return coalesced misses that gave up waiting on the concurrent load and
+   *         called the method themselves
+   */
+  @ManagedAttribute
+  public long getSingleFlightTimeouts() {
+    return _singleFlightTimeouts.get();
+  }
+
+  @ManagedAttribute
+  public double getHitRatio() {
+    long hits = _hits.get();
+    long total = hits + _misses.get();
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  /**
+   * 
+   * @return calls to the underlying method, including refresh-ahead loads
+   */
+  @ManagedAttribute
+  public long getLoads() {
+    return _loads.get();
+  }
+
+  @ManagedAttribute
+  public long getLoadFailures() {
+    return _loadFailures.get();
+  }
+
+  /**
+   * 
+   * @return average time of a call to the underlying method, in ms
+   */
+  @ManagedAttribute
+  public double getAverageLoadTime() {
+    long loads = _loads.get();
+    return loads == 0 ? 0.0 : (double) _totalLoadTime.get() / loads;
+  }
+
+  /**
+   * 
+   * @return longest call to the underlying method, in ms
+   */
+  @ManagedAttribute
+  public long getMaxLoadTime() {
+    return _maxLoadTime.get();
+  }
+
+  @ManagedAttribute
+  public long getRefreshAheads() {
+    return _refreshAheads.get();
+  }
+
+  @ManagedOperation
+  public void reset() {
+    _hits.set(0);
+    _misses.set(0);
+    _coalescedMisses.set(0);
+    _singleFlightTimeouts.set(0);
+    _loads.set(0);
+    _loadFailures.set(0);
+    _totalLoadTime.set(0);
+    _maxLoadTime.set(0);
+    _refreshAheads.set(0);
+  }
+
+  void recordHit() {
+    _hits.incrementAndGet();
+  }
+
+  void recordMiss(boolean coalesced) {
+    _misses.incrementAndGet();
+    if (coalesced)
+      _coalescedMisses.incrementAndGet();
+  }
+
+  void recordSingleFlightTimeout() {
+    _singleFlightTimeouts.incrementAndGet();
+  }
+
+  void recordLoad(long time, boolean failed) {
+    _loads.incrementAndGet();
+    if (failed)
+      _loadFailures.incrementAndGet();
+    _totalLoadTime.addAndGet(time);
+    while (true) {
+      long max = _maxLoadTime.get();
+      if (time <= max || _maxLoadTime.compareAndSet(max, time))
+        break;
+    }
+  }
+
+  void recordRefreshAhead() {
+    _refreshAheads.incrementAndGet();
+  }
+}
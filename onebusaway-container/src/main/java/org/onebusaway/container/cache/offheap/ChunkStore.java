@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-size chunks of memory outside the Java heap, either in direct buffers
+ * or in a memory-mapped file. A value is written to as many chunks as it needs,
+ * which need not be contiguous, so freed space never fragments. Not thread
+ * safe: callers synchronize.
+ */
+final class ChunkStore {
+
+  private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+  private final int _chunkSize;
+
+  private final int _chunksPerSegment;
+
+  private final int _chunkCount;
+
+  private final ByteBuffer[] _segments;
+
+  private final int[] _freeChunks;
+
+  private int _freeChunkCount;
+
+  private final RandomAccessFile _file;
+
+  private ChunkStore(long bytes, int chunkSize, RandomAccessFile file)
+      throws IOException {
+
+    if (chunkSize <= 0 || chunkSize > MAX_SEGMENT_SIZE)
+      throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+
+    long chunkCount = bytes / chunkSize;
+    if (chunkCount <= 0 || chunkCount > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("invalid size " + bytes
+          + " for chunks of " + chunkSize + " bytes");
+
+    _chunkSize = chunkSize;
+    _chunksPerSegment = MAX_SEGMENT_SIZE / chunkSize;
+    _chunkCount = (int) chunkCount;
+    _file = file;
+
+    int segmentCount = (_chunkCount + _chunksPerSegment - 1)
+        / _chunksPerSegment;
+    _segments = new ByteBuffer[segmentCount];
+
+    FileChannel channel = file == null ? null : file.getChannel();
+    if (channel != null)
+      file.setLength((long) _chunkCount * chunkSize);
+
+    for (int i = 0; i < segmentCount; i++) {
+      int chunks = Math.min(_chunksPerSegment, _chunkCount - i
+          * _chunksPerSegment);
+      int size = chunks * chunkSize;
+      if (channel == null) {
+        _segments[i] = ByteBuffer.allocateDirect(size);
+      } else {
+        long offset = (long) i * _chunksPerSegment * chunkSize;
+        _segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset,
+            size);
+      }
+    }
+
+    _freeChunks = new int[_chunkCount];
+    clear();
+  }
+
+  /**
+   * 
+   * @param bytes the capacity, rounded down to a whole number of chunks
+   * @param chunkSize
+   * @return chunks in direct memory
+   */
+  public static ChunkStore allocateDirect(long bytes, int chunkSize) {
+    try {
+      return new ChunkStore(bytes, chunkSize, null);
+    } catch (IOException ex) {
+      // no file involved
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * The file is only a backing store for the memory mapping: its contents do
+   * not outlive the process.
+   * 
+   * @param path the file to map, which is created or truncated
+   * @param bytes the capacity, rounded down to a whole number of chunks
+   * @param chunkSize
+   * @return chunks in the memory-mapped file
+   */
+  public static ChunkStore map(File path, long bytes, int chunkSize)
+      throws IOException {
+    File parent = path.getAbsoluteFile().getParentFile();
+    if (parent != null)
+      parent.mkdirs();
+    path.deleteOnExit();
+    RandomAccessFile file = new RandomAccessFile(path, "rw");
+    try {
+      file.setLength(0);
+      return new ChunkStore(bytes, chunkSize, file);
+    } catch (IOException ex) {
+      file.close();
+      throw ex;
+    } catch (RuntimeException ex) {
+      file.close();
+      throw ex;
+    }
+  }
+
+  public int getChunkCount() {
+    return _chunkCount;
+  }
+
+  public int getFreeChunkCount() {
+    return _freeChunkCount;
+  }
+
+  public long getUsedBytes() {
+    return (long) (_chunkCount - _freeChunkCount) * _chunkSize;
+  }
+
+  public int getChunksFor(int length) {
+    return (length + _chunkSize - 1) / _chunkSize;
+  }
+
+  /**
+   * 
+   * @param data
+   * @return the chunks holding the data, or null if there are not enough free
+   *         chunks
+   */
+  public int[] write(byte[] data) {
+    int count = getChunksFor(data.length);
+    if (count > _freeChunkCount)
+      return null;
+    int[] chunks = new int[count];
+    for (int i = 0; i < count; i++) {
+      int chunk = _freeChunks[--_freeChunkCount];
+      chunks[i] = chunk;
+      int offset = i * _chunkSize;
+      getChunk(chunk).put(data, offset,
+          Math.min(_chunkSize, data.length - offset));
+    }
+    return chunks;
+  }
+
+  public byte[] read(int[] chunks, int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < chunks.length; i++) {
+      int offset = i * _chunkSize;
+      getChunk(chunks[i]).get(data, offset,
+          Math.min(_chunkSize, length - offset));
+    }
+    return data;
+  }
+
+  public void free(int[] chunks) {
+    for (int chunk : chunks)
+      _freeChunks[_freeChunkCount++] = chunk;
+  }
+
+  public void clear() {
+    // hand out low chunks first
+    for (int i = 0; i < _chunkCount; i++)
+      _freeChunks[i] = _chunkCount - 1 - i;
+    _freeChunkCount = _chunkCount;
+  }
+
+  /**
+   * Closes the backing file, if any. Mapped memory is released when the
+   * buffers are garbage collected.
+   */
+  public void close() throws IOException {
+    if (_file != null)
+      _file.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private ByteBuffer getChunk(int chunk) {
+    ByteBuffer buffer = _segments[chunk / _chunksPerSegment].duplicate();
+    buffer.position((chunk % _chunksPerSegment) * _chunkSize);
+    return buffer;
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+
+import org.onebusaway.container.cache.CacheBackend;
+
+/**
+ * A {@link CacheBackend} that keeps serialized cache elements in direct memory,
+ * outside the Java heap, so that a large cache adds little to the live set the
+ * garbage collector has to trace. The memory tier is bounded by
+ * {@link #setMaxBytesOffHeap(long)}; with a {@link #setDiskPath(File)}, entries
+ * evicted from it overflow to a memory-mapped file bounded by
+ * {@link #setMaxBytesOnDisk(long)}.
+ * 
+ * Each decorated region gets its own store of the configured size. Direct
+ * memory is limited by the JVM's {@code -XX:MaxDirectMemorySize}, which
+ * defaults to the maximum heap size.
+ * 
+ * Elements read back from the store are copies, so only regions configured
+ * with {@code copyOnRead} and {@code copyOnWrite} can be decorated. Callers
+ * of those regions already get a copy of each value, whichever tier holds it.
+ * 
+ * @see OffHeapEhcache
+ */
+public class OffHeapCacheBackend implements CacheBackend {
+
+  private long _maxBytesOffHeap = 64 * 1024 * 1024;
+
+  private int _chunkSize = 512;
+
+  private MemoryStoreEvictionPolicy _evictionPolicy = MemoryStoreEvictionPolicy.LRU;
+
+  private File _diskPath;
+
+  private long _maxBytesOnDisk = 0;
+
+  /**
+   * 
+   * @param maxBytesOffHeap the size of the direct memory tier of each region.
+   *          Default is 64MB.
+   */
+  public void setMaxBytesOffHeap(long maxBytesOffHeap) {
+    _maxBytesOffHeap = maxBytesOffHeap;
+  }
+
+  /**
+   * Values are stored in chunks of this size: smaller chunks waste less space
+   * on small values, larger ones copy large values in fewer pieces. Default is
+   * 512 bytes.
+   */
+  public void setChunkSize(int chunkSize) {
+    _chunkSize = chunkSize;
+  }
+
+  /**
+   * 
+   * @param evictionPolicy "LRU" (the default) or "LFU"
+   */
+  public void setEvictionPolicy(String evictionPolicy) {
+    MemoryStoreEvictionPolicy policy = MemoryStoreEvictionPolicy.fromString(evictionPolicy);
+    if (policy != MemoryStoreEvictionPolicy.LRU
+        && policy != MemoryStoreEvictionPolicy.LFU)
+      throw new IllegalArgumentException("unsupported eviction policy: "
+          + evictionPolicy);
+    _evictionPolicy = policy;
+  }
+
+  /**
+   * 
+   * @param diskPath a directory for the disk tier, which holds one file per
+   *          region named after the region. The files do not outlive the
+   *          process.
+   */
+  public void setDiskPath(File diskPath) {
+    _diskPath = diskPath;
+  }
+
+  /**
+   * 
+   * @param maxBytesOnDisk the size of the disk tier of each region. The disk
+   *          tier is only used when both this and the disk path are set.
+   */
+  public void setMaxBytesOnDisk(long maxBytesOnDisk) {
+    _maxBytesOnDisk = maxBytesOnDisk;
+  }
+
+  /**
+   * 
+   * @throws CacheException if the region is not configured with
+   *           {@code copyOnRead} and {@code copyOnWrite}
+   */
+  @Override
+  public Ehcache decorate(Ehcache cache) {
+    CacheConfiguration config = cache.getCacheConfiguration();
+    if (!config.isCopyOnRead() || !config.isCopyOnWrite())
+      throw new CacheException("cache " + cache.getName()
+          + " must be configured with copyOnRead and copyOnWrite to be stored"
+          + " off-heap, since its elements are read back as copies");
+    ChunkStore memory = ChunkStore.allocateDirect(_maxBytesOffHeap, _chunkSize);
+    ChunkStore disk = null;
+    if (_diskPath != null && _maxBytesOnDisk > 0) {
+      File path = new File(_diskPath, cache.getName().replaceAll(
+          "[^A-Za-z0-9_.-]", "_")
+          + ".cache");
+      try {
+        disk = ChunkStore.map(path, _maxBytesOnDisk, _chunkSize);
+      } catch (IOException ex) {
+        throw new CacheException("error mapping disk tier " + path
+            + " for cache " + cache.getName(), ex);
+      }
+    }
+    return new OffHeapEhcache(cache, new OffHeapElementStore(memory, disk,
+        _evictionPolicy));
+  }
+}
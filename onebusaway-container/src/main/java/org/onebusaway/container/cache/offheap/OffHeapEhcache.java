@@ -0,0 +1,393 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.constructs.EhcacheDecoratorAdapter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorates an EhCache region so that its elements are serialized into an
+ * {@link OffHeapElementStore} instead of being kept on the Java heap. Elements
+ * that cannot be stored off-heap, because they are larger than the store, fall
+ * back to the underlying heap cache. The region must copy its values on read
+ * and write (see {@link OffHeapCacheBackend#decorate(Ehcache)}), so callers
+ * get a copy of each value whether it was stored off-heap or on the heap.
+ * 
+ * Elements keep their time-to-live, as configured on the element or on the
+ * region. Reads do not rewrite the stored element, so time-to-idle is measured
+ * from the last put rather than the last access. Cache event listeners and
+ * statistics of the underlying region only see the elements it holds itself.
+ * 
+ * @see OffHeapCacheBackend
+ */
+public class OffHeapEhcache extends EhcacheDecoratorAdapter {
+
+  private static Logger _log = LoggerFactory.getLogger(OffHeapEhcache.class);
+
+  private final OffHeapElementStore _store;
+
+  OffHeapEhcache(Ehcache underlyingCache, OffHeapElementStore store) {
+    super(underlyingCache);
+    _store = store;
+  }
+
+  public int getOffHeapSize() {
+    return _store.getMemorySize();
+  }
+
+  public int getOnDiskSize() {
+    return _store.getDiskSize();
+  }
+
+  public long getOffHeapBytesUsed() {
+    return _store.getMemoryBytesUsed();
+  }
+
+  public long getOnDiskBytesUsed() {
+    return _store.getDiskBytesUsed();
+  }
+
+  public long getEvictionCount() {
+    return _store.getEvictions();
+  }
+
+  public long getDemotionCount() {
+    return _store.getDemotions();
+  }
+
+  public long getPromotionCount() {
+    return _store.getPromotions();
+  }
+
+  /****
+   * {@link Ehcache} Interface
+   ****/
+
+  @Override
+  public Element get(Object key) throws IllegalStateException, CacheException {
+    Element element = getOffHeap(key, false);
+    return element != null ? element : underlyingCache.get(key);
+  }
+
+  @Override
+  public Element get(Serializable key) throws IllegalStateException,
+      CacheException {
+    return get((Object) key);
+  }
+
+  @Override
+  public Element getQuiet(Object key) throws IllegalStateException,
+      CacheException {
+    Element element = getOffHeap(key, true);
+    return element != null ? element : underlyingCache.getQuiet(key);
+  }
+
+  @Override
+  public Element getQuiet(Serializable key) throws IllegalStateException,
+      CacheException {
+    return getQuiet((Object) key);
+  }
+
+  @Override
+  public Map<Object, Element> getAll(Collection<?> keys)
+      throws IllegalStateException, CacheException, NullPointerException {
+    Map<Object, Element> elements = new HashMap<Object, Element>();
+    for (Object key : keys)
+      elements.put(key, get(key));
+    return elements;
+  }
+
+  @Override
+  public void put(Element element) throws IllegalArgumentException,
+      IllegalStateException, CacheException {
+    if (!putOffHeap(element))
+      underlyingCache.put(element);
+  }
+
+  @Override
+  public void put(Element element, boolean doNotNotifyCacheReplicators)
+      throws IllegalArgumentException, IllegalStateException, CacheException {
+    if (!putOffHeap(element))
+      underlyingCache.put(element, doNotNotifyCacheReplicators);
+  }
+
+  @Override
+  public void putQuiet(Element element) throws IllegalArgumentException,
+      IllegalStateException, CacheException {
+    if (!putOffHeap(element))
+      underlyingCache.putQuiet(element);
+  }
+
+  @Override
+  public void putWithWriter(Element element) throws IllegalArgumentException,
+      IllegalStateException, CacheException {
+    if (!putOffHeap(element))
+      underlyingCache.putWithWriter(element);
+  }
+
+  @Override
+  public void putAll(Collection<Element> elements) throws IllegalArgumentException,
+      IllegalStateException, CacheException {
+    for (Element element : elements)
+      put(element);
+  }
+
+  @Override
+  public Element putIfAbsent(Element element) throws NullPointerException {
+    synchronized (_store) {
+      Element existing = get(element.getObjectKey());
+      if (existing == null)
+        put(element);
+      return existing;
+    }
+  }
+
+  @Override
+  public Element putIfAbsent(Element element,
+      boolean doNotNotifyCacheReplicators) throws NullPointerException {
+    return putIfAbsent(element);
+  }
+
+  @Override
+  public Element replace(Element element) throws NullPointerException {
+    synchronized (_store) {
+      Element existing = getQuiet(element.getObjectKey());
+      if (existing != null)
+        put(element);
+      return existing;
+    }
+  }
+
+  @Override
+  public boolean replace(Element old, Element element)
+      throws NullPointerException, IllegalArgumentException {
+    synchronized (_store) {
+      Element existing = getQuiet(old.getObjectKey());
+      if (existing == null || !existing.equals(old))
+        return false;
+      put(element);
+      return true;
+    }
+  }
+
+  @Override
+  public boolean remove(Object key) throws IllegalStateException {
+    boolean removed = _store.remove(key);
+    return underlyingCache.remove(key) || removed;
+  }
+
+  @Override
+  public boolean remove(Serializable key) throws IllegalStateException {
+    return remove((Object) key);
+  }
+
+  @Override
+  public boolean remove(Object key, boolean doNotNotifyCacheReplicators)
+      throws IllegalStateException {
+    boolean removed = _store.remove(key);
+    return underlyingCache.remove(key, doNotNotifyCacheReplicators) || removed;
+  }
+
+  @Override
+  public boolean remove(Serializable key, boolean doNotNotifyCacheReplicators)
+      throws IllegalStateException {
+    return remove((Object) key, doNotNotifyCacheReplicators);
+  }
+
+  @Override
+  public boolean removeQuiet(Object key) throws IllegalStateException {
+    boolean removed = _store.remove(key);
+    return underlyingCache.removeQuiet(key) || removed;
+  }
+
+  @Override
+  public boolean removeQuiet(Serializable key) throws IllegalStateException {
+    return removeQuiet((Object) key);
+  }
+
+  @Override
+  public boolean removeWithWriter(Object key) throws IllegalStateException,
+      CacheException {
+    boolean removed = _store.remove(key);
+    return underlyingCache.removeWithWriter(key) || removed;
+  }
+
+  @Override
+  public boolean removeElement(Element element) throws NullPointerException {
+    synchronized (_store) {
+      Element existing = getQuiet(element.getObjectKey());
+      if (existing == null || !existing.equals(element))
+        return false;
+      return remove(element.getObjectKey());
+    }
+  }
+
+  @Override
+  public void removeAll(Collection<?> keys) throws IllegalStateException {
+    for (Object key : keys)
+      _store.remove(key);
+    underlyingCache.removeAll(keys);
+  }
+
+  @Override
+  public void removeAll(Collection<?> keys, boolean doNotNotifyCacheReplicators)
+      throws IllegalStateException {
+    for (Object key : keys)
+      _store.remove(key);
+    underlyingCache.removeAll(keys, doNotNotifyCacheReplicators);
+  }
+
+  @Override
+  public void removeAll() throws IllegalStateException, CacheException {
+    _store.clear();
+    underlyingCache.removeAll();
+  }
+
+  @Override
+  public void removeAll(boolean doNotNotifyCacheReplicators)
+      throws IllegalStateException, CacheException {
+    _store.clear();
+    underlyingCache.removeAll(doNotNotifyCacheReplicators);
+  }
+
+  @Override
+  public boolean isKeyInCache(Object key) {
+    return _store.containsKey(key) || underlyingCache.isKeyInCache(key);
+  }
+
+  @Override
+  public int getSize() throws IllegalStateException, CacheException {
+    return _store.size() + underlyingCache.getSize();
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Override
+  public List getKeys() throws IllegalStateException, CacheException {
+    List keys = new ArrayList(_store.getKeys());
+    keys.addAll(underlyingCache.getKeys());
+    return keys;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public List getKeysNoDuplicateCheck() throws IllegalStateException {
+    return getKeys();
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Override
+  public List getKeysWithExpiryCheck() throws IllegalStateException,
+      CacheException {
+    List keys = new ArrayList();
+    for (Object key : _store.getKeys()) {
+      if (getOffHeap(key, true) != null)
+        keys.add(key);
+    }
+    keys.addAll(underlyingCache.getKeysWithExpiryCheck());
+    return keys;
+  }
+
+  @Override
+  public void dispose() throws IllegalStateException {
+    try {
+      _store.close();
+    } catch (IOException ex) {
+      _log.warn("error closing off-heap store for cache " + getName(), ex);
+    }
+    underlyingCache.dispose();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private Element getOffHeap(Object key, boolean quiet) {
+    byte[] data = _store.get(key, quiet);
+    if (data == null)
+      return null;
+    Element element = deserialize(data);
+    if (element == null || element.isExpired(getCacheConfiguration())) {
+      _store.remove(key);
+      return null;
+    }
+    return element;
+  }
+
+  /**
+   * 
+   * @return false if the element must be stored in the underlying cache
+   *         instead
+   */
+  private boolean putOffHeap(Element element) {
+    Object key = element.getObjectKey();
+    byte[] data = serialize(element);
+    if (data != null && _store.put(key, data)) {
+      underlyingCache.removeQuiet(key);
+      return true;
+    }
+    _store.remove(key);
+    return false;
+  }
+
+  private byte[] serialize(Element element) {
+    if (!element.isSerializable())
+      return null;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(element);
+      out.close();
+      return bytes.toByteArray();
+    } catch (IOException ex) {
+      // a value in the object graph is not serializable
+      if (_log.isDebugEnabled())
+        _log.debug("keeping element on the heap in cache " + getName(), ex);
+      return null;
+    }
+  }
+
+  private Element deserialize(byte[] data) {
+    try {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+          data));
+      try {
+        return (Element) in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch (Exception ex) {
+      _log.warn("error reading off-heap element in cache " + getName(), ex);
+      return null;
+    }
+  }
+}
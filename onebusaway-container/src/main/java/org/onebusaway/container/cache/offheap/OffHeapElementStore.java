@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+
+/**
+ * A size-bounded map from keys to serialized values held outside the Java
+ * heap. Keys and per-entry bookkeeping stay on the heap; values live in a
+ * direct memory {@link ChunkStore} and, optionally, a second memory-mapped
+ * disk tier. When the memory tier is full, entries are evicted according to
+ * the eviction policy and demoted to the disk tier, if there is one; a hit in
+ * the disk tier promotes the entry back to memory.
+ * 
+ * Eviction is either LRU or an approximate LFU that picks the least frequently
+ * used among the least recently used entries, in the spirit of EhCache's own
+ * sampling eviction.
+ */
+final class OffHeapElementStore {
+
+  private static final int LFU_SAMPLE_SIZE = 16;
+
+  private final ChunkStore _memory;
+
+  private final ChunkStore _disk;
+
+  private final boolean _lfu;
+
+  private final LinkedHashMap<Object, Slot> _memorySlots = new LinkedHashMap<Object, Slot>(
+      16, 0.75f, true);
+
+  private final LinkedHashMap<Object, Slot> _diskSlots = new LinkedHashMap<Object, Slot>(
+      16, 0.75f, true);
+
+  private long _evictions = 0;
+
+  private long _demotions = 0;
+
+  private long _promotions = 0;
+
+  /**
+   * 
+   * @param memory the memory tier
+   * @param disk the disk tier, or null for none
+   * @param evictionPolicy LRU or LFU
+   */
+  public OffHeapElementStore(ChunkStore memory, ChunkStore disk,
+      MemoryStoreEvictionPolicy evictionPolicy) {
+    if (evictionPolicy == MemoryStoreEvictionPolicy.LFU)
+      _lfu = true;
+    else if (evictionPolicy == MemoryStoreEvictionPolicy.LRU)
+      _lfu = false;
+    else
+      throw new IllegalArgumentException("unsupported eviction policy: "
+          + evictionPolicy);
+    _memory = memory;
+    _disk = disk;
+  }
+
+  /**
+   * 
+   * @param key
+   * @param data
+   * @return false if the value is larger than the memory tier, in which case
+   *         any previous value for the key has still been removed
+   */
+  public synchronized boolean put(Object key, byte[] data) {
+    remove(key);
+    if (_memory.getChunksFor(data.length) > _memory.getChunkCount())
+      return false;
+    store(key, new Slot(data.length, 0), data);
+    return true;
+  }
+
+  /**
+   * 
+   * @param key
+   * @param quiet when true, the access does not count towards the entry's hits
+   *          or promote it from the disk tier
+   * @return the value, or null if there is none
+   */
+  public synchronized byte[] get(Object key, boolean quiet) {
+    Slot slot = _memorySlots.get(key);
+    if (slot != null) {
+      if (!quiet)
+        slot.hits++;
+      return _memory.read(slot.chunks, slot.length);
+    }
+    slot = _diskSlots.get(key);
+    if (slot == null)
+      return null;
+    byte[] data = _disk.read(slot.chunks, slot.length);
+    if (!quiet) {
+      slot.hits++;
+      _diskSlots.remove(key);
+      _disk.free(slot.chunks);
+      store(key, slot, data);
+      _promotions++;
+    }
+    return data;
+  }
+
+  public synchronized boolean containsKey(Object key) {
+    return _memorySlots.containsKey(key) || _diskSlots.containsKey(key);
+  }
+
+  public synchronized boolean remove(Object key) {
+    Slot slot = _memorySlots.remove(key);
+    if (slot != null) {
+      _memory.free(slot.chunks);
+      return true;
+    }
+    slot = _diskSlots.remove(key);
+    if (slot != null) {
+      _disk.free(slot.chunks);
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized void clear() {
+    _memorySlots.clear();
+    _memory.clear();
+    if (_disk != null) {
+      _diskSlots.clear();
+      _disk.clear();
+    }
+  }
+
+  public synchronized List<Object> getKeys() {
+    List<Object> keys = new ArrayList<Object>(_memorySlots.size()
+        + _diskSlots.size());
+    keys.addAll(_memorySlots.keySet());
+    keys.addAll(_diskSlots.keySet());
+    return keys;
+  }
+
+  public synchronized int size() {
+    return _memorySlots.size() + _diskSlots.size();
+  }
+
+  public synchronized int getMemorySize() {
+    return _memorySlots.size();
+  }
+
+  public synchronized int getDiskSize() {
+    return _diskSlots.size();
+  }
+
+  public synchronized long getMemoryBytesUsed() {
+    return _memory.getUsedBytes();
+  }
+
+  public synchronized long getDiskBytesUsed() {
+    return _disk == null ? 0 : _disk.getUsedBytes();
+  }
+
+  public synchronized long getEvictions() {
+    return _evictions;
+  }
+
+  public synchronized long getDemotions() {
+    return _demotions;
+  }
+
+  public synchronized long getPromotions() {
+    return _promotions;
+  }
+
+  public synchronized void close() throws IOException {
+    clear();
+    if (_disk != null)
+      _disk.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Writes the value to the memory tier, making room as needed
+   */
+  private void store(Object key, Slot slot, byte[] data) {
+    int needed = _memory.getChunksFor(data.length);
+    while (_memory.getFreeChunkCount() < needed) {
+      Map.Entry<Object, Slot> victim = selectVictim(_memorySlots);
+      Object victimKey = victim.getKey();
+      Slot victimSlot = victim.getValue();
+      _memorySlots.remove(victimKey);
+      byte[] victimData = _memory.read(victimSlot.chunks, victimSlot.length);
+      _memory.free(victimSlot.chunks);
+      demote(victimKey, victimSlot, victimData);
+    }
+    slot.chunks = _memory.write(data);
+    _memorySlots.put(key, slot);
+  }
+
+  private void demote(Object key, Slot slot, byte[] data) {
+    if (_disk == null) {
+      _evictions++;
+      return;
+    }
+    int needed = _disk.getChunksFor(data.length);
+    if (needed > _disk.getChunkCount()) {
+      _evictions++;
+      return;
+    }
+    while (_disk.getFreeChunkCount() < needed) {
+      Map.Entry<Object, Slot> victim = selectVictim(_diskSlots);
+      Slot victimSlot = victim.getValue();
+      _diskSlots.remove(victim.getKey());
+      _disk.free(victimSlot.chunks);
+      _evictions++;
+    }
+    slot.chunks = _disk.write(data);
+    _diskSlots.put(key, slot);
+    _demotions++;
+  }
+
+  private Map.Entry<Object, Slot> selectVictim(LinkedHashMap<Object, Slot> slots) {
+    Iterator<Map.Entry<Object, Slot>> it = slots.entrySet().iterator();
+    Map.Entry<Object, Slot> victim = it.next();
+    if (_lfu) {
+      for (int i = 1; i < LFU_SAMPLE_SIZE && it.hasNext(); i++) {
+        Map.Entry<Object, Slot> candidate = it.next();
+        if (candidate.getValue().hits < victim.getValue().hits)
+          victim = candidate;
+      }
+    }
+    return victim;
+  }
+
+  private static class Slot {
+
+    private int[] chunks;
+
+    private final int length;
+
+    private long hits;
+
+    public Slot(int length, long hits) {
+      this.length = length;
+      this.hits = hits;
+    }
+  }
+}
@@ -15,6 +15,25 @@
  */
 package org.onebusaway.container.refresh;
 
+import java.util.List;
+
+/**
+ * Invokes the {@link Refreshable} methods registered for a resource.
+ * 
+ * @author bdferris
+ */
 public interface RefreshService {
+
   public void refresh(String name);
+
+  /**
+   * Refreshes several resources together. The methods of independent resources
+   * may run concurrently; the methods of a resource still run in registration
+   * order, and a method waits for the resources named in its
+   * {@link Refreshable#after()}. A method registered for more than one of the
+   * resources is invoked once.
+   * 
+   * @param names the resources to refresh
+   */
+  public void refresh(List<String> names);
 }
@@ -18,8 +18,19 @@ package org.onebusaway.container.refresh;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +44,18 @@ class RefreshServiceImpl implements RefreshService, BeanPostProcessor {
 
   private Map<String, List<ObjectMethodPair>> _refreshMethodsByName = new HashMap<String, List<ObjectMethodPair>>();
 
+  private int _refreshThreads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * 
+   * @param refreshThreads the number of refresh methods that
+   *          {@link #refresh(List)} runs at once. Defaults to the number of
+   *          processors; one refreshes serially.
+   */
+  public void setRefreshThreads(int refreshThreads) {
+    _refreshThreads = refreshThreads;
+  }
+
   /****
    * {@link RefreshService} Interface
    ****/
@@ -46,6 +69,31 @@ class RefreshServiceImpl implements RefreshService, BeanPostProcessor {
     }
   }
 
+  @Override
+  public void refresh(List<String> names) {
+
+    long start = System.currentTimeMillis();
+
+    List<RefreshTask> tasks = getTasksInDependencyOrder(names);
+    if (tasks.isEmpty())
+      return;
+
+    int threads = Math.min(_refreshThreads, tasks.size());
+    if (threads <= 1) {
+      for (RefreshTask task : tasks)
+        task.run();
+    } else {
+      runConcurrently(tasks, threads);
+    }
+
+    for (String name : names)
+      logResourceTime(name, tasks);
+
+    _log.info("refreshed " + names.size() + " resources in "
+        + (System.currentTimeMillis() - start) + " ms with "
+        + Math.max(1, threads) + " threads");
+  }
+
   /****
    * {@link BeanPostProcessor} Interface
    ****/
@@ -124,6 +172,151 @@ class RefreshServiceImpl implements RefreshService, BeanPostProcessor {
     return false;
   }
 
+  /**
+   * Creates one task per refresh method, each depending on the methods of the
+   * resources it must run after and, unless that would contradict those
+   * dependencies, on the method registered before it for the same resource.
+   * The tasks are sorted so that every task follows its prerequisites. If the
+   * declared dependencies are circular, the tasks are returned in registration
+   * order without prerequisites, to be run serially.
+   */
+  private List<RefreshTask> getTasksInDependencyOrder(List<String> names) {
+
+    Map<ObjectMethodPair, RefreshTask> tasksByPair = new LinkedHashMap<ObjectMethodPair, RefreshTask>();
+    Map<String, List<RefreshTask>> tasksByName = new LinkedHashMap<String, List<RefreshTask>>();
+
+    for (String name : names) {
+      List<ObjectMethodPair> pairs = _refreshMethodsByName.get(name);
+      if (pairs == null || tasksByName.containsKey(name))
+        continue;
+      List<RefreshTask> tasksForName = new ArrayList<RefreshTask>();
+      for (ObjectMethodPair pair : pairs) {
+        RefreshTask task = tasksByPair.get(pair);
+        if (task == null) {
+          task = new RefreshTask(pair);
+          tasksByPair.put(pair, task);
+        }
+        task.addName(name);
+        tasksForName.add(task);
+      }
+      tasksByName.put(name, tasksForName);
+    }
+
+    for (RefreshTask task : tasksByPair.values()) {
+      Refreshable r = task.getPair().getMethod().getAnnotation(
+          Refreshable.class);
+      for (String after : r.after()) {
+        List<RefreshTask> prerequisites = tasksByName.get(after);
+        if (prerequisites == null)
+          continue;
+        for (RefreshTask prerequisite : prerequisites) {
+          if (prerequisite != task)
+            task.addPrerequisite(prerequisite);
+        }
+      }
+    }
+
+    for (List<RefreshTask> tasksForName : tasksByName.values()) {
+      for (int i = 1; i < tasksForName.size(); i++) {
+        RefreshTask previous = tasksForName.get(i - 1);
+        RefreshTask task = tasksForName.get(i);
+        if (previous != task && !previous.isAfter(task))
+          task.addPrerequisite(previous);
+      }
+    }
+
+    List<RefreshTask> ordered = new ArrayList<RefreshTask>();
+    Set<RefreshTask> remaining = new LinkedHashSet<RefreshTask>(
+        tasksByPair.values());
+    while (!remaining.isEmpty()) {
+      RefreshTask next = null;
+      for (RefreshTask task : remaining) {
+        if (ordered.containsAll(task.getPrerequisites())) {
+          next = task;
+          break;
+        }
+      }
+      if (next == null) {
+        _log.warn("circular refresh dependencies between " + remaining
+            + ", refreshing serially");
+        List<RefreshTask> serial = new ArrayList<RefreshTask>(
+            tasksByPair.values());
+        for (RefreshTask task : serial)
+          task.getPrerequisites().clear();
+        return serial;
+      }
+      remaining.remove(next);
+      ordered.add(next);
+    }
+    return ordered;
+  }
+
+  /**
+   * Tasks are started in dependency order on a FIFO pool, so a task only ever
+   * waits for tasks that have already been started
+   */
+  private void runConcurrently(List<RefreshTask> tasks, int threads) {
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactory() {
+
+          private final AtomicInteger _count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "refresh-service-"
+                + _count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    try {
+      for (RefreshTask task : tasks)
+        executor.execute(task.getFuture());
+
+      RuntimeException failure = null;
+      for (RefreshTask task : tasks) {
+        try {
+          task.getFuture().get();
+        } catch (ExecutionException ex) {
+          // the first failure in dependency order is the root cause
+          if (failure == null)
+            failure = asRuntimeException(ex.getCause());
+        }
+      }
+      if (failure != null)
+        throw failure;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while refreshing", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void logResourceTime(String name, List<RefreshTask> tasks) {
+    long from = Long.MAX_VALUE;
+    long to = Long.MIN_VALUE;
+    int count = 0;
+    for (RefreshTask task : tasks) {
+      if (task.getNames().contains(name) && task.getEndTime() > 0) {
+        from = Math.min(from, task.getStartTime());
+        to = Math.max(to, task.getEndTime());
+        count++;
+      }
+    }
+    if (count > 0)
+      _log.info("refreshed " + name + " in " + (to - from) + " ms (" + count
+          + " methods)");
+  }
+
+  private static RuntimeException asRuntimeException(Throwable ex) {
+    if (ex instanceof RuntimeException)
+      return (RuntimeException) ex;
+    return new IllegalStateException(ex);
+  }
+
   private void invokePair(ObjectMethodPair pair) {
     Object object = pair.getObject();
     Method method = pair.getMethod();
@@ -152,5 +345,121 @@ class RefreshServiceImpl implements RefreshService, BeanPostProcessor {
     public Method getMethod() {
       return method;
     }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object) * 31 + method.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (obj == null || getClass() != obj.getClass())
+        return false;
+      ObjectMethodPair other = (ObjectMethodPair) obj;
+      return object == other.object && method.equals(other.method);
+    }
+  }
+
+  /**
+   * A refresh method to invoke once its prerequisites have completed
+   */
+  private class RefreshTask implements Callable<Void> {
+
+    private final ObjectMethodPair _pair;
+
+    private final Set<String> _names = new LinkedHashSet<String>();
+
+    private final Set<RefreshTask> _prerequisites = new LinkedHashSet<RefreshTask>();
+
+    private final FutureTask<Void> _future = new FutureTask<Void>(this);
+
+    private volatile long _startTime;
+
+    private volatile long _endTime;
+
+    public RefreshTask(ObjectMethodPair pair) {
+      _pair = pair;
+    }
+
+    public ObjectMethodPair getPair() {
+      return _pair;
+    }
+
+    public void addName(String name) {
+      _names.add(name);
+    }
+
+    public Set<String> getNames() {
+      return _names;
+    }
+
+    public void addPrerequisite(RefreshTask task) {
+      _prerequisites.add(task);
+    }
+
+    public Set<RefreshTask> getPrerequisites() {
+      return _prerequisites;
+    }
+
+    /**
+     * 
+     * @return true if the task is a direct or indirect prerequisite of this
+     *         one
+     */
+    public boolean isAfter(RefreshTask task) {
+      return isAfter(task, new HashSet<RefreshTask>());
+    }
+
+    private boolean isAfter(RefreshTask task, Set<RefreshTask> visited) {
+      for (RefreshTask prerequisite : _prerequisites) {
+        if (prerequisite == task)
+          return true;
+        if (visited.add(prerequisite) && prerequisite.isAfter(task, visited))
+          return true;
+      }
+      return false;
+    }
+
+    public FutureTask<Void> getFuture() {
+      return _future;
+    }
+
+    public long getStartTime() {
+      return _startTime;
+    }
+
+    public long getEndTime() {
+      return _endTime;
+    }
+
+    public void run() {
+      _startTime = System.currentTimeMillis();
+      invokePair(_pair);
+      _endTime = System.currentTimeMillis();
+      if (_log.isDebugEnabled())
+        _log.debug("refreshed " + _names + " with " + _pair.getMethod()
+            + " in " + (_endTime - _startTime) + " ms");
+    }
+
+    @Override
+    public Void call() throws Exception {
+      for (RefreshTask prerequisite : _prerequisites) {
+        try {
+          prerequisite.getFuture().get();
+        } catch (ExecutionException ex) {
+          throw new IllegalStateException("not refreshing " + _names
+              + " after a failed refresh of " + prerequisite._names, ex);
+        }
+      }
+      run();
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return _pair.getMethod().toString();
+    }
   }
 }
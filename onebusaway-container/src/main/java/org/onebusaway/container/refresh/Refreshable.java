@@ -21,9 +21,31 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Marks a no-argument method to be invoked by {@link RefreshService} when one
+ * of the named resources is refreshed.
+ * 
+ * @author bdferris
+ * @see RefreshService
+ */
 @Documented
 @Retention(value = RetentionPolicy.RUNTIME)
 @Target(value = {ElementType.METHOD})
 public @interface Refreshable {
+
+  /**
+   * 
+   * @return the resources whose refresh invokes the method
+   */
   public String[] dependsOn();
+
+  /**
+   * When several resources are refreshed together with
+   * {@link RefreshService#refresh(java.util.List)}, the method is only invoked
+   * once every refresh method of these resources has completed. Resources
+   * that are not part of the same refresh are ignored.
+   * 
+   * @return resources whose refreshed data the method reads
+   */
+  public String[] after() default {};
 }
\ No newline at end of file
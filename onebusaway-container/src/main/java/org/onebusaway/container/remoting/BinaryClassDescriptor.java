@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.Externalizable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * How {@link BinaryObjectOutput} and {@link BinaryObjectInput} encode
+ * instances of one class, computed once per class.
+ * 
+ * Plain beans are written field by field, like Hessian does: every non-static,
+ * non-transient field of the class and its superclasses, by name. On the
+ * reading side, fields are matched by name, so unknown fields are skipped and
+ * missing ones keep their default. Instances are created with the no-arg
+ * constructor when there is one, or else the constructor with the fewest
+ * parameters, passed default values.
+ * 
+ * JDK classes other than collections and maps, exceptions and classes that
+ * customize their own serialization are left to Java serialization.
+ * 
+ * Descriptors are only created for classes that passed the
+ * {@link BinaryClassFilter} of the stream being read.
+ */
+final class BinaryClassDescriptor {
+
+  enum EKind {
+    OBJECT, COLLECTION, MAP, ARRAY, SERIALIZED
+  }
+
+  enum EFieldKind {
+    INT, LONG, DOUBLE, BOOLEAN, OTHER
+  }
+
+  private static final ConcurrentMap<Class<?>, BinaryClassDescriptor> _descriptors = new ConcurrentHashMap<Class<?>, BinaryClassDescriptor>();
+
+  private final Class<?> _type;
+
+  private final EKind _kind;
+
+  private final Field[] _fields;
+
+  private final EFieldKind[] _fieldKinds;
+
+  private final Map<String, Integer> _fieldIndices;
+
+  private final Constructor<?> _constructor;
+
+  private final Object[] _constructorArgs;
+
+  public static BinaryClassDescriptor forClass(Class<?> type) {
+    BinaryClassDescriptor descriptor = _descriptors.get(type);
+    if (descriptor == null) {
+      descriptor = new BinaryClassDescriptor(type);
+      BinaryClassDescriptor existing = _descriptors.putIfAbsent(type,
+          descriptor);
+      if (existing != null)
+        descriptor = existing;
+    }
+    return descriptor;
+  }
+
+  private BinaryClassDescriptor(Class<?> type) {
+
+    _type = type;
+    _kind = getKind(type);
+
+    List<Field> fields = new ArrayList<Field>();
+    if (_kind == EKind.OBJECT)
+      collectFields(type, fields);
+    _fields = fields.toArray(new Field[fields.size()]);
+    _fieldKinds = new EFieldKind[_fields.length];
+    _fieldIndices = new HashMap<String, Integer>();
+    for (int i = 0; i < _fields.length; i++) {
+      _fields[i].setAccessible(true);
+      _fieldKinds[i] = getFieldKind(_fields[i].getType());
+      _fieldIndices.put(_fields[i].getName(), i);
+    }
+
+    Constructor<?> constructor = null;
+    if (_kind != EKind.ARRAY && _kind != EKind.SERIALIZED
+        && !type.isInterface() && !Modifier.isAbstract(type.getModifiers()))
+      constructor = getConstructor(type, _kind == EKind.OBJECT);
+    _constructor = constructor;
+
+    if (constructor != null) {
+      Class<?>[] parameterTypes = constructor.getParameterTypes();
+      _constructorArgs = new Object[parameterTypes.length];
+      for (int i = 0; i < parameterTypes.length; i++)
+        _constructorArgs[i] = getDefaultValue(parameterTypes[i]);
+    } else {
+      _constructorArgs = null;
+    }
+  }
+
+  public Class<?> getType() {
+    return _type;
+  }
+
+  public EKind getKind() {
+    return _kind;
+  }
+
+  public Field[] getFields() {
+    return _fields;
+  }
+
+  public EFieldKind[] getFieldKinds() {
+    return _fieldKinds;
+  }
+
+  /**
+   * @return the index of the named field, or -1 if this class doesn't have it
+   */
+  public int getFieldIndex(String name) {
+    Integer index = _fieldIndices.get(name);
+    return index == null ? -1 : index.intValue();
+  }
+
+  public Object newInstance() throws ReflectiveOperationException {
+    if (_constructor == null)
+      throw new InstantiationException("no usable constructor for "
+          + _type.getName());
+    return _constructor.newInstance(_constructorArgs);
+  }
+
+  /**
+   * Collection classes without a public no-arg constructor, like the
+   * unmodifiable wrappers, are read back as the closest general-purpose
+   * collection.
+   */
+  @SuppressWarnings("unchecked")
+  public Collection<Object> newCollection(int size)
+      throws ReflectiveOperationException {
+    if (_constructor != null)
+      return (Collection<Object>) newInstance();
+    if (SortedSet.class.isAssignableFrom(_type))
+      return new TreeSet<Object>();
+    if (Set.class.isAssignableFrom(_type))
+      return new LinkedHashSet<Object>(Math.max(16, size * 4 / 3 + 1));
+    if (Queue.class.isAssignableFrom(_type) && !List.class.isAssignableFrom(_type))
+      return new ArrayDeque<Object>(Math.max(16, size));
+    return new ArrayList<Object>(size);
+  }
+
+  @SuppressWarnings("unchecked")
+  public Map<Object, Object> newMap(int size)
+      throws ReflectiveOperationException {
+    if (_constructor != null)
+      return (Map<Object, Object>) newInstance();
+    if (SortedMap.class.isAssignableFrom(_type))
+      return new TreeMap<Object, Object>();
+    return new LinkedHashMap<Object, Object>(Math.max(16, size * 4 / 3 + 1));
+  }
+
+  public Object newArray(int length) {
+    return Array.newInstance(_type.getComponentType(), length);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static EKind getKind(Class<?> type) {
+    if (type.isArray())
+      return EKind.ARRAY;
+    if (Collection.class.isAssignableFrom(type))
+      return EKind.COLLECTION;
+    if (Map.class.isAssignableFrom(type))
+      return EKind.MAP;
+    if (Throwable.class.isAssignableFrom(type)
+        || Externalizable.class.isAssignableFrom(type)
+        || type.getName().startsWith("java.")
+        || type.getName().startsWith("javax.") || hasSerializationHooks(type))
+      return EKind.SERIALIZED;
+    return EKind.OBJECT;
+  }
+
+  private static boolean hasSerializationHooks(Class<?> type) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        String name = method.getName();
+        if (name.equals("writeObject") || name.equals("readObject")
+            || name.equals("writeReplace") || name.equals("readResolve"))
+          return true;
+      }
+    }
+    return false;
+  }
+
+  private static void collectFields(Class<?> type, List<Field> fields) {
+    if (type == null || type == Object.class)
+      return;
+    collectFields(type.getSuperclass(), fields);
+    for (Field field : type.getDeclaredFields()) {
+      int modifiers = field.getModifiers();
+      if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers))
+        fields.add(field);
+    }
+  }
+
+  private static EFieldKind getFieldKind(Class<?> type) {
+    if (type == int.class)
+      return EFieldKind.INT;
+    if (type == long.class)
+      return EFieldKind.LONG;
+    if (type == double.class)
+      return EFieldKind.DOUBLE;
+    if (type == boolean.class)
+      return EFieldKind.BOOLEAN;
+    return EFieldKind.OTHER;
+  }
+
+  /**
+   * @param anyConstructor for beans, fall back to the constructor with the
+   *          fewest parameters; for collections and maps, only a public no-arg
+   *          constructor of a public class will do
+   */
+  private static Constructor<?> getConstructor(Class<?> type,
+      boolean anyConstructor) {
+
+    if (!anyConstructor) {
+      if (!Modifier.isPublic(type.getModifiers()))
+        return null;
+      try {
+        return type.getConstructor();
+      } catch (NoSuchMethodException ex) {
+        return null;
+      }
+    }
+
+    Constructor<?> best = null;
+    for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+      if (best == null
+          || constructor.getParameterTypes().length < best.getParameterTypes().length)
+        best = constructor;
+    }
+    if (best != null)
+      best.setAccessible(true);
+    return best;
+  }
+
+  private static Object getDefaultValue(Class<?> type) {
+    if (!type.isPrimitive())
+      return null;
+    if (type == boolean.class)
+      return Boolean.FALSE;
+    if (type == char.class)
+      return Character.valueOf((char) 0);
+    if (type == byte.class)
+      return Byte.valueOf((byte) 0);
+    if (type == short.class)
+      return Short.valueOf((short) 0);
+    if (type == int.class)
+      return Integer.valueOf(0);
+    if (type == long.class)
+      return Long.valueOf(0);
+    if (type == float.class)
+      return Float.valueOf(0);
+    return Double.valueOf(0);
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The classes {@link BinaryObjectInput} is willing to resolve. Names are
+ * checked before the class is loaded:
+ *
+ * <ul>
+ * <li>beans and enums must come from one of the allowed packages, by default
+ * just {@code org.onebusaway.*}</li>
+ * <li>collections and maps may also come from {@code java.util} and
+ * {@code java.util.concurrent}</li>
+ * <li>arrays are allowed when their element type is</li>
+ * </ul>
+ *
+ * Java-serialized values are only accepted when the filter allows them, which
+ * the client does for results coming from the server it was configured with and
+ * the exporter never does for requests. Inside such a value, Java serialization
+ * may additionally resolve classes from {@code java.lang} and
+ * {@code java.math}, for exceptions and their stack traces. Subpackages like
+ * {@code java.lang.reflect} are not included, apart from the exception that
+ * wraps what the service method threw, and proxy classes are refused.
+ */
+final class BinaryClassFilter {
+
+  public static final List<String> DEFAULT_ALLOWED_PACKAGES = Collections.unmodifiableList(Arrays.asList("org.onebusaway."));
+
+  private static final Set<String> _allowedJdkClasses = new HashSet<String>(
+      Arrays.asList("java.lang.Object", "java.lang.String",
+          "java.lang.Boolean", "java.lang.Byte", "java.lang.Character",
+          "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+          "java.lang.Float", "java.lang.Double", "java.lang.Number",
+          "java.util.Date"));
+
+  private static final Set<String> _collectionPackages = new HashSet<String>(
+      Arrays.asList("java.util", "java.util.concurrent"));
+
+  private static final Set<String> _serializedPackages = new HashSet<String>(
+      Arrays.asList("java.lang", "java.math"));
+
+  /**
+   * The exporter returns the InvocationTargetException thrown by the service
+   * method, which the client unwraps
+   */
+  private static final Set<String> _serializedJdkClasses = new HashSet<String>(
+      Arrays.asList("java.lang.reflect.InvocationTargetException",
+          "java.lang.reflect.UndeclaredThrowableException"));
+
+  private final String[] _allowedPackages;
+
+  private final boolean _allowSerialized;
+
+  /**
+   * @param allowedPackages package name prefixes, like "org.onebusaway."
+   * @param allowSerialized whether Java-serialized values are accepted
+   */
+  public BinaryClassFilter(Collection<String> allowedPackages,
+      boolean allowSerialized) {
+    _allowedPackages = allowedPackages.toArray(new String[allowedPackages.size()]);
+    _allowSerialized = allowSerialized;
+  }
+
+  public boolean isSerializedAllowed() {
+    return _allowSerialized;
+  }
+
+  /**
+   * @param name a class name as returned by {@link Class#getName()}
+   * @return true if the class may be resolved for a binary-encoded value or a
+   *         method parameter type
+   */
+  public boolean isAllowed(String name) {
+    return isAllowed(name, false);
+  }
+
+  /**
+   * @param name a class name as returned by {@link Class#getName()}
+   * @return true if the class may be resolved inside a Java-serialized value
+   */
+  public boolean isAllowedInSerialized(String name) {
+    return _allowSerialized && isAllowed(name, true);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private boolean isAllowed(String name, boolean serialized) {
+
+    int dimensions = 0;
+    while (dimensions < name.length() && name.charAt(dimensions) == '[')
+      dimensions++;
+
+    if (dimensions > 0) {
+      String element = name.substring(dimensions);
+      // Primitive element type, like "[I"
+      if (element.length() == 1)
+        return true;
+      if (!element.startsWith("L") || !element.endsWith(";"))
+        return false;
+      name = element.substring(1, element.length() - 1);
+    }
+
+    if (_allowedJdkClasses.contains(name))
+      return true;
+
+    int index = name.lastIndexOf('.');
+    String packageName = index == -1 ? "" : name.substring(0, index);
+    if (_collectionPackages.contains(packageName))
+      return true;
+    if (serialized && (_serializedPackages.contains(packageName)
+        || _serializedJdkClasses.contains(name)))
+      return true;
+
+    for (String allowedPackage : _allowedPackages) {
+      if (name.startsWith(allowedPackage))
+        return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,522 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import static org.onebusaway.container.remoting.BinaryObjectOutput.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.container.remoting.BinaryClassDescriptor.EFieldKind;
+import org.onebusaway.container.remoting.BinaryClassDescriptor.EKind;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Reads an object graph written by {@link BinaryObjectOutput}. Classes are
+ * resolved with the given class loader and bean fields are matched by name, so
+ * a field the writer doesn't know about keeps its default, and a field the
+ * reader doesn't know about is skipped.
+ * 
+ * The stream is not trusted: every class name is checked against a
+ * {@link BinaryClassFilter} before it is loaded, a class must be of the kind
+ * its tag claims (beans must also be {@link Serializable}), and values may be
+ * nested at most {@link #MAX_DEPTH} levels deep.
+ * 
+ * Not thread-safe: use one instance per message.
+ */
+public class BinaryObjectInput {
+
+  public static final int MAX_DEPTH = 256;
+
+  private final byte[] _buffer;
+
+  private int _offset;
+
+  private final int _limit;
+
+  private final ClassLoader _classLoader;
+
+  private final BinaryClassFilter _filter;
+
+  private final List<ClassEntry> _classes = new ArrayList<ClassEntry>();
+
+  private final List<String> _strings = new ArrayList<String>();
+
+  private final List<Object> _objects = new ArrayList<Object>();
+
+  private int _depth = 0;
+
+  public BinaryObjectInput(byte[] buffer, ClassLoader classLoader,
+      BinaryClassFilter filter) {
+    this(buffer, 0, buffer.length, classLoader, filter);
+  }
+
+  public BinaryObjectInput(byte[] buffer, int offset, int length,
+      ClassLoader classLoader, BinaryClassFilter filter) {
+    _buffer = buffer;
+    _offset = offset;
+    _limit = offset + length;
+    _classLoader = classLoader;
+    _filter = filter;
+  }
+
+  public Object readObject() throws IOException {
+    return readValue(readByte());
+  }
+
+  /****
+   * Package Methods
+   ****/
+
+  String readStringValue() throws IOException {
+    int id = (int) readVarLong();
+    if (id != 0)
+      return getString(id - 1);
+    String value = readChars();
+    _strings.add(value);
+    return value;
+  }
+
+  long readVarLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    throw new IOException("malformed varint");
+  }
+
+  /**
+   * Reads a length or count, which can't exceed the number of bytes left
+   */
+  int readLength() throws IOException {
+    long length = readVarLong();
+    if (length < 0 || length > _limit - _offset)
+      throw new EOFException();
+    return (int) length;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private Object readValue(int tag) throws IOException {
+    if (_depth >= MAX_DEPTH)
+      throw new IOException("values nested more than " + MAX_DEPTH
+          + " levels deep");
+    _depth++;
+    try {
+      return readTaggedValue(tag);
+    } finally {
+      _depth--;
+    }
+  }
+
+  private Object readTaggedValue(int tag) throws IOException {
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_TRUE:
+        return Boolean.TRUE;
+      case TAG_FALSE:
+        return Boolean.FALSE;
+      case TAG_INT:
+        return Integer.valueOf((int) readZigZag());
+      case TAG_LONG:
+        return Long.valueOf(readZigZag());
+      case TAG_DOUBLE:
+        return Double.valueOf(Double.longBitsToDouble(readFixedLong()));
+      case TAG_FLOAT:
+        return Float.valueOf(Float.intBitsToFloat((int) readZigZag()));
+      case TAG_SHORT:
+        return Short.valueOf((short) readZigZag());
+      case TAG_BYTE:
+        return Byte.valueOf((byte) readByte());
+      case TAG_CHAR:
+        return Character.valueOf((char) readVarLong());
+      case TAG_STRING: {
+        String value = readChars();
+        _strings.add(value);
+        return value;
+      }
+      case TAG_STRING_REF:
+        return getString((int) readVarLong());
+      case TAG_DATE:
+        return new Date(readZigZag());
+      case TAG_ENUM:
+        return readEnum();
+      case TAG_OBJECT:
+        return readBean();
+      case TAG_COLLECTION:
+        return readCollection();
+      case TAG_MAP:
+        return readMap();
+      case TAG_ARRAY:
+        return readArray();
+      case TAG_BYTES: {
+        byte[] bytes = new byte[readLength()];
+        readBytes(bytes);
+        _objects.add(bytes);
+        return bytes;
+      }
+      case TAG_SERIALIZED:
+        return readSerialized();
+      case TAG_REF: {
+        int id = (int) readVarLong();
+        if (id < 0 || id >= _objects.size())
+          throw new IOException("invalid object reference " + id);
+        return _objects.get(id);
+      }
+      default:
+        throw new IOException("unknown tag " + tag);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Object readEnum() throws IOException {
+    ClassEntry entry = readClass(TAG_ENUM);
+    String name = readStringValue();
+    try {
+      return Enum.valueOf((Class) entry.descriptor.getType(), name);
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("unknown constant " + name + " of "
+          + entry.descriptor.getType().getName(), ex);
+    }
+  }
+
+  private Object readBean() throws IOException {
+
+    ClassEntry entry = readClass(TAG_OBJECT);
+    BinaryClassDescriptor descriptor = entry.descriptor;
+
+    Object bean;
+    try {
+      bean = descriptor.newInstance();
+    } catch (ReflectiveOperationException ex) {
+      throw new IOException("error creating "
+          + descriptor.getType().getName(), ex);
+    }
+    _objects.add(bean);
+
+    Field[] fields = descriptor.getFields();
+    EFieldKind[] kinds = descriptor.getFieldKinds();
+    int[] fieldIndices = entry.fieldIndices;
+
+    try {
+      for (int i = 0; i < fieldIndices.length; i++) {
+        int index = fieldIndices[i];
+        int tag = readByte();
+        if (index < 0) {
+          readValue(tag);
+          continue;
+        }
+        Field field = fields[index];
+        switch (kinds[index]) {
+          case INT:
+            if (tag == TAG_INT) {
+              field.setInt(bean, (int) readZigZag());
+              continue;
+            }
+            break;
+          case LONG:
+            if (tag == TAG_LONG) {
+              field.setLong(bean, readZigZag());
+              continue;
+            }
+            break;
+          case DOUBLE:
+            if (tag == TAG_DOUBLE) {
+              field.setDouble(bean, Double.longBitsToDouble(readFixedLong()));
+              continue;
+            }
+            break;
+          case BOOLEAN:
+            if (tag == TAG_TRUE || tag == TAG_FALSE) {
+              field.setBoolean(bean, tag == TAG_TRUE);
+              continue;
+            }
+            break;
+          default:
+            break;
+        }
+        Object value = readValue(tag);
+        if (value != null || !field.getType().isPrimitive())
+          field.set(bean, value);
+      }
+    } catch (IllegalAccessException ex) {
+      throw new IOException("error setting fields of "
+          + descriptor.getType().getName(), ex);
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("incompatible field value for "
+          + descriptor.getType().getName(), ex);
+    }
+
+    return bean;
+  }
+
+  private Object readCollection() throws IOException {
+    BinaryClassDescriptor descriptor = readClass(TAG_COLLECTION).descriptor;
+    int size = readLength();
+    Collection<Object> values;
+    try {
+      values = descriptor.newCollection(size);
+    } catch (ReflectiveOperationException ex) {
+      throw new IOException("error creating "
+          + descriptor.getType().getName(), ex);
+    }
+    _objects.add(values);
+    for (int i = 0; i < size; i++)
+      values.add(readObject());
+    return values;
+  }
+
+  private Object readMap() throws IOException {
+    BinaryClassDescriptor descriptor = readClass(TAG_MAP).descriptor;
+    int size = readLength();
+    Map<Object, Object> map;
+    try {
+      map = descriptor.newMap(size);
+    } catch (ReflectiveOperationException ex) {
+      throw new IOException("error creating "
+          + descriptor.getType().getName(), ex);
+    }
+    _objects.add(map);
+    for (int i = 0; i < size; i++) {
+      Object key = readObject();
+      map.put(key, readObject());
+    }
+    return map;
+  }
+
+  private Object readArray() throws IOException {
+    BinaryClassDescriptor descriptor = readClass(TAG_ARRAY).descriptor;
+    int length = readLength();
+    Object array = descriptor.newArray(length);
+    _objects.add(array);
+    if (array instanceof Object[]) {
+      Object[] values = (Object[]) array;
+      for (int i = 0; i < length; i++)
+        values[i] = readObject();
+    } else {
+      for (int i = 0; i < length; i++)
+        Array.set(array, i, readObject());
+    }
+    return array;
+  }
+
+  private Object readSerialized() throws IOException {
+    if (!_filter.isSerializedAllowed())
+      throw new IOException("Java-serialized values are not accepted");
+    int id = _objects.size();
+    _objects.add(null);
+    int length = (readByte() << 24) | (readByte() << 16) | (readByte() << 8)
+        | readByte();
+    if (length < 0 || length > _limit - _offset)
+      throw new EOFException();
+    ObjectInputStream in = new FilteringObjectInputStream(
+        new ByteArrayInputStream(_buffer, _offset, length), _classLoader,
+        _filter);
+    _offset += length;
+    try {
+      Object value = in.readObject();
+      _objects.set(id, value);
+      return value;
+    } catch (ClassNotFoundException ex) {
+      throw new IOException(ex);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @param tag the tag of the value the class is read for, which determines
+   *          what kind of class is acceptable
+   */
+  private ClassEntry readClass(int tag) throws IOException {
+
+    int id = (int) readVarLong();
+    if (id >= 0 && id < _classes.size()) {
+      ClassEntry entry = _classes.get(id);
+      checkClass(entry, tag);
+      return entry;
+    }
+    if (id != _classes.size())
+      throw new IOException("invalid class reference " + id);
+
+    String name = readStringValue();
+    if (!_filter.isAllowed(name))
+      throw new IOException("class not allowed: " + name);
+
+    Class<?> type;
+    try {
+      type = ClassUtils.forName(name, _classLoader);
+    } catch (ClassNotFoundException ex) {
+      throw new IOException(ex);
+    } catch (LinkageError ex) {
+      throw new IOException(ex);
+    }
+
+    ClassEntry entry = new ClassEntry();
+    entry.descriptor = BinaryClassDescriptor.forClass(type);
+    if (tag == TAG_OBJECT) {
+      int fieldCount = readLength();
+      entry.fieldIndices = new int[fieldCount];
+      for (int i = 0; i < fieldCount; i++)
+        entry.fieldIndices[i] = entry.descriptor.getFieldIndex(readStringValue());
+    }
+    checkClass(entry, tag);
+    _classes.add(entry);
+    return entry;
+  }
+
+  private void checkClass(ClassEntry entry, int tag) throws IOException {
+    BinaryClassDescriptor descriptor = entry.descriptor;
+    Class<?> type = descriptor.getType();
+    boolean valid;
+    switch (tag) {
+      case TAG_ENUM:
+        valid = type.isEnum() && entry.fieldIndices == null;
+        break;
+      case TAG_OBJECT:
+        valid = descriptor.getKind() == EKind.OBJECT && !type.isEnum()
+            && Serializable.class.isAssignableFrom(type)
+            && entry.fieldIndices != null;
+        break;
+      case TAG_COLLECTION:
+        valid = descriptor.getKind() == EKind.COLLECTION;
+        break;
+      case TAG_MAP:
+        valid = descriptor.getKind() == EKind.MAP;
+        break;
+      case TAG_ARRAY:
+        valid = descriptor.getKind() == EKind.ARRAY;
+        break;
+      default:
+        valid = false;
+        break;
+    }
+    if (!valid)
+      throw new IOException("class " + type.getName()
+          + " is not acceptable for tag " + tag);
+  }
+
+  private String getString(int id) throws IOException {
+    if (id < 0 || id >= _strings.size())
+      throw new IOException("invalid string reference " + id);
+    return _strings.get(id);
+  }
+
+  private String readChars() throws IOException {
+    int length = readLength();
+    char[] chars = new char[length];
+    byte[] buffer = _buffer;
+    int offset = _offset;
+    for (int i = 0; i < length; i++) {
+      if (offset >= _limit)
+        throw new EOFException();
+      int b = buffer[offset++];
+      if (b >= 0) {
+        chars[i] = (char) b;
+        continue;
+      }
+      _offset = offset - 1;
+      chars[i] = (char) readVarLong();
+      offset = _offset;
+    }
+    _offset = offset;
+    return new String(chars);
+  }
+
+  private long readZigZag() throws IOException {
+    long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private long readFixedLong() throws IOException {
+    if (_offset + 8 > _limit)
+      throw new EOFException();
+    long value = 0;
+    for (int i = 0; i < 8; i++)
+      value = (value << 8) | (_buffer[_offset++] & 0xFF);
+    return value;
+  }
+
+  private int readByte() throws IOException {
+    if (_offset >= _limit)
+      throw new EOFException();
+    return _buffer[_offset++] & 0xFF;
+  }
+
+  private void readBytes(byte[] bytes) {
+    System.arraycopy(_buffer, _offset, bytes, 0, bytes.length);
+    _offset += bytes.length;
+  }
+
+  /**
+   * Resolves the classes of a Java-serialized value through the filter
+   */
+  private static class FilteringObjectInputStream extends
+      ConfigurableObjectInputStream {
+
+    private final BinaryClassFilter _filter;
+
+    public FilteringObjectInputStream(InputStream in, ClassLoader classLoader,
+        BinaryClassFilter filter) throws IOException {
+      super(in, classLoader);
+      _filter = filter;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass classDesc)
+        throws IOException, ClassNotFoundException {
+      if (!_filter.isAllowedInSerialized(classDesc.getName()))
+        throw new InvalidClassException(classDesc.getName(), "class not allowed");
+      return super.resolveClass(classDesc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces)
+        throws IOException, ClassNotFoundException {
+      throw new InvalidClassException("proxy classes are not allowed");
+    }
+  }
+
+  private static class ClassEntry {
+
+    BinaryClassDescriptor descriptor;
+
+    /**
+     * For each field in the stream, its index in the local class, or -1
+     */
+    int[] fieldIndices;
+  }
+}
@@ -0,0 +1,399 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.onebusaway.container.remoting.BinaryClassDescriptor.EFieldKind;
+
+/**
+ * Writes an object graph in the compact binary format read by
+ * {@link BinaryObjectInput}.
+ * 
+ * Every value starts with a one-byte tag. Integers are zig-zag varints and
+ * strings are varint-encoded chars, so ids, times and ASCII text take a byte or
+ * two per value. Within one stream, each class name and field list, each
+ * distinct string and each object is written once and referred to by index
+ * afterwards, so the references shared by many beans of a response (agencies,
+ * routes, stops) cost a couple of bytes after their first appearance.
+ * 
+ * Not thread-safe: use one instance per message.
+ */
+public class BinaryObjectOutput {
+
+  static final int TAG_NULL = 0;
+
+  static final int TAG_TRUE = 1;
+
+  static final int TAG_FALSE = 2;
+
+  static final int TAG_INT = 3;
+
+  static final int TAG_LONG = 4;
+
+  static final int TAG_DOUBLE = 5;
+
+  static final int TAG_FLOAT = 6;
+
+  static final int TAG_SHORT = 7;
+
+  static final int TAG_BYTE = 8;
+
+  static final int TAG_CHAR = 9;
+
+  static final int TAG_STRING = 10;
+
+  static final int TAG_STRING_REF = 11;
+
+  static final int TAG_DATE = 12;
+
+  static final int TAG_ENUM = 13;
+
+  static final int TAG_OBJECT = 14;
+
+  static final int TAG_COLLECTION = 15;
+
+  static final int TAG_MAP = 16;
+
+  static final int TAG_ARRAY = 17;
+
+  static final int TAG_BYTES = 18;
+
+  static final int TAG_SERIALIZED = 19;
+
+  static final int TAG_REF = 20;
+
+  private byte[] _buffer = new byte[4096];
+
+  private int _size = 0;
+
+  private final Map<Class<?>, Integer> _classIds = new HashMap<Class<?>, Integer>();
+
+  private final Map<String, Integer> _stringIds = new HashMap<String, Integer>();
+
+  private final Map<Object, Integer> _objectIds = new IdentityHashMap<Object, Integer>();
+
+  public void writeObject(Object value) throws IOException {
+
+    if (value == null) {
+      writeByte(TAG_NULL);
+      return;
+    }
+
+    Class<?> type = value.getClass();
+
+    if (type == String.class) {
+      writeString((String) value);
+    } else if (type == Integer.class) {
+      writeByte(TAG_INT);
+      writeVarLong(zigZag(((Integer) value).intValue()));
+    } else if (type == Long.class) {
+      writeByte(TAG_LONG);
+      writeVarLong(zigZag(((Long) value).longValue()));
+    } else if (type == Boolean.class) {
+      writeByte(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+    } else if (type == Double.class) {
+      writeByte(TAG_DOUBLE);
+      writeFixedLong(Double.doubleToRawLongBits(((Double) value).doubleValue()));
+    } else if (type == Float.class) {
+      writeByte(TAG_FLOAT);
+      writeVarLong(zigZag(Float.floatToRawIntBits(((Float) value).floatValue())));
+    } else if (type == Short.class) {
+      writeByte(TAG_SHORT);
+      writeVarLong(zigZag(((Short) value).shortValue()));
+    } else if (type == Byte.class) {
+      writeByte(TAG_BYTE);
+      writeByte(((Byte) value).byteValue());
+    } else if (type == Character.class) {
+      writeByte(TAG_CHAR);
+      writeVarLong(((Character) value).charValue());
+    } else if (type == Date.class) {
+      writeByte(TAG_DATE);
+      writeVarLong(zigZag(((Date) value).getTime()));
+    } else if (value instanceof Enum<?>) {
+      Enum<?> e = (Enum<?>) value;
+      writeByte(TAG_ENUM);
+      writeClass(BinaryClassDescriptor.forClass(e.getDeclaringClass()), false);
+      writeStringValue(e.name());
+    } else {
+      Integer id = _objectIds.get(value);
+      if (id != null) {
+        writeByte(TAG_REF);
+        writeVarLong(id.intValue());
+        return;
+      }
+      _objectIds.put(value, _objectIds.size());
+      writeReferenceType(value, type);
+    }
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(_buffer, _size);
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(_buffer, 0, _size);
+  }
+
+  /****
+   * Package Methods
+   ****/
+
+  /**
+   * Writes a string through the string table, without a tag
+   */
+  void writeStringValue(String value) {
+    Integer id = _stringIds.get(value);
+    if (id != null) {
+      writeVarLong(id.intValue() + 1);
+    } else {
+      _stringIds.put(value, _stringIds.size());
+      writeVarLong(0);
+      writeChars(value);
+    }
+  }
+
+  void writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      _buffer[_size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    _buffer[_size++] = (byte) value;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeReferenceType(Object value, Class<?> type)
+      throws IOException {
+
+    if (type == byte[].class) {
+      byte[] bytes = (byte[]) value;
+      writeByte(TAG_BYTES);
+      writeVarLong(bytes.length);
+      writeBytes(bytes, 0, bytes.length);
+      return;
+    }
+
+    BinaryClassDescriptor descriptor = BinaryClassDescriptor.forClass(type);
+
+    switch (descriptor.getKind()) {
+      case OBJECT:
+        writeByte(TAG_OBJECT);
+        writeClass(descriptor, true);
+        writeFields(value, descriptor);
+        break;
+      case COLLECTION: {
+        Collection<?> values = (Collection<?>) value;
+        writeByte(TAG_COLLECTION);
+        writeClass(descriptor, false);
+        writeVarLong(values.size());
+        for (Object element : values)
+          writeObject(element);
+        break;
+      }
+      case MAP: {
+        Map<?, ?> map = (Map<?, ?>) value;
+        writeByte(TAG_MAP);
+        writeClass(descriptor, false);
+        writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeObject(entry.getKey());
+          writeObject(entry.getValue());
+        }
+        break;
+      }
+      case ARRAY: {
+        int length = Array.getLength(value);
+        writeByte(TAG_ARRAY);
+        writeClass(descriptor, false);
+        writeVarLong(length);
+        if (value instanceof Object[]) {
+          for (Object element : (Object[]) value)
+            writeObject(element);
+        } else {
+          for (int i = 0; i < length; i++)
+            writeObject(Array.get(value, i));
+        }
+        break;
+      }
+      default:
+        writeSerialized(value);
+        break;
+    }
+  }
+
+  private void writeClass(BinaryClassDescriptor descriptor, boolean withFields) {
+    Class<?> type = descriptor.getType();
+    Integer id = _classIds.get(type);
+    if (id != null) {
+      writeVarLong(id.intValue());
+      return;
+    }
+    id = _classIds.size();
+    _classIds.put(type, id);
+    writeVarLong(id.intValue());
+    writeStringValue(type.getName());
+    if (withFields) {
+      Field[] fields = descriptor.getFields();
+      writeVarLong(fields.length);
+      for (Field field : fields)
+        writeStringValue(field.getName());
+    }
+  }
+
+  private void writeFields(Object value, BinaryClassDescriptor descriptor)
+      throws IOException {
+    Field[] fields = descriptor.getFields();
+    EFieldKind[] kinds = descriptor.getFieldKinds();
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        Field field = fields[i];
+        switch (kinds[i]) {
+          case INT:
+            writeByte(TAG_INT);
+            writeVarLong(zigZag(field.getInt(value)));
+            break;
+          case LONG:
+            writeByte(TAG_LONG);
+            writeVarLong(zigZag(field.getLong(value)));
+            break;
+          case DOUBLE:
+            writeByte(TAG_DOUBLE);
+            writeFixedLong(Double.doubleToRawLongBits(field.getDouble(value)));
+            break;
+          case BOOLEAN:
+            writeByte(field.getBoolean(value) ? TAG_TRUE : TAG_FALSE);
+            break;
+          default:
+            writeObject(field.get(value));
+            break;
+        }
+      }
+    } catch (IllegalAccessException ex) {
+      throw new IOException("error reading fields of "
+          + descriptor.getType().getName(), ex);
+    }
+  }
+
+  private void writeSerialized(Object value) throws IOException {
+    writeByte(TAG_SERIALIZED);
+    int lengthOffset = _size;
+    ensureCapacity(4);
+    _size += 4;
+    ObjectOutputStream out = new ObjectOutputStream(new BufferOutputStream());
+    out.writeObject(value);
+    out.close();
+    int length = _size - lengthOffset - 4;
+    _buffer[lengthOffset] = (byte) (length >>> 24);
+    _buffer[lengthOffset + 1] = (byte) (length >>> 16);
+    _buffer[lengthOffset + 2] = (byte) (length >>> 8);
+    _buffer[lengthOffset + 3] = (byte) length;
+  }
+
+  private void writeString(String value) {
+    Integer id = _stringIds.get(value);
+    if (id != null) {
+      writeByte(TAG_STRING_REF);
+      writeVarLong(id.intValue());
+    } else {
+      _stringIds.put(value, _stringIds.size());
+      writeByte(TAG_STRING);
+      writeChars(value);
+    }
+  }
+
+  private void writeChars(String value) {
+    int length = value.length();
+    writeVarLong(length);
+    ensureCapacity(length * 3);
+    byte[] buffer = _buffer;
+    int size = _size;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[size++] = (byte) c;
+      } else if (c < 0x4000) {
+        buffer[size++] = (byte) ((c & 0x7F) | 0x80);
+        buffer[size++] = (byte) (c >>> 7);
+      } else {
+        buffer[size++] = (byte) ((c & 0x7F) | 0x80);
+        buffer[size++] = (byte) (((c >>> 7) & 0x7F) | 0x80);
+        buffer[size++] = (byte) (c >>> 14);
+      }
+    }
+    _size = size;
+  }
+
+  private void writeByte(int value) {
+    ensureCapacity(1);
+    _buffer[_size++] = (byte) value;
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int length) {
+    ensureCapacity(length);
+    System.arraycopy(bytes, offset, _buffer, _size, length);
+    _size += length;
+  }
+
+  private void writeFixedLong(long value) {
+    ensureCapacity(8);
+    for (int shift = 56; shift >= 0; shift -= 8)
+      _buffer[_size++] = (byte) (value >>> shift);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (_size + extra > _buffer.length)
+      _buffer = Arrays.copyOf(_buffer,
+          Math.max(_buffer.length * 2, _size + extra));
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Appends Java serialization output to our own buffer
+   */
+  private class BufferOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+      writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      writeBytes(b, off, len);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.RemoteConnectFailureException;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationBasedAccessor;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+/**
+ * Invokes a service exported by {@link BinaryRemotingServiceExporter}. HTTP
+ * connections are pooled and kept alive between calls, up to
+ * {@link #setMaxConnections(int)} concurrent requests.
+ * 
+ * Results may contain beans and enums from
+ * {@link #setAllowedPackages(Collection)} ({@code org.onebusaway.*} by
+ * default), JDK collections and values, and Java-serialized exceptions whose
+ * classes come from those packages or {@code java.lang}. Any other class in a
+ * response fails the call with a {@link RemoteAccessException}.
+ * 
+ * @see BinaryRemotingProxyFactoryBean
+ */
+public class BinaryRemotingClientInterceptor extends
+    RemoteInvocationBasedAccessor implements MethodInterceptor,
+    RemoteBatchInvoker, DisposableBean {
+
+  private static final ContentType CONTENT_TYPE = ContentType.create(BinaryRemotingProtocol.CONTENT_TYPE);
+
+  private int _maxConnections = 50;
+
+  private int _connectTimeout = 10 * 1000;
+
+  private int _readTimeout = 60 * 1000;
+
+  private Collection<String> _allowedPackages = BinaryClassFilter.DEFAULT_ALLOWED_PACKAGES;
+
+  private BinaryClassFilter _filter;
+
+  private PoolingHttpClientConnectionManager _connectionManager;
+
+  private CloseableHttpClient _httpClient;
+
+  /**
+   * @param maxConnections the number of pooled connections to the service,
+   *          which bounds the number of concurrent calls
+   */
+  public void setMaxConnections(int maxConnections) {
+    _maxConnections = maxConnections;
+  }
+
+  /**
+   * @param connectTimeout in milliseconds
+   */
+  public void setConnectTimeout(int connectTimeout) {
+    _connectTimeout = connectTimeout;
+  }
+
+  /**
+   * @param readTimeout in milliseconds
+   */
+  public void setReadTimeout(int readTimeout) {
+    _readTimeout = readTimeout;
+  }
+
+  /**
+   * @param allowedPackages package name prefixes, like "org.onebusaway.", of
+   *          the bean, enum and exception classes accepted in results
+   */
+  public void setAllowedPackages(Collection<String> allowedPackages) {
+    _allowedPackages = allowedPackages;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    super.afterPropertiesSet();
+    _filter = new BinaryClassFilter(_allowedPackages, true);
+    _connectionManager = new PoolingHttpClientConnectionManager();
+    _connectionManager.setMaxTotal(_maxConnections);
+    _connectionManager.setDefaultMaxPerRoute(_maxConnections);
+    RequestConfig config = RequestConfig.custom().setConnectTimeout(
+        _connectTimeout).setConnectionRequestTimeout(_connectTimeout).setSocketTimeout(
+        _readTimeout).build();
+    _httpClient = HttpClients.custom().setConnectionManager(_connectionManager).setDefaultRequestConfig(
+        config).build();
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    if (_httpClient != null)
+      _httpClient.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Object invoke(MethodInvocation methodInvocation) throws Throwable {
+
+    if (AopUtils.isToStringMethod(methodInvocation.getMethod()))
+      return "binary remoting proxy for service URL [" + getServiceUrl() + "]";
+
+    if (methodInvocation.getMethod().getDeclaringClass() == RemoteBatchInvoker.class)
+      return invokeBatch((List<RemoteInvocation>) methodInvocation.getArguments()[0]);
+
+    RemoteInvocation invocation = createRemoteInvocation(methodInvocation);
+    List<RemoteInvocationResult> results = invokeBatch(Collections.singletonList(invocation));
+    return recreateRemoteInvocationResult(results.get(0));
+  }
+
+  @Override
+  public List<RemoteInvocationResult> invokeBatch(
+      List<RemoteInvocation> invocations) {
+
+    if (invocations.isEmpty())
+      return Collections.emptyList();
+
+    try {
+      byte[] request = BinaryRemotingProtocol.writeInvocations(invocations).toByteArray();
+      byte[] response = executeRequest(request);
+      List<RemoteInvocationResult> results = BinaryRemotingProtocol.readResults(
+          response, getBeanClassLoader(), _filter);
+      if (results.size() != invocations.size())
+        throw new RemoteAccessException("expected " + invocations.size()
+            + " results from [" + getServiceUrl() + "] but received "
+            + results.size());
+      return results;
+    } catch (ConnectException ex) {
+      throw new RemoteConnectFailureException("Could not connect to ["
+          + getServiceUrl() + "]", ex);
+    } catch (IOException ex) {
+      throw new RemoteAccessException("Could not access ["
+          + getServiceUrl() + "]", ex);
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private byte[] executeRequest(byte[] body) throws IOException {
+    HttpPost post = new HttpPost(getServiceUrl());
+    post.setEntity(new ByteArrayEntity(body, CONTENT_TYPE));
+    CloseableHttpResponse response = _httpClient.execute(post);
+    try {
+      int status = response.getStatusLine().getStatusCode();
+      HttpEntity entity = response.getEntity();
+      /**
+       * Reading the entity completely is what returns the connection to the
+       * pool for the next request
+       */
+      byte[] content = entity != null ? EntityUtils.toByteArray(entity)
+          : new byte[0];
+      if (status != 200)
+        throw new IOException("HTTP status code " + status);
+      return content;
+    } finally {
+      response.close();
+    }
+  }
+}
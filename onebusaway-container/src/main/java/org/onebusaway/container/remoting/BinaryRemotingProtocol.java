@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The envelopes exchanged by {@link BinaryRemotingProxyFactoryBean} and
+ * {@link BinaryRemotingServiceExporter}. A request carries one or more method
+ * invocations and the response carries their results in the same order, each
+ * body being a single {@link BinaryObjectOutput} stream so that class
+ * descriptors, strings and shared beans are written once per batch.
+ */
+final class BinaryRemotingProtocol {
+
+  public static final String CONTENT_TYPE = "application/x-onebusaway-binary-remoting";
+
+  private static final int VERSION = 1;
+
+  private static final int RESULT_VALUE = 0;
+
+  private static final int RESULT_EXCEPTION = 1;
+
+  private BinaryRemotingProtocol() {
+
+  }
+
+  public static BinaryObjectOutput writeInvocations(
+      List<RemoteInvocation> invocations) throws IOException {
+    BinaryObjectOutput out = new BinaryObjectOutput();
+    out.writeVarLong(VERSION);
+    out.writeVarLong(invocations.size());
+    for (RemoteInvocation invocation : invocations) {
+      out.writeStringValue(invocation.getMethodName());
+      Class<?>[] parameterTypes = invocation.getParameterTypes();
+      out.writeVarLong(parameterTypes.length);
+      for (Class<?> parameterType : parameterTypes)
+        out.writeStringValue(parameterType.getName());
+      for (Object argument : invocation.getArguments())
+        out.writeObject(argument);
+      out.writeObject(invocation.getAttributes());
+    }
+    return out;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static List<RemoteInvocation> readInvocations(byte[] body,
+      ClassLoader classLoader, BinaryClassFilter filter) throws IOException {
+    BinaryObjectInput in = new BinaryObjectInput(body, classLoader, filter);
+    checkVersion(in);
+    int count = (int) in.readVarLong();
+    List<RemoteInvocation> invocations = new ArrayList<RemoteInvocation>();
+    for (int i = 0; i < count; i++) {
+      String methodName = in.readStringValue();
+      Class<?>[] parameterTypes = new Class<?>[in.readLength()];
+      for (int j = 0; j < parameterTypes.length; j++) {
+        String name = in.readStringValue();
+        Class<?> primitive = ClassUtils.resolvePrimitiveClassName(name);
+        if (primitive != null) {
+          parameterTypes[j] = primitive;
+          continue;
+        }
+        if (!filter.isAllowed(name))
+          throw new IOException("parameter type not allowed: " + name);
+        try {
+          parameterTypes[j] = ClassUtils.forName(name, classLoader);
+        } catch (ClassNotFoundException ex) {
+          throw new IOException(ex);
+        }
+      }
+      Object[] arguments = new Object[parameterTypes.length];
+      for (int j = 0; j < arguments.length; j++)
+        arguments[j] = in.readObject();
+      RemoteInvocation invocation = new RemoteInvocation(methodName,
+          parameterTypes, arguments);
+      Object attributes = in.readObject();
+      if (attributes != null && !(attributes instanceof Map))
+        throw new IOException("invalid invocation attributes");
+      invocation.setAttributes((Map<String, Serializable>) attributes);
+      invocations.add(invocation);
+    }
+    return invocations;
+  }
+
+  public static BinaryObjectOutput writeResults(
+      List<RemoteInvocationResult> results) throws IOException {
+    BinaryObjectOutput out = new BinaryObjectOutput();
+    out.writeVarLong(VERSION);
+    out.writeVarLong(results.size());
+    for (RemoteInvocationResult result : results) {
+      if (result.hasException()) {
+        out.writeVarLong(RESULT_EXCEPTION);
+        out.writeObject(result.getException());
+      } else {
+        out.writeVarLong(RESULT_VALUE);
+        out.writeObject(result.getValue());
+      }
+    }
+    return out;
+  }
+
+  public static List<RemoteInvocationResult> readResults(byte[] body,
+      ClassLoader classLoader, BinaryClassFilter filter) throws IOException {
+    BinaryObjectInput in = new BinaryObjectInput(body, classLoader, filter);
+    checkVersion(in);
+    int count = (int) in.readVarLong();
+    List<RemoteInvocationResult> results = new ArrayList<RemoteInvocationResult>();
+    for (int i = 0; i < count; i++) {
+      long type = in.readVarLong();
+      Object value = in.readObject();
+      if (type == RESULT_EXCEPTION) {
+        if (!(value instanceof Throwable))
+          throw new IOException("invalid exception result");
+        results.add(new RemoteInvocationResult((Throwable) value));
+      } else {
+        results.add(new RemoteInvocationResult(value));
+      }
+    }
+    return results;
+  }
+
+  public static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1)
+      out.write(buffer, 0, n);
+    return out.toByteArray();
+  }
+
+  private static void checkVersion(BinaryObjectInput in) throws IOException {
+    long version = in.readVarLong();
+    if (version != VERSION)
+      throw new IOException("unsupported binary remoting version " + version);
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Creates a proxy for a service exported by
+ * {@link BinaryRemotingServiceExporter}, as a drop-in replacement for Spring's
+ * HessianProxyFactoryBean:
+ * 
+ * <pre>
+ * &lt;bean id="transitDataService" class="org.onebusaway.container.remoting.BinaryRemotingProxyFactoryBean">
+ *   &lt;property name="serviceUrl" value="http://localhost:8080/onebusaway-transit-data-federation-webapp/remoting/transit-data-service-binary" />
+ *   &lt;property name="serviceInterface" value="org.onebusaway.transit_data.services.TransitDataService" />
+ * &lt;/bean>
+ * </pre>
+ * 
+ * The proxy also implements {@link RemoteBatchInvoker}, so {@link RemoteBatch}
+ * sends its calls in a single request.
+ */
+public class BinaryRemotingProxyFactoryBean extends
+    BinaryRemotingClientInterceptor implements FactoryBean<Object> {
+
+  private Object _serviceProxy;
+
+  @Override
+  public void afterPropertiesSet() {
+    super.afterPropertiesSet();
+    if (getServiceInterface() == null)
+      throw new IllegalArgumentException(
+          "Property 'serviceInterface' is required");
+    ProxyFactory factory = new ProxyFactory();
+    factory.addInterface(getServiceInterface());
+    factory.addInterface(RemoteBatchInvoker.class);
+    factory.addAdvice(this);
+    _serviceProxy = factory.getProxy(getBeanClassLoader());
+  }
+
+  @Override
+  public Object getObject() {
+    return _serviceProxy;
+  }
+
+  @Override
+  public Class<?> getObjectType() {
+    return getServiceInterface();
+  }
+
+  @Override
+  public boolean isSingleton() {
+    return true;
+  }
+}
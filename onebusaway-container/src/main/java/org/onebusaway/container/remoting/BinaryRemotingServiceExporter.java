@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationBasedExporter;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+
+/**
+ * Exports a service over HTTP with the binary remoting protocol, for clients
+ * created with {@link BinaryRemotingProxyFactoryBean}. Configured like
+ * Spring's HessianServiceExporter, and can be exposed next to one:
+ * 
+ * <pre>
+ * &lt;bean name="/transit-data-service-binary" class="org.onebusaway.container.remoting.BinaryRemotingServiceExporter">
+ *   &lt;property name="service" ref="transitDataServiceImpl" />
+ *   &lt;property name="serviceInterface" value="org.onebusaway.transit_data.services.TransitDataService" />
+ * &lt;/bean>
+ * </pre>
+ * 
+ * The invocations of a batch are run one after the other, in order, and an
+ * exception thrown by one of them is returned as its result without affecting
+ * the others.
+ * 
+ * Requests are not trusted. Arguments may only be beans and enums from
+ * {@link #setAllowedPackages(Collection)} ({@code org.onebusaway.*} by
+ * default), boxed primitives, strings, dates, arrays and {@code java.util}
+ * collections and maps. Java-serialized arguments are refused.
+ */
+public class BinaryRemotingServiceExporter extends
+    RemoteInvocationBasedExporter implements HttpRequestHandler,
+    InitializingBean {
+
+  private Collection<String> _allowedPackages = BinaryClassFilter.DEFAULT_ALLOWED_PACKAGES;
+
+  private BinaryClassFilter _filter;
+
+  private Object _proxy;
+
+  /**
+   * @param allowedPackages package name prefixes, like "org.onebusaway.", of
+   *          the bean and enum classes accepted as arguments
+   */
+  public void setAllowedPackages(Collection<String> allowedPackages) {
+    _allowedPackages = allowedPackages;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    _filter = new BinaryClassFilter(_allowedPackages, false);
+    _proxy = getProxyForService();
+  }
+
+  @Override
+  public void handleRequest(HttpServletRequest request,
+      HttpServletResponse response) throws ServletException, IOException {
+
+    if (!"POST".equals(request.getMethod()))
+      throw new HttpRequestMethodNotSupportedException(request.getMethod(),
+          new String[] {"POST"},
+          "BinaryRemotingServiceExporter only supports POST requests");
+
+    BinaryObjectOutput out = invoke(request.getInputStream());
+    response.setContentType(BinaryRemotingProtocol.CONTENT_TYPE);
+    response.setContentLength(out.size());
+    out.writeTo(response.getOutputStream());
+  }
+
+  /**
+   * Reads a request from the input stream, runs its invocations and writes the
+   * response, for use outside of a servlet container.
+   */
+  public void invoke(InputStream in, OutputStream out) throws IOException {
+    invoke(in).writeTo(out);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private BinaryObjectOutput invoke(InputStream in) throws IOException {
+    byte[] body = BinaryRemotingProtocol.readFully(in);
+    List<RemoteInvocation> invocations = BinaryRemotingProtocol.readInvocations(
+        body, getBeanClassLoader(), _filter);
+    List<RemoteInvocationResult> results = new ArrayList<RemoteInvocationResult>(
+        invocations.size());
+    for (RemoteInvocation invocation : invocations)
+      results.add(invokeAndCreateResult(invocation, _proxy));
+    return BinaryRemotingProtocol.writeResults(results);
+  }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+/**
+ * Collects several calls to a remote service and sends them in a single round
+ * trip, when the service proxy supports it (see
+ * {@link BinaryRemotingProxyFactoryBean}). Calls are recorded on
+ * {@link #record()} and claimed with {@link #submit(Object)}:
+ * 
+ * <pre>
+ * RemoteBatch&lt;TransitDataService> batch = RemoteBatch.create(TransitDataService.class, _transitDataService);
+ * List&lt;RemoteBatch.Result&lt;StopBean>> stops = new ArrayList&lt;RemoteBatch.Result&lt;StopBean>>();
+ * for (String stopId : stopIds)
+ *   stops.add(batch.submit(batch.record().getStop(stopId)));
+ * batch.execute();
+ * StopBean stop = stops.get(0).get();
+ * </pre>
+ * 
+ * With any other implementation of the service, including a local one or a
+ * Hessian proxy, {@link #execute()} simply makes the calls one after the
+ * other, so code written against a batch works with every transport.
+ */
+public final class RemoteBatch<T> {
+
+  private final Class<T> _serviceInterface;
+
+  private final T _service;
+
+  private final T _recorder;
+
+  private final List<RemoteInvocation> _invocations = new ArrayList<RemoteInvocation>();
+
+  private final List<Result<?>> _results = new ArrayList<Result<?>>();
+
+  private Result<?> _unclaimed = null;
+
+  private boolean _executed = false;
+
+  public static <T> RemoteBatch<T> create(Class<T> serviceInterface, T service) {
+    return new RemoteBatch<T>(serviceInterface, service);
+  }
+
+  private RemoteBatch(Class<T> serviceInterface, T service) {
+    _serviceInterface = serviceInterface;
+    _service = service;
+    _recorder = serviceInterface.cast(Proxy.newProxyInstance(
+        serviceInterface.getClassLoader(), new Class<?>[] {serviceInterface},
+        new RecordingHandler()));
+  }
+
+  /**
+   * @return a stand-in for the service that records each call for the batch
+   *         and returns a placeholder value (null, zero or false)
+   */
+  public T record() {
+    return _recorder;
+  }
+
+  /**
+   * Claims the result of the last call recorded with {@link #record()}. Calls
+   * whose result isn't claimed, such as void methods, are still made.
+   * 
+   * @param recordedCall the placeholder value returned by the call
+   * @return the result, available once the batch has been executed
+   */
+  @SuppressWarnings("unchecked")
+  public <R> Result<R> submit(R recordedCall) {
+    if (_unclaimed == null)
+      throw new IllegalStateException("no recorded call to submit");
+    Result<R> result = (Result<R>) _unclaimed;
+    _unclaimed = null;
+    return result;
+  }
+
+  /**
+   * @return the number of calls recorded so far
+   */
+  public int size() {
+    return _invocations.size();
+  }
+
+  /**
+   * Makes all recorded calls, in one round trip when the service supports it.
+   * An exception thrown by a call is kept with its {@link Result}; exceptions
+   * from the transport itself are thrown from here.
+   */
+  public void execute() {
+
+    if (_executed)
+      throw new IllegalStateException("batch already executed");
+    _executed = true;
+
+    List<RemoteInvocationResult> results;
+    if (_service instanceof RemoteBatchInvoker) {
+      results = ((RemoteBatchInvoker) _service).invokeBatch(_invocations);
+    } else {
+      results = new ArrayList<RemoteInvocationResult>(_invocations.size());
+      for (RemoteInvocation invocation : _invocations)
+        results.add(invokeLocally(invocation));
+    }
+
+    for (int i = 0; i < _results.size(); i++)
+      _results.get(i).setResult(results.get(i));
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Resolves the method on the service interface rather than the
+   * implementation class, which may not be public
+   */
+  private RemoteInvocationResult invokeLocally(RemoteInvocation invocation) {
+    try {
+      Method method = _serviceInterface.getMethod(invocation.getMethodName(),
+          invocation.getParameterTypes());
+      return new RemoteInvocationResult(method.invoke(_service,
+          invocation.getArguments()));
+    } catch (InvocationTargetException ex) {
+      return new RemoteInvocationResult(ex);
+    } catch (Exception ex) {
+      throw new IllegalStateException("error invoking "
+          + invocation.getMethodName(), ex);
+    }
+  }
+
+  private static Object getPlaceholder(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class)
+      return null;
+    if (type == boolean.class)
+      return Boolean.FALSE;
+    if (type == char.class)
+      return Character.valueOf((char) 0);
+    if (type == byte.class)
+      return Byte.valueOf((byte) 0);
+    if (type == short.class)
+      return Short.valueOf((short) 0);
+    if (type == int.class)
+      return Integer.valueOf(0);
+    if (type == long.class)
+      return Long.valueOf(0);
+    if (type == float.class)
+      return Float.valueOf(0);
+    return Double.valueOf(0);
+  }
+
+  private class RecordingHandler implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+
+      if (method.getDeclaringClass() == Object.class) {
+        if (method.getName().equals("equals"))
+          return proxy == args[0];
+        if (method.getName().equals("hashCode"))
+          return System.identityHashCode(proxy);
+        return "RemoteBatch recorder for " + _service;
+      }
+
+      if (_executed)
+        throw new IllegalStateException("batch already executed");
+
+      _invocations.add(new RemoteInvocation(method.getName(),
+          method.getParameterTypes(), args != null ? args : new Object[0]));
+      Result<Object> result = new Result<Object>();
+      _results.add(result);
+      _unclaimed = result;
+      return getPlaceholder(method.getReturnType());
+    }
+  }
+
+  /**
+   * The outcome of one call in a batch
+   */
+  public static final class Result<R> {
+
+    private RemoteInvocationResult _result;
+
+    private Result() {
+
+    }
+
+    /**
+     * @return the value returned by the call
+     * @throws IllegalStateException if the batch hasn't been executed
+     * @throws RuntimeException the exception thrown by the call
+     */
+    @SuppressWarnings("unchecked")
+    public R get() {
+      if (_result == null)
+        throw new IllegalStateException("batch not executed");
+      try {
+        return (R) _result.recreate();
+      } catch (RuntimeException ex) {
+        throw ex;
+      } catch (Error ex) {
+        throw ex;
+      } catch (Throwable ex) {
+        throw new UndeclaredThrowableException(ex);
+      }
+    }
+
+    private void setResult(RemoteInvocationResult result) {
+      _result = result;
+    }
+  }
+}
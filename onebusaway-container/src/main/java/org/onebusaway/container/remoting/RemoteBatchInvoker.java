@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import java.util.List;
+
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+/**
+ * Implemented by remote service proxies that can send several invocations in
+ * one round trip. See {@link RemoteBatch} for the client API.
+ */
+public interface RemoteBatchInvoker {
+
+  /**
+   * @param invocations the invocations to run, in order
+   * @return one result per invocation, in the same order
+   */
+  public List<RemoteInvocationResult> invokeBatch(
+      List<RemoteInvocation> invocations);
+}
@@ -33,6 +33,7 @@ import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.onebusaway.container.cache.CacheBackend;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -85,6 +86,8 @@ public class EhCacheFactoryBean implements FactoryBean<Ehcache>, BeanNameAware,
 
   private CacheEntryFactory cacheEntryFactory;
 
+  private CacheBackend backend;
+
   private String beanName;
 
   private Ehcache cache;
@@ -233,6 +236,18 @@ public class EhCacheFactoryBean implements FactoryBean<Ehcache>, BeanNameAware,
     this.cacheEntryFactory = cacheEntryFactory;
   }
 
+  /**
+   * Set a {@link CacheBackend} to store the elements of the cache, such as
+   * {@link org.onebusaway.container.cache.offheap.OffHeapCacheBackend}. By
+   * default, elements are kept on the heap. A region created by this factory
+   * bean with a backend copies its values on read and write; an existing region
+   * must already be configured that way. Blocking and self-populating
+   * decorators are applied on top of the backend.
+   */
+  public void setBackend(CacheBackend backend) {
+    this.backend = backend;
+  }
+
   public void setBeanName(String name) {
     this.beanName = name;
   }
@@ -290,6 +305,11 @@ public class EhCacheFactoryBean implements FactoryBean<Ehcache>, BeanNameAware,
     config.setEternal(this.eternal);
     config.setTimeToLiveSeconds(this.timeToLive);
     config.setTimeToIdleSeconds(this.timeToIdle);
+
+    if (this.backend != null) {
+      config.setCopyOnRead(true);
+      config.setCopyOnWrite(true);
+    }
     
     PersistenceConfiguration pc = new PersistenceConfiguration();
     if(this.diskPersistent) 	
@@ -320,6 +340,9 @@ public class EhCacheFactoryBean implements FactoryBean<Ehcache>, BeanNameAware,
    *         CacheManager
    */
   protected Ehcache decorateCache(Ehcache cache) {
+    if (this.backend != null) {
+      cache = this.backend.decorate(cache);
+    }
     if (this.cacheEntryFactory != null) {
       if (this.cacheEntryFactory instanceof UpdatingCacheEntryFactory) {
         return new UpdatingSelfPopulatingCache(cache,
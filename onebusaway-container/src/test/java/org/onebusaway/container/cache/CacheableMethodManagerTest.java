@@ -16,10 +16,21 @@
 package org.onebusaway.container.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.ConfigurationFactory;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.junit.Test;
@@ -65,4 +76,131 @@ public class CacheableMethodManagerTest {
     assertEquals("test", value);
     assertEquals(2, impl.getEvalauteBeanWithParameterAnnotationCount());
   }
+
+  @Test
+  public void testConcurrentMissesAreCoalesced() throws Throwable {
+
+    Configuration config = ConfigurationFactory.parseConfiguration(getClass().getResource(
+        "ehcache-test.xml"));
+    config.setName("testConcurrentMissesAreCoalesced");
+    CacheManager cacheManager = new CacheManager(config);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      final CacheableMethodManager manager = new CacheableMethodManager();
+      manager.setCacheableMethodKeyFactoryManager(new CacheableMethodKeyFactoryManager());
+      manager.setCacheManager(cacheManager);
+
+      final SlowService service = new SlowService();
+      final Method method = SlowService.class.getMethod("load", String.class);
+
+      List<Future<Object>> results = new ArrayList<Future<Object>>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            try {
+              return manager.evaluate(ProceedingJoinPointFactory.create(
+                  service, service, SlowService.class, method, "a"));
+            } catch (Throwable ex) {
+              throw new Exception(ex);
+            }
+          }
+        }));
+      }
+
+      service._entered.await();
+      String cacheName = SlowService.class.getName() + ".load";
+      CacheableMethodStatistics statistics = manager.getStatistics(cacheName);
+      for (int i = 0; i < 500 && statistics.getCoalescedMisses() < 3; i++)
+        Thread.sleep(10);
+      service._release.countDown();
+
+      for (Future<Object> result : results)
+        assertEquals("loaded-a", result.get());
+
+      assertEquals(1, service._count.get());
+      assertEquals(1, statistics.getLoads());
+      assertEquals(4, statistics.getMisses());
+      assertEquals(3, statistics.getCoalescedMisses());
+
+      Object value = manager.evaluate(ProceedingJoinPointFactory.create(
+          service, service, SlowService.class, method, "a"));
+      assertEquals("loaded-a", value);
+      assertEquals(1, statistics.getHits());
+      assertTrue(statistics.getHitRatio() > 0);
+    } finally {
+      executor.shutdownNow();
+      cacheManager.shutdown();
+    }
+  }
+
+  @Test
+  public void testSingleFlightWaitTimesOut() throws Throwable {
+
+    Configuration config = ConfigurationFactory.parseConfiguration(getClass().getResource(
+        "ehcache-test.xml"));
+    config.setName("testSingleFlightWaitTimesOut");
+    CacheManager cacheManager = new CacheManager(config);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      final CacheableMethodManager manager = new CacheableMethodManager();
+      manager.setCacheableMethodKeyFactoryManager(new CacheableMethodKeyFactoryManager());
+      manager.setCacheManager(cacheManager);
+      manager.setSingleFlightTimeout(50);
+
+      final SlowService service = new SlowService();
+      final Method method = SlowService.class.getMethod("load", String.class);
+
+      Future<Object> stuck = executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          try {
+            return manager.evaluate(ProceedingJoinPointFactory.create(service,
+                service, SlowService.class, method, "a"));
+          } catch (Throwable ex) {
+            throw new Exception(ex);
+          }
+        }
+      });
+
+      service._entered.await();
+
+      // the stuck load doesn't hold up this call past the timeout
+      Object value = manager.evaluate(ProceedingJoinPointFactory.create(
+          service, service, SlowService.class, method, "a"));
+      assertEquals("loaded-a", value);
+
+      String cacheName = SlowService.class.getName() + ".load";
+      CacheableMethodStatistics statistics = manager.getStatistics(cacheName);
+      assertEquals(2, service._count.get());
+      assertEquals(1, statistics.getCoalescedMisses());
+      assertEquals(1, statistics.getSingleFlightTimeouts());
+
+      service._release.countDown();
+      assertEquals("loaded-a", stuck.get());
+    } finally {
+      executor.shutdownNow();
+      cacheManager.shutdown();
+    }
+  }
+
+  public static class SlowService {
+
+    private final CountDownLatch _entered = new CountDownLatch(1);
+
+    private final CountDownLatch _release = new CountDownLatch(1);
+
+    private final AtomicInteger _count = new AtomicInteger();
+
+    public String load(String key) throws InterruptedException {
+      // only the first call blocks
+      if (_count.incrementAndGet() == 1) {
+        _entered.countDown();
+        _release.await();
+      }
+      return "loaded-" + key;
+    }
+  }
 }
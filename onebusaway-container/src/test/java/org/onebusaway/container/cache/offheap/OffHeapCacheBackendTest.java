@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.ConfigurationFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapCacheBackendTest {
+
+  private CacheManager _cacheManager;
+
+  private OffHeapCacheBackend _backend;
+
+  @Before
+  public void before() {
+    Configuration config = ConfigurationFactory.parseConfiguration(getClass().getResource(
+        "/org/onebusaway/container/cache/ehcache-test.xml"));
+    config.setName("OffHeapCacheBackendTest");
+    _cacheManager = new CacheManager(config);
+
+    _backend = new OffHeapCacheBackend();
+    _backend.setMaxBytesOffHeap(64 * 1024);
+  }
+
+  @After
+  public void after() {
+    _cacheManager.shutdown();
+  }
+
+  @Test(expected = CacheException.class)
+  public void testRefusesRegionWithoutCopySemantics() {
+    CacheConfiguration config = new CacheConfiguration("shared", 10);
+    _cacheManager.addCache(new Cache(config));
+    _backend.decorate(_cacheManager.getEhcache("shared"));
+  }
+
+  @Test
+  public void testDecoratesRegionWithCopySemantics() {
+    CacheConfiguration config = new CacheConfiguration("copied", 10);
+    config.setCopyOnRead(true);
+    config.setCopyOnWrite(true);
+    _cacheManager.addCache(new Cache(config));
+
+    Ehcache cache = _cacheManager.getEhcache("copied");
+    Ehcache decorated = _backend.decorate(cache);
+    assertTrue(decorated instanceof OffHeapEhcache);
+    _cacheManager.replaceCacheWithDecoratedCache(cache, decorated);
+
+    List<String> value = new ArrayList<String>();
+    value.add("a");
+    decorated.put(new Element("key", value));
+
+    Object first = decorated.get("key").getObjectValue();
+    Object second = decorated.get("key").getObjectValue();
+    assertEquals(value, first);
+    assertNotSame(first, second);
+    assertEquals(1, ((OffHeapEhcache) decorated).getOffHeapSize());
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.cache.offheap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+
+import org.junit.Test;
+
+public class OffHeapElementStoreTest {
+
+  @Test
+  public void testPutGetRemove() {
+    OffHeapElementStore store = new OffHeapElementStore(
+        ChunkStore.allocateDirect(1024, 16), null, MemoryStoreEvictionPolicy.LRU);
+
+    byte[] a = bytes(40, 1);
+    assertTrue(store.put("a", a));
+    assertArrayEquals(a, store.get("a", false));
+    assertEquals(1, store.size());
+    assertEquals(48, store.getMemoryBytesUsed());
+
+    // replacing a value frees its old chunks
+    byte[] b = bytes(10, 2);
+    assertTrue(store.put("a", b));
+    assertArrayEquals(b, store.get("a", false));
+    assertEquals(16, store.getMemoryBytesUsed());
+
+    assertTrue(store.remove("a"));
+    assertFalse(store.remove("a"));
+    assertNull(store.get("a", false));
+    assertEquals(0, store.getMemoryBytesUsed());
+
+    assertFalse(store.put("b", bytes(2048, 3)));
+    assertFalse(store.containsKey("b"));
+  }
+
+  @Test
+  public void testLruEviction() {
+    OffHeapElementStore store = new OffHeapElementStore(
+        ChunkStore.allocateDirect(64, 16), null, MemoryStoreEvictionPolicy.LRU);
+
+    store.put("a", bytes(16, 1));
+    store.put("b", bytes(16, 2));
+    store.put("c", bytes(16, 3));
+    store.put("d", bytes(16, 4));
+    store.get("a", false);
+    store.put("e", bytes(32, 5));
+
+    assertTrue(store.containsKey("a"));
+    assertFalse(store.containsKey("b"));
+    assertFalse(store.containsKey("c"));
+    assertTrue(store.containsKey("d"));
+    assertTrue(store.containsKey("e"));
+    assertEquals(2, store.getEvictions());
+  }
+
+  @Test
+  public void testLfuEviction() {
+    OffHeapElementStore store = new OffHeapElementStore(
+        ChunkStore.allocateDirect(48, 16), null, MemoryStoreEvictionPolicy.LFU);
+
+    store.put("a", bytes(16, 1));
+    store.put("b", bytes(16, 2));
+    store.put("c", bytes(16, 3));
+    store.get("a", false);
+    store.get("a", false);
+    store.get("c", false);
+    store.get("b", false);
+    store.get("b", false);
+    store.put("d", bytes(16, 4));
+
+    assertTrue(store.containsKey("a"));
+    assertTrue(store.containsKey("b"));
+    assertFalse(store.containsKey("c"));
+    assertTrue(store.containsKey("d"));
+  }
+
+  @Test
+  public void testDiskTier() throws IOException {
+    File path = File.createTempFile("OffHeapElementStoreTest-", ".cache");
+    OffHeapElementStore store = new OffHeapElementStore(
+        ChunkStore.allocateDirect(32, 16), ChunkStore.map(path, 64, 16),
+        MemoryStoreEvictionPolicy.LRU);
+    try {
+      byte[] a = bytes(16, 1);
+      store.put("a", a);
+      store.put("b", bytes(16, 2));
+      store.put("c", bytes(16, 3));
+
+      assertEquals(1, store.getDiskSize());
+      assertEquals(1, store.getDemotions());
+
+      // a quiet read leaves the entry on disk
+      assertArrayEquals(a, store.get("a", true));
+      assertEquals(1, store.getDiskSize());
+
+      assertArrayEquals(a, store.get("a", false));
+      assertEquals(1, store.getPromotions());
+      assertEquals(2, store.getMemorySize());
+      assertEquals(1, store.getDiskSize());
+      assertEquals(0, store.getEvictions());
+      assertEquals(3, store.getKeys().size());
+
+      store.clear();
+      assertEquals(0, store.size());
+      assertEquals(0, store.getDiskBytesUsed());
+    } finally {
+      store.close();
+      path.delete();
+    }
+  }
+
+  private static byte[] bytes(int length, int value) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++)
+      data[i] = (byte) (value + i);
+    return data;
+  }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.refresh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefreshServiceImplTest {
+
+  private RefreshServiceImpl _service;
+
+  private List<String> _calls;
+
+  @Before
+  public void setup() {
+    _service = new RefreshServiceImpl();
+    _service.setRefreshThreads(4);
+    _calls = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  @Test
+  public void testDependencyOrder() {
+
+    _service.postProcessAfterInitialization(new DerivedBean(_calls), "derived");
+    _service.postProcessAfterInitialization(new GraphBean(_calls), "graph");
+    _service.postProcessAfterInitialization(new IndexBean(_calls), "index");
+
+    _service.refresh(Arrays.asList("graph", "index", "derived"));
+
+    assertEquals(3, _calls.size());
+    assertTrue(_calls.indexOf("derived") > _calls.indexOf("graph"));
+    assertTrue(_calls.indexOf("index") > _calls.indexOf("graph"));
+  }
+
+  @Test
+  public void testMethodForSeveralResourcesRunsOnce() {
+
+    _service.postProcessAfterInitialization(new GraphBean(_calls), "graph");
+    _service.postProcessAfterInitialization(new IndexBean(_calls), "index");
+
+    _service.refresh(Arrays.asList("graph", "index"));
+    assertEquals(Arrays.asList("graph", "index"), _calls);
+
+    // refreshing one resource at a time still invokes it for each
+    _calls.clear();
+    _service.refresh("graph");
+    _service.refresh("index");
+    assertEquals(Arrays.asList("graph", "index", "index"), _calls);
+  }
+
+  @Test
+  public void testIndependentResourcesRunConcurrently() {
+
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    _service.postProcessAfterInitialization(new BarrierBean(barrier, _calls),
+        "barrier");
+
+    // each method waits for the other, so a serial refresh would time out
+    _service.refresh(Arrays.asList("x", "y"));
+    assertEquals(2, _calls.size());
+  }
+
+  @Test
+  public void testFailure() {
+
+    _service.postProcessAfterInitialization(new FailingBean(), "failing");
+    _service.postProcessAfterInitialization(new DerivedBean(_calls), "derived");
+
+    try {
+      _service.refresh(Arrays.asList("graph", "derived"));
+      fail();
+    } catch (IllegalStateException ex) {
+      assertTrue(ex.getMessage().contains("fail"));
+    }
+    assertFalse(_calls.contains("derived"));
+  }
+
+  public static class GraphBean {
+
+    private final List<String> _calls;
+
+    public GraphBean(List<String> calls) {
+      _calls = calls;
+    }
+
+    @Refreshable(dependsOn = "graph")
+    public void refreshGraph() throws InterruptedException {
+      Thread.sleep(50);
+      _calls.add("graph");
+    }
+  }
+
+  public static class IndexBean {
+
+    private final List<String> _calls;
+
+    public IndexBean(List<String> calls) {
+      _calls = calls;
+    }
+
+    @Refreshable(dependsOn = {"graph", "index"})
+    public void refreshIndex() {
+      _calls.add("index");
+    }
+  }
+
+  public static class DerivedBean {
+
+    private final List<String> _calls;
+
+    public DerivedBean(List<String> calls) {
+      _calls = calls;
+    }
+
+    @Refreshable(dependsOn = "derived", after = "graph")
+    public void refreshDerived() {
+      _calls.add("derived");
+    }
+  }
+
+  public static class BarrierBean {
+
+    private final CyclicBarrier _barrier;
+
+    private final List<String> _calls;
+
+    public BarrierBean(CyclicBarrier barrier, List<String> calls) {
+      _barrier = barrier;
+      _calls = calls;
+    }
+
+    @Refreshable(dependsOn = "x")
+    public void refreshX() throws Exception {
+      _barrier.await(5, TimeUnit.SECONDS);
+      _calls.add("x");
+    }
+
+    @Refreshable(dependsOn = "y")
+    public void refreshY() throws Exception {
+      _barrier.await(5, TimeUnit.SECONDS);
+      _calls.add("y");
+    }
+  }
+
+  public static class FailingBean {
+
+    @Refreshable(dependsOn = "graph")
+    public void fail() {
+      throw new IllegalArgumentException("fail");
+    }
+  }
+}
@@ -0,0 +1,518 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.container.remoting;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+public class BinaryRemotingTest {
+
+  private BinaryRemotingServiceExporter _exporter;
+
+  @Before
+  public void setup() {
+    _exporter = new BinaryRemotingServiceExporter();
+    _exporter.setService(new StopServiceImpl());
+    _exporter.setServiceInterface(StopService.class);
+    _exporter.afterPropertiesSet();
+  }
+
+  @Test
+  public void testBeanGraph() throws IOException {
+
+    RouteBean route = new RouteBean("1_10", "10");
+
+    StopBean a = new StopBean();
+    a.setId("1_100");
+    a.setName("3rd & Pike \u00e9\u4e2d\ud83d\ude8c");
+    a.setLat(47.6097);
+    a.setLon(-122.3331);
+    a.setLocationType(-3);
+    a.setDirection(EDirection.NORTH);
+    a.setRoutes(Collections.unmodifiableList(Arrays.asList(route)));
+    a.setCode(Long.MAX_VALUE);
+    a.setUpdated(new Date(1286290800000L));
+    a.setAttributes(new HashMap<String, Object>());
+    a.getAttributes().put("fare", new BigDecimal("2.75"));
+    a.getAttributes().put("shelter", Boolean.TRUE);
+    a.getAttributes().put("bytes", new byte[] {1, 2, 3});
+
+    StopBean b = new StopBean();
+    b.setId("1_100");
+    b.setRoutes(new ArrayList<RouteBean>(Arrays.asList(route, null)));
+    b.setNearby(a);
+    a.setNearby(b);
+
+    List<StopBean> result = roundTrip(Arrays.asList(a, b));
+
+    StopBean a2 = result.get(0);
+    StopBean b2 = result.get(1);
+    assertEquals("1_100", a2.getId());
+    assertEquals(a.getName(), a2.getName());
+    assertEquals(47.6097, a2.getLat(), 0.0);
+    assertEquals(-122.3331, a2.getLon(), 0.0);
+    assertEquals(-3, a2.getLocationType());
+    assertEquals(EDirection.NORTH, a2.getDirection());
+    assertEquals(Long.valueOf(Long.MAX_VALUE), a2.getCode());
+    assertEquals(a.getUpdated(), a2.getUpdated());
+    assertEquals(new BigDecimal("2.75"), a2.getAttributes().get("fare"));
+    assertEquals(Boolean.TRUE, a2.getAttributes().get("shelter"));
+    assertArrayEquals(new byte[] {1, 2, 3},
+        (byte[]) a2.getAttributes().get("bytes"));
+    assertNull(b2.getName());
+    assertNull(b2.getCode());
+
+    // shared references and cycles are preserved
+    assertSame(a2.getRoutes().get(0), b2.getRoutes().get(0));
+    assertNull(b2.getRoutes().get(1));
+    assertSame(b2, a2.getNearby());
+    assertSame(a2, b2.getNearby());
+    assertEquals("10", a2.getRoutes().get(0).getShortName());
+  }
+
+  @Test
+  public void testCollectionsAndArrays() throws IOException {
+
+    Set<String> set = new LinkedHashSet<String>(Arrays.asList("b", "a", "b2"));
+    Object[] values = new Object[] {
+        set, new int[] {1, -2, Integer.MIN_VALUE}, new String[] {"x", null},
+        Collections.emptyList(), 'c', (short) -7, (byte) 0x7f, 1.5f,
+        Long.MIN_VALUE, Double.NaN, ""};
+
+    Object[] result = roundTrip(values);
+
+    assertEquals(set, result[0]);
+    assertEquals(Arrays.asList("b", "a", "b2"), new ArrayList<Object>(
+        (Set<?>) result[0]));
+    assertArrayEquals(new int[] {1, -2, Integer.MIN_VALUE}, (int[]) result[1]);
+    assertArrayEquals(new String[] {"x", null}, (String[]) result[2]);
+    assertEquals(Collections.emptyList(), result[3]);
+    assertEquals(Character.valueOf('c'), result[4]);
+    assertEquals(Short.valueOf((short) -7), result[5]);
+    assertEquals(Byte.valueOf((byte) 0x7f), result[6]);
+    assertEquals(Float.valueOf(1.5f), result[7]);
+    assertEquals(Long.valueOf(Long.MIN_VALUE), result[8]);
+    assertTrue(Double.isNaN((Double) result[9]));
+    assertEquals("", result[10]);
+  }
+
+  @Test
+  public void testRepeatedValuesAreWrittenOnce() throws IOException {
+
+    List<RouteBean> routes = new ArrayList<RouteBean>();
+    for (int i = 0; i < 100; i++)
+      routes.add(new RouteBean("1_" + (i % 2), "Route with a long name"));
+
+    BinaryObjectOutput out = new BinaryObjectOutput();
+    out.writeObject(routes);
+    assertTrue(out.size() < 100 * 8);
+  }
+
+  @Test
+  public void testExporter() throws IOException {
+
+    List<RemoteInvocation> invocations = new ArrayList<RemoteInvocation>();
+    invocations.add(invocation("getStop", new Class<?>[] {String.class},
+        "1_100"));
+    invocations.add(invocation("getStop", new Class<?>[] {String.class},
+        "missing"));
+    invocations.add(invocation("hasService", new Class<?>[] {
+        String.class, long.class}, "1_100", 1000L));
+
+    List<RemoteInvocationResult> results = invoke(invocations);
+
+    assertEquals(3, results.size());
+    assertEquals("1_100", ((StopBean) results.get(0).getValue()).getId());
+    assertTrue(results.get(1).hasException());
+    assertEquals(Boolean.TRUE, results.get(2).getValue());
+  }
+
+  @Test
+  public void testClassFilter() throws IOException {
+
+    StopBean stop = new StopBean();
+    stop.setId("1_100");
+    stop.setDirection(EDirection.SOUTH);
+
+    BinaryClassFilter otherPackages = new BinaryClassFilter(
+        Arrays.asList("com.example."), true);
+    checkRejected(stop, otherPackages);
+    checkRejected(Arrays.asList(EDirection.NORTH), otherPackages);
+    checkRejected(new StopBean[] {stop}, otherPackages);
+    assertEquals(Arrays.asList("a", 1L),
+        roundTrip(new ArrayList<Object>(Arrays.asList("a", 1L)), otherPackages));
+
+    BinaryClassFilter requests = new BinaryClassFilter(
+        BinaryClassFilter.DEFAULT_ALLOWED_PACKAGES, false);
+    assertEquals("1_100", roundTrip(stop, requests).getId());
+    checkRejected(new BigDecimal("2.75"), requests);
+
+    // Java serialization only resolves allowed classes
+    BinaryClassFilter results = new BinaryClassFilter(
+        BinaryClassFilter.DEFAULT_ALLOWED_PACKAGES, true);
+    assertEquals(new BigDecimal("2.75"),
+        roundTrip(new BigDecimal("2.75"), results));
+    checkRejected(URI.create("http://example.com/"), results);
+  }
+
+  @Test
+  public void testExporterRejectsSerializedArguments() throws IOException {
+
+    List<RemoteInvocation> invocations = new ArrayList<RemoteInvocation>();
+    invocations.add(invocation("getStop", new Class<?>[] {String.class},
+        "1_100"));
+    invocations.get(0).addAttribute("amount", new BigDecimal("2.75"));
+
+    byte[] request = BinaryRemotingProtocol.writeInvocations(invocations).toByteArray();
+    try {
+      _exporter.invoke(new ByteArrayInputStream(request),
+          new ByteArrayOutputStream());
+      fail();
+    } catch (IOException ex) {
+
+    }
+  }
+
+  @Test
+  public void testMaxDepth() throws IOException {
+    assertEquals(1, roundTrip(nestedLists(BinaryObjectInput.MAX_DEPTH - 1)).size());
+    try {
+      roundTrip(nestedLists(BinaryObjectInput.MAX_DEPTH));
+      fail();
+    } catch (IOException ex) {
+
+    }
+  }
+
+  @Test
+  public void testRemoteBatch() {
+    checkRemoteBatch(new StopServiceImpl());
+  }
+
+  @Test
+  public void testRemoteBatchWithInvoker() {
+
+    final StopService service = (StopService) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[] {
+            StopService.class, RemoteBatchInvoker.class},
+        new InvocationHandler() {
+          @SuppressWarnings("unchecked")
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            if (method.getDeclaringClass() != RemoteBatchInvoker.class)
+              throw new IllegalStateException("expected a single batch call");
+            return BinaryRemotingTest.this.invoke((List<RemoteInvocation>) args[0]);
+          }
+        });
+
+    checkRemoteBatch(service);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void checkRemoteBatch(StopService service) {
+
+    RemoteBatch<StopService> batch = RemoteBatch.create(StopService.class,
+        service);
+
+    List<RemoteBatch.Result<Boolean>> hasService = new ArrayList<RemoteBatch.Result<Boolean>>();
+    for (int i = 0; i < 10; i++)
+      hasService.add(batch.submit(batch.record().hasService("1_" + i, i)));
+    RemoteBatch.Result<StopBean> stop = batch.submit(batch.record().getStop(
+        "1_100"));
+    RemoteBatch.Result<StopBean> missing = batch.submit(batch.record().getStop(
+        "missing"));
+    assertEquals(12, batch.size());
+
+    try {
+      stop.get();
+      fail();
+    } catch (IllegalStateException ex) {
+
+    }
+
+    batch.execute();
+
+    for (int i = 0; i < 10; i++)
+      assertEquals(i % 2 == 0, hasService.get(i).get());
+    assertEquals("1_100", stop.get().getId());
+    try {
+      missing.get();
+      fail();
+    } catch (IllegalArgumentException ex) {
+      assertEquals("missing", ex.getMessage());
+    }
+  }
+
+  private List<RemoteInvocationResult> invoke(List<RemoteInvocation> invocations) {
+    try {
+      byte[] request = BinaryRemotingProtocol.writeInvocations(invocations).toByteArray();
+      ByteArrayOutputStream response = new ByteArrayOutputStream();
+      _exporter.invoke(new ByteArrayInputStream(request), response);
+      return BinaryRemotingProtocol.readResults(response.toByteArray(),
+          getClass().getClassLoader(), new BinaryClassFilter(
+              BinaryClassFilter.DEFAULT_ALLOWED_PACKAGES, true));
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * @return the specified number of lists nested in each other, the innermost
+   *         one holding a string
+   */
+  private static List<Object> nestedLists(int depth) {
+    List<Object> list = new ArrayList<Object>();
+    list.add("leaf");
+    for (int i = 1; i < depth; i++) {
+      List<Object> parent = new ArrayList<Object>();
+      parent.add(list);
+      list = parent;
+    }
+    return list;
+  }
+
+  private static RemoteInvocation invocation(String methodName,
+      Class<?>[] parameterTypes, Object... arguments) {
+    return new RemoteInvocation(methodName, parameterTypes, arguments);
+  }
+
+  private <T> T roundTrip(T value) throws IOException {
+    return roundTrip(value, new BinaryClassFilter(
+        BinaryClassFilter.DEFAULT_ALLOWED_PACKAGES, true));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T roundTrip(T value, BinaryClassFilter filter)
+      throws IOException {
+    BinaryObjectOutput out = new BinaryObjectOutput();
+    out.writeObject(value);
+    BinaryObjectInput in = new BinaryObjectInput(out.toByteArray(),
+        getClass().getClassLoader(), filter);
+    T result = (T) in.readObject();
+    assertFalse(value == result);
+    return result;
+  }
+
+  private void checkRejected(Object value, BinaryClassFilter filter) {
+    try {
+      roundTrip(value, filter);
+      fail();
+    } catch (IOException ex) {
+
+    }
+  }
+
+  public enum EDirection {
+    NORTH, SOUTH
+  }
+
+  public interface StopService {
+
+    public StopBean getStop(String stopId);
+
+    public boolean hasService(String stopId, long time);
+  }
+
+  public static class StopServiceImpl implements StopService {
+
+    @Override
+    public StopBean getStop(String stopId) {
+      if (stopId.equals("missing"))
+        throw new IllegalArgumentException(stopId);
+      StopBean stop = new StopBean();
+      stop.setId(stopId);
+      return stop;
+    }
+
+    @Override
+    public boolean hasService(String stopId, long time) {
+      return time % 2 == 0;
+    }
+  }
+
+  /**
+   * No no-arg constructor, like Hessian we pass default values
+   */
+  public static final class RouteBean implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+
+    private final String shortName;
+
+    public RouteBean(String id, String shortName) {
+      this.id = id;
+      this.shortName = shortName;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getShortName() {
+      return shortName;
+    }
+  }
+
+  public static class StopBean implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    private String name;
+
+    private double lat;
+
+    private double lon;
+
+    private int locationType;
+
+    private EDirection direction;
+
+    private Long code;
+
+    private Date updated;
+
+    private List<RouteBean> routes;
+
+    private Map<String, Object> attributes;
+
+    private StopBean nearby;
+
+    public String getId() {
+      return id;
+    }
+
+    public void setId(String id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public double getLat() {
+      return lat;
+    }
+
+    public void setLat(double lat) {
+      this.lat = lat;
+    }
+
+    public double getLon() {
+      return lon;
+    }
+
+    public void setLon(double lon) {
+      this.lon = lon;
+    }
+
+    public int getLocationType() {
+      return locationType;
+    }
+
+    public void setLocationType(int locationType) {
+      this.locationType = locationType;
+    }
+
+    public EDirection getDirection() {
+      return direction;
+    }
+
+    public void setDirection(EDirection direction) {
+      this.direction = direction;
+    }
+
+    public Long getCode() {
+      return code;
+    }
+
+    public void setCode(Long code) {
+      this.code = code;
+    }
+
+    public Date getUpdated() {
+      return updated;
+    }
+
+    public void setUpdated(Date updated) {
+      this.updated = updated;
+    }
+
+    public List<RouteBean> getRoutes() {
+      return routes;
+    }
+
+    public void setRoutes(List<RouteBean> routes) {
+      this.routes = routes;
+    }
+
+    public Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    public void setAttributes(Map<String, Object> attributes) {
+      this.attributes = attributes;
+    }
+
+    public StopBean getNearby() {
+      return nearby;
+    }
+
+    public void setNearby(StopBean nearby) {
+      this.nearby = nearby;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.exceptions;
+
+/**
+ * Indicates the service can't answer right now but should be able to shortly,
+ * for example while a new transit data bundle is being loaded. Clients should
+ * retry later.
+ */
+public class ServiceUnavailableServiceException extends ServiceException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ServiceUnavailableServiceException() {
+    super("service unavailable");
+  }
+
+  public ServiceUnavailableServiceException(String message) {
+    super(message);
+  }
+}
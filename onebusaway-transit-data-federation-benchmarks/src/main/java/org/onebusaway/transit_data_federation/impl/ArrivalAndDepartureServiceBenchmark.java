@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.realtime.api.VehicleLocationRecord;
+import org.onebusaway.transit_data_federation.impl.blocks.BlockStatusServiceImpl;
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticNetworkBenchmark;
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticTransitNetwork;
+import org.onebusaway.transit_data_federation.impl.realtime.BlockLocationServiceImpl;
+import org.onebusaway.transit_data_federation.impl.realtime.VehicleLocationRecordCacheImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
+import org.onebusaway.transit_data_federation.model.TargetTime;
+import org.onebusaway.transit_data_federation.services.blocks.ScheduledBlockLocation;
+import org.onebusaway.transit_data_federation.services.realtime.ArrivalAndDepartureInstance;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures
+ * {@link ArrivalAndDepartureServiceImpl#getArrivalsAndDeparturesForStopInTimeRange}
+ * , the query behind the arrivals-and-departures-for-stop API, across every
+ * stop in the network. A configurable share of the vehicles in service report a
+ * real-time position, so both the schedule-only and the real-time paths are
+ * exercised, with and without the merged per-stop departure index.
+ * 
+ * Latency is sampled rather than averaged: the p0.50 and p0.99 rows of the
+ * output are the median and tail latency of a query.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 10, time = 1)
+public class ArrivalAndDepartureServiceBenchmark extends
+    SyntheticNetworkBenchmark {
+
+  /**
+   * The percentage of in-service blocks with a real-time vehicle location
+   */
+  @Param({"0", "50", "100"})
+  public int realtimePercent;
+
+  @Param({"true", "false"})
+  public boolean useDepartureIndex;
+
+  private ArrivalAndDepartureServiceImpl _service;
+
+  private BlockLocationServiceImpl _blockLocationService;
+
+  private List<StopEntryImpl> _stops;
+
+  private TargetTime _targetTime;
+
+  private long _from;
+
+  private long _to;
+
+  @Setup
+  public void setup() throws Exception {
+
+    SyntheticTransitNetwork network = createNetwork();
+
+    StopTimeServiceImpl stopTimeService = new StopTimeServiceImpl();
+    stopTimeService.setTransitGraphDao(network.getTransitGraphDao());
+    stopTimeService.setCalendarService(network.getCalendarService());
+    stopTimeService.setBlockIndexService(network.getBlockIndexService());
+    stopTimeService.setUseDepartureIndex(useDepartureIndex);
+
+    _blockLocationService = new BlockLocationServiceImpl();
+    _blockLocationService.setVehicleLocationRecordCache(new VehicleLocationRecordCacheImpl());
+    _blockLocationService.setTransitGraphDao(network.getTransitGraphDao());
+    _blockLocationService.setScheduledBlockLocationService(network.getScheduledBlockLocationService());
+    _blockLocationService.setBlockCalendarService(network.getBlockCalendarService());
+
+    BlockStatusServiceImpl blockStatusService = new BlockStatusServiceImpl();
+
+    _service = new ArrivalAndDepartureServiceImpl();
+    _service.setStopTimeService(stopTimeService);
+    _service.setBlockLocationService(_blockLocationService);
+    _service.setBlockStatusService(blockStatusService);
+
+    long now = network.getTime(8, 0);
+    _targetTime = new TargetTime(now, now);
+    _from = now - 5 * 60 * 1000;
+    _to = now + 35 * 60 * 1000;
+
+    List<ScheduledBlockLocation> locations = network.getScheduledBlockLocations(now);
+    for (int i = 0; i < locations.size(); i++) {
+      if ((i % 10) * 10 >= realtimePercent)
+        continue;
+      BlockConfigurationEntry blockConfig = locations.get(i).getActiveTrip().getBlockConfiguration();
+      VehicleLocationRecord record = new VehicleLocationRecord();
+      record.setBlockId(blockConfig.getBlock().getId());
+      record.setServiceDate(network.getServiceDate());
+      record.setVehicleId(new AgencyAndId("1", "vehicle" + i));
+      record.setTimeOfRecord(now);
+      record.setTimeOfLocationUpdate(now);
+      record.setScheduleDeviation(i % 5 * 60);
+      _blockLocationService.handleVehicleLocationRecord(record);
+    }
+
+    _stops = network.getStops();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _blockLocationService.stop();
+  }
+
+  @Benchmark
+  public List<ArrivalAndDepartureInstance> getArrivalsAndDeparturesForStopInTimeRange() {
+    StopEntryImpl stop = _stops.get(next(_stops.size()));
+    return _service.getArrivalsAndDeparturesForStopInTimeRange(stop,
+        _targetTime, _from, _to);
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticNetworkBenchmark;
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticTransitNetwork;
+import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
+import org.onebusaway.transit_data_federation.model.StopTimeInstance;
+import org.onebusaway.transit_data_federation.services.StopTimeService.EFrequencyStopTimeBehavior;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures {@link StopTimeServiceImpl#getStopTimeInstancesInTimeRange} for
+ * every stop in the network, with and without the merged per-stop departure
+ * index.
+ * 
+ * Latency is sampled rather than averaged: the p0.50 and p0.99 rows of the
+ * output are the median and tail latency of a query. The departure index is
+ * built lazily per service date, so the first queries of each fork pay for
+ * building it during warmup.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 10, time = 1)
+public class StopTimeServiceBenchmark extends SyntheticNetworkBenchmark {
+
+  @Param({"true", "false"})
+  public boolean useDepartureIndex;
+
+  @Param({"60"})
+  public int windowMinutes;
+
+  private StopTimeServiceImpl _service;
+
+  private List<StopEntryImpl> _stops;
+
+  private Date _from;
+
+  private Date _to;
+
+  @Setup
+  public void setup() throws Exception {
+
+    SyntheticTransitNetwork network = createNetwork();
+
+    _service = new StopTimeServiceImpl();
+    _service.setTransitGraphDao(network.getTransitGraphDao());
+    _service.setCalendarService(network.getCalendarService());
+    _service.setBlockIndexService(network.getBlockIndexService());
+    _service.setUseDepartureIndex(useDepartureIndex);
+
+    _stops = network.getStops();
+
+    long from = network.getTime(8, 0);
+    _from = new Date(from);
+    _to = new Date(from + windowMinutes * 60 * 1000L);
+  }
+
+  @Benchmark
+  public List<StopTimeInstance> getStopTimeInstancesInTimeRange() {
+    StopEntryImpl stop = _stops.get(next(_stops.size()));
+    return _service.getStopTimeInstancesInTimeRange(stop, _from, _to,
+        EFrequencyStopTimeBehavior.INCLUDE_UNSPECIFIED);
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.blocks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.geospatial.services.SphericalGeometryLibrary;
+import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures
+ * {@link BlockGeospatialServiceImpl#getActiveScheduledBlocksPassingThroughBounds}
+ * , the query behind the vehicles-for-location searches, with bounds centered
+ * on each stop in the network, with and without the active block grid index.
+ */
+public class BlockGeospatialServiceBenchmark extends SyntheticNetworkBenchmark {
+
+  /**
+   * The radius of the search bounds, in meters
+   */
+  @Param({"250", "1000", "5000"})
+  public double radius;
+
+  @Param({"10"})
+  public int windowMinutes;
+
+  @Param({"true", "false"})
+  public boolean useActiveBlockGridIndex;
+
+  /**
+   * The edge length of an active block grid index cell, in meters
+   */
+  @Param({"1000"})
+  public double gridCellSize;
+
+  private BlockGeospatialServiceImpl _service;
+
+  private List<CoordinateBounds> _bounds = new ArrayList<CoordinateBounds>();
+
+  private long _from;
+
+  private long _to;
+
+  @Setup
+  public void setup() throws Exception {
+
+    SyntheticTransitNetwork network = createNetwork();
+
+    _service = new BlockGeospatialServiceImpl();
+    _service.setBundle(network.getBundle());
+    _service.setTransitGraphDao(network.getTransitGraphDao());
+    _service.setBlockIndexService(network.getBlockIndexService());
+    _service.setBlockCalendarService(network.getBlockCalendarService());
+    _service.setScheduledBlockLocationService(network.getScheduledBlockLocationService());
+    _service.setUseActiveBlockGridIndex(useActiveBlockGridIndex);
+    _service.setGridCellSize(gridCellSize);
+    _service.setup();
+
+    for (StopEntryImpl stop : network.getStops())
+      _bounds.add(SphericalGeometryLibrary.bounds(stop.getStopLat(),
+          stop.getStopLon(), radius));
+
+    _from = network.getTime(8, 0);
+    _to = _from + windowMinutes * 60 * 1000L;
+  }
+
+  @Benchmark
+  public List<BlockInstance> getActiveScheduledBlocksPassingThroughBounds() {
+    CoordinateBounds bounds = _bounds.get(next(_bounds.size()));
+    return _service.getActiveScheduledBlocksPassingThroughBounds(bounds,
+        _from, _to);
+  }
+}
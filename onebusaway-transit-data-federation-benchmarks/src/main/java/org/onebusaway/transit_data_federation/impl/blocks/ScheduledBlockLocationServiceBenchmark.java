@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.blocks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.onebusaway.transit_data_federation.services.blocks.ScheduledBlockLocation;
+import org.onebusaway.transit_data_federation.services.blocks.ScheduledBlockLocationService;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the two {@link ScheduledBlockLocationService} lookups used when
+ * applying real-time data: by scheduled time and by distance along the block,
+ * along with the batch lookup used to locate every vehicle along a route.
+ * Queries are drawn uniformly from the span of each block with a fixed seed, so
+ * runs are comparable with each other.
+ */
+public class ScheduledBlockLocationServiceBenchmark extends
+    SyntheticNetworkBenchmark {
+
+  private static final int QUERY_COUNT = 1024;
+
+  /**
+   * Zero disables the shape index cache
+   */
+  @Param({"1000000", "0"})
+  public int maxCachedShapePoints;
+
+  private ScheduledBlockLocationServiceImpl _service;
+
+  private BlockConfigurationEntry[] _blockConfigs = new BlockConfigurationEntry[QUERY_COUNT];
+
+  private int[] _scheduleTimes = new int[QUERY_COUNT];
+
+  private double[] _distances = new double[QUERY_COUNT];
+
+  private List<BlockConfigurationEntry> _batchBlockConfigs;
+
+  private int[] _batchScheduleTimes;
+
+  @Setup
+  public void setup() throws Exception {
+
+    SyntheticTransitNetwork network = createNetwork();
+    _service = network.getScheduledBlockLocationService();
+    _service.setMaxCachedShapePoints(maxCachedShapePoints);
+
+    List<BlockConfigurationEntry> blockConfigs = network.getBlockConfigurations();
+    Random random = new Random(42);
+
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      BlockConfigurationEntry blockConfig = blockConfigs.get(random.nextInt(blockConfigs.size()));
+      List<BlockStopTimeEntry> stopTimes = blockConfig.getStopTimes();
+      int from = stopTimes.get(0).getStopTime().getArrivalTime();
+      int to = stopTimes.get(stopTimes.size() - 1).getStopTime().getDepartureTime();
+      _blockConfigs[i] = blockConfig;
+      _scheduleTimes[i] = from + random.nextInt(to - from + 1);
+      _distances[i] = random.nextDouble() * blockConfig.getTotalBlockDistance();
+    }
+
+    _batchBlockConfigs = Arrays.asList(_blockConfigs);
+    _batchScheduleTimes = _scheduleTimes;
+  }
+
+  @Benchmark
+  public ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime() {
+    int index = next(QUERY_COUNT);
+    return _service.getScheduledBlockLocationFromScheduledTime(
+        _blockConfigs[index], _scheduleTimes[index]);
+  }
+
+  @Benchmark
+  public ScheduledBlockLocation getScheduledBlockLocationFromDistanceAlongBlock() {
+    int index = next(QUERY_COUNT);
+    return _service.getScheduledBlockLocationFromDistanceAlongBlock(
+        _blockConfigs[index], _distances[index]);
+  }
+
+  /**
+   * Locates all {@value #QUERY_COUNT} queries in one call, so the score is per
+   * batch rather than per query
+   */
+  @Benchmark
+  public List<ScheduledBlockLocation> getScheduledBlockLocationsFromScheduledTimes() {
+    return _service.getScheduledBlockLocationsFromScheduledTimes(
+        _batchBlockConfigs, _batchScheduleTimes);
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.blocks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common settings for benchmarks that run against a
+ * {@link SyntheticTransitNetwork}. The size of the network is exposed as JMH
+ * parameters, so it can be varied from the command line with
+ * {@code -p routeCount=40}. The defaults approach a large bus agency: 200
+ * routes on 100 corridors, 5,000 stops each served by two routes, and 1,600
+ * blocks running about 17,000 trips over the service day. Subclasses call
+ * {@link #createNetwork()} from their own {@code @Setup} method and then wire
+ * up the service under test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class SyntheticNetworkBenchmark {
+
+  @Param({"200"})
+  public int routeCount;
+
+  @Param({"50"})
+  public int stopsPerRoute;
+
+  @Param({"8"})
+  public int blocksPerRoute;
+
+  @Param({"2"})
+  public int routesPerCorridor;
+
+  protected SyntheticTransitNetwork _network;
+
+  private int _next = 0;
+
+  protected SyntheticTransitNetwork createNetwork() throws Exception {
+    _network = new SyntheticTransitNetwork(routeCount, stopsPerRoute,
+        blocksPerRoute, routesPerCorridor);
+    _network.build();
+    return _network;
+  }
+
+  @TearDown
+  public void closeNetwork() {
+    if (_network != null)
+      _network.close();
+  }
+
+  /**
+   * Benchmarks cycle through a fixed set of precomputed queries so that a
+   * single hot entry does not dominate the measurement.
+   *
+   * @param count the number of precomputed queries
+   * @return the index of the next query to run
+   */
+  protected int next(int count) {
+    int index = _next;
+    _next = (index + 1) % count;
+    return index;
+  }
+}
@@ -0,0 +1,487 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.blocks;
+
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.addDates;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.agency;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.block;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.date;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.linkBlockTrips;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.route;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.routeCollection;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.shapePointsFromLatLons;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stop;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stopTime;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.time;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.gtfs.impl.calendar.CalendarServiceImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
+import org.onebusaway.transit_data_federation.impl.ExtendedCalendarServiceImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.AgencyEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.BlockEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.RouteCollectionEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.RouteEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.TransitGraphDaoImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.TransitGraphImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.TripEntryImpl;
+import org.onebusaway.transit_data_federation.model.ShapePoints;
+import org.onebusaway.transit_data_federation.model.ShapePointsFactory;
+import org.onebusaway.transit_data_federation.services.ExtendedCalendarService;
+import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
+import org.onebusaway.transit_data_federation.services.blocks.BlockCalendarService;
+import org.onebusaway.transit_data_federation.services.blocks.BlockIndexService;
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.onebusaway.transit_data_federation.services.blocks.ScheduledBlockLocation;
+import org.onebusaway.transit_data_federation.services.blocks.ScheduledBlockLocationService;
+import org.onebusaway.transit_data_federation.services.shapes.ShapePointService;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.RouteCollectionEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.TransitGraphDao;
+
+/**
+ * Builds a synthetic, self-contained transit network with
+ * {@link org.onebusaway.transit_data_federation.testing.UnitTestingSupport}
+ * and wires up the same schedule-side services the runtime uses: the
+ * {@link TransitGraphDao}, the {@link BlockIndexService}, the calendar services
+ * and the {@link ScheduledBlockLocationService}. Benchmarks that need
+ * additional services construct them on top of this fixture.
+ *
+ * The network is a grid of straight corridors crossing at right angles,
+ * centered on {@link #CENTER_LAT}, {@link #CENTER_LON}. Each corridor is served
+ * by a fixed number of routes that share its stops, with their departures
+ * staggered, so stop-level queries see the interleaved schedules of several
+ * routes as they do at busy stops of a real agency. Each route has a shape in
+ * each direction and a fixed number of blocks that alternate directions all
+ * day, so the size of the network scales predictably with the constructor
+ * arguments.
+ * All trips run on a single service id that is active on the
+ * {@link #getServiceDate()} and the days around it.
+ *
+ * The fixture lives in this package because {@link BlockCalendarServiceImpl}
+ * is package-private.
+ */
+public class SyntheticTransitNetwork {
+
+  public static final double CENTER_LAT = 47.6097;
+
+  public static final double CENTER_LON = -122.3331;
+
+  private static final double STOP_SPACING = 0.004;
+
+  private static final double ROUTE_SPACING = 0.01;
+
+  private static final int SEGMENT_RUN_TIME = 90;
+
+  private static final int DWELL_TIME = 20;
+
+  private static final int LAYOVER_TIME = 5 * 60;
+
+  private static final int FIRST_DEPARTURE = time(5, 0);
+
+  private static final int LAST_DEPARTURE = time(23, 0);
+
+  private static final String SERVICE_ID = "weekday";
+
+  private final int _routeCount;
+
+  private final int _stopsPerRoute;
+
+  private final int _blocksPerRoute;
+
+  private final int _routesPerCorridor;
+
+  private final long _serviceDate = date("2010-09-14 00:00").getTime();
+
+  private final TransitGraphImpl _graph = new TransitGraphImpl();
+
+  private final Map<AgencyAndId, ShapePoints> _shapePointsById = new HashMap<AgencyAndId, ShapePoints>();
+
+  private final List<StopEntryImpl> _stops = new ArrayList<StopEntryImpl>();
+
+  private final Map<Integer, List<StopEntryImpl>> _stopsByCorridor = new HashMap<Integer, List<StopEntryImpl>>();
+
+  private final List<BlockConfigurationEntry> _blockConfigurations = new ArrayList<BlockConfigurationEntry>();
+
+  private int _stopTimeId = 0;
+
+  private TransitGraphDaoImpl _transitGraphDao;
+
+  private BlockIndexServiceImpl _blockIndexService;
+
+  private ExtendedCalendarServiceImpl _calendarService;
+
+  private BlockCalendarServiceImpl _blockCalendarService;
+
+  private ScheduledBlockLocationServiceImpl _scheduledBlockLocationService;
+
+  private ShapePointService _shapePointService;
+
+  private File _bundlePath;
+
+  /**
+   *
+   * @param routeCount the number of routes in the grid
+   * @param stopsPerRoute the number of stops along each route
+   * @param blocksPerRoute the number of vehicles in service on each route
+   */
+  public SyntheticTransitNetwork(int routeCount, int stopsPerRoute,
+      int blocksPerRoute) {
+    this(routeCount, stopsPerRoute, blocksPerRoute, 1);
+  }
+
+  /**
+   *
+   * @param routeCount the number of routes in the grid
+   * @param stopsPerRoute the number of stops along each route
+   * @param blocksPerRoute the number of vehicles in service on each route
+   * @param routesPerCorridor the number of routes that share each corridor and
+   *          its stops
+   */
+  public SyntheticTransitNetwork(int routeCount, int stopsPerRoute,
+      int blocksPerRoute, int routesPerCorridor) {
+    if (routeCount < 1 || stopsPerRoute < 2 || blocksPerRoute < 1
+        || routesPerCorridor < 1)
+      throw new IllegalArgumentException("network is too small");
+    _routeCount = routeCount;
+    _stopsPerRoute = stopsPerRoute;
+    _blocksPerRoute = blocksPerRoute;
+    _routesPerCorridor = routesPerCorridor;
+  }
+
+  /**
+   * Generate the network and initialize the services built on top of it.
+   *
+   * @throws Exception
+   */
+  public void build() throws Exception {
+
+    AgencyEntryImpl agency = agency("1");
+    List<RouteCollectionEntryImpl> routeCollections = new ArrayList<RouteCollectionEntryImpl>();
+
+    for (int r = 0; r < _routeCount; r++)
+      routeCollections.add(buildRoute(r));
+
+    agency.setRouteCollections(new ArrayList<RouteCollectionEntry>(
+        routeCollections));
+    _graph.putAgencyEntry(agency);
+    _graph.initialize();
+
+    _transitGraphDao = new TransitGraphDaoImpl();
+    _transitGraphDao.setTransitGraph(_graph);
+
+    CalendarServiceData calendarData = new CalendarServiceData();
+    Date[] dates = new Date[3];
+    for (int i = 0; i < dates.length; i++)
+      dates[i] = new Date(_serviceDate + (i - 1) * 24 * 60 * 60 * 1000L);
+    addDates(calendarData, SERVICE_ID, dates);
+
+    CalendarServiceImpl calendarService = new CalendarServiceImpl();
+    calendarService.setData(calendarData);
+
+    _calendarService = new ExtendedCalendarServiceImpl();
+    _calendarService.setCalendarService(calendarService);
+    _calendarService.setTransitGraphDao(_transitGraphDao);
+    _calendarService.start();
+
+    _bundlePath = createEmptyBundlePath();
+
+    _blockIndexService = new BlockIndexServiceImpl();
+    _blockIndexService.setBundle(new FederatedTransitDataBundle(_bundlePath));
+    _blockIndexService.setBlockIndexFactoryService(new BlockIndexFactoryServiceImpl());
+    _blockIndexService.setGraphDao(_transitGraphDao);
+    _blockIndexService.setup();
+
+    _blockCalendarService = new BlockCalendarServiceImpl();
+    _blockCalendarService.setCalendarService(_calendarService);
+    _blockCalendarService.setBlockIndexService(_blockIndexService);
+    _blockCalendarService.setTransitGraphDao(_transitGraphDao);
+
+    _shapePointService = new ShapePointServiceImpl(_shapePointsById);
+
+    _scheduledBlockLocationService = new ScheduledBlockLocationServiceImpl();
+    _scheduledBlockLocationService.setShapePointService(_shapePointService);
+  }
+
+  public FederatedTransitDataBundle getBundle() {
+    return new FederatedTransitDataBundle(_bundlePath);
+  }
+
+  public TransitGraphDao getTransitGraphDao() {
+    return _transitGraphDao;
+  }
+
+  public BlockIndexService getBlockIndexService() {
+    return _blockIndexService;
+  }
+
+  public ExtendedCalendarService getCalendarService() {
+    return _calendarService;
+  }
+
+  public BlockCalendarService getBlockCalendarService() {
+    return _blockCalendarService;
+  }
+
+  public ScheduledBlockLocationServiceImpl getScheduledBlockLocationService() {
+    return _scheduledBlockLocationService;
+  }
+
+  public ShapePointService getShapePointService() {
+    return _shapePointService;
+  }
+
+  /**
+   * @return midnight of the service date that all benchmarks run against
+   */
+  public long getServiceDate() {
+    return _serviceDate;
+  }
+
+  /**
+   * @param hour
+   * @param minute
+   * @return the absolute time of the specified time of day on the service date
+   */
+  public long getTime(int hour, int minute) {
+    return _serviceDate + time(hour, minute) * 1000L;
+  }
+
+  public List<StopEntryImpl> getStops() {
+    return _stops;
+  }
+
+  public List<BlockConfigurationEntry> getBlockConfigurations() {
+    return _blockConfigurations;
+  }
+
+  /**
+   * @param time an absolute time on the service date
+   * @return the scheduled location of every block that is between its first
+   *         and last stop at the specified time
+   */
+  public List<ScheduledBlockLocation> getScheduledBlockLocations(long time) {
+
+    int scheduleTime = (int) ((time - _serviceDate) / 1000);
+    List<BlockConfigurationEntry> blockConfigs = new ArrayList<BlockConfigurationEntry>();
+
+    for (BlockConfigurationEntry blockConfig : _blockConfigurations) {
+      List<BlockStopTimeEntry> stopTimes = blockConfig.getStopTimes();
+      BlockStopTimeEntry first = stopTimes.get(0);
+      BlockStopTimeEntry last = stopTimes.get(stopTimes.size() - 1);
+      if (scheduleTime < first.getStopTime().getArrivalTime()
+          || last.getStopTime().getDepartureTime() < scheduleTime)
+        continue;
+      blockConfigs.add(blockConfig);
+    }
+
+    int[] scheduleTimes = new int[blockConfigs.size()];
+    Arrays.fill(scheduleTimes, scheduleTime);
+
+    List<ScheduledBlockLocation> locations = new ArrayList<ScheduledBlockLocation>();
+    for (ScheduledBlockLocation location : _scheduledBlockLocationService.getScheduledBlockLocationsFromScheduledTimes(
+        blockConfigs, scheduleTimes)) {
+      if (location != null)
+        locations.add(location);
+    }
+
+    return locations;
+  }
+
+  /**
+   * @param blockConfig
+   * @return the block instance of the configuration on the service date
+   */
+  public BlockInstance getBlockInstance(BlockConfigurationEntry blockConfig) {
+    return new BlockInstance(blockConfig, _serviceDate);
+  }
+
+  /**
+   * Remove the temporary bundle directory.
+   */
+  public void close() {
+    if (_bundlePath != null)
+      _bundlePath.delete();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private RouteCollectionEntryImpl buildRoute(int routeIndex) {
+
+    String routeId = "r" + routeIndex;
+    RouteEntryImpl route = route(routeId);
+    RouteCollectionEntryImpl routeCollection = routeCollection(routeId, route);
+    _graph.putRouteEntry(route);
+    _graph.putRouteCollectionEntry(routeCollection);
+
+    int corridor = routeIndex / _routesPerCorridor;
+    List<StopEntryImpl> stops = getCorridorStops(corridor);
+
+    double[] latLons = new double[_stopsPerRoute * 2];
+    for (int i = 0; i < _stopsPerRoute; i++) {
+      StopEntryImpl stop = stops.get(i);
+      latLons[i * 2] = stop.getStopLat();
+      latLons[i * 2 + 1] = stop.getStopLon();
+    }
+
+    double[] reversed = new double[latLons.length];
+    for (int i = 0; i < _stopsPerRoute; i++) {
+      int j = _stopsPerRoute - 1 - i;
+      reversed[i * 2] = latLons[j * 2];
+      reversed[i * 2 + 1] = latLons[j * 2 + 1];
+    }
+
+    ShapePoints[] shapes = {
+        shapePointsFromLatLons(routeId + "_shape0", latLons),
+        shapePointsFromLatLons(routeId + "_shape1", reversed)};
+    for (ShapePoints shape : shapes)
+      _shapePointsById.put(shape.getShapeId(), shape);
+
+    int tripDuration = (_stopsPerRoute - 1) * SEGMENT_RUN_TIME
+        + (_stopsPerRoute - 2) * DWELL_TIME;
+    int cycleTime = 2 * (tripDuration + LAYOVER_TIME);
+    int headway = Math.max(cycleTime / _blocksPerRoute, 1);
+
+    // stagger the routes of a corridor so their departures interleave
+    int stagger = (routeIndex % _routesPerCorridor) * headway
+        / _routesPerCorridor;
+
+    for (int b = 0; b < _blocksPerRoute; b++) {
+
+      BlockEntryImpl block = block(routeId + "_b" + b);
+      List<TripEntryImpl> trips = new ArrayList<TripEntryImpl>();
+
+      int departure = FIRST_DEPARTURE + stagger + b * headway;
+      for (int t = 0; departure <= LAST_DEPARTURE; t++) {
+        int direction = t % 2;
+        TripEntryImpl trip = buildTrip(block.getId().getId() + "_t" + t, route,
+            stops, shapes[direction], direction, departure);
+        trips.add(trip);
+        departure += tripDuration + LAYOVER_TIME;
+      }
+
+      BlockConfigurationEntry blockConfig = linkBlockTrips(block,
+          trips.toArray(new TripEntryImpl[trips.size()]));
+      _blockConfigurations.add(blockConfig);
+      _graph.putBlockEntry(block);
+    }
+
+    return routeCollection;
+  }
+
+  private List<StopEntryImpl> getCorridorStops(int corridor) {
+
+    List<StopEntryImpl> stops = _stopsByCorridor.get(corridor);
+    if (stops != null)
+      return stops;
+
+    /**
+     * Even corridors run east-west and odd corridors run north-south, so every
+     * corridor crosses half of the others
+     */
+    int corridorCount = (_routeCount + _routesPerCorridor - 1)
+        / _routesPerCorridor;
+    boolean eastWest = corridor % 2 == 0;
+    double offset = (corridor / 2 - corridorCount / 4) * ROUTE_SPACING;
+    double start = -(_stopsPerRoute - 1) * STOP_SPACING / 2;
+
+    stops = new ArrayList<StopEntryImpl>();
+    for (int i = 0; i < _stopsPerRoute; i++) {
+      double along = start + i * STOP_SPACING;
+      double lat = CENTER_LAT + (eastWest ? offset : along);
+      double lon = CENTER_LON + (eastWest ? along : offset);
+      StopEntryImpl stop = stop("c" + corridor + "_s" + i, lat, lon);
+      _graph.putStopEntry(stop);
+      _stops.add(stop);
+      stops.add(stop);
+    }
+
+    _stopsByCorridor.put(corridor, stops);
+    return stops;
+  }
+
+  private TripEntryImpl buildTrip(String tripId, RouteEntryImpl route,
+      List<StopEntryImpl> stops, ShapePoints shape, int direction,
+      int departure) {
+
+    double[] distances = shape.getDistTraveled();
+    TripEntryImpl trip = trip(tripId, SERVICE_ID,
+        distances[distances.length - 1]);
+    trip.setRoute(route);
+    trip.setDirectionId(Integer.toString(direction));
+    trip.setShapeId(shape.getShapeId());
+
+    int t = departure;
+    for (int i = 0; i < _stopsPerRoute; i++) {
+      StopEntryImpl stop = stops.get(direction == 0 ? i : _stopsPerRoute - 1
+          - i);
+      boolean terminal = i == 0 || i == _stopsPerRoute - 1;
+      int dwell = terminal ? 0 : DWELL_TIME;
+      stopTime(_stopTimeId++, stop, trip, t, t + dwell, distances[i], i);
+      t += dwell + SEGMENT_RUN_TIME;
+    }
+
+    _graph.putTripEntry(trip);
+    return trip;
+  }
+
+  private static File createEmptyBundlePath() throws IOException {
+    File path = Files.createTempDirectory("oba-benchmark-bundle").toFile();
+    path.deleteOnExit();
+    return path;
+  }
+
+  /**
+   * Serves shape points directly from the generated shapes instead of going
+   * through the narrative service.
+   */
+  private static class ShapePointServiceImpl implements ShapePointService {
+
+    private final Map<AgencyAndId, ShapePoints> _shapePointsById;
+
+    public ShapePointServiceImpl(Map<AgencyAndId, ShapePoints> shapePointsById) {
+      _shapePointsById = shapePointsById;
+    }
+
+    @Override
+    public ShapePoints getShapePointsForShapeId(AgencyAndId shapeId) {
+      return _shapePointsById.get(shapeId);
+    }
+
+    @Override
+    public ShapePoints getShapePointsForShapeIds(List<AgencyAndId> shapeIds) {
+      ShapePointsFactory factory = new ShapePointsFactory();
+      for (AgencyAndId shapeId : shapeIds)
+        factory.addPoints(getShapePointsForShapeId(shapeId));
+      return factory.create();
+    }
+  }
+}
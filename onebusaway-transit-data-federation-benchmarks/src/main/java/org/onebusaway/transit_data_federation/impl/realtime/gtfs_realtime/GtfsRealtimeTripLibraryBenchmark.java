@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.realtime.gtfs_realtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.onebusaway.geospatial.model.CoordinatePoint;
+import org.onebusaway.realtime.api.VehicleLocationRecord;
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticNetworkBenchmark;
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticTransitNetwork;
+import org.onebusaway.transit_data_federation.services.blocks.ScheduledBlockLocation;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.Position;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import com.google.transit.realtime.GtfsRealtime.VehicleDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+import com.google.transit.realtime.GtfsRealtimeConstants;
+
+/**
+ * Measures how long {@link GtfsRealtimeTripLibrary} takes to match a full
+ * GTFS-realtime feed against the schedule: one trip update and one vehicle
+ * position for every vehicle in service on the synthetic network.
+ */
+public class GtfsRealtimeTripLibraryBenchmark extends SyntheticNetworkBenchmark {
+
+  private GtfsRealtimeTripLibrary _library;
+
+  private FeedMessage _tripUpdates;
+
+  private FeedMessage _vehiclePositions;
+
+  @Setup
+  public void setup() throws Exception {
+
+    SyntheticTransitNetwork network = createNetwork();
+    long now = network.getTime(8, 0);
+
+    GtfsRealtimeEntitySource entitySource = new GtfsRealtimeEntitySource();
+    entitySource.setTransitGraphDao(network.getTransitGraphDao());
+    entitySource.setAgencyIds(Arrays.asList("1"));
+
+    _library = new GtfsRealtimeTripLibrary();
+    _library.setEntitySource(entitySource);
+    _library.setBlockCalendarService(network.getBlockCalendarService());
+    _library.setCurrentTime(now);
+    _library.setValidateCurrentTime(false);
+
+    FeedMessage.Builder tripUpdates = createFeed(now);
+    FeedMessage.Builder vehiclePositions = createFeed(now);
+
+    List<ScheduledBlockLocation> locations = network.getScheduledBlockLocations(now);
+    for (int i = 0; i < locations.size(); i++) {
+      ScheduledBlockLocation location = locations.get(i);
+      String tripId = location.getActiveTrip().getTrip().getId().getId();
+      String vehicleId = "vehicle" + i;
+
+      TripDescriptor.Builder trip = TripDescriptor.newBuilder();
+      trip.setTripId(tripId);
+      VehicleDescriptor.Builder vehicle = VehicleDescriptor.newBuilder();
+      vehicle.setId(vehicleId);
+
+      TripUpdate.Builder tripUpdate = TripUpdate.newBuilder();
+      tripUpdate.setTrip(trip);
+      tripUpdate.setVehicle(vehicle);
+      tripUpdate.setTimestamp(now / 1000);
+      BlockStopTimeEntry nextStop = location.getNextStop();
+      if (nextStop != null) {
+        StopTimeUpdate.Builder stopTimeUpdate = StopTimeUpdate.newBuilder();
+        stopTimeUpdate.setStopId(nextStop.getStopTime().getStop().getId().getId());
+        StopTimeEvent.Builder arrival = StopTimeEvent.newBuilder();
+        arrival.setDelay(i % 5 * 60);
+        stopTimeUpdate.setArrival(arrival);
+        tripUpdate.addStopTimeUpdate(stopTimeUpdate);
+      }
+      FeedEntity.Builder tripUpdateEntity = FeedEntity.newBuilder();
+      tripUpdateEntity.setId(tripId);
+      tripUpdateEntity.setTripUpdate(tripUpdate);
+      tripUpdates.addEntity(tripUpdateEntity);
+
+      VehiclePosition.Builder vehiclePosition = VehiclePosition.newBuilder();
+      vehiclePosition.setTrip(trip);
+      vehiclePosition.setVehicle(vehicle);
+      vehiclePosition.setTimestamp(now / 1000);
+      CoordinatePoint point = location.getLocation();
+      if (point != null) {
+        Position.Builder position = Position.newBuilder();
+        position.setLatitude((float) point.getLat());
+        position.setLongitude((float) point.getLon());
+        vehiclePosition.setPosition(position);
+      }
+      FeedEntity.Builder vehiclePositionEntity = FeedEntity.newBuilder();
+      vehiclePositionEntity.setId(vehicleId);
+      vehiclePositionEntity.setVehicle(vehiclePosition);
+      vehiclePositions.addEntity(vehiclePositionEntity);
+    }
+
+    _tripUpdates = tripUpdates.build();
+    _vehiclePositions = vehiclePositions.build();
+  }
+
+  @Benchmark
+  public List<CombinedTripUpdatesAndVehiclePosition> groupTripUpdatesAndVehiclePositions() {
+    return _library.groupTripUpdatesAndVehiclePositions(_tripUpdates,
+        _vehiclePositions);
+  }
+
+  @Benchmark
+  public List<VehicleLocationRecord> createVehicleLocationRecords() {
+    List<CombinedTripUpdatesAndVehiclePosition> updates = _library.groupTripUpdatesAndVehiclePositions(
+        _tripUpdates, _vehiclePositions);
+    List<VehicleLocationRecord> records = new ArrayList<VehicleLocationRecord>(
+        updates.size());
+    for (CombinedTripUpdatesAndVehiclePosition update : updates) {
+      VehicleLocationRecord record = _library.createVehicleLocationRecordForUpdate(update);
+      if (record != null)
+        records.add(record);
+    }
+    return records;
+  }
+
+  private static FeedMessage.Builder createFeed(long time) {
+    FeedMessage.Builder builder = FeedMessage.newBuilder();
+    FeedHeader.Builder header = FeedHeader.newBuilder();
+    header.setGtfsRealtimeVersion(GtfsRealtimeConstants.VERSION);
+    header.setTimestamp(time / 1000);
+    builder.setHeader(header);
+    return builder;
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.transit_graph;
+
+import java.util.List;
+import java.util.Random;
+
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticNetworkBenchmark;
+import org.onebusaway.transit_data_federation.impl.blocks.SyntheticTransitNetwork;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the {@link BlockStopTimeArrays} lookup cache with the
+ * {@link BlockStopTimeEntry} object graph it copies its values from.  Each
+ * benchmark sums the departure times and distances along block of a whole
+ * block configuration, the access pattern of the scheduled block location
+ * searches.  The heap the cache adds for the network is logged on setup.
+ */
+public class BlockStopTimeArraysBenchmark extends SyntheticNetworkBenchmark {
+
+  private static Logger _log = LoggerFactory.getLogger(BlockStopTimeArraysBenchmark.class);
+
+  private static final int QUERY_COUNT = 1024;
+
+  private BlockConfigurationEntryImpl[] _blockConfigs = new BlockConfigurationEntryImpl[QUERY_COUNT];
+
+  @Setup
+  public void setup() throws Exception {
+
+    SyntheticTransitNetwork network = createNetwork();
+    List<BlockConfigurationEntry> blockConfigs = network.getBlockConfigurations();
+
+    long stopTimes = 0;
+    long cacheBytes = 0;
+    for (BlockConfigurationEntry blockConfig : blockConfigs) {
+      BlockStopTimeArrays arrays = ((BlockConfigurationEntryImpl) blockConfig).getStopTimeArrays();
+      stopTimes += arrays.size();
+      cacheBytes += arrays.getApproximateSizeInBytes();
+    }
+    _log.info("block stop time arrays: blockConfigurations="
+        + blockConfigs.size() + " stopTimes=" + stopTimes
+        + " additionalHeapBytes=" + cacheBytes);
+
+    Random random = new Random(42);
+    for (int i = 0; i < QUERY_COUNT; i++)
+      _blockConfigs[i] = (BlockConfigurationEntryImpl) blockConfigs.get(random.nextInt(blockConfigs.size()));
+  }
+
+  @Benchmark
+  public double objectGraph() {
+    BlockConfigurationEntryImpl blockConfig = _blockConfigs[next(QUERY_COUNT)];
+    double sum = 0;
+    for (BlockStopTimeEntry blockStopTime : blockConfig.getStopTimes())
+      sum += blockStopTime.getStopTime().getDepartureTime()
+          + blockStopTime.getDistanceAlongBlock();
+    return sum;
+  }
+
+  @Benchmark
+  public double arrays() {
+    BlockStopTimeArrays arrays = _blockConfigs[next(QUERY_COUNT)].getStopTimeArrays();
+    double sum = 0;
+    for (int i = 0; i < arrays.size(); i++)
+      sum += arrays.getDepartureTime(i) + arrays.getDistanceAlongBlock(i);
+    return sum;
+  }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.bundle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A directory of bundle task outputs, keyed by task name and by a fingerprint
+ * of everything that went into the task. The outputs of a task run are stored
+ * under:
+ * 
+ * <pre>
+ * cachePath/taskName/fingerprint/...
+ * </pre>
+ * 
+ * and a later build whose task has the same fingerprint copies them into its
+ * bundle instead of running the task again. Entries are written to a
+ * temporary directory and renamed into place, so a partially written entry is
+ * never used. Only the most recently used entries for each task are kept.
+ * 
+ * @see FederatedTransitDataBundleCreator#setTaskOutputCachePath(File)
+ */
+class BundleTaskOutputCache {
+
+  private static Logger _log = LoggerFactory.getLogger(BundleTaskOutputCache.class);
+
+  private static final String TEMP_PREFIX = ".tmp-";
+
+  private final File _cachePath;
+
+  private final int _maxEntriesPerTask;
+
+  public BundleTaskOutputCache(File cachePath, int maxEntriesPerTask) {
+    _cachePath = cachePath;
+    _maxEntriesPerTask = maxEntriesPerTask;
+  }
+
+  /**
+   * 
+   * @return true if the outputs of a task run with the given fingerprint are
+   *         in the cache
+   */
+  public boolean contains(String taskName, String fingerprint,
+      List<String> outputFiles) {
+    File entry = getEntry(taskName, fingerprint);
+    if (!entry.isDirectory())
+      return false;
+    for (String outputFile : outputFiles) {
+      if (!new File(entry, outputFile).exists())
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Copies the cached outputs of a task into the bundle
+   */
+  public void restore(String taskName, String fingerprint,
+      List<String> outputFiles, File bundlePath) throws IOException {
+    File entry = getEntry(taskName, fingerprint);
+    for (String outputFile : outputFiles)
+      copy(new File(entry, outputFile), new File(bundlePath, outputFile));
+    entry.setLastModified(System.currentTimeMillis());
+    _log.info("restored outputs of task " + taskName + " from " + entry);
+  }
+
+  /**
+   * Copies the outputs of a task that just ran from the bundle into the cache
+   */
+  public void store(String taskName, String fingerprint,
+      List<String> outputFiles, File bundlePath) throws IOException {
+
+    File taskPath = new File(_cachePath, taskName);
+    File entry = new File(taskPath, fingerprint);
+    if (entry.isDirectory())
+      return;
+
+    File temp = new File(taskPath, TEMP_PREFIX + UUID.randomUUID().toString());
+    for (String outputFile : outputFiles) {
+      File source = new File(bundlePath, outputFile);
+      if (!source.exists()) {
+        _log.warn("task " + taskName + " did not write " + source
+            + ", its outputs will not be cached");
+        delete(temp);
+        return;
+      }
+      copy(source, new File(temp, outputFile));
+    }
+
+    if (!temp.renameTo(entry)) {
+      // Another build stored the same entry in the meantime
+      delete(temp);
+      return;
+    }
+    _log.info("stored outputs of task " + taskName + " in " + entry);
+
+    prune(taskPath);
+  }
+
+  private File getEntry(String taskName, String fingerprint) {
+    return new File(new File(_cachePath, taskName), fingerprint);
+  }
+
+  private void prune(File taskPath) throws IOException {
+
+    File[] entries = taskPath.listFiles();
+    if (entries == null)
+      return;
+
+    List<File> completed = new ArrayList<File>();
+    for (File entry : entries) {
+      if (entry.isDirectory() && !entry.getName().startsWith(TEMP_PREFIX))
+        completed.add(entry);
+    }
+
+    Collections.sort(completed, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return Long.compare(b.lastModified(), a.lastModified());
+      }
+    });
+
+    for (int i = _maxEntriesPerTask; i < completed.size(); i++)
+      delete(completed.get(i));
+  }
+
+  private static void copy(File source, File target) throws IOException {
+    final Path sourcePath = source.toPath();
+    final Path targetPath = target.toPath();
+    if (target.exists())
+      delete(target);
+    target.getParentFile().mkdirs();
+    Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir,
+          BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(targetPath.resolve(sourcePath.relativize(dir)));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+          throws IOException {
+        Files.copy(file, targetPath.resolve(sourcePath.relativize(file)),
+            StandardCopyOption.REPLACE_EXISTING);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static void delete(File file) throws IOException {
+    if (!file.exists())
+      return;
+    Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
+          throws IOException {
+        Files.delete(path);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException ex)
+          throws IOException {
+        if (ex != null)
+          throw ex;
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Accumulates a SHA-1 digest over strings and over the contents of files
+   * and directories.
+   */
+  public static class Fingerprint {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final MessageDigest _digest;
+
+    public Fingerprint() {
+      try {
+        _digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    public Fingerprint add(String value) {
+      if (value == null) {
+        _digest.update((byte) 0);
+      } else {
+        _digest.update((byte) 1);
+        _digest.update(value.getBytes(UTF8));
+        _digest.update((byte) 0);
+      }
+      return this;
+    }
+
+    /**
+     * Adds the contents of a file, or of every file in a directory along with
+     * its relative path, in a stable order
+     */
+    public Fingerprint addFile(File file) throws IOException {
+      addFile(file, "");
+      return this;
+    }
+
+    public String build() {
+      StringBuilder b = new StringBuilder();
+      for (byte value : _digest.digest())
+        b.append(String.format("%02x", value & 0xff));
+      return b.toString();
+    }
+
+    private void addFile(File file, String relativePath) throws IOException {
+      if (file.isDirectory()) {
+        File[] children = file.listFiles();
+        if (children == null)
+          throw new IOException("error listing " + file);
+        Arrays.sort(children);
+        for (File child : children)
+          addFile(child, relativePath + "/" + child.getName());
+        return;
+      }
+      add(relativePath);
+      add(Long.toString(file.length()));
+      InputStream in = new FileInputStream(file);
+      try {
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+          _digest.update(buffer, 0, n);
+      } finally {
+        in.close();
+      }
+    }
+  }
+}
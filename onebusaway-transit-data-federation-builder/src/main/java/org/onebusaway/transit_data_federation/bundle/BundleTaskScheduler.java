@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.bundle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the bundle building tasks, starting each task as soon as the tasks it
+ * depends on have finished. Tasks must be added in an order consistent with
+ * their dependencies. With a single thread, tasks run one after another in the
+ * order they were added.
+ * 
+ * The wall time of each task is recorded, along with the critical path: the
+ * chain of dependent tasks that bounds the total build time no matter how many
+ * threads are used.
+ */
+class BundleTaskScheduler {
+
+  private final int _threads;
+
+  private final Map<String, ScheduledTask> _tasks = new LinkedHashMap<String, ScheduledTask>();
+
+  private long _elapsedTime;
+
+  public BundleTaskScheduler(int threads) {
+    _threads = Math.max(threads, 1);
+  }
+
+  /**
+   * 
+   * @param name the task name
+   * @param task the task to run, or null if there is nothing to run but the
+   *          task still orders its dependents
+   * @param dependsOn names of previously added tasks that must finish first
+   * @param listener notified when the task is started, may be null
+   */
+  public void addTask(String name, Runnable task, Collection<String> dependsOn,
+      Runnable listener) {
+
+    if (_tasks.containsKey(name))
+      throw new IllegalArgumentException("duplicate task: " + name);
+
+    ScheduledTask scheduled = new ScheduledTask(name, task, listener);
+
+    for (String dependency : dependsOn) {
+      ScheduledTask from = _tasks.get(dependency);
+      if (from == null)
+        throw new IllegalArgumentException("task " + name
+            + " depends on unknown or later task " + dependency);
+      if (scheduled._dependencies.add(from))
+        from._dependents.add(scheduled);
+    }
+
+    _tasks.put(name, scheduled);
+  }
+
+  /**
+   * Run all tasks. If a task fails, no further tasks are started, the tasks
+   * already running are allowed to finish and the first failure is rethrown.
+   */
+  public void run() {
+
+    long t0 = System.currentTimeMillis();
+
+    ExecutorService executor = Executors.newFixedThreadPool(_threads);
+
+    try {
+      CompletionService<ScheduledTask> completion = new ExecutorCompletionService<ScheduledTask>(
+          executor);
+
+      Map<ScheduledTask, Integer> remaining = new HashMap<ScheduledTask, Integer>();
+      List<ScheduledTask> ready = new ArrayList<ScheduledTask>();
+
+      for (ScheduledTask task : _tasks.values()) {
+        remaining.put(task, task._dependencies.size());
+        if (task._dependencies.isEmpty())
+          ready.add(task);
+      }
+
+      int running = 0;
+      RuntimeException failure = null;
+
+      while (true) {
+
+        while (failure == null && !ready.isEmpty() && running < _threads) {
+          ScheduledTask task = ready.remove(0);
+          if (task._listener != null)
+            task._listener.run();
+          completion.submit(task);
+          running++;
+        }
+
+        if (running == 0)
+          break;
+
+        ScheduledTask completed = null;
+        try {
+          Future<ScheduledTask> future = completion.take();
+          running--;
+          completed = future.get();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          if (failure == null)
+            failure = new IllegalStateException("interrupted", ex);
+          continue;
+        } catch (ExecutionException ex) {
+          if (failure == null)
+            failure = asRuntimeException(ex.getCause());
+          continue;
+        }
+
+        for (ScheduledTask dependent : completed._dependents) {
+          int count = remaining.get(dependent) - 1;
+          remaining.put(dependent, count);
+          if (count == 0)
+            insertInOrder(ready, dependent);
+        }
+      }
+
+      if (failure != null)
+        throw failure;
+
+    } finally {
+      executor.shutdownNow();
+      _elapsedTime = System.currentTimeMillis() - t0;
+    }
+  }
+
+  /**
+   * @return the wall time of the whole run, in ms
+   */
+  public long getElapsedTime() {
+    return _elapsedTime;
+  }
+
+  /**
+   * @return the wall time of each task that ran, in ms, in the order the tasks
+   *         were added
+   */
+  public Map<String, Long> getTaskTimes() {
+    Map<String, Long> times = new LinkedHashMap<String, Long>();
+    for (ScheduledTask task : _tasks.values()) {
+      if (task._elapsedTime >= 0)
+        times.put(task._name, task._elapsedTime);
+    }
+    return times;
+  }
+
+  /**
+   * @return the chain of dependent tasks with the longest total wall time,
+   *         first task first
+   */
+  public List<String> getCriticalPath() {
+
+    Map<ScheduledTask, Long> finish = new HashMap<ScheduledTask, Long>();
+    Map<ScheduledTask, ScheduledTask> previous = new HashMap<ScheduledTask, ScheduledTask>();
+    ScheduledTask last = null;
+
+    /**
+     * Tasks were added in dependency order, so a single pass suffices
+     */
+    for (ScheduledTask task : _tasks.values()) {
+      long start = 0;
+      ScheduledTask latest = null;
+      for (ScheduledTask dependency : task._dependencies) {
+        long t = finish.get(dependency);
+        if (latest == null || t > start) {
+          start = t;
+          latest = dependency;
+        }
+      }
+      if (latest != null)
+        previous.put(task, latest);
+      long end = start + Math.max(task._elapsedTime, 0);
+      finish.put(task, end);
+      if (last == null || end > finish.get(last))
+        last = task;
+    }
+
+    List<String> path = new ArrayList<String>();
+    for (ScheduledTask task = last; task != null; task = previous.get(task))
+      path.add(task._name);
+    Collections.reverse(path);
+    return path;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Keep ready tasks in the order they were added, so a single-threaded run
+   * matches the configured task order
+   */
+  private void insertInOrder(List<ScheduledTask> ready, ScheduledTask task) {
+    int index = 0;
+    while (index < ready.size() && ready.get(index)._order < task._order)
+      index++;
+    ready.add(index, task);
+  }
+
+  private static RuntimeException asRuntimeException(Throwable ex) {
+    if (ex instanceof RuntimeException)
+      return (RuntimeException) ex;
+    if (ex instanceof Error)
+      throw (Error) ex;
+    return new IllegalStateException(ex);
+  }
+
+  private class ScheduledTask implements Callable<ScheduledTask> {
+
+    private final String _name;
+
+    private final Runnable _task;
+
+    private final Runnable _listener;
+
+    private final int _order;
+
+    private final Set<ScheduledTask> _dependencies = new LinkedHashSet<ScheduledTask>();
+
+    private final List<ScheduledTask> _dependents = new ArrayList<ScheduledTask>();
+
+    private volatile long _elapsedTime = -1;
+
+    public ScheduledTask(String name, Runnable task, Runnable listener) {
+      _name = name;
+      _task = task;
+      _listener = listener;
+      _order = _tasks.size();
+    }
+
+    @Override
+    public ScheduledTask call() {
+      if (_task == null)
+        return this;
+      long t0 = System.currentTimeMillis();
+      try {
+        _task.run();
+      } finally {
+        _elapsedTime = System.currentTimeMillis() - t0;
+      }
+      return this;
+    }
+  }
+}
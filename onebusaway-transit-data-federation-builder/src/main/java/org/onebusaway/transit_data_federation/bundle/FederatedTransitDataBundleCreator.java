@@ -18,23 +18,33 @@ package org.onebusaway.transit_data_federation.bundle;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import org.onebusaway.collections.CollectionsLibrary;
 import org.onebusaway.container.ContainerLibrary;
+import org.onebusaway.container.refresh.RefreshService;
 import org.onebusaway.container.spring.PropertyOverrideConfigurer;
+import org.onebusaway.transit_data_federation.bundle.BundleTaskOutputCache.Fingerprint;
 import org.onebusaway.transit_data_federation.bundle.model.GtfsBundle;
+import org.onebusaway.transit_data_federation.bundle.model.GtfsBundles;
 import org.onebusaway.transit_data_federation.bundle.model.StatusMessages;
 import org.onebusaway.transit_data_federation.bundle.model.TaskDefinition;
+import org.onebusaway.transit_data_federation.bundle.tasks.GtfsReadingSupport;
 import org.onebusaway.transit_data_federation.impl.DirectedGraph;
 import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
@@ -62,6 +72,22 @@ import org.springframework.context.ConfigurableApplicationContext;
  * 
  * {@value #BUNDLE_RESOURCE}
  * 
+ * Tasks run in the order set by their before and after task names. When more
+ * than one task thread is configured (see {@link #setTaskThreads(int)}), tasks
+ * that declare their inputs and outputs (see {@link TaskDefinition#getInputs()})
+ * only wait for the earlier tasks producing their inputs, so independent tasks
+ * run concurrently. The wall time of each task and the critical path through
+ * the task graph are reported once the build completes.
+ * 
+ * Builds can be made incremental with a task output cache (see
+ * {@link #setTaskOutputCachePath(File)}). Each task that declares its output
+ * files (see {@link TaskDefinition#getOutputFiles()}) is fingerprinted by the
+ * build configuration, the code it runs and the fingerprints of the tasks
+ * producing its inputs. Only tasks that read something no earlier task
+ * produces, like the GTFS loading task, include the contents of the GTFS
+ * bundles. When the cache holds outputs for the same fingerprint, they are
+ * copied into the bundle instead of running the task.
+ * 
  * @author bdferris
  * @see FederatedTransitDataBundleCreatorMain
  */
@@ -90,6 +116,16 @@ public class FederatedTransitDataBundleCreator {
   private boolean _randomizeCacheDir = false;
 
   private String _bundleKey;
+
+  private int _taskThreads = 1;
+
+  private File _taskOutputCachePath;
+
+  private int _maxCachedTaskOutputs = 3;
+
+  private List<File> _fingerprintInputPaths = new ArrayList<File>();
+
+  private List<String> _fingerprintInputValues = new ArrayList<String>();
   
   private StatusMessages _status = new StatusMessages();
 
@@ -145,6 +181,57 @@ public class FederatedTransitDataBundleCreator {
     _skipToTask = taskName;
   }
 
+  /**
+   * 
+   * @param taskThreads the number of bundle tasks that may run at the same
+   *          time. Defaults to one, which runs the tasks one after another.
+   */
+  public void setTaskThreads(int taskThreads) {
+    _taskThreads = taskThreads;
+  }
+
+  /**
+   * Enables incremental builds: task outputs are stored in, and when their
+   * fingerprint matches restored from, the specified directory. The directory
+   * can be shared by successive builds.
+   * 
+   * @param taskOutputCachePath the task output cache directory
+   */
+  public void setTaskOutputCachePath(File taskOutputCachePath) {
+    _taskOutputCachePath = taskOutputCachePath;
+  }
+
+  /**
+   * 
+   * @param maxCachedTaskOutputs the number of fingerprints to keep outputs for,
+   *          per task. Defaults to three.
+   */
+  public void setMaxCachedTaskOutputs(int maxCachedTaskOutputs) {
+    _maxCachedTaskOutputs = maxCachedTaskOutputs;
+  }
+
+  /**
+   * The GTFS bundles are part of the fingerprint of every task reading a
+   * resource no earlier task produces. Any other file or directory that such
+   * tasks read should be added here, or a change to it will not invalidate the
+   * cached task outputs.
+   * 
+   * @param path
+   */
+  public void addFingerprintInputPath(File path) {
+    _fingerprintInputPaths.add(path);
+  }
+
+  /**
+   * Like {@link #addFingerprintInputPath(File)}, for build parameters that
+   * tasks read from somewhere other than the bean property overrides
+   * 
+   * @param value
+   */
+  public void addFingerprintInputValue(String value) {
+    _fingerprintInputValues.add(value);
+  }
+
   public void setRandomizeCacheDir(boolean randomizeCacheDir) {
     _randomizeCacheDir = randomizeCacheDir;
   }
@@ -187,30 +274,102 @@ public class FederatedTransitDataBundleCreator {
     // Clear cache files
     FederatedTransitDataBundle bundle = context.getBean(FederatedTransitDataBundle.class);
     clearExistingCacheFiles(bundle);
-    int taskSize = taskNames.size();
-    int i = 0;
+
+    BundleTaskOutputCache outputCache = null;
+    TaskFingerprints fingerprints = null;
+    RefreshService refreshService = null;
+
+    if (_taskOutputCachePath != null) {
+      outputCache = new BundleTaskOutputCache(_taskOutputCachePath,
+          _maxCachedTaskOutputs);
+      fingerprints = new TaskFingerprints(context, getConfigFingerprint(
+          taskDefinitions, taskNames));
+      Map<String, RefreshService> refreshServices = context.getBeansOfType(RefreshService.class);
+      if (!refreshServices.isEmpty())
+        refreshService = refreshServices.values().iterator().next();
+    }
+
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(_taskThreads);
+    TaskCounter counter = new TaskCounter(taskNames.size());
+
+    /**
+     * A task that declares its inputs waits for the tasks before it that
+     * produce them, and a task that declares its outputs waits for the tasks
+     * before it that read or write them. A task that does not declare its
+     * inputs and outputs waits for every task before it, and every task after
+     * it waits for it.
+     */
+    Map<String, List<String>> producersByResource = new HashMap<String, List<String>>();
+    Map<String, List<String>> consumersByResource = new HashMap<String, List<String>>();
+    List<String> sinceBarrier = new ArrayList<String>();
+    String barrier = null;
+
     for (TaskDefinition def : taskDefinitions) {
       String taskName = def.getTaskName();
+
+      Set<String> dependsOn = new LinkedHashSet<String>();
+      Set<String> inputProducers = new LinkedHashSet<String>();
+      if (def.hasDeclaredResources()) {
+        for (String input : def.getInputs())
+          addAll(inputProducers, producersByResource.get(input));
+        dependsOn.addAll(inputProducers);
+        for (String output : def.getOutputs()) {
+          addAll(dependsOn, producersByResource.get(output));
+          addAll(dependsOn, consumersByResource.get(output));
+        }
+        dependsOn.remove(taskName);
+        if (barrier != null)
+          dependsOn.add(barrier);
+      } else {
+        if (barrier != null)
+          dependsOn.add(barrier);
+        dependsOn.addAll(sinceBarrier);
+      }
+
+      Runnable task = null;
+      Runnable listener = null;
+      Class<?> taskType = null;
+
       if (taskNames.contains(taskName)) {
-        i++;
-        System.out.println("== " + taskName + " =====>");
-        _status.addMessage("running task " + taskName + " (" + i + "/" + taskSize + ")");
-        Runnable task = getTask(context, def.getTask(), def.getTaskBeanName());
+        task = getTask(context, def.getTask(), def.getTaskBeanName());
         if (task == null)
           throw new IllegalStateException("unknown task bean with name: "
               + taskName);
-        task.run();
+        taskType = task.getClass();
+        if (fingerprints != null && !def.getOutputFiles().isEmpty())
+          task = new CachedTask(task, def, fingerprints, outputCache,
+              bundle.getPath(), refreshService);
+        listener = new TaskStartedListener(taskName, false, counter);
       } else {
-        Runnable task = getTask(context, def.getTaskWhenSkipped(),
+        task = getTask(context, def.getTaskWhenSkipped(),
             def.getTaskWhenSkippedBeanName());
-        if (task != null) {
-          System.out.println("== skipping " + taskName + " =====>");
-          _status.addMessage("skipping task " + taskName);
-          task.run();
-        }
+        if (task != null)
+          listener = new TaskStartedListener(taskName, true, counter);
+      }
+
+      if (fingerprints != null && def.hasDeclaredResources())
+        fingerprints.addTask(taskName, taskType, inputProducers,
+            readsBuildInputs(def, producersByResource));
+
+      scheduler.addTask(taskName, task, dependsOn, listener);
+
+      for (String input : def.getInputs())
+        put(consumersByResource, input, taskName);
+      for (String output : def.getOutputs())
+        put(producersByResource, output, taskName);
+
+      if (def.hasDeclaredResources()) {
+        sinceBarrier.add(taskName);
+      } else {
+        barrier = taskName;
+        sinceBarrier.clear();
       }
     }
 
+    scheduler.run();
+
+    reportTaskTimes(scheduler);
+
     // We don't need this context anymore
     if (closeContextOnCompletion) {
       context.stop();
@@ -410,8 +569,409 @@ public class FederatedTransitDataBundleCreator {
     return new HashSet<String>(tasks);
   }
 
+  /**
+   * The build configuration that every task fingerprint covers: the context
+   * paths, the bean property overrides and the tasks selected to run
+   */
+  private String getConfigFingerprint(List<TaskDefinition> taskDefinitions,
+      Set<String> taskNames) {
+    Fingerprint config = new Fingerprint();
+    for (String contextPath : _contextPaths)
+      config.add(contextPath);
+    if (_additionalBeanPropertyOverrides != null) {
+      Map<String, String> overrides = new TreeMap<String, String>();
+      for (String name : _additionalBeanPropertyOverrides.stringPropertyNames())
+        overrides.put(name, _additionalBeanPropertyOverrides.getProperty(name));
+      for (Map.Entry<String, String> entry : overrides.entrySet())
+        config.add(entry.getKey()).add(entry.getValue());
+    }
+    for (TaskDefinition def : taskDefinitions) {
+      config.add(def.getTaskName());
+      config.add(Boolean.toString(taskNames.contains(def.getTaskName())));
+    }
+    return config.build();
+  }
+
+  /**
+   * 
+   * @return a fingerprint of the GTFS bundles and the additional fingerprint
+   *         inputs, or null if a GTFS bundle has no local path to read
+   */
+  private String getBuildInputsFingerprint(ApplicationContext context)
+      throws IOException {
+
+    GtfsBundles gtfsBundles = null;
+    try {
+      gtfsBundles = GtfsReadingSupport.getGtfsBundles(context);
+    } catch (BeansException ex) {
+      return null;
+    } catch (IllegalStateException ex) {
+      return null;
+    }
+
+    Fingerprint f = new Fingerprint();
+
+    for (GtfsBundle gtfsBundle : gtfsBundles.getBundles()) {
+      File path = gtfsBundle.getPath();
+      if (path == null || !path.exists())
+        return null;
+      f.addFile(path);
+      f.add(gtfsBundle.getDefaultAgencyId());
+      Map<String, String> mappings = new TreeMap<String, String>();
+      if (gtfsBundle.getAgencyIdMappings() != null)
+        mappings.putAll(gtfsBundle.getAgencyIdMappings());
+      for (Map.Entry<String, String> entry : mappings.entrySet())
+        f.add(entry.getKey()).add(entry.getValue());
+    }
+
+    for (File path : _fingerprintInputPaths) {
+      f.add(path.getPath());
+      if (path.exists())
+        f.addFile(path);
+    }
+
+    for (String value : _fingerprintInputValues)
+      f.add(value);
+
+    return f.build();
+  }
+
+  /**
+   * A task reads the build inputs directly unless every resource it reads is
+   * produced by an earlier task
+   */
+  private static boolean readsBuildInputs(TaskDefinition def,
+      Map<String, List<String>> producersByResource) {
+    if (def.getInputs().isEmpty())
+      return true;
+    for (String input : def.getInputs()) {
+      if (!producersByResource.containsKey(input))
+        return true;
+    }
+    return false;
+  }
+
+  private static void addAll(Set<String> target, List<String> values) {
+    if (values != null)
+      target.addAll(values);
+  }
+
+  private static void put(Map<String, List<String>> map, String key,
+      String value) {
+    List<String> values = map.get(key);
+    if (values == null) {
+      values = new ArrayList<String>();
+      map.put(key, values);
+    }
+    values.add(value);
+  }
+
+  private void reportTaskTimes(BundleTaskScheduler scheduler) {
+
+    System.out.println("== task times =====>");
+    for (Map.Entry<String, Long> entry : scheduler.getTaskTimes().entrySet()) {
+      String message = "task " + entry.getKey() + " took "
+          + formatTime(entry.getValue());
+      System.out.println(message);
+      _status.addMessage(message);
+    }
+
+    List<String> path = scheduler.getCriticalPath();
+    Map<String, Long> times = scheduler.getTaskTimes();
+    long pathTime = 0;
+    for (String taskName : path) {
+      Long time = times.get(taskName);
+      if (time != null)
+        pathTime += time;
+    }
+
+    String message = "critical path " + path + " took "
+        + formatTime(pathTime) + " of " + formatTime(scheduler.getElapsedTime());
+    System.out.println(message);
+    _status.addMessage(message);
+  }
+
+  private static String formatTime(long ms) {
+    return String.format("%.1fs", ms / 1000.0);
+  }
+
   private boolean isTaskEnabled(TaskDefinition taskDef) {
     return _onlyTasks.contains(taskDef.getTaskName())
         || _includeTasks.contains(taskDef.getTaskName()) || taskDef.isEnabled();
   }
+
+  /**
+   * Announces a task as the scheduler starts it. Runs on the thread driving the
+   * build, so the counter needs no synchronization.
+   */
+  private class TaskStartedListener implements Runnable {
+
+    private final String _taskName;
+
+    private final boolean _skipped;
+
+    private final TaskCounter _counter;
+
+    public TaskStartedListener(String taskName, boolean skipped,
+        TaskCounter counter) {
+      _taskName = taskName;
+      _skipped = skipped;
+      _counter = counter;
+    }
+
+    @Override
+    public void run() {
+      if (_skipped) {
+        System.out.println("== skipping " + _taskName + " =====>");
+        _status.addMessage("skipping task " + _taskName);
+      } else {
+        int i = ++_counter.started;
+        System.out.println("== " + _taskName + " =====>");
+        _status.addMessage("running task " + _taskName + " (" + i + "/"
+            + _counter.total + ")");
+      }
+    }
+  }
+
+  /**
+   * Computes task fingerprints when the tasks run rather than when the build
+   * starts, since tasks that do not declare their resources may rewrite the
+   * GTFS before the first cacheable task reads it. A task's fingerprint covers
+   * the build configuration, the code of the task and the builder, and the
+   * fingerprints of the tasks producing its inputs, plus the build inputs if
+   * it reads them directly. A task that does not run in this build, or that
+   * depends on one, has no fingerprint.
+   */
+  private class TaskFingerprints {
+
+    private final ApplicationContext _context;
+
+    private final String _configFingerprint;
+
+    private final Map<String, Class<?>> _typesByTask = new HashMap<String, Class<?>>();
+
+    private final Map<String, Set<String>> _inputProducersByTask = new HashMap<String, Set<String>>();
+
+    private final Set<String> _tasksReadingBuildInputs = new HashSet<String>();
+
+    private final Map<String, String> _fingerprintsByTask = new HashMap<String, String>();
+
+    private final Map<String, String> _fingerprintsByCodeSource = new HashMap<String, String>();
+
+    private boolean _buildInputsComputed = false;
+
+    private String _buildInputs;
+
+    public TaskFingerprints(ApplicationContext context, String configFingerprint) {
+      _context = context;
+      _configFingerprint = configFingerprint;
+    }
+
+    /**
+     * 
+     * @param taskName
+     * @param taskType the class of the task, or null if it does not run in
+     *          this build
+     * @param inputProducers the tasks producing the inputs of the task
+     * @param readsBuildInputs whether the task reads the GTFS bundles and
+     *          other build inputs directly
+     */
+    public void addTask(String taskName, Class<?> taskType,
+        Set<String> inputProducers, boolean readsBuildInputs) {
+      _typesByTask.put(taskName, taskType);
+      _inputProducersByTask.put(taskName, inputProducers);
+      if (readsBuildInputs)
+        _tasksReadingBuildInputs.add(taskName);
+    }
+
+    /**
+     * 
+     * @param taskName
+     * @return the fingerprint of the task, or null if it can't be computed
+     */
+    public synchronized String getFingerprint(String taskName) {
+
+      if (_fingerprintsByTask.containsKey(taskName))
+        return _fingerprintsByTask.get(taskName);
+
+      String fingerprint = null;
+      Class<?> taskType = _typesByTask.get(taskName);
+      String code = taskType == null ? null : getCodeFingerprint(taskType);
+
+      if (code != null) {
+        Fingerprint f = new Fingerprint();
+        f.add(_configFingerprint).add(taskName).add(code);
+        boolean known = true;
+        if (_tasksReadingBuildInputs.contains(taskName)) {
+          if (getBuildInputs() == null)
+            known = false;
+          else
+            f.add(_buildInputs);
+        }
+        for (String producer : _inputProducersByTask.get(taskName)) {
+          if (!known)
+            break;
+          String producerFingerprint = getFingerprint(producer);
+          if (producerFingerprint == null) {
+            known = false;
+            break;
+          }
+          f.add(producer).add(producerFingerprint);
+        }
+        if (known)
+          fingerprint = f.build();
+      }
+
+      _fingerprintsByTask.put(taskName, fingerprint);
+      return fingerprint;
+    }
+
+    /**
+     * 
+     * @return a fingerprint of the task class and of the jars or class
+     *         directories of the task, the builder and the federation classes
+     *         it builds, or null if one of them can't be read
+     */
+    private String getCodeFingerprint(Class<?> taskType) {
+      Fingerprint f = new Fingerprint();
+      f.add(taskType.getName());
+      for (Class<?> type : new Class<?>[] {
+          taskType, FederatedTransitDataBundleCreator.class,
+          FederatedTransitDataBundle.class}) {
+        String codeSource = getCodeSourceFingerprint(type);
+        if (codeSource == null)
+          return null;
+        f.add(codeSource);
+      }
+      return f.build();
+    }
+
+    private String getCodeSourceFingerprint(Class<?> type) {
+
+      CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+      if (codeSource == null || codeSource.getLocation() == null)
+        return null;
+      URL location = codeSource.getLocation();
+      String key = location.toString();
+
+      if (_fingerprintsByCodeSource.containsKey(key))
+        return _fingerprintsByCodeSource.get(key);
+
+      String fingerprint = null;
+      if ("file".equals(location.getProtocol())) {
+        try {
+          File path = new File(location.toURI());
+          if (path.exists())
+            fingerprint = new Fingerprint().addFile(path).build();
+        } catch (URISyntaxException ex) {
+          fingerprint = null;
+        } catch (IOException ex) {
+          throw new IllegalStateException("error fingerprinting " + location,
+              ex);
+        }
+      }
+
+      if (fingerprint == null) {
+        String message = "task output cache disabled for tasks loaded from "
+            + location + ": the code could not be fingerprinted";
+        System.out.println(message);
+        _status.addMessage(message);
+      }
+
+      _fingerprintsByCodeSource.put(key, fingerprint);
+      return fingerprint;
+    }
+
+    private String getBuildInputs() {
+      if (!_buildInputsComputed) {
+        _buildInputsComputed = true;
+        try {
+          _buildInputs = getBuildInputsFingerprint(_context);
+        } catch (IOException ex) {
+          throw new IllegalStateException(
+              "error fingerprinting the build inputs", ex);
+        }
+        if (_buildInputs == null) {
+          String message = "task output cache disabled: the build inputs could not be fingerprinted";
+          System.out.println(message);
+          _status.addMessage(message);
+        }
+      }
+      return _buildInputs;
+    }
+  }
+
+  /**
+   * Restores the output files of a task from the task output cache in place of
+   * running it, then refreshes its outputs as the task itself would have. On a
+   * cache miss, runs the task and stores its output files.
+   */
+  private class CachedTask implements Runnable {
+
+    private final Runnable _task;
+
+    private final TaskDefinition _def;
+
+    private final TaskFingerprints _fingerprints;
+
+    private final BundleTaskOutputCache _outputCache;
+
+    private final File _bundlePath;
+
+    private final RefreshService _refreshService;
+
+    public CachedTask(Runnable task, TaskDefinition def,
+        TaskFingerprints fingerprints, BundleTaskOutputCache outputCache,
+        File bundlePath, RefreshService refreshService) {
+      _task = task;
+      _def = def;
+      _fingerprints = fingerprints;
+      _outputCache = outputCache;
+      _bundlePath = bundlePath;
+      _refreshService = refreshService;
+    }
+
+    @Override
+    public void run() {
+
+      String taskName = _def.getTaskName();
+      String fingerprint = _fingerprints.getFingerprint(taskName);
+
+      if (fingerprint == null) {
+        _task.run();
+        return;
+      }
+
+      try {
+        if (_outputCache.contains(taskName, fingerprint, _def.getOutputFiles())) {
+          _outputCache.restore(taskName, fingerprint, _def.getOutputFiles(),
+              _bundlePath);
+          if (_refreshService != null) {
+            for (String output : _def.getOutputs())
+              _refreshService.refresh(output);
+          }
+          System.out.println("   reused cached outputs of " + taskName);
+          _status.addMessage("reused cached outputs of task " + taskName);
+        } else {
+          _task.run();
+          _outputCache.store(taskName, fingerprint, _def.getOutputFiles(),
+              _bundlePath);
+        }
+      } catch (IOException ex) {
+        throw new IllegalStateException("error accessing the cached outputs of task "
+            + taskName, ex);
+      }
+    }
+  }
+
+  private static class TaskCounter {
+
+    private final int total;
+
+    private int started = 0;
+
+    public TaskCounter(int total) {
+      this.total = total;
+    }
+  }
 }
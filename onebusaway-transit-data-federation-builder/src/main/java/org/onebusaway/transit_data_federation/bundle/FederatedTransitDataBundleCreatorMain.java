@@ -80,6 +80,10 @@ public class FederatedTransitDataBundleCreatorMain {
 
   private static final String ARG_RANDOMIZE_CACHE_DIR = "randomizeCacheDir";
 
+  private static final String ARG_TASK_THREADS = "taskThreads";
+
+  private static final String ARG_TASK_OUTPUT_CACHE = "taskOutputCache";
+
   private static final String ARG_ADDITIONAL_RESOURCES_DIRECTORY = "additionalResourcesDirectory";
 
   public static void main(String[] args) throws Exception {
@@ -164,6 +168,14 @@ public class FederatedTransitDataBundleCreatorMain {
       if (commandLine.hasOption(ARG_RANDOMIZE_CACHE_DIR))
         creator.setRandomizeCacheDir(true);
 
+      if (commandLine.hasOption(ARG_TASK_THREADS))
+        creator.setTaskThreads(Integer.parseInt(
+            commandLine.getOptionValue(ARG_TASK_THREADS)));
+
+      if (commandLine.hasOption(ARG_TASK_OUTPUT_CACHE))
+        creator.setTaskOutputCachePath(new File(
+            commandLine.getOptionValue(ARG_TASK_OUTPUT_CACHE)));
+
       if (commandLine.hasOption(ARG_BUNDLE_KEY)) {
         String key = commandLine.getOptionValue(ARG_BUNDLE_KEY);
         creator.setBundleKey(key);
@@ -233,6 +245,8 @@ public class FederatedTransitDataBundleCreatorMain {
     options.addOption(ARG_DATASOURCE_PASSWORD, true, "");
     options.addOption(ARG_BUNDLE_KEY, true, "");
     options.addOption(ARG_RANDOMIZE_CACHE_DIR, false, "");
+    options.addOption(ARG_TASK_THREADS, true, "");
+    options.addOption(ARG_TASK_OUTPUT_CACHE, true, "");
     options.addOption(ARG_ADDITIONAL_RESOURCES_DIRECTORY, true, "");
 
     Option dOption = new Option("D", "use value for given property");
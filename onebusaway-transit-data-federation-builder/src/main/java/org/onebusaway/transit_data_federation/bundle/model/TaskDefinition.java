@@ -26,6 +26,12 @@ public class TaskDefinition {
 
   private List<String> afterTaskNames = new ArrayList<String>();
 
+  private List<String> inputs = new ArrayList<String>();
+
+  private List<String> outputs = new ArrayList<String>();
+
+  private List<String> outputFiles = new ArrayList<String>();
+
   private Runnable task;
 
   private String taskBeanName;
@@ -64,6 +70,61 @@ public class TaskDefinition {
     this.afterTaskNames.addAll(afterTaskNames);
   }
 
+  /**
+   * Resources read by the task, matched against the outputs of other tasks.
+   * Together with {@link #getOutputs()}, these let the bundle creator run
+   * independent tasks concurrently. A task that declares neither inputs nor
+   * outputs is assumed to depend on every task before it.
+   */
+  public List<String> getInputs() {
+    return inputs;
+  }
+
+  public void setInput(String input) {
+    this.inputs.add(input);
+  }
+
+  public void setInputs(List<String> inputs) {
+    this.inputs.addAll(inputs);
+  }
+
+  /**
+   * Resources written by the task. See {@link #getInputs()}.
+   */
+  public List<String> getOutputs() {
+    return outputs;
+  }
+
+  public void setOutput(String output) {
+    this.outputs.add(output);
+  }
+
+  public void setOutputs(List<String> outputs) {
+    this.outputs.addAll(outputs);
+  }
+
+  /**
+   * The files the task writes, relative to the bundle path. A task that
+   * declares its output files can have them restored from the task output
+   * cache instead of running again when its inputs have not changed. See
+   * {@link org.onebusaway.transit_data_federation.bundle.FederatedTransitDataBundleCreator#setTaskOutputCachePath(java.io.File)}
+   */
+  public List<String> getOutputFiles() {
+    return outputFiles;
+  }
+
+  public void setOutputFile(String outputFile) {
+    this.outputFiles.add(outputFile);
+  }
+
+  public void setOutputFiles(List<String> outputFiles) {
+    this.outputFiles.addAll(outputFiles);
+  }
+
+  public boolean hasDeclaredResources() {
+    return !inputs.isEmpty() || !outputs.isEmpty();
+  }
+
   public Runnable getTask() {
     return task;
   }
@@ -107,7 +168,8 @@ public class TaskDefinition {
   @Override
   public String toString() {
     return "TaskDef(taskName=" + taskName + " beforeTaskName=" + beforeTaskName
-        + " afterTaskNames=" + afterTaskNames + " task=" + task
+        + " afterTaskNames=" + afterTaskNames + " inputs=" + inputs
+        + " outputs=" + outputs + " outputFiles=" + outputFiles + " task=" + task
         + " taskBeanName=" + taskBeanName + " enabled=" + enabled + ")";
   }
 }
@@ -22,6 +22,7 @@ import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
@@ -29,6 +30,7 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.onebusaway.container.refresh.RefreshService;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.transit_data_federation.impl.RefreshableResources;
@@ -118,6 +120,12 @@ public class GenerateStopSearchIndexTask implements Runnable {
     document.add(new TextField(StopSearchIndexConstants.FIELD_STOP_ID, id.getId(),
         Field.Store.YES));
 
+    // Doc values let the search service resolve ids without stored fields
+    document.add(new SortedDocValuesField(
+        StopSearchIndexConstants.FIELD_AGENCY_ID, new BytesRef(id.getAgencyId())));
+    document.add(new SortedDocValuesField(
+        StopSearchIndexConstants.FIELD_STOP_ID, new BytesRef(id.getId())));
+
     // Code
     if (narrative.getCode() != null && narrative.getCode().length() > 0)
       document.add(new StringField(StopSearchIndexConstants.FIELD_STOP_CODE,
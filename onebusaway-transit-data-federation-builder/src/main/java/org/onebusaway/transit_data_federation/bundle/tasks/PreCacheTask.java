@@ -19,8 +19,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
 
 import org.onebusaway.exceptions.ServiceException;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -80,7 +80,7 @@ public class PreCacheTask implements Runnable {
 
     // Clear all existing cache elements
     for (String cacheName : _cacheManager.getCacheNames()) {
-      Cache cache = _cacheManager.getCache(cacheName);
+      Ehcache cache = _cacheManager.getEhcache(cacheName);
       cache.removeAll();
     }
 
@@ -24,6 +24,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.onebusaway.collections.Min;
 import org.onebusaway.container.ConfigurationParameter;
@@ -34,6 +40,7 @@ import org.onebusaway.geospatial.services.UTMProjection;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.transit_data_federation.impl.shapes.PointAndIndex;
 import org.onebusaway.transit_data_federation.impl.shapes.ShapePointsLibrary;
+import org.onebusaway.transit_data_federation.impl.shapes.ShapeSegmentIndex;
 import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
 import org.onebusaway.transit_data_federation.impl.transit_graph.StopTimeEntryImpl;
 import org.onebusaway.transit_data_federation.impl.transit_graph.TripEntryImpl;
@@ -59,7 +66,17 @@ public class DistanceAlongShapeLibrary {
   
   private boolean _lenientStopShapeAssignment = false;
 
-  private Set<AgencyAndId> _shapeIdsWeHavePrinted = new HashSet<AgencyAndId>();
+  private boolean _useShapeSegmentIndex = true;
+
+  private int _maxCachedPatterns = 100000;
+
+  /**
+   * The outcome of each distinct shape + stop sequence: either the
+   * PointAndIndex[] or a {@link PatternFailure}
+   */
+  private ConcurrentMap<PatternKey, Object> _distancesByPattern = new ConcurrentHashMap<PatternKey, Object>();
+
+  private Set<AgencyAndId> _shapeIdsWeHavePrinted = Collections.synchronizedSet(new HashSet<AgencyAndId>());
 
   /**
    * When computing stop-to-shape matches, we will consider multiple potential
@@ -118,10 +135,135 @@ public class DistanceAlongShapeLibrary {
   public void setLenientStopShapeAssignment(boolean lenient) {
     _lenientStopShapeAssignment = lenient;
   }
+
+  /**
+   * When true, the potential assignments for each stop are found with a
+   * {@link ShapeSegmentIndex} over the shape instead of a scan of every shape
+   * segment. The assignments are the same either way.
+   * 
+   * @param useShapeSegmentIndex
+   */
+  @ConfigurationParameter
+  public void setUseShapeSegmentIndex(boolean useShapeSegmentIndex) {
+    _useShapeSegmentIndex = useShapeSegmentIndex;
+  }
+
+  /**
+   * Most trips share their shape and stop sequence with many other trips of
+   * the same pattern, so we compute the distances along the shape once per
+   * distinct shape + stop sequence and reuse them. This bounds the number of
+   * patterns we hold on to; the cache is cleared when it fills up. Set to zero
+   * to disable the cache.
+   * 
+   * @param maxCachedPatterns
+   */
+  @ConfigurationParameter
+  public void setMaxCachedPatterns(int maxCachedPatterns) {
+    _maxCachedPatterns = maxCachedPatterns;
+  }
+
+  /**
+   * Drops the cached per-pattern distances once they are no longer needed
+   */
+  public void clearCache() {
+    _distancesByPattern.clear();
+  }
+
+  /**
+   * Computes the distances along the shape for each distinct shape + stop
+   * sequence in the given trips in parallel, so that the subsequent calls to
+   * {@link #getDistancesAlongShape(ShapePoints, List)} for those trips are
+   * served from the cache. Failures surface from
+   * {@link #getDistancesAlongShape(ShapePoints, List)} as before.
+   * 
+   * @param shapePoints the shape for each trip
+   * @param stopTimes the stop times for each trip
+   * @param executor
+   * @throws InterruptedException
+   */
+  public void computeDistancesAlongShape(List<ShapePoints> shapePoints,
+      List<List<StopTimeEntryImpl>> stopTimes, ExecutorService executor)
+      throws InterruptedException {
+
+    if (_maxCachedPatterns <= 0)
+      return;
+
+    Set<PatternKey> keys = new HashSet<PatternKey>();
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+    for (int i = 0; i < shapePoints.size(); i++) {
+      final ShapePoints shape = shapePoints.get(i);
+      final List<StopTimeEntryImpl> stopTimesForTrip = stopTimes.get(i);
+      PatternKey key = new PatternKey(shape, stopTimesForTrip);
+      if (_distancesByPattern.containsKey(key) || !keys.add(key))
+        continue;
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          try {
+            return getCachedDistancesAlongShape(shape, stopTimesForTrip);
+          } catch (RuntimeException ex) {
+            // not cached, rethrown for the trip by getDistancesAlongShape
+            return null;
+          }
+        }
+      });
+    }
+
+    if (tasks.isEmpty())
+      return;
+
+    for (Future<Object> future : executor.invokeAll(tasks)) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        throw new IllegalStateException(ex.getCause());
+      }
+    }
+  }
+
   public PointAndIndex[] getDistancesAlongShape(ShapePoints shapePoints,
       List<StopTimeEntryImpl> stopTimes)
       throws DistanceAlongShapeException {
 
+    if (_maxCachedPatterns <= 0)
+      return computeDistancesAlongShape(shapePoints, stopTimes);
+
+    Object result = getCachedDistancesAlongShape(shapePoints, stopTimes);
+
+    if (result instanceof PatternFailure)
+      throw ((PatternFailure) result).createException(stopTimes);
+    return ((PointAndIndex[]) result).clone();
+  }
+
+  /**
+   * Runtime exceptions are not cached: their messages describe the trip they
+   * were thrown for, so they are recomputed and thrown for each trip.
+   */
+  private Object getCachedDistancesAlongShape(ShapePoints shapePoints,
+      List<StopTimeEntryImpl> stopTimes) {
+
+    PatternKey key = new PatternKey(shapePoints, stopTimes);
+    Object result = _distancesByPattern.get(key);
+
+    if (result == null) {
+      try {
+        result = computeDistancesAlongShape(shapePoints, stopTimes);
+      } catch (DistanceAlongShapeException ex) {
+        result = new PatternFailure(ex, stopTimes);
+      }
+      if (_distancesByPattern.size() >= _maxCachedPatterns)
+        _distancesByPattern.clear();
+      _distancesByPattern.put(key, result);
+    }
+
+    return result;
+  }
+
+  private PointAndIndex[] computeDistancesAlongShape(ShapePoints shapePoints,
+      List<StopTimeEntryImpl> stopTimes)
+      throws DistanceAlongShapeException {
+
     PointAndIndex[] stopTimePoints = new PointAndIndex[stopTimes.size()];
 
     UTMProjection projection = UTMLibrary.getProjectionForPoint(
@@ -249,14 +391,25 @@ public class DistanceAlongShapeLibrary {
 
     List<List<PointAndIndex>> possibleAssignments = new ArrayList<List<PointAndIndex>>();
 
+    ShapeSegmentIndex index = null;
+    if (_useShapeSegmentIndex)
+      index = _shapePointsLibrary.createSegmentIndex(projectedShapePoints);
+
     for (StopTimeEntryImpl stopTime : stopTimes) {
 
       StopEntryImpl stop = stopTime.getStop();
       XYPoint stopPoint = projection.forward(stop.getStopLocation());
 
-      List<PointAndIndex> assignments = _shapePointsLibrary.computePotentialAssignments(
-          projectedShapePoints, shapePointDistance, stopPoint, 0,
-          projectedShapePoints.size());
+      List<PointAndIndex> assignments;
+      if (index != null) {
+        assignments = _shapePointsLibrary.computePotentialAssignments(
+            projectedShapePoints, shapePointDistance, index, stopPoint, 0,
+            projectedShapePoints.size());
+      } else {
+        assignments = _shapePointsLibrary.computePotentialAssignments(
+            projectedShapePoints, shapePointDistance, stopPoint, 0,
+            projectedShapePoints.size());
+      }
 
       possibleAssignments.add(assignments);
     }
@@ -614,6 +767,94 @@ public class DistanceAlongShapeLibrary {
     throw new InvalidStopToShapeMappingException(first.getTrip());
   }
 
+  /**
+   * The distances along a shape only depend on the shape and on the stops,
+   * not on the trip, so trips of the same pattern share the result
+   */
+  private static class PatternKey {
+
+    private final ShapePoints _shapePoints;
+
+    private final StopEntryImpl[] _stops;
+
+    private final int _hashCode;
+
+    public PatternKey(ShapePoints shapePoints, List<StopTimeEntryImpl> stopTimes) {
+      _shapePoints = shapePoints;
+      _stops = new StopEntryImpl[stopTimes.size()];
+      for (int i = 0; i < _stops.length; i++)
+        _stops[i] = stopTimes.get(i).getStop();
+      _hashCode = 31 * System.identityHashCode(shapePoints)
+          + Arrays.hashCode(_stops);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof PatternKey))
+        return false;
+      PatternKey other = (PatternKey) obj;
+      return _shapePoints == other._shapePoints
+          && Arrays.equals(_stops, other._stops);
+    }
+  }
+
+  /**
+   * A cached failure to map the stops of a pattern to its shape. The exception
+   * is created anew for each trip, so it names the trip being processed rather
+   * than the trip that first failed.
+   */
+  private static class PatternFailure {
+
+    /**
+     * The index of the stop that is too far from the shape, or -1 for an
+     * invalid stop to shape mapping
+     */
+    private final int _stopIndex;
+
+    private final PointAndIndex _pointAndIndex;
+
+    private final CoordinatePoint _point;
+
+    public PatternFailure(DistanceAlongShapeException ex,
+        List<StopTimeEntryImpl> stopTimes) {
+      if (ex instanceof StopIsTooFarFromShapeException) {
+        StopIsTooFarFromShapeException tooFar = (StopIsTooFarFromShapeException) ex;
+        _stopIndex = indexOf(stopTimes, tooFar.getStopTime());
+        _pointAndIndex = tooFar.getPointAndIndex();
+        _point = tooFar.getPoint();
+      } else {
+        _stopIndex = -1;
+        _pointAndIndex = null;
+        _point = null;
+      }
+    }
+
+    public DistanceAlongShapeException createException(
+        List<StopTimeEntryImpl> stopTimes) {
+      if (_stopIndex < 0)
+        return new InvalidStopToShapeMappingException(
+            stopTimes.get(0).getTrip());
+      return new StopIsTooFarFromShapeException(stopTimes.get(_stopIndex),
+          _pointAndIndex, _point);
+    }
+
+    private static int indexOf(List<StopTimeEntryImpl> stopTimes,
+        StopTimeEntry stopTime) {
+      for (int i = 0; i < stopTimes.size(); i++) {
+        if (stopTimes.get(i) == stopTime)
+          return i;
+      }
+      return -1;
+    }
+  }
+
   private static class Assignment implements Comparable<Assignment> {
     private final List<PointAndIndex> assigment;
     private final double score;
@@ -88,6 +88,21 @@ public class StopTimeEntriesFactory {
   public List<StopTimeEntryImpl> processStopTimes(TransitGraphImpl graph,
       List<StopTime> stopTimes, TripEntryImpl tripEntry, ShapePoints shapePoints) {
 
+    PendingStopTimes pending = createStopTimeEntries(graph, stopTimes,
+        tripEntry);
+    return completeStopTimeEntries(pending, shapePoints);
+  }
+
+  /**
+   * The first half of {@link #processStopTimes}: creates the stop time entries
+   * for a trip, without their distance along the shape or their times. That
+   * leaves the expensive stop-to-shape matching for
+   * {@link #completeStopTimeEntries(PendingStopTimes, ShapePoints)}, so that
+   * it can be done for many trips at once.
+   */
+  public PendingStopTimes createStopTimeEntries(TransitGraphImpl graph,
+      List<StopTime> stopTimes, TripEntryImpl tripEntry) {
+
     // In case the list is unmodifiable
     //stopTimes = new ArrayList<StopTime>(stopTimes);
 	ArrayList<StopTime> newStopTimes = new ArrayList<StopTime>(stopTimes.size());
@@ -124,6 +139,19 @@ public class StopTimeEntriesFactory {
       stopTime.setTotalStopsInTrip(stopTimeEntries.size());
     }
 
+    return new PendingStopTimes(stopTimes, stopTimeEntries);
+  }
+
+  /**
+   * The second half of {@link #processStopTimes}: sets the distance along the
+   * shape and the arrival and departure times of each stop time entry.
+   */
+  public List<StopTimeEntryImpl> completeStopTimeEntries(
+      PendingStopTimes pending, ShapePoints shapePoints) {
+
+    List<StopTime> stopTimes = pending.stopTimes;
+    List<StopTimeEntryImpl> stopTimeEntries = pending.stopTimeEntries;
+
     ensureStopTimesHaveShapeDistanceTraveledSet(stopTimeEntries, shapePoints);
 
     removeDuplicateStopTimes(stopTimes);
@@ -251,7 +279,8 @@ private void removeDuplicateStopTimes(List<StopTime> stopTimes) {
         distanceTraveledSet = true;
       } catch (StopIsTooFarFromShapeException ex) {
         StopTimeEntry stopTime = ex.getStopTime();
-        TripEntry trip = stopTime.getTrip();
+        // the exception may come from another trip with the same pattern
+        TripEntry trip = stopTimes.get(0).getTrip();
         StopEntry stop = stopTime.getStop();
         AgencyAndId shapeId = trip.getShapeId();
         CoordinatePoint point = ex.getPoint();
@@ -505,6 +534,23 @@ private void removeDuplicateStopTimes(List<StopTime> stopTimes) {
     }
   }
 
+  public static class PendingStopTimes {
+
+    private final List<StopTime> stopTimes;
+
+    private final List<StopTimeEntryImpl> stopTimeEntries;
+
+    private PendingStopTimes(List<StopTime> stopTimes,
+        List<StopTimeEntryImpl> stopTimeEntries) {
+      this.stopTimes = stopTimes;
+      this.stopTimeEntries = stopTimeEntries;
+    }
+
+    public List<StopTimeEntryImpl> getStopTimeEntries() {
+      return stopTimeEntries;
+    }
+  }
+
   private static class StopTimeComparator implements Comparator<StopTime> {
 
     public int compare(StopTime o1, StopTime o2) {
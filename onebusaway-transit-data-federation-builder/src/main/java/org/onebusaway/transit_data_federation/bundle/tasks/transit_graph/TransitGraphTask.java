@@ -16,8 +16,11 @@
  */
 package org.onebusaway.transit_data_federation.bundle.tasks.transit_graph;
 
+import java.io.File;
+
 import org.onebusaway.container.refresh.RefreshService;
 import org.onebusaway.transit_data_federation.impl.RefreshableResources;
+import org.onebusaway.transit_data_federation.impl.transit_graph.MappedTransitGraphIndex;
 import org.onebusaway.transit_data_federation.impl.transit_graph.TransitGraphImpl;
 import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
 import org.onebusaway.utility.ObjectSerializationLibrary;
@@ -112,8 +115,12 @@ public class TransitGraphTask implements Runnable {
 
     try {
 
-      ObjectSerializationLibrary.writeObject(_bundle.getTransitGraphPath(),
-          graph);
+      File graphPath = _bundle.getTransitGraphPath();
+      ObjectSerializationLibrary.writeObject(graphPath, graph);
+      File indexPath = _bundle.getTransitGraphIndexPath();
+      if (indexPath != null)
+        MappedTransitGraphIndex.write(indexPath, graph,
+            MappedTransitGraphIndex.fingerprint(graphPath));
 
     } catch (Exception ex) {
       throw new IllegalStateException("error writing graph to file", ex);
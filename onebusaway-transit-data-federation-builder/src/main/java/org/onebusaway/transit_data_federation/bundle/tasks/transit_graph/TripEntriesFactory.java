@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import org.onebusaway.container.ConfigurationParameter;
 import org.onebusaway.gtfs.model.Agency;
@@ -30,6 +32,7 @@ import org.onebusaway.gtfs.model.calendar.LocalizedServiceId;
 import org.onebusaway.gtfs.services.GtfsRelationalDao;
 import org.onebusaway.transit_data_federation.bundle.services.UniqueService;
 import org.onebusaway.transit_data_federation.bundle.tasks.ShapePointHelper;
+import org.onebusaway.transit_data_federation.bundle.tasks.transit_graph.StopTimeEntriesFactory.PendingStopTimes;
 import org.onebusaway.transit_data_federation.impl.transit_graph.RouteEntryImpl;
 import org.onebusaway.transit_data_federation.impl.transit_graph.StopTimeEntryImpl;
 import org.onebusaway.transit_data_federation.impl.transit_graph.TransitGraphImpl;
@@ -56,8 +59,14 @@ public class TripEntriesFactory {
 
   private ShapePointHelper _shapePointsHelper;
 
+  private DistanceAlongShapeLibrary _distanceAlongShapeLibrary;
+
   private boolean _throwExceptionOnInvalidStopToShapeMappingException = true;
 
+  private int _stopToShapeThreads = Runtime.getRuntime().availableProcessors();
+
+  private int _stopToShapeBatchSize = 10000;
+
   @Autowired
   public void setUniqueService(UniqueService uniqueService) {
     _uniqueService = uniqueService;
@@ -79,6 +88,12 @@ public class TripEntriesFactory {
     _stopTimeEntriesFactory = stopTimeEntriesFactory;
   }
 
+  @Autowired
+  public void setDistanceAlongShapeLibrary(
+      DistanceAlongShapeLibrary distanceAlongShapeLibrary) {
+    _distanceAlongShapeLibrary = distanceAlongShapeLibrary;
+  }
+
   /**
    * By default, we throw an exception when an invalid stop-to-shape mapping is
    * found for a GTFS feed. Override that behavior by setting this parameter to
@@ -93,40 +108,86 @@ public class TripEntriesFactory {
     _throwExceptionOnInvalidStopToShapeMappingException = throwExceptionOnInvalidStopToShapeMappingException;
   }
 
+  /**
+   * Stop-to-shape matching dominates the time spent building trips. Trips are
+   * read in batches and the distinct shape + stop sequence patterns of each
+   * batch are matched in parallel with this many threads before the trips are
+   * added to the graph in their original order. Set to 1 to match each trip as
+   * it is processed.
+   * 
+   * @param stopToShapeThreads
+   */
+  @ConfigurationParameter
+  public void setStopToShapeThreads(int stopToShapeThreads) {
+    _stopToShapeThreads = stopToShapeThreads;
+  }
+
+  /**
+   * 
+   * @param stopToShapeBatchSize the number of trips that are read before their
+   *          patterns are matched to their shapes in parallel
+   */
+  @ConfigurationParameter
+  public void setStopToShapeBatchSize(int stopToShapeBatchSize) {
+    _stopToShapeBatchSize = stopToShapeBatchSize;
+  }
+
   public void processTrips(TransitGraphImpl graph) {
 
     Collection<Route> routes = _gtfsDao.getAllRoutes();
     int routeIndex = 0;
 
-    for (Route route : routes) {
+    ExecutorService executor = null;
+    if (_stopToShapeThreads > 1 && _distanceAlongShapeLibrary != null)
+      executor = new ForkJoinPool(_stopToShapeThreads);
+
+    try {
 
-      _log.info("route processed: " + routeIndex + "/" + routes.size());
-      routeIndex++;
+      List<PendingRoute> batch = new ArrayList<PendingRoute>();
+      int batchTripCount = 0;
 
-      List<Trip> tripsForRoute = _gtfsDao.getTripsForRoute(route);
-      
-      int tripCount = tripsForRoute.size();
-      int logInterval = LoggingIntervalUtil.getAppropriateLoggingInterval(tripCount);
+      for (Route route : routes) {
 
-      _log.info("trips to process: " + tripCount);
-      int tripIndex = 0;
-      RouteEntryImpl routeEntry = graph.getRouteForId(route.getId());
-      ArrayList<TripEntry> tripEntries = new ArrayList<TripEntry>();
+        _log.info("route processed: " + routeIndex + "/" + routes.size());
+        routeIndex++;
 
-      for (Trip trip : tripsForRoute) {
-        tripIndex++;
-        if (tripIndex % logInterval == 0)
-          _log.info("trips processed: " + tripIndex + "/"
-              + tripsForRoute.size());
-        TripEntryImpl tripEntry = processTrip(graph, trip);
-        if (tripEntry != null) {
-          tripEntry.setRoute(routeEntry);
-          tripEntries.add(tripEntry);
+        List<Trip> tripsForRoute = _gtfsDao.getTripsForRoute(route);
+
+        int tripCount = tripsForRoute.size();
+        int logInterval = LoggingIntervalUtil.getAppropriateLoggingInterval(tripCount);
+
+        _log.info("trips to process: " + tripCount);
+        int tripIndex = 0;
+        RouteEntryImpl routeEntry = graph.getRouteForId(route.getId());
+        PendingRoute pendingRoute = new PendingRoute(routeEntry);
+
+        for (Trip trip : tripsForRoute) {
+          tripIndex++;
+          if (tripIndex % logInterval == 0)
+            _log.info("trips processed: " + tripIndex + "/"
+                + tripsForRoute.size());
+          PendingTrip pendingTrip = createTrip(graph, trip);
+          if (pendingTrip != null)
+            pendingRoute.trips.add(pendingTrip);
+        }
+
+        batch.add(pendingRoute);
+        batchTripCount += pendingRoute.trips.size();
+
+        if (batchTripCount >= _stopToShapeBatchSize) {
+          processBatch(graph, batch, executor);
+          batch.clear();
+          batchTripCount = 0;
         }
       }
 
-      tripEntries.trimToSize();
-      routeEntry.setTrips(tripEntries);
+      processBatch(graph, batch, executor);
+
+    } finally {
+      if (executor != null)
+        executor.shutdownNow();
+      if (_distanceAlongShapeLibrary != null)
+        _distanceAlongShapeLibrary.clearCache();
     }
 
     if (_stopTimeEntriesFactory.getInvalidStopToShapeMappingExceptionCount() > 0
@@ -141,7 +202,61 @@ public class TripEntriesFactory {
     graph.refreshTripMapping();
   }
 
-  private TripEntryImpl processTrip(TransitGraphImpl graph, Trip trip) {
+  private void processBatch(TransitGraphImpl graph, List<PendingRoute> batch,
+      ExecutorService executor) {
+
+    if (executor != null)
+      computeDistancesAlongShape(batch, executor);
+
+    for (PendingRoute pendingRoute : batch) {
+
+      ArrayList<TripEntry> tripEntries = new ArrayList<TripEntry>();
+
+      for (PendingTrip pendingTrip : pendingRoute.trips) {
+        TripEntryImpl tripEntry = completeTrip(graph, pendingTrip);
+        if (tripEntry != null) {
+          tripEntry.setRoute(pendingRoute.routeEntry);
+          tripEntries.add(tripEntry);
+        }
+      }
+
+      tripEntries.trimToSize();
+      pendingRoute.routeEntry.setTrips(tripEntries);
+    }
+  }
+
+  /**
+   * Matches the stops of each distinct pattern in the batch to its shape in
+   * parallel. The results are cached by the {@link DistanceAlongShapeLibrary},
+   * so {@link #completeTrip(TransitGraphImpl, PendingTrip)} picks them up
+   * without repeating the work.
+   */
+  private void computeDistancesAlongShape(List<PendingRoute> batch,
+      ExecutorService executor) {
+
+    List<ShapePoints> shapePoints = new ArrayList<ShapePoints>();
+    List<List<StopTimeEntryImpl>> stopTimes = new ArrayList<List<StopTimeEntryImpl>>();
+
+    for (PendingRoute pendingRoute : batch) {
+      for (PendingTrip pendingTrip : pendingRoute.trips) {
+        List<StopTimeEntryImpl> stopTimeEntries = pendingTrip.stopTimes.getStopTimeEntries();
+        if (pendingTrip.shapePoints == null || stopTimeEntries.isEmpty())
+          continue;
+        shapePoints.add(pendingTrip.shapePoints);
+        stopTimes.add(stopTimeEntries);
+      }
+    }
+
+    try {
+      _distanceAlongShapeLibrary.computeDistancesAlongShape(shapePoints,
+          stopTimes, executor);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private PendingTrip createTrip(TransitGraphImpl graph, Trip trip) {
 
     List<StopTime> stopTimes = _gtfsDao.getStopTimesForTrip(trip);
 
@@ -169,12 +284,24 @@ public class TripEntriesFactory {
     if (!(shapePoints == null || shapePoints.isEmpty()))
       tripEntry.setShapeId(unique(trip.getShapeId()));
 
-    List<StopTimeEntryImpl> stopTimesForTrip = _stopTimeEntriesFactory.processStopTimes(
-        graph, stopTimes, tripEntry, shapePoints);
+    PendingStopTimes pendingStopTimes = _stopTimeEntriesFactory.createStopTimeEntries(
+        graph, stopTimes, tripEntry);
+
+    return new PendingTrip(trip, tripEntry, shapePoints, pendingStopTimes);
+  }
+
+  private TripEntryImpl completeTrip(TransitGraphImpl graph,
+      PendingTrip pendingTrip) {
+
+    TripEntryImpl tripEntry = pendingTrip.tripEntry;
+    ShapePoints shapePoints = pendingTrip.shapePoints;
+
+    List<StopTimeEntryImpl> stopTimesForTrip = _stopTimeEntriesFactory.completeStopTimeEntries(
+        pendingTrip.stopTimes, shapePoints);
 
     // Also:  only set the trip if there are stops for it
     if (stopTimesForTrip == null || stopTimesForTrip.size() < 2) {
-      _log.error("trip " + trip.getId() + " missing stops!");
+      _log.error("trip " + pendingTrip.trip.getId() + " missing stops!");
       return null;
     }
     
@@ -220,4 +347,38 @@ public class TripEntriesFactory {
   private <T> T unique(T value) {
     return _uniqueService.unique(value);
   }
+
+  private static class PendingRoute {
+
+    private final RouteEntryImpl routeEntry;
+
+    private final List<PendingTrip> trips = new ArrayList<PendingTrip>();
+
+    public PendingRoute(RouteEntryImpl routeEntry) {
+      this.routeEntry = routeEntry;
+    }
+  }
+
+  /**
+   * A trip whose stop time entries have been created but not yet matched to
+   * its shape
+   */
+  private static class PendingTrip {
+
+    private final Trip trip;
+
+    private final TripEntryImpl tripEntry;
+
+    private final ShapePoints shapePoints;
+
+    private final PendingStopTimes stopTimes;
+
+    public PendingTrip(Trip trip, TripEntryImpl tripEntry,
+        ShapePoints shapePoints, PendingStopTimes stopTimes) {
+      this.trip = trip;
+      this.tripEntry = tripEntry;
+      this.shapePoints = shapePoints;
+      this.stopTimes = stopTimes;
+    }
+  }
 }
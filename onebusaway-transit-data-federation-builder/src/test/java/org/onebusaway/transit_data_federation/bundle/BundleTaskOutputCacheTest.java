@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onebusaway.transit_data_federation.bundle.BundleTaskOutputCache.Fingerprint;
+
+public class BundleTaskOutputCacheTest {
+
+  private File _tmp;
+
+  private File _bundlePath;
+
+  private BundleTaskOutputCache _cache;
+
+  @Before
+  public void setup() throws IOException {
+    _tmp = Files.createTempDirectory(
+        BundleTaskOutputCacheTest.class.getSimpleName()).toFile();
+    _bundlePath = new File(_tmp, "bundle");
+    _cache = new BundleTaskOutputCache(new File(_tmp, "cache"), 2);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    deleteRecursively(_tmp);
+  }
+
+  @Test
+  public void testStoreAndRestore() throws IOException {
+
+    List<String> outputFiles = Arrays.asList("Data.obj", "SearchIndex");
+
+    write(new File(_bundlePath, "Data.obj"), "data");
+    write(new File(_bundlePath, "SearchIndex/segments"), "segments");
+
+    assertFalse(_cache.contains("task", "a", outputFiles));
+    _cache.store("task", "a", outputFiles, _bundlePath);
+    assertTrue(_cache.contains("task", "a", outputFiles));
+    assertFalse(_cache.contains("task", "b", outputFiles));
+    assertFalse(_cache.contains("other", "a", outputFiles));
+
+    write(new File(_bundlePath, "Data.obj"), "changed");
+    write(new File(_bundlePath, "SearchIndex/stale"), "stale");
+
+    _cache.restore("task", "a", outputFiles, _bundlePath);
+    assertEquals("data", read(new File(_bundlePath, "Data.obj")));
+    assertEquals("segments", read(new File(_bundlePath, "SearchIndex/segments")));
+    assertFalse(new File(_bundlePath, "SearchIndex/stale").exists());
+  }
+
+  @Test
+  public void testMissingOutputIsNotStored() throws IOException {
+
+    List<String> outputFiles = Arrays.asList("Data.obj", "Missing.obj");
+
+    write(new File(_bundlePath, "Data.obj"), "data");
+    _cache.store("task", "a", outputFiles, _bundlePath);
+    assertFalse(_cache.contains("task", "a", outputFiles));
+  }
+
+  @Test
+  public void testPrune() throws IOException {
+
+    List<String> outputFiles = Arrays.asList("Data.obj");
+    write(new File(_bundlePath, "Data.obj"), "data");
+
+    _cache.store("task", "a", outputFiles, _bundlePath);
+    new File(_tmp, "cache/task/a").setLastModified(1000);
+    _cache.store("task", "b", outputFiles, _bundlePath);
+    new File(_tmp, "cache/task/b").setLastModified(2000);
+    _cache.store("task", "c", outputFiles, _bundlePath);
+
+    assertFalse(_cache.contains("task", "a", outputFiles));
+    assertTrue(_cache.contains("task", "b", outputFiles));
+    assertTrue(_cache.contains("task", "c", outputFiles));
+  }
+
+  @Test
+  public void testFingerprint() throws IOException {
+
+    File gtfs = new File(_tmp, "gtfs");
+    write(new File(gtfs, "stops.txt"), "stop_id\n1\n");
+    write(new File(gtfs, "trips.txt"), "trip_id\n1\n");
+
+    String a = new Fingerprint().add("config").addFile(gtfs).build();
+    assertEquals(a, new Fingerprint().add("config").addFile(gtfs).build());
+
+    assertNotEquals(a, new Fingerprint().add("other").addFile(gtfs).build());
+    assertNotEquals(new Fingerprint().add("ab").add("c").build(),
+        new Fingerprint().add("a").add("bc").build());
+    assertNotEquals(new Fingerprint().add(null).build(),
+        new Fingerprint().add("").build());
+
+    write(new File(gtfs, "trips.txt"), "trip_id\n2\n");
+    assertNotEquals(a, new Fingerprint().add("config").addFile(gtfs).build());
+  }
+
+  private static void write(File file, String value) throws IOException {
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(value.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children)
+        deleteRecursively(child);
+    }
+    file.delete();
+  }
+}
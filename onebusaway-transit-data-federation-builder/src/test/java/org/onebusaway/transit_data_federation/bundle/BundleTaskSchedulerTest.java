@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BundleTaskSchedulerTest {
+
+  private static final List<String> NONE = Collections.emptyList();
+
+  @Test
+  public void testSingleThreadRunsTasksInOrder() {
+
+    List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(1);
+    scheduler.addTask("a", new LogTask(log, "a"), NONE, null);
+    scheduler.addTask("b", new LogTask(log, "b"), Arrays.asList("a"), null);
+    scheduler.addTask("c", new LogTask(log, "c"), Arrays.asList("a"), null);
+    scheduler.addTask("d", new LogTask(log, "d"), Arrays.asList("b", "c"),
+        null);
+    scheduler.run();
+
+    assertEquals(Arrays.asList("a", "b", "c", "d"), log);
+    assertEquals(4, scheduler.getTaskTimes().size());
+  }
+
+  @Test
+  public void testIndependentTasksRunConcurrently() throws Exception {
+
+    /**
+     * b and c each wait for the other to start, so the run only completes if
+     * they overlap
+     */
+    CountDownLatch latch = new CountDownLatch(2);
+
+    List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(2);
+    scheduler.addTask("a", new LogTask(log, "a"), NONE, null);
+    scheduler.addTask("b", new LatchTask(latch), Arrays.asList("a"), null);
+    scheduler.addTask("c", new LatchTask(latch), Arrays.asList("a"), null);
+    scheduler.addTask("d", new LogTask(log, "d"), Arrays.asList("b", "c"),
+        null);
+    scheduler.run();
+
+    assertEquals(0, latch.getCount());
+    assertEquals(Arrays.asList("a", "d"), log);
+  }
+
+  @Test
+  public void testNullTaskOrdersDependents() {
+
+    List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(2);
+    scheduler.addTask("a", new LogTask(log, "a"), NONE, null);
+    scheduler.addTask("skipped", null, Arrays.asList("a"), null);
+    scheduler.addTask("b", new LogTask(log, "b"), Arrays.asList("skipped"),
+        null);
+    scheduler.run();
+
+    assertEquals(Arrays.asList("a", "b"), log);
+    assertFalse(scheduler.getTaskTimes().containsKey("skipped"));
+  }
+
+  @Test
+  public void testFailureStopsLaterTasks() {
+
+    List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(2);
+    scheduler.addTask("a", new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("boom");
+      }
+    }, NONE, null);
+    scheduler.addTask("b", new LogTask(log, "b"), Arrays.asList("a"), null);
+
+    try {
+      scheduler.run();
+      fail();
+    } catch (IllegalStateException ex) {
+      assertEquals("boom", ex.getMessage());
+    }
+
+    assertTrue(log.isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownDependency() {
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(1);
+    scheduler.addTask("a", new LogTask(new ArrayList<String>(), "a"),
+        Arrays.asList("b"), null);
+  }
+
+  @Test
+  public void testCriticalPath() {
+
+    BundleTaskScheduler scheduler = new BundleTaskScheduler(2);
+    scheduler.addTask("a", new SleepTask(10), NONE, null);
+    scheduler.addTask("slow", new SleepTask(200), Arrays.asList("a"), null);
+    scheduler.addTask("fast", new SleepTask(10), Arrays.asList("a"), null);
+    scheduler.addTask("end", new SleepTask(10),
+        Arrays.asList("slow", "fast"), null);
+    scheduler.run();
+
+    assertEquals(Arrays.asList("a", "slow", "end"),
+        scheduler.getCriticalPath());
+  }
+
+  private static class LogTask implements Runnable {
+
+    private final List<String> _log;
+
+    private final String _name;
+
+    public LogTask(List<String> log, String name) {
+      _log = log;
+      _name = name;
+    }
+
+    @Override
+    public void run() {
+      _log.add(_name);
+    }
+  }
+
+  private static class LatchTask implements Runnable {
+
+    private final CountDownLatch _latch;
+
+    public LatchTask(CountDownLatch latch) {
+      _latch = latch;
+    }
+
+    @Override
+    public void run() {
+      _latch.countDown();
+      try {
+        if (!_latch.await(10, TimeUnit.SECONDS))
+          throw new IllegalStateException("tasks did not overlap");
+      } catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+
+  private static class SleepTask implements Runnable {
+
+    private final long _time;
+
+    public SleepTask(long time) {
+      _time = time;
+    }
+
+    @Override
+    public void run() {
+      try {
+        Thread.sleep(_time);
+      } catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+}
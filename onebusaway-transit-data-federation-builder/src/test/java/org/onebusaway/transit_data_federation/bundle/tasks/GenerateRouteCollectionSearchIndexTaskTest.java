@@ -16,6 +16,7 @@
 package org.onebusaway.transit_data_federation.bundle.tasks;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.routeCollection;
 
 import java.io.File;
@@ -136,5 +137,20 @@ public class GenerateRouteCollectionSearchIndexTaskTest {
     assertEquals(1, ids.size());
     assertEquals(routeC.getId(), ids.getResult(0));
 
+    ids = searchService.searchForRoutesByNamePrefix("1", 10, 0);
+    assertEquals(3, ids.size());
+
+    ids = searchService.searchForRoutesByNamePrefix("10", 10, 0);
+    assertEquals(2, ids.size());
+    assertTrue(ids.getResults().contains(routeA.getId()));
+    assertTrue(ids.getResults().contains(routeC.getId()));
+
+    ids = searchService.searchForRoutesByNamePrefix("el di", 10, 0);
+    assertEquals(1, ids.size());
+    assertEquals(routeA.getId(), ids.getResult(0));
+
+    ids = searchService.searchForRoutesByNamePrefix("el ", 10, 0);
+    assertEquals(2, ids.size());
+
   }
 }
@@ -128,4 +128,98 @@ public class GenerateStopSearchIndexTaskTest {
     assertEquals(1, ids.size());
     assertTrue(ids.getResults().contains(new AgencyAndId("1", "333")));
   }
+
+  @Test
+  public void testStopNamePrefixSearch() throws IOException {
+
+    StopEntryImpl stopA = stop("111", 0, 0);
+    StopEntryImpl stopB = stop("222", 0, 0);
+    StopEntryImpl stopC = stop("333", 0, 0);
+
+    StopNarrative.Builder stopNarrativeA = StopNarrative.builder();
+    stopNarrativeA.setName("Pine St & 3rd Ave");
+
+    StopNarrative.Builder stopNarrativeB = StopNarrative.builder();
+    stopNarrativeB.setName("Pike St & 3rd Ave");
+
+    StopNarrative.Builder stopNarrativeC = StopNarrative.builder();
+    stopNarrativeC.setName("Pine St & 4th Ave");
+
+    Mockito.when(_transitGraphDao.getAllStops()).thenReturn(
+        Arrays.asList((StopEntry) stopA, stopB, stopC));
+
+    Mockito.when(_narrativeService.getStopForId(stopA.getId())).thenReturn(
+        stopNarrativeA.create());
+    Mockito.when(_narrativeService.getStopForId(stopB.getId())).thenReturn(
+        stopNarrativeB.create());
+    Mockito.when(_narrativeService.getStopForId(stopC.getId())).thenReturn(
+        stopNarrativeC.create());
+
+    _task.run();
+
+    StopSearchServiceImpl searchService = new StopSearchServiceImpl();
+    searchService.setBundle(_bundle);
+    searchService.setIndexLoadMode("mmap");
+    searchService.initialize();
+
+    SearchResult<AgencyAndId> ids = searchService.searchForStopsByNamePrefix(
+        "Pi", 10, 0);
+    assertEquals(3, ids.size());
+
+    ids = searchService.searchForStopsByNamePrefix("pin", 10, 0);
+    assertEquals(2, ids.size());
+    assertTrue(ids.getResults().contains(stopA.getId()));
+    assertTrue(ids.getResults().contains(stopC.getId()));
+
+    ids = searchService.searchForStopsByNamePrefix("pine st & 4", 10, 0);
+    assertEquals(1, ids.size());
+    assertEquals(stopC.getId(), ids.getResult(0));
+
+    // a trailing space means the last word is complete
+    ids = searchService.searchForStopsByNamePrefix("pi ", 10, 0);
+    assertEquals(0, ids.size());
+
+    ids = searchService.searchForStopsByNamePrefix("\"pine", 10, 0);
+    assertEquals(2, ids.size());
+
+    ids = searchService.searchForStopsByNamePrefix(" ", 10, 0);
+    assertEquals(0, ids.size());
+  }
+
+  @Test
+  public void testStopNamePrefixSearchRanksWholeWordsFirst() throws IOException {
+
+    StopEntryImpl stopA = stop("111", 0, 0);
+    StopEntryImpl stopB = stop("222", 0, 0);
+
+    StopNarrative.Builder stopNarrativeA = StopNarrative.builder();
+    stopNarrativeA.setName("Pinehurst Way & 3rd Ave");
+
+    StopNarrative.Builder stopNarrativeB = StopNarrative.builder();
+    stopNarrativeB.setName("Pine St & 3rd Ave");
+
+    Mockito.when(_transitGraphDao.getAllStops()).thenReturn(
+        Arrays.asList((StopEntry) stopA, stopB));
+
+    Mockito.when(_narrativeService.getStopForId(stopA.getId())).thenReturn(
+        stopNarrativeA.create());
+    Mockito.when(_narrativeService.getStopForId(stopB.getId())).thenReturn(
+        stopNarrativeB.create());
+
+    _task.run();
+
+    StopSearchServiceImpl searchService = new StopSearchServiceImpl();
+    searchService.setBundle(_bundle);
+    searchService.initialize();
+
+    SearchResult<AgencyAndId> ids = searchService.searchForStopsByNamePrefix(
+        "pine", 10, 0);
+    assertEquals(2, ids.size());
+    assertEquals(stopB.getId(), ids.getResult(0));
+    assertEquals(stopA.getId(), ids.getResult(1));
+
+    ids = searchService.searchForStopsByNamePrefix("pineh", 10, 0);
+    assertEquals(1, ids.size());
+    assertEquals(stopA.getId(), ids.getResult(0));
+  }
 }
@@ -16,17 +16,23 @@
 package org.onebusaway.transit_data_federation.bundle.tasks.transit_graph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.onebusaway.transit_data_federation.bundle.tasks.transit_graph.DistanceAlongShapeLibrary.DistanceAlongShapeException;
+import org.onebusaway.transit_data_federation.bundle.tasks.transit_graph.DistanceAlongShapeLibrary.StopIsTooFarFromShapeException;
 import org.onebusaway.transit_data_federation.impl.shapes.PointAndIndex;
 import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
 import org.onebusaway.transit_data_federation.impl.transit_graph.StopTimeEntryImpl;
@@ -114,6 +120,88 @@ public class DistanceAlongShapeLibraryTest {
 
   }
 
+  @Test
+  public void testSegmentIndexAndPatternCache() throws IOException,
+      DistanceAlongShapeException, InterruptedException {
+
+    DistanceAlongShapeLibrary fullScan = new DistanceAlongShapeLibrary();
+    fullScan.setUseShapeSegmentIndex(false);
+    fullScan.setMaxCachedPatterns(0);
+
+    DistanceAlongShapeLibrary library = new DistanceAlongShapeLibrary();
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      for (String key : Arrays.asList("01", "02", "03")) {
+
+        ShapePoints shapePoints = readShapePoints("shapes-" + key + ".txt");
+        List<StopTimeEntryImpl> stopTimes = readStopTimes("stops-" + key
+            + ".txt");
+
+        PointAndIndex[] expected = fullScan.getDistancesAlongShape(
+            shapePoints, stopTimes);
+
+        library.computeDistancesAlongShape(Arrays.asList(shapePoints),
+            Arrays.asList(stopTimes), executor);
+
+        // A second trip of the same pattern shares the cached result
+        List<StopTimeEntryImpl> otherStopTimes = readStopTimes("stops-" + key
+            + ".txt");
+        PointAndIndex[] actual = library.getDistancesAlongShape(shapePoints,
+            otherStopTimes);
+
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+          assertEquals(expected[i].index, actual[i].index);
+          assertEquals(expected[i].distanceAlongShape,
+              actual[i].distanceAlongShape, 0.0);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPatternCacheFailureNamesTheCurrentTrip() throws IOException {
+
+    DistanceAlongShapeLibrary library = new DistanceAlongShapeLibrary();
+    library.setMaxDistanceFromStopToShapePoint(0.01);
+
+    ShapePoints shapePoints = readShapePoints("shapes-01.txt");
+    List<StopTimeEntryImpl> stopTimesA = readStopTimes("stops-01.txt");
+    List<StopTimeEntryImpl> stopTimesB = readStopTimes("stops-01.txt");
+    TripEntryImpl tripB = UnitTestingSupport.trip("tripB");
+    for (StopTimeEntryImpl stopTime : stopTimesB)
+      stopTime.setTrip(tripB);
+
+    StopIsTooFarFromShapeException exA = getTooFarException(library,
+        shapePoints, stopTimesA);
+    // served from the cached failure of the same pattern
+    StopIsTooFarFromShapeException exB = getTooFarException(library,
+        shapePoints, stopTimesB);
+
+    int index = stopTimesA.indexOf(exA.getStopTime());
+    assertSame(stopTimesB.get(index), exB.getStopTime());
+    assertSame(tripB, exB.getStopTime().getTrip());
+    assertSame(exA.getPointAndIndex(), exB.getPointAndIndex());
+  }
+
+  private StopIsTooFarFromShapeException getTooFarException(
+      DistanceAlongShapeLibrary library, ShapePoints shapePoints,
+      List<StopTimeEntryImpl> stopTimes) {
+    try {
+      library.getDistancesAlongShape(shapePoints, stopTimes);
+    } catch (StopIsTooFarFromShapeException ex) {
+      return ex;
+    } catch (DistanceAlongShapeException ex) {
+      fail("unexpected " + ex);
+    }
+    fail("expected a StopIsTooFarFromShapeException");
+    return null;
+  }
+
   private ShapePoints readShapePoints(String key) throws IOException {
 
     BufferedReader reader = new BufferedReader(
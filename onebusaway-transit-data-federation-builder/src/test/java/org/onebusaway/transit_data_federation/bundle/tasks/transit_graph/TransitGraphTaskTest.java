@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.onebusaway.container.refresh.RefreshService;
 import org.onebusaway.transit_data_federation.impl.RefreshableResources;
+import org.onebusaway.transit_data_federation.impl.transit_graph.MappedTransitGraphIndex;
 import org.onebusaway.transit_data_federation.impl.transit_graph.TransitGraphImpl;
 import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
 import org.onebusaway.utility.ObjectSerializationLibrary;
@@ -56,9 +57,12 @@ public class TransitGraphTaskTest {
 
     File path = File.createTempFile("TemporaryBundleDirectory-", "");
     path.delete();
+    File indexPath = File.createTempFile("TemporaryBundleIndex-", "");
+    indexPath.delete();
 
     FederatedTransitDataBundle bundle = Mockito.mock(FederatedTransitDataBundle.class);
     Mockito.when(bundle.getTransitGraphPath()).thenReturn(path);
+    Mockito.when(bundle.getTransitGraphIndexPath()).thenReturn(indexPath);
 
     task.setBundle(bundle);
 
@@ -81,5 +85,10 @@ public class TransitGraphTaskTest {
 
     TransitGraphImpl graph = ObjectSerializationLibrary.readObject(path);
     assertNotNull(graph);
+
+    assertTrue(indexPath.exists());
+    MappedTransitGraphIndex index = MappedTransitGraphIndex.open(indexPath);
+    assertTrue(index.isIndexFor(MappedTransitGraphIndex.fingerprint(path)));
+    assertTrue(index.hasCountsOf(graph));
   }
 }
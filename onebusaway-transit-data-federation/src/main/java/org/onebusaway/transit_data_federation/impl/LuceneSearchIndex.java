@@ -0,0 +1,327 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.onebusaway.gtfs.model.AgencyAndId;
+
+/**
+ * A read-only Lucene search index shared by {@link StopSearchServiceImpl} and
+ * {@link RouteCollectionSearchServiceImpl}. The index is opened once per
+ * bundle with its {@link Similarity} already set, the {@link AgencyAndId} of
+ * every document is resolved up front from doc values (or from stored fields
+ * for bundles built before the doc values were written), and parsed queries
+ * are kept in a small LRU cache. A search is then just the Lucene query plus
+ * an array lookup per hit.
+ * 
+ * Instances are safe to share between threads.
+ */
+final class LuceneSearchIndex {
+
+  /**
+   * How the index files are brought into the process
+   */
+  enum ELoadMode {
+
+    /**
+     * Let Lucene pick the platform default {@link FSDirectory}
+     */
+    FS,
+
+    /**
+     * Memory-map the index files with {@link MMapDirectory}
+     */
+    MMAP,
+
+    /**
+     * Copy the index onto the heap with {@link RAMDirectory}, so searches never
+     * touch the page cache
+     */
+    MEMORY
+  }
+
+  private static final int QUERY_CACHE_SIZE = 1000;
+
+  /**
+   * A {@link PrefixQuery} gives every match the same score, so a document
+   * where the last token is a whole word gets this extra boost and ranks ahead
+   * of documents where it only starts a longer word
+   */
+  private static final float EXACT_TOKEN_BOOST = 2.0f;
+
+  private final IndexSearcher _searcher;
+
+  private final Analyzer _analyzer;
+
+  private final AgencyAndId[] _ids;
+
+  private final Map<String, Query> _queries = Collections.synchronizedMap(new QueryCache());
+
+  private LuceneSearchIndex(IndexSearcher searcher, Analyzer analyzer,
+      AgencyAndId[] ids) {
+    _searcher = searcher;
+    _analyzer = analyzer;
+    _ids = ids;
+  }
+
+  /**
+   * 
+   * @param path the index directory
+   * @param loadMode how to bring the index into the process
+   * @param analyzer the analyzer the index was built with
+   * @param similarity the scoring model for all searches against the index
+   * @param agencyIdField the field holding the agency id of each document
+   * @param idField the field holding the id of each document
+   * @return the opened index
+   * @throws IOException
+   */
+  public static LuceneSearchIndex open(File path, ELoadMode loadMode,
+      Analyzer analyzer, Similarity similarity, String agencyIdField,
+      String idField) throws IOException {
+
+    IndexReader reader = DirectoryReader.open(openDirectory(path, loadMode));
+
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(similarity);
+
+    String[] agencyIds = getValues(reader, agencyIdField);
+    String[] ids = getValues(reader, idField);
+
+    /**
+     * A bundle has only a handful of agencies, so share one agency id string
+     * between all the ids of an agency
+     */
+    Map<String, String> agencyIdsByValue = new HashMap<String, String>();
+    AgencyAndId[] agencyAndIds = new AgencyAndId[ids.length];
+    for (int doc = 0; doc < ids.length; doc++) {
+      String agencyId = agencyIds[doc];
+      if (agencyId == null || ids[doc] == null)
+        continue;
+      String existing = agencyIdsByValue.get(agencyId);
+      if (existing == null)
+        agencyIdsByValue.put(agencyId, agencyId);
+      else
+        agencyId = existing;
+      agencyAndIds[doc] = new AgencyAndId(agencyId, ids[doc]);
+    }
+
+    return new LuceneSearchIndex(searcher, analyzer, agencyAndIds);
+  }
+
+  /**
+   * 
+   * @param doc a document number from {@link #search(Query, int)}
+   * @return the id of the document, or null if the document has no id
+   */
+  public AgencyAndId getId(int doc) {
+    return _ids[doc];
+  }
+
+  /**
+   * 
+   * @param field a field with a single value per document
+   * @return the value of the field for each document number, null where a
+   *         document has no value
+   * @throws IOException
+   */
+  public String[] getValues(String field) throws IOException {
+    return getValues(_searcher.getIndexReader(), field);
+  }
+
+  public TopDocs search(Query query, int maxResultCount) throws IOException {
+    return _searcher.search(query, maxResultCount);
+  }
+
+  /**
+   * Parse a query with the classic query syntax, searching all the specified
+   * fields.
+   * 
+   * @param fields the default fields of the query
+   * @param value the query string
+   * @return the parsed query
+   * @throws ParseException
+   */
+  public Query getQuery(String[] fields, String value) throws ParseException {
+    String key = getQueryKey("q", fields, value);
+    Query query = _queries.get(key);
+    if (query == null) {
+      // the parser isn't thread-safe, so each miss gets its own
+      query = new MultiFieldQueryParser(fields, _analyzer).parse(value);
+      _queries.put(key, query);
+    }
+    return query;
+  }
+
+  /**
+   * Build an autocomplete query: every token of the value must match one of
+   * the fields, with the last token matched as a prefix unless the value ends
+   * in whitespace. Documents where that last token is already a whole word
+   * score higher, so the best matches come first. The value is analyzed rather
+   * than parsed, so partial input like an unbalanced quote never fails.
+   * 
+   * @param fields the fields to match against
+   * @param value the partial query string
+   * @return the query, or null if the value has no searchable tokens
+   * @throws IOException
+   */
+  public Query getPrefixQuery(String[] fields, String value)
+      throws IOException {
+    String key = getQueryKey("p", fields, value);
+    Query query = _queries.get(key);
+    if (query == null) {
+      query = createPrefixQuery(fields, value);
+      if (query == null)
+        return null;
+      _queries.put(key, query);
+    }
+    return query;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static Directory openDirectory(File path, ELoadMode loadMode)
+      throws IOException {
+    switch (loadMode) {
+      case MMAP:
+        return new MMapDirectory(path.toPath());
+      case MEMORY:
+        FSDirectory source = FSDirectory.open(path.toPath());
+        try {
+          return new RAMDirectory(source, IOContext.READONCE);
+        } finally {
+          source.close();
+        }
+      default:
+        return FSDirectory.open(path.toPath());
+    }
+  }
+
+  private static String[] getValues(IndexReader reader, String field)
+      throws IOException {
+    String[] values = new String[reader.maxDoc()];
+    for (LeafReaderContext context : reader.leaves()) {
+      LeafReader leaf = context.reader();
+      SortedDocValues docValues = leaf.getSortedDocValues(field);
+      for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+        String value;
+        if (docValues != null) {
+          value = docValues.advanceExact(doc)
+              ? docValues.binaryValue().utf8ToString() : null;
+        } else {
+          // bundles built before the doc values were added
+          Document document = leaf.document(doc, Collections.singleton(field));
+          value = document.get(field);
+        }
+        values[context.docBase + doc] = value;
+      }
+    }
+    return values;
+  }
+
+  private Query createPrefixQuery(String[] fields, String value)
+      throws IOException {
+
+    List<String> tokens = new ArrayList<String>();
+    TokenStream stream = _analyzer.tokenStream(fields[0], value);
+    try {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      stream.reset();
+      while (stream.incrementToken())
+        tokens.add(term.toString());
+      stream.end();
+    } finally {
+      stream.close();
+    }
+
+    if (tokens.isEmpty())
+      return null;
+
+    boolean lastTokenIsComplete = Character.isWhitespace(value.charAt(value.length() - 1));
+
+    BooleanQuery.Builder query = new BooleanQuery.Builder();
+    for (int i = 0; i < tokens.size(); i++) {
+      boolean prefix = i == tokens.size() - 1 && !lastTokenIsComplete;
+      BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+      for (String field : fields) {
+        Term term = new Term(field, tokens.get(i));
+        if (prefix) {
+          anyField.add(new PrefixQuery(term), Occur.SHOULD);
+          anyField.add(new BoostQuery(new TermQuery(term), EXACT_TOKEN_BOOST),
+              Occur.SHOULD);
+        } else {
+          anyField.add(new TermQuery(term), Occur.SHOULD);
+        }
+      }
+      query.add(anyField.build(), Occur.MUST);
+    }
+    return query.build();
+  }
+
+  private static String getQueryKey(String type, String[] fields, String value) {
+    return type + Arrays.toString(fields) + value;
+  }
+
+  private static class QueryCache extends LinkedHashMap<String, Query> {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueryCache() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+      return size() > QUERY_CACHE_SIZE;
+    }
+  }
+}
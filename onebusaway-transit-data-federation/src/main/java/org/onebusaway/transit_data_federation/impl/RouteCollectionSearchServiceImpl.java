@@ -20,8 +20,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,19 +31,14 @@ import javax.annotation.PostConstruct;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.similarities.BM25Similarity;
 import org.onebusaway.container.refresh.Refreshable;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.transit_data_federation.impl.LuceneSearchIndex.ELoadMode;
 import org.onebusaway.transit_data_federation.model.SearchResult;
 import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
 import org.onebusaway.transit_data_federation.services.RouteCollectionSearchIndexConstants;
@@ -71,13 +66,25 @@ public class RouteCollectionSearchServiceImpl implements
 
   private FederatedTransitDataBundle _bundle;
 
-  private IndexSearcher _searcher;
+  private ELoadMode _indexLoadMode = ELoadMode.MEMORY;
+
+  private volatile RouteIndex _index;
 
   @Autowired
   public void setBundle(FederatedTransitDataBundle bundle) {
     _bundle = bundle;
   }
 
+  /**
+   * Set with a property override like
+   * "routeCollectionSearchServiceImpl.indexLoadMode=mmap".
+   * 
+   * @param indexLoadMode "fs", "mmap" or "memory" (the default)
+   */
+  public void setIndexLoadMode(String indexLoadMode) {
+    _indexLoadMode = ELoadMode.valueOf(indexLoadMode.toUpperCase());
+  }
+
   @PostConstruct
   @Refreshable(dependsOn = RefreshableResources.ROUTE_COLLECTION_SEARCH_DATA)
   public void initialize() throws IOException {
@@ -85,10 +92,14 @@ public class RouteCollectionSearchServiceImpl implements
     File path = _bundle.getRouteSearchIndexPath();
 
     if (path.exists()) {
-      IndexReader reader = DirectoryReader.open(FSDirectory.open(path.toPath()));
-      _searcher = new IndexSearcher(reader);
+      LuceneSearchIndex index = LuceneSearchIndex.open(path, _indexLoadMode,
+          _analyzer, new BM25Similarity(),
+          RouteCollectionSearchIndexConstants.FIELD_ROUTE_COLLECTION_AGENCY_ID,
+          RouteCollectionSearchIndexConstants.FIELD_ROUTE_COLLECTION_ID);
+      String[] shortNames = index.getValues(RouteCollectionSearchIndexConstants.FIELD_ROUTE_SHORT_NAME);
+      _index = new RouteIndex(index, getShortNameTokens(shortNames));
     } else {
-      _searcher = null;
+      _index = null;
     }
   }
 
@@ -96,45 +107,50 @@ public class RouteCollectionSearchServiceImpl implements
       int maxResultCount, double minScoreToKeep) throws IOException,
           ParseException {
 
-    return search(new MultiFieldQueryParser(NAME_FIELDS, _analyzer), value,
-        maxResultCount, minScoreToKeep);
+    RouteIndex index = _index;
+    if (index == null)
+      return new SearchResult<AgencyAndId>();
+
+    return search(index, index._searchIndex.getQuery(NAME_FIELDS, value),
+        value, maxResultCount, minScoreToKeep);
   }
 
-  private SearchResult<AgencyAndId> search(QueryParser parser, String value,
-      int maxResultCount, double minScoreToKeep) throws IOException,
-      ParseException {
+  public SearchResult<AgencyAndId> searchForRoutesByNamePrefix(String prefix,
+      int maxResultCount, double minScoreToKeep) throws IOException {
+
+    RouteIndex index = _index;
+    if (index == null)
+      return new SearchResult<AgencyAndId>();
 
-    if (_searcher == null)
+    Query query = index._searchIndex.getPrefixQuery(NAME_FIELDS, prefix);
+    if (query == null)
       return new SearchResult<AgencyAndId>();
 
-    Query query = parser.parse(value);
-    TopDocs top = _searcher.search(query, maxResultCount);
+    return search(index, query, prefix, maxResultCount, minScoreToKeep);
+  }
+
+  private SearchResult<AgencyAndId> search(RouteIndex index, Query query,
+      String value, int maxResultCount, double minScoreToKeep)
+      throws IOException {
+
+    TopDocs top = index._searchIndex.search(query, maxResultCount);
 
-    Map<AgencyAndId, Float> topScores = new HashMap<AgencyAndId, Float>();
+    Map<AgencyAndId, Float> topScores = new LinkedHashMap<AgencyAndId, Float>();
 
     String lowerCaseQueryValue = value.toLowerCase();
 
     for (ScoreDoc sd : top.scoreDocs) {
-      Document document = _searcher.doc(sd.doc);
-
-      String routeShortName = document.get(RouteCollectionSearchIndexConstants.FIELD_ROUTE_SHORT_NAME);
 
-      Set<String> tokens = new HashSet<String>();
-      if (routeShortName != null) {
-        for (String token : routeShortName.toLowerCase().split("\\b")) {
-          if (!token.isEmpty())
-            tokens.add(token);
-        }
-      }
+      Set<String> tokens = index._shortNameTokens[sd.doc];
 
       // Result must have a minimum score to qualify
       if (sd.score < minScoreToKeep && !tokens.contains(lowerCaseQueryValue))
         continue;
 
       // Keep the best score for a particular id
-      String agencyId = document.get(RouteCollectionSearchIndexConstants.FIELD_ROUTE_COLLECTION_AGENCY_ID);
-      String id = document.get(RouteCollectionSearchIndexConstants.FIELD_ROUTE_COLLECTION_ID);
-      AgencyAndId routeId = new AgencyAndId(agencyId, id);
+      AgencyAndId routeId = index._searchIndex.getId(sd.doc);
+      if (routeId == null)
+        continue;
       Float score = topScores.get(routeId);
       if (score == null || score < sd.score)
         topScores.put(routeId, sd.score);
@@ -143,13 +159,46 @@ public class RouteCollectionSearchServiceImpl implements
     List<AgencyAndId> ids = new ArrayList<AgencyAndId>(topScores.size());
     double[] scores = new double[topScores.size()];
 
-    int index = 0;
-    for (AgencyAndId id : topScores.keySet()) {
-      ids.add(id);
-      scores[index] = topScores.get(id);
-      index++;
+    int i = 0;
+    for (Map.Entry<AgencyAndId, Float> entry : topScores.entrySet()) {
+      ids.add(entry.getKey());
+      scores[i] = entry.getValue();
+      i++;
     }
 
     return new SearchResult<AgencyAndId>(ids, scores);
   }
+
+  @SuppressWarnings("unchecked")
+  private static Set<String>[] getShortNameTokens(String[] shortNames) {
+    Set<String>[] tokensByDoc = new Set[shortNames.length];
+    for (int doc = 0; doc < shortNames.length; doc++) {
+      Set<String> tokens = new HashSet<String>();
+      String routeShortName = shortNames[doc];
+      if (routeShortName != null) {
+        for (String token : routeShortName.toLowerCase().split("\\b")) {
+          if (!token.isEmpty())
+            tokens.add(token);
+        }
+      }
+      tokensByDoc[doc] = tokens;
+    }
+    return tokensByDoc;
+  }
+
+  /**
+   * The search index plus the route short name tokens of each document, swapped
+   * as a unit on refresh
+   */
+  private static class RouteIndex {
+
+    private final LuceneSearchIndex _searchIndex;
+
+    private final Set<String>[] _shortNameTokens;
+
+    public RouteIndex(LuceneSearchIndex searchIndex, Set<String>[] shortNameTokens) {
+      _searchIndex = searchIndex;
+      _shortNameTokens = shortNameTokens;
+    }
+  }
 }
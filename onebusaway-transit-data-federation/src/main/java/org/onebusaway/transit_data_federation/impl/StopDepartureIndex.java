@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.gtfs.model.calendar.ServiceInterval;
+import org.onebusaway.transit_data_federation.model.StopTimeInstance;
+import org.onebusaway.transit_data_federation.services.blocks.BlockStopTimeIndex;
+import org.onebusaway.transit_data_federation.services.blocks.InstanceState;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.ServiceIdActivation;
+
+/**
+ * A per-stop departure index that merges all the {@link BlockStopTimeIndex}
+ * entries at a stop sharing the same {@link ServiceIdActivation} into a single
+ * departure-sorted set of primitive arrays. A time-range query for a service
+ * date is then a single binary search plus a contiguous scan per service id
+ * group, instead of a binary search over every block stop time index through
+ * the entity graph.
+ * 
+ * Instances are immutable and safe to share between threads.
+ * 
+ * @see StopTimeServiceImpl
+ */
+final class StopDepartureIndex {
+
+  private final List<BlockStopTimeIndex> _source;
+
+  private final int _sourceSize;
+
+  private final List<ServiceIdGroup> _groups;
+
+  private StopDepartureIndex(List<BlockStopTimeIndex> source,
+      List<ServiceIdGroup> groups) {
+    _source = source;
+    _sourceSize = source.size();
+    _groups = groups;
+  }
+
+  public static StopDepartureIndex create(List<BlockStopTimeIndex> indices) {
+
+    Map<ServiceIdActivation, List<BlockStopTimeIndex>> indicesByServiceIds = new LinkedHashMap<ServiceIdActivation, List<BlockStopTimeIndex>>();
+
+    for (BlockStopTimeIndex index : indices) {
+      List<BlockStopTimeIndex> group = indicesByServiceIds.get(index.getServiceIds());
+      if (group == null) {
+        group = new ArrayList<BlockStopTimeIndex>();
+        indicesByServiceIds.put(index.getServiceIds(), group);
+      }
+      group.add(index);
+    }
+
+    List<ServiceIdGroup> groups = new ArrayList<ServiceIdGroup>(
+        indicesByServiceIds.size());
+    for (Map.Entry<ServiceIdActivation, List<BlockStopTimeIndex>> entry : indicesByServiceIds.entrySet())
+      groups.add(new ServiceIdGroup(entry.getKey(), entry.getValue()));
+
+    return new StopDepartureIndex(indices, groups);
+  }
+
+  /**
+   * @param indices the current block stop time indices for the stop
+   * @return true if this index was built from the specified indices
+   */
+  public boolean isBuiltFrom(List<BlockStopTimeIndex> indices) {
+    return _source == indices && _sourceSize == indices.size();
+  }
+
+  public List<ServiceIdGroup> getGroups() {
+    return _groups;
+  }
+
+  public static final class ServiceIdGroup {
+
+    private final ServiceIdActivation _serviceIds;
+
+    private final ServiceInterval _serviceInterval;
+
+    private final int[] _arrivalTimes;
+
+    private final int[] _departureTimes;
+
+    private final BlockStopTimeEntry[] _stopTimes;
+
+    private final int _maxDwellTime;
+
+    private ServiceIdGroup(ServiceIdActivation serviceIds,
+        List<BlockStopTimeIndex> indices) {
+
+      List<BlockStopTimeEntry> stopTimes = new ArrayList<BlockStopTimeEntry>();
+      for (BlockStopTimeIndex index : indices)
+        stopTimes.addAll(index.getStopTimes());
+
+      int n = stopTimes.size();
+      final int[] arrivals = new int[n];
+      final int[] departures = new int[n];
+      for (int i = 0; i < n; i++) {
+        BlockStopTimeEntry stopTime = stopTimes.get(i);
+        arrivals[i] = stopTime.getArrivalTime();
+        departures[i] = stopTime.getDepartureTime();
+      }
+
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++)
+        order[i] = i;
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+          int c = departures[o1] < departures[o2] ? -1
+              : (departures[o1] == departures[o2] ? 0 : 1);
+          if (c != 0)
+            return c;
+          return arrivals[o1] < arrivals[o2] ? -1
+              : (arrivals[o1] == arrivals[o2] ? 0 : 1);
+        }
+      });
+
+      _serviceIds = serviceIds;
+      _arrivalTimes = new int[n];
+      _departureTimes = new int[n];
+      _stopTimes = new BlockStopTimeEntry[n];
+
+      ServiceInterval serviceInterval = null;
+      int maxDwellTime = 0;
+
+      for (int i = 0; i < n; i++) {
+        int from = order[i];
+        _arrivalTimes[i] = arrivals[from];
+        _departureTimes[i] = departures[from];
+        _stopTimes[i] = stopTimes.get(from);
+        serviceInterval = ServiceInterval.extend(serviceInterval,
+            arrivals[from], departures[from]);
+        maxDwellTime = Math.max(maxDwellTime, departures[from] - arrivals[from]);
+      }
+
+      _serviceInterval = serviceInterval;
+      _maxDwellTime = maxDwellTime;
+    }
+
+    public ServiceIdActivation getServiceIds() {
+      return _serviceIds;
+    }
+
+    public ServiceInterval getServiceInterval() {
+      return _serviceInterval;
+    }
+
+    public int size() {
+      return _stopTimes.length;
+    }
+
+    /**
+     * Add a {@link StopTimeInstance} for each stop time that departs at or
+     * after relativeFrom and arrives before relativeTo, the same bounds applied
+     * to an individual {@link BlockStopTimeIndex}.
+     * 
+     * @param serviceDate the service date
+     * @param relativeFrom seconds since the start of the service date
+     * @param relativeTo seconds since the start of the service date
+     * @param instances the collection the resulting instances are added to
+     */
+    public void getStopTimeInstancesInRange(long serviceDate,
+        int relativeFrom, int relativeTo, List<StopTimeInstance> instances) {
+
+      int n = _departureTimes.length;
+
+      int low = 0;
+      int high = n - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (_departureTimes[mid] < relativeFrom)
+          low = mid + 1;
+        else
+          high = mid - 1;
+      }
+
+      // A stop time with a long dwell may still arrive before relativeTo
+      long departureLimit = (long) relativeTo + _maxDwellTime;
+      InstanceState state = null;
+
+      for (int i = low; i < n && _departureTimes[i] < departureLimit; i++) {
+        if (_arrivalTimes[i] >= relativeTo)
+          continue;
+        if (state == null)
+          state = new InstanceState(serviceDate);
+        instances.add(new StopTimeInstance(_stopTimes[i], state));
+      }
+    }
+  }
+}
@@ -18,7 +18,7 @@ package org.onebusaway.transit_data_federation.impl;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,20 +26,14 @@ import javax.annotation.PostConstruct;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
-import org.apache.lucene.store.FSDirectory;
 import org.onebusaway.container.refresh.Refreshable;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.transit_data_federation.impl.LuceneSearchIndex.ELoadMode;
 import org.onebusaway.transit_data_federation.model.SearchResult;
 import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
 import org.onebusaway.transit_data_federation.services.StopSearchIndexConstants;
@@ -58,83 +52,105 @@ public class StopSearchServiceImpl implements StopSearchService {
 
   private FederatedTransitDataBundle _bundle;
 
-  private IndexSearcher _searcher;
+  private ELoadMode _indexLoadMode = ELoadMode.MEMORY;
+
+  private volatile LuceneSearchIndex _index;
 
   @Autowired
   public void setBundle(FederatedTransitDataBundle bundle) {
     _bundle = bundle;
   }
 
+  /**
+   * The stop index is a few megabytes even for large bundles, so by default it
+   * is copied onto the heap. Set with a property override like
+   * "stopSearchServiceImpl.indexLoadMode=mmap".
+   * 
+   * @param indexLoadMode "fs", "mmap" or "memory" (the default)
+   */
+  public void setIndexLoadMode(String indexLoadMode) {
+    _indexLoadMode = ELoadMode.valueOf(indexLoadMode.toUpperCase());
+  }
+
   @PostConstruct
   @Refreshable(dependsOn = RefreshableResources.STOP_SEARCH_DATA)
   public void initialize() throws IOException {
     File path = _bundle.getStopSearchIndexPath();
 
     if (path.exists()) {
-      IndexReader reader = DirectoryReader.open(FSDirectory.open(path.toPath()));
-      _searcher = new IndexSearcher(reader);
+      /* NOTE:  idf changed from
+      (float)(Math.log(numDocs/(double)(docFreq+1)) + 1.0) to
+      (float)Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5))
+      sometime after version 2.4.1
+       */
+      // new default is now BM25Similarity but conflicts with MIN_SCORE
+      _index = LuceneSearchIndex.open(path, _indexLoadMode, _analyzer,
+          new ClassicSimilarity(), StopSearchIndexConstants.FIELD_AGENCY_ID,
+          StopSearchIndexConstants.FIELD_STOP_ID);
     } else {
-      _searcher = null;
+      _index = null;
     }
   }
 
   public SearchResult<AgencyAndId> searchForStopsByCode(String id,
       int maxResultCount, double minScoreToKeep) throws IOException,
           ParseException {
-    return search(new MultiFieldQueryParser(CODE_FIELDS, _analyzer), id,
-        maxResultCount, minScoreToKeep);
+    LuceneSearchIndex index = _index;
+    if (index == null)
+      return new SearchResult<AgencyAndId>();
+    return search(index, index.getQuery(CODE_FIELDS, id), maxResultCount,
+        minScoreToKeep);
   }
 
   public SearchResult<AgencyAndId> searchForStopsByName(String name,
       int maxResultCount, double minScoreToKeep) throws IOException,
       ParseException {
-    return search(new MultiFieldQueryParser(NAME_FIELDS, _analyzer), name,
-        maxResultCount, minScoreToKeep);
+    LuceneSearchIndex index = _index;
+    if (index == null)
+      return new SearchResult<AgencyAndId>();
+    return search(index, index.getQuery(NAME_FIELDS, name), maxResultCount,
+        minScoreToKeep);
   }
 
-  private SearchResult<AgencyAndId> search(QueryParser parser, String value,
-                                           int maxResultCount, double minScoreToKeep) throws IOException,
-      ParseException {
-
-    if (_searcher == null)
+  public SearchResult<AgencyAndId> searchForStopsByNamePrefix(String prefix,
+      int maxResultCount, double minScoreToKeep) throws IOException {
+    LuceneSearchIndex index = _index;
+    if (index == null)
       return new SearchResult<AgencyAndId>();
+    Query query = index.getPrefixQuery(NAME_FIELDS, prefix);
+    if (query == null)
+      return new SearchResult<AgencyAndId>();
+    return search(index, query, maxResultCount, minScoreToKeep);
+  }
 
-    Query query = parser.parse(value);
-
-    /* NOTE:  idf changed from
-    (float)(Math.log(numDocs/(double)(docFreq+1)) + 1.0) to
-    (float)Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5))
-    sometime after version 2.4.1
-     */
-    _searcher.setSimilarity(new ClassicSimilarity()); // new default is now BM25Similarity but conflicts with MIN_SCORE
+  private SearchResult<AgencyAndId> search(LuceneSearchIndex index,
+      Query query, int maxResultCount, double minScoreToKeep)
+      throws IOException {
 
-    TopDocs top = _searcher.search(query, maxResultCount);
+    TopDocs top = index.search(query, maxResultCount);
 
-    Map<AgencyAndId, Float> topScores = new HashMap<AgencyAndId, Float>();
+    Map<AgencyAndId, Float> topScores = new LinkedHashMap<AgencyAndId, Float>();
 
     for (ScoreDoc sd : top.scoreDocs) {
-      Document document = _searcher.doc(sd.doc);
       if (sd.score < minScoreToKeep)
         continue;
-      String agencyId = document.get(StopSearchIndexConstants.FIELD_AGENCY_ID);
-      String stopId = document.get(StopSearchIndexConstants.FIELD_STOP_ID);
-      AgencyAndId id = new AgencyAndId(agencyId, stopId);
+      AgencyAndId id = index.getId(sd.doc);
+      if (id == null)
+        continue;
 
       Float existingScore = topScores.get(id);
       if (existingScore == null || existingScore < sd.score)
         topScores.put(id, sd.score);
     }
 
+    List<AgencyAndId> ids = new ArrayList<AgencyAndId>(topScores.size());
+    double[] scores = new double[topScores.size()];
 
-    // we can safely cast to int here, maxResultCount can't exceed 2 billion results
-    List<AgencyAndId> ids = new ArrayList<AgencyAndId>((int)top.totalHits);
-    double[] scores = new double[(int)top.totalHits];
-
-    int index = 0;
-    for (AgencyAndId id : topScores.keySet()) {
-      ids.add(id);
-      scores[index] = topScores.get(id);
-      index++;
+    int i = 0;
+    for (Map.Entry<AgencyAndId, Float> entry : topScores.entrySet()) {
+      ids.add(entry.getKey());
+      scores[i] = entry.getValue();
+      i++;
     }
 
     return new SearchResult<AgencyAndId>(ids, scores);
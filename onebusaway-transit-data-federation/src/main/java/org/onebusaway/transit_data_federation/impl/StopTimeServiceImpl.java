@@ -19,8 +19,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.onebusaway.collections.Range;
+import org.onebusaway.container.refresh.Refreshable;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.calendar.ServiceDate;
 import org.onebusaway.gtfs.model.calendar.ServiceInterval;
@@ -56,6 +59,13 @@ class StopTimeServiceImpl implements StopTimeService {
 
   private BlockIndexService _blockIndexService;
 
+  /**
+   * Merged departure indices, built lazily the first time a stop is queried
+   */
+  private ConcurrentMap<StopEntry, StopDepartureIndex> _departureIndices = new ConcurrentHashMap<StopEntry, StopDepartureIndex>();
+
+  private boolean _useDepartureIndex = true;
+
   @Autowired
   public void setTransitGraphDao(TransitGraphDao graph) {
     _graph = graph;
@@ -71,6 +81,24 @@ class StopTimeServiceImpl implements StopTimeService {
     _blockIndexService = blockIndexService;
   }
 
+  /**
+   * Answer time-range queries from a merged, per-stop departure index rather
+   * than searching each {@link BlockStopTimeIndex} at the stop in turn.
+   * Defaults to true.
+   * 
+   * @param useDepartureIndex
+   */
+  public void setUseDepartureIndex(boolean useDepartureIndex) {
+    _useDepartureIndex = useDepartureIndex;
+  }
+
+  @Refreshable(dependsOn = {
+      RefreshableResources.BLOCK_INDEX_DATA,
+      RefreshableResources.BLOCK_INDEX_SERVICE})
+  public void clearDepartureIndices() {
+    _departureIndices.clear();
+  }
+
   @Override
   public List<StopTimeInstance> getStopTimeInstancesInTimeRange(
       AgencyAndId stopId, Date from, Date to) {
@@ -87,14 +115,36 @@ class StopTimeServiceImpl implements StopTimeService {
 
     List<StopTimeInstance> stopTimeInstances = new ArrayList<StopTimeInstance>();
 
-    for (BlockStopTimeIndex index : _blockIndexService.getStopTimeIndicesForStop(stopEntry)) {
+    List<BlockStopTimeIndex> stopTimeIndices = _blockIndexService.getStopTimeIndicesForStop(stopEntry);
 
-      Collection<Date> serviceDates = _calendarService.getServiceDatesWithinRange(
-          index.getServiceIds(), index.getServiceInterval(), from, to);
+    if (_useDepartureIndex) {
 
-      for (Date serviceDate : serviceDates) {
-        getStopTimesForStopAndServiceDateAndTimeRange(index, serviceDate, from,
-            to, stopTimeInstances);
+      StopDepartureIndex departureIndex = getDepartureIndex(stopEntry,
+          stopTimeIndices);
+
+      for (StopDepartureIndex.ServiceIdGroup group : departureIndex.getGroups()) {
+
+        Collection<Date> serviceDates = _calendarService.getServiceDatesWithinRange(
+            group.getServiceIds(), group.getServiceInterval(), from, to);
+
+        for (Date serviceDate : serviceDates) {
+          group.getStopTimeInstancesInRange(serviceDate.getTime(),
+              effectiveTime(serviceDate, from), effectiveTime(serviceDate, to),
+              stopTimeInstances);
+        }
+      }
+
+    } else {
+
+      for (BlockStopTimeIndex index : stopTimeIndices) {
+
+        Collection<Date> serviceDates = _calendarService.getServiceDatesWithinRange(
+            index.getServiceIds(), index.getServiceInterval(), from, to);
+
+        for (Date serviceDate : serviceDates) {
+          getStopTimesForStopAndServiceDateAndTimeRange(index, serviceDate,
+              from, to, stopTimeInstances);
+        }
       }
     }
 
@@ -204,6 +254,19 @@ class StopTimeServiceImpl implements StopTimeService {
    * @param includePrivateService TODO
    ****/
 
+  private StopDepartureIndex getDepartureIndex(StopEntry stopEntry,
+      List<BlockStopTimeIndex> stopTimeIndices) {
+
+    StopDepartureIndex index = _departureIndices.get(stopEntry);
+
+    if (index == null || !index.isBuiltFrom(stopTimeIndices)) {
+      index = StopDepartureIndex.create(stopTimeIndices);
+      _departureIndices.put(stopEntry, index);
+    }
+
+    return index;
+  }
+
   private int computeFrequencyOffset(int relativeTime,
       BlockStopTimeEntry sourceBst, FrequencyEntry frequency,
       int stopTimeOffset, boolean findDepartures) {
@@ -16,6 +16,7 @@
  */
 package org.onebusaway.transit_data_federation.impl.beans;
 
+import org.onebusaway.container.refresh.Refreshable;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.realtime.api.OccupancyStatus;
 import org.onebusaway.transit_data.model.ArrivalAndDepartureBean;
@@ -26,6 +27,7 @@ import org.onebusaway.transit_data.model.schedule.FrequencyBean;
 import org.onebusaway.transit_data.model.service_alerts.ServiceAlertBean;
 import org.onebusaway.transit_data.model.trips.TripBean;
 import org.onebusaway.transit_data.model.trips.TripStatusBean;
+import org.onebusaway.transit_data_federation.impl.RefreshableResources;
 import org.onebusaway.transit_data_federation.impl.realtime.gtfs_realtime.GtfsRealtimeNegativeArrivals;
 import org.onebusaway.transit_data_federation.model.TargetTime;
 import org.onebusaway.transit_data_federation.model.bundle.HistoricalRidership;
@@ -42,6 +44,7 @@ import org.onebusaway.transit_data_federation.services.realtime.ArrivalAndDepart
 import org.onebusaway.transit_data_federation.services.realtime.BlockLocation;
 import org.onebusaway.transit_data_federation.services.realtime.RealTimeHistoryService;
 import org.onebusaway.transit_data_federation.services.realtime.ScheduleDeviationHistogram;
+import org.onebusaway.transit_data_federation.services.realtime.StopRealtimeGenerationService;
 import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
 import org.onebusaway.transit_data_federation.services.transit_graph.BlockTripEntry;
 import org.onebusaway.transit_data_federation.services.transit_graph.FrequencyEntry;
@@ -56,6 +59,8 @@ import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
@@ -82,7 +87,15 @@ public class ArrivalsAndDeparturesBeanServiceImpl implements
   private GtfsRealtimeNegativeArrivals _gtfsRealtimeNegativeArrivals;
 
   private RidershipService _ridershipService;
-  
+
+  private StopRealtimeGenerationService _stopRealtimeGenerationService;
+
+  private int _arrivalsCacheBucketSize = 10;
+
+  private int _arrivalsCacheMaxSize = 20000;
+
+  private ConcurrentMap<ArrivalsCacheKey, CachedArrivals> _arrivalsCache = new ConcurrentHashMap<ArrivalsCacheKey, CachedArrivals>();
+
   @Autowired
   public void setTransitGraphDao(TransitGraphDao transitGraphDao) {
     _transitGraphDao = transitGraphDao;
@@ -136,6 +149,55 @@ public class ArrivalsAndDeparturesBeanServiceImpl implements
     this._gtfsRealtimeNegativeArrivals = _gtfsRealtimeNegativeArrivals;
   }
 
+  @Autowired
+  public void setStopRealtimeGenerationService(
+      StopRealtimeGenerationService stopRealtimeGenerationService) {
+    _stopRealtimeGenerationService = stopRealtimeGenerationService;
+  }
+
+  /**
+   * Arrivals and departures for a stop are reused for queries falling in the
+   * same time bucket, until real-time data for a block serving the stop
+   * changes. A value of zero or less disables the cache.
+   * 
+   * @param bucketSize time bucket size in seconds
+   */
+  public void setArrivalsCacheBucketSize(int bucketSize) {
+    _arrivalsCacheBucketSize = bucketSize;
+  }
+
+  /**
+   * @param maxSize the number of stop queries to cache before the cache is
+   *          flushed
+   */
+  public void setArrivalsCacheMaxSize(int maxSize) {
+    _arrivalsCacheMaxSize = maxSize;
+  }
+
+  @Refreshable(dependsOn = RefreshableResources.TRANSIT_GRAPH)
+  public void clearArrivalsCache() {
+    _arrivalsCache.clear();
+  }
+
+  private AtomicInteger _arrivalsCacheHits = new AtomicInteger();
+
+  private AtomicInteger _arrivalsCacheMisses = new AtomicInteger();
+
+  @ManagedAttribute
+  public int getArrivalsCacheHits() {
+    return _arrivalsCacheHits.intValue();
+  }
+
+  @ManagedAttribute
+  public int getArrivalsCacheMisses() {
+    return _arrivalsCacheMisses.intValue();
+  }
+
+  @ManagedAttribute
+  public int getArrivalsCacheSize() {
+    return _arrivalsCache.size();
+  }
+
   private AtomicInteger _stopTimesTotal = new AtomicInteger();
 
   private AtomicInteger _stopTimesWithPredictions = new AtomicInteger();
@@ -176,9 +238,6 @@ public class ArrivalsAndDeparturesBeanServiceImpl implements
     int minutesAfter = Math.max(query.getMinutesAfter(),
         query.getFrequencyMinutesAfter());
 
-    long fromTime = time - minutesBefore * 60 * 1000;
-    long toTime = time + minutesAfter * 60 * 1000;
-
     long nonFrequencyFromTime = time - query.getMinutesBefore() * 60 * 1000;
     long nonFrequencyToTime = time + query.getMinutesAfter() * 60 * 1000;
 
@@ -186,10 +245,8 @@ public class ArrivalsAndDeparturesBeanServiceImpl implements
         * 1000;
     long frequencyToTime = time + query.getFrequencyMinutesAfter() * 60 * 1000;
 
-    TargetTime target = new TargetTime(time, time);
-
-    List<ArrivalAndDepartureInstance> instances = _arrivalAndDepartureService.getArrivalsAndDeparturesForStopInTimeRange(
-        stop, target, fromTime, toTime);
+    List<ArrivalAndDepartureInstance> instances = getArrivalsAndDeparturesForStop(
+        stop, time, minutesBefore, minutesAfter);
 
     List<ArrivalAndDepartureBean> beans = new ArrayList<ArrivalAndDepartureBean>();
 
@@ -277,6 +334,51 @@ public class ArrivalsAndDeparturesBeanServiceImpl implements
    * Private Methods
    ****/
 
+  private List<ArrivalAndDepartureInstance> getArrivalsAndDeparturesForStop(
+      StopEntry stop, long time, int minutesBefore, int minutesAfter) {
+
+    TargetTime target = new TargetTime(time, time);
+
+    if (_stopRealtimeGenerationService == null || _arrivalsCacheBucketSize <= 0) {
+      long fromTime = time - minutesBefore * 60 * 1000;
+      long toTime = time + minutesAfter * 60 * 1000;
+      return _arrivalAndDepartureService.getArrivalsAndDeparturesForStopInTimeRange(
+          stop, target, fromTime, toTime);
+    }
+
+    long bucketSize = _arrivalsCacheBucketSize * 1000L;
+    long bucket = time / bucketSize;
+    // read the generation before computing, so a concurrent update is never
+    // masked by the result we are about to cache
+    long generation = _stopRealtimeGenerationService.getGenerationForStop(stop);
+
+    ArrivalsCacheKey key = new ArrivalsCacheKey(stop, minutesBefore,
+        minutesAfter);
+    CachedArrivals cached = _arrivalsCache.get(key);
+    if (cached != null && cached._bucket == bucket
+        && cached._generation == generation) {
+      _arrivalsCacheHits.incrementAndGet();
+      return cached._instances;
+    }
+    _arrivalsCacheMisses.incrementAndGet();
+
+    /**
+     * Widen the window to cover any query time falling in the bucket. Callers
+     * filter the instances to their own window.
+     */
+    long bucketStart = bucket * bucketSize;
+    long fromTime = bucketStart - minutesBefore * 60 * 1000;
+    long toTime = bucketStart + bucketSize + minutesAfter * 60 * 1000;
+    List<ArrivalAndDepartureInstance> instances = Collections.unmodifiableList(_arrivalAndDepartureService.getArrivalsAndDeparturesForStopInTimeRange(
+        stop, target, fromTime, toTime));
+
+    if (_arrivalsCache.size() >= _arrivalsCacheMaxSize)
+      _arrivalsCache.clear();
+    _arrivalsCache.put(key, new CachedArrivals(bucket, generation, instances));
+
+    return instances;
+  }
+
   private ArrivalAndDepartureBean getStopTimeInstanceAsBean(long time,
       ArrivalAndDepartureInstance instance,
       Map<AgencyAndId, StopBean> stopBeanCache) {
@@ -442,4 +544,56 @@ public class ArrivalsAndDeparturesBeanServiceImpl implements
     }
   }
 
+  private static class ArrivalsCacheKey {
+
+    private final StopEntry _stop;
+
+    private final int _minutesBefore;
+
+    private final int _minutesAfter;
+
+    public ArrivalsCacheKey(StopEntry stop, int minutesBefore, int minutesAfter) {
+      _stop = stop;
+      _minutesBefore = minutesBefore;
+      _minutesAfter = minutesAfter;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + _minutesAfter;
+      result = prime * result + _minutesBefore;
+      result = prime * result + _stop.hashCode();
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (obj == null || getClass() != obj.getClass())
+        return false;
+      ArrivalsCacheKey other = (ArrivalsCacheKey) obj;
+      return _minutesAfter == other._minutesAfter
+          && _minutesBefore == other._minutesBefore
+          && _stop.equals(other._stop);
+    }
+  }
+
+  private static class CachedArrivals {
+
+    private final long _bucket;
+
+    private final long _generation;
+
+    private final List<ArrivalAndDepartureInstance> _instances;
+
+    public CachedArrivals(long bucket, long generation,
+        List<ArrivalAndDepartureInstance> instances) {
+      _bucket = bucket;
+      _generation = generation;
+      _instances = instances;
+    }
+  }
 }
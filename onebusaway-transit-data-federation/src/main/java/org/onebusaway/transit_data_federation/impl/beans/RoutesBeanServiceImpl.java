@@ -90,7 +90,7 @@ class RoutesBeanServiceImpl implements RoutesBeanService {
 
   @Refreshable(dependsOn = { 
       RefreshableResources.NARRATIVE_DATA
-      })
+      }, after = RefreshableResources.BLOCK_INDEX_DATA)
   @PostConstruct
   public void setup() {
     _stopTreesByRouteId.clear();
@@ -105,6 +105,40 @@ class StopsBeanServiceImpl implements StopsBeanService {
     return constructResult(stopBeans, results.size() == MAX_STOPS);
   }
 
+  @Override
+  public StopsBean getStopsByNamePrefix(String namePrefix, int maxCount)
+      throws ServiceException {
+
+    SearchResult<AgencyAndId> results;
+    try {
+      // every prefix match is relevant, so there is no score cutoff
+      results = _searchService.searchForStopsByNamePrefix(namePrefix,
+          maxCount + 1, 0);
+    } catch (IOException e) {
+      _log.error("error executing stop prefix search: prefix=" + namePrefix, e);
+      throw new ServiceException();
+    }
+
+    // keep the best matches first rather than sorting by id
+    List<StopBean> stopBeans = new ArrayList<StopBean>();
+    boolean limitExceeded = false;
+    for (AgencyAndId aid : results.getResults()) {
+      StopBean stopBean = _stopBeanService.getStopForId(aid, null);
+      if (stopBean == null)
+        continue;
+      if (stopBeans.size() == maxCount) {
+        limitExceeded = true;
+        break;
+      }
+      stopBeans.add(stopBean);
+    }
+
+    StopsBean result = new StopsBean();
+    result.setStops(stopBeans);
+    result.setLimitExceeded(limitExceeded);
+    return result;
+  }
+
   private StopsBean getStopsByBounds(SearchQueryBean queryBean)
       throws ServiceException {
 
@@ -0,0 +1,457 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.blocks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.geospatial.services.SphericalGeometryLibrary;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.transit_data_federation.services.blocks.BlockCalendarService;
+import org.onebusaway.transit_data_federation.services.blocks.BlockIndexService;
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.onebusaway.transit_data_federation.services.blocks.BlockLayoverIndex;
+import org.onebusaway.transit_data_federation.services.blocks.BlockStopTimeIndex;
+import org.onebusaway.transit_data_federation.services.blocks.BlockTripIndex;
+import org.onebusaway.transit_data_federation.services.blocks.FrequencyBlockTripIndex;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockTripEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopTimeEntry;
+
+/**
+ * A time-sliced grid index of the block instances passing through an area,
+ * used by {@link BlockGeospatialServiceImpl} to answer bounds queries without
+ * resolving stops, stop time indices and the calendar on every request.
+ *
+ * The static part of the index maps each grid cell to the blocks that serve a
+ * stop in that cell, along with the locations of those stops. The active block
+ * instances are computed once per time bucket with the
+ * {@link BlockCalendarService} and then spread over the cells of their blocks.
+ * Buckets are built on demand as the service day advances, and only the most
+ * recently used ones are kept.
+ *
+ * A query returns the same block instances as resolving the stops in the
+ * bounds and asking the calendar for the active blocks of those stops: a block
+ * matches if it serves a stop within the bounds, and an instance matches if one
+ * of its trips is in service during the time range.
+ */
+class ActiveBlockGridIndex {
+
+  private static final List<BlockLayoverIndex> NO_LAYOVER_INDICES = Collections.emptyList();
+
+  private static final List<FrequencyBlockTripIndex> NO_FREQUENCY_INDICES = Collections.emptyList();
+
+  private final BlockCalendarService _blockCalendarService;
+
+  private final double _latStep;
+
+  private final double _lonStep;
+
+  private final long _bucketSize;
+
+  private final int _maxCachedBuckets;
+
+  private final int _maxBucketsPerQuery;
+
+  private final List<BlockTripIndex> _blockTripIndices;
+
+  /**
+   * cell key => block id => lat-lon pairs of the stops of the block in the cell
+   */
+  private final Map<Long, Map<AgencyAndId, double[]>> _stopLocationsByCell;
+
+  private final Map<AgencyAndId, long[]> _cellsByBlockId;
+
+  private final ConcurrentSkipListMap<Long, TimeBucket> _buckets = new ConcurrentSkipListMap<Long, TimeBucket>();
+
+  private ActiveBlockGridIndex(BlockCalendarService blockCalendarService,
+      double latStep, double lonStep, long bucketSize, int maxCachedBuckets,
+      int maxBucketsPerQuery, List<BlockTripIndex> blockTripIndices,
+      Map<Long, Map<AgencyAndId, double[]>> stopLocationsByCell,
+      Map<AgencyAndId, long[]> cellsByBlockId) {
+    _blockCalendarService = blockCalendarService;
+    _latStep = latStep;
+    _lonStep = lonStep;
+    _bucketSize = bucketSize;
+    _maxCachedBuckets = maxCachedBuckets;
+    _maxBucketsPerQuery = maxBucketsPerQuery;
+    _blockTripIndices = blockTripIndices;
+    _stopLocationsByCell = stopLocationsByCell;
+    _cellsByBlockId = cellsByBlockId;
+  }
+
+  /**
+   *
+   * @param stops all stops in the transit graph
+   * @param blockIndexService
+   * @param blockCalendarService
+   * @param cellSize the edge length of a grid cell, in meters
+   * @param bucketSize the length of a time bucket, in milliseconds
+   * @param maxCachedBuckets the number of time buckets to keep
+   * @param maxBucketsPerQuery queries that span more time buckets than this
+   *          are not answered from the index
+   * @return the index
+   */
+  public static ActiveBlockGridIndex create(Iterable<StopEntry> stops,
+      BlockIndexService blockIndexService,
+      BlockCalendarService blockCalendarService, double cellSize,
+      long bucketSize, int maxCachedBuckets, int maxBucketsPerQuery) {
+
+    double latSum = 0;
+    int stopCount = 0;
+    for (StopEntry stop : stops) {
+      latSum += stop.getStopLat();
+      stopCount++;
+    }
+
+    /**
+     * Cells are square at the mean latitude of the stops, which is close
+     * enough for the extent of a single transit network
+     */
+    double lat = stopCount > 0 ? latSum / stopCount : 0;
+    CoordinateBounds cell = SphericalGeometryLibrary.bounds(lat, 0,
+        cellSize / 2);
+    double latStep = cell.getMaxLat() - cell.getMinLat();
+    double lonStep = cell.getMaxLon() - cell.getMinLon();
+
+    Map<Long, Map<AgencyAndId, List<StopEntry>>> stopsByCell = new HashMap<Long, Map<AgencyAndId, List<StopEntry>>>();
+    Map<AgencyAndId, Set<Long>> cellsByBlockId = new HashMap<AgencyAndId, Set<Long>>();
+
+    for (StopEntry stop : stops) {
+
+      Set<AgencyAndId> blockIds = new HashSet<AgencyAndId>();
+      for (BlockStopTimeIndex index : blockIndexService.getStopTimeIndicesForStop(stop)) {
+        for (BlockConfigurationEntry blockConfig : index.getBlockConfigs())
+          blockIds.add(blockConfig.getBlock().getId());
+      }
+
+      if (blockIds.isEmpty())
+        continue;
+
+      long key = key(cellIndex(stop.getStopLat(), latStep),
+          cellIndex(stop.getStopLon(), lonStep));
+
+      Map<AgencyAndId, List<StopEntry>> stopsByBlockId = stopsByCell.get(key);
+      if (stopsByBlockId == null) {
+        stopsByBlockId = new HashMap<AgencyAndId, List<StopEntry>>();
+        stopsByCell.put(key, stopsByBlockId);
+      }
+
+      for (AgencyAndId blockId : blockIds) {
+        List<StopEntry> blockStops = stopsByBlockId.get(blockId);
+        if (blockStops == null) {
+          blockStops = new ArrayList<StopEntry>();
+          stopsByBlockId.put(blockId, blockStops);
+        }
+        blockStops.add(stop);
+
+        Set<Long> cells = cellsByBlockId.get(blockId);
+        if (cells == null) {
+          cells = new HashSet<Long>();
+          cellsByBlockId.put(blockId, cells);
+        }
+        cells.add(key);
+      }
+    }
+
+    Map<Long, Map<AgencyAndId, double[]>> stopLocationsByCell = new HashMap<Long, Map<AgencyAndId, double[]>>();
+    for (Map.Entry<Long, Map<AgencyAndId, List<StopEntry>>> entry : stopsByCell.entrySet()) {
+      Map<AgencyAndId, double[]> locationsByBlockId = new HashMap<AgencyAndId, double[]>();
+      for (Map.Entry<AgencyAndId, List<StopEntry>> blockEntry : entry.getValue().entrySet()) {
+        List<StopEntry> blockStops = blockEntry.getValue();
+        double[] locations = new double[blockStops.size() * 2];
+        for (int i = 0; i < blockStops.size(); i++) {
+          locations[i * 2] = blockStops.get(i).getStopLat();
+          locations[i * 2 + 1] = blockStops.get(i).getStopLon();
+        }
+        locationsByBlockId.put(blockEntry.getKey(), locations);
+      }
+      stopLocationsByCell.put(entry.getKey(), locationsByBlockId);
+    }
+
+    Map<AgencyAndId, long[]> cellArraysByBlockId = new HashMap<AgencyAndId, long[]>();
+    List<BlockTripIndex> blockTripIndices = new ArrayList<BlockTripIndex>();
+
+    for (Map.Entry<AgencyAndId, Set<Long>> entry : cellsByBlockId.entrySet()) {
+      Set<Long> cells = entry.getValue();
+      long[] keys = new long[cells.size()];
+      int i = 0;
+      for (Long key : cells)
+        keys[i++] = key;
+      cellArraysByBlockId.put(entry.getKey(), keys);
+      blockTripIndices.addAll(blockIndexService.getBlockTripIndicesForBlock(entry.getKey()));
+    }
+
+    return new ActiveBlockGridIndex(blockCalendarService, latStep, lonStep,
+        bucketSize, maxCachedBuckets, maxBucketsPerQuery, blockTripIndices,
+        stopLocationsByCell, cellArraysByBlockId);
+  }
+
+  /**
+   *
+   * @param bounds
+   * @param timeFrom
+   * @param timeTo
+   * @return the block instances serving a stop within the bounds that are in
+   *         service during the time range, or null if the time range spans too
+   *         many time buckets to be answered from the index
+   */
+  public List<BlockInstance> getActiveBlocks(CoordinateBounds bounds,
+      long timeFrom, long timeTo) {
+
+    long bucketFrom = Math.floorDiv(timeFrom, _bucketSize);
+    long bucketTo = Math.floorDiv(timeTo, _bucketSize);
+
+    if (bucketTo < bucketFrom || bucketTo - bucketFrom >= _maxBucketsPerQuery)
+      return null;
+
+    List<Long> cells = getCellsForBounds(bounds);
+
+    Set<BlockInstance> results = new HashSet<BlockInstance>();
+    Set<BlockInstance> inactive = new HashSet<BlockInstance>();
+
+    for (long bucketIndex = bucketFrom; bucketIndex <= bucketTo; bucketIndex++) {
+
+      Map<Long, List<BlockInstance>> instancesByCell = getBucket(bucketIndex).getInstancesByCell();
+
+      for (Long cell : cells) {
+
+        List<BlockInstance> instances = instancesByCell.get(cell);
+        if (instances == null)
+          continue;
+
+        Map<AgencyAndId, double[]> stopLocationsByBlockId = _stopLocationsByCell.get(cell);
+
+        for (BlockInstance instance : instances) {
+
+          if (results.contains(instance) || inactive.contains(instance))
+            continue;
+
+          AgencyAndId blockId = instance.getBlock().getBlock().getId();
+          if (!hasStopInBounds(stopLocationsByBlockId.get(blockId), bounds))
+            continue;
+
+          if (isActiveInRange(instance, timeFrom, timeTo))
+            results.add(instance);
+          else
+            inactive.add(instance);
+        }
+      }
+    }
+
+    return new ArrayList<BlockInstance>(results);
+  }
+
+  public int getCellCount() {
+    return _stopLocationsByCell.size();
+  }
+
+  public int getCachedBucketCount() {
+    return _buckets.size();
+  }
+
+  /**
+   * Discard the cached time buckets, for instance after the calendar has
+   * changed. They are rebuilt on demand.
+   */
+  public void clearBuckets() {
+    _buckets.clear();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private List<Long> getCellsForBounds(CoordinateBounds bounds) {
+
+    long latFrom = cellIndex(bounds.getMinLat(), _latStep);
+    long latTo = cellIndex(bounds.getMaxLat(), _latStep);
+    long lonFrom = cellIndex(bounds.getMinLon(), _lonStep);
+    long lonTo = cellIndex(bounds.getMaxLon(), _lonStep);
+
+    List<Long> cells = new ArrayList<Long>();
+
+    /**
+     * For very large bounds it is cheaper to check the occupied cells than to
+     * enumerate every cell the bounds cover
+     */
+    if ((latTo - latFrom + 1) * (lonTo - lonFrom + 1) > _stopLocationsByCell.size()) {
+      for (Long cell : _stopLocationsByCell.keySet()) {
+        long latIndex = cell >> 32;
+        long lonIndex = (int) cell.longValue();
+        if (latFrom <= latIndex && latIndex <= latTo && lonFrom <= lonIndex
+            && lonIndex <= lonTo)
+          cells.add(cell);
+      }
+      return cells;
+    }
+
+    for (long latIndex = latFrom; latIndex <= latTo; latIndex++) {
+      for (long lonIndex = lonFrom; lonIndex <= lonTo; lonIndex++) {
+        long key = key(latIndex, lonIndex);
+        if (_stopLocationsByCell.containsKey(key))
+          cells.add(key);
+      }
+    }
+
+    return cells;
+  }
+
+  private TimeBucket getBucket(long bucketIndex) {
+
+    TimeBucket bucket = _buckets.get(bucketIndex);
+
+    if (bucket == null) {
+      TimeBucket newBucket = new TimeBucket(bucketIndex);
+      bucket = _buckets.putIfAbsent(bucketIndex, newBucket);
+      if (bucket == null) {
+        bucket = newBucket;
+        evictBuckets(bucketIndex);
+      }
+    }
+
+    return bucket;
+  }
+
+  /**
+   * Drop the cached buckets furthest in time from the bucket that was just
+   * added, so the cache follows the service day forward
+   */
+  private void evictBuckets(long bucketIndex) {
+    while (_buckets.size() > _maxCachedBuckets) {
+      Map.Entry<Long, TimeBucket> first = _buckets.firstEntry();
+      Map.Entry<Long, TimeBucket> last = _buckets.lastEntry();
+      if (first == null || last == null)
+        return;
+      if (bucketIndex - first.getKey() >= last.getKey() - bucketIndex)
+        _buckets.remove(first.getKey(), first.getValue());
+      else
+        _buckets.remove(last.getKey(), last.getValue());
+    }
+  }
+
+  private Map<Long, List<BlockInstance>> computeInstancesByCell(
+      long bucketIndex) {
+
+    long timeFrom = bucketIndex * _bucketSize;
+    long timeTo = timeFrom + _bucketSize;
+
+    List<BlockInstance> instances = _blockCalendarService.getActiveBlocksInTimeRange(
+        _blockTripIndices, NO_LAYOVER_INDICES, NO_FREQUENCY_INDICES, timeFrom,
+        timeTo);
+
+    Map<Long, List<BlockInstance>> instancesByCell = new HashMap<Long, List<BlockInstance>>();
+
+    for (BlockInstance instance : instances) {
+      long[] cells = _cellsByBlockId.get(instance.getBlock().getBlock().getId());
+      if (cells == null)
+        continue;
+      for (long cell : cells) {
+        List<BlockInstance> list = instancesByCell.get(cell);
+        if (list == null) {
+          list = new ArrayList<BlockInstance>();
+          instancesByCell.put(cell, list);
+        }
+        list.add(instance);
+      }
+    }
+
+    return instancesByCell;
+  }
+
+  private static boolean hasStopInBounds(double[] locations,
+      CoordinateBounds bounds) {
+    if (locations == null)
+      return false;
+    for (int i = 0; i < locations.length; i += 2) {
+      if (bounds.contains(locations[i], locations[i + 1]))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Mirrors the trip-level time check of
+   * {@link BlockCalendarServiceImpl#getActiveBlocksInTimeRange}: an instance
+   * is active if one of its trips starts before the end of the range and ends
+   * at or after the start of the range.
+   */
+  private static boolean isActiveInRange(BlockInstance instance,
+      long timeFrom, long timeTo) {
+
+    long serviceDate = instance.getServiceDate();
+    int scheduledTimeFrom = (int) ((timeFrom - serviceDate) / 1000);
+    int scheduledTimeTo = (int) ((timeTo - serviceDate) / 1000);
+
+    for (BlockTripEntry trip : instance.getBlock().getTrips()) {
+      List<BlockStopTimeEntry> stopTimes = trip.getStopTimes();
+      StopTimeEntry first = stopTimes.get(0).getStopTime();
+      StopTimeEntry last = stopTimes.get(stopTimes.size() - 1).getStopTime();
+      int minArrival = Math.min(first.getArrivalTime(), last.getArrivalTime());
+      int maxDeparture = Math.max(first.getDepartureTime(),
+          last.getDepartureTime());
+      if (scheduledTimeFrom <= maxDeparture && minArrival < scheduledTimeTo)
+        return true;
+    }
+
+    return false;
+  }
+
+  private static long cellIndex(double value, double step) {
+    return (long) Math.floor(value / step);
+  }
+
+  private static long key(long latIndex, long lonIndex) {
+    return (latIndex << 32) | (lonIndex & 0xffffffffL);
+  }
+
+  /**
+   * The active block instances of one time bucket, computed on first use
+   */
+  private class TimeBucket {
+
+    private final long _index;
+
+    private volatile Map<Long, List<BlockInstance>> _instancesByCell;
+
+    public TimeBucket(long index) {
+      _index = index;
+    }
+
+    public Map<Long, List<BlockInstance>> getInstancesByCell() {
+      Map<Long, List<BlockInstance>> instancesByCell = _instancesByCell;
+      if (instancesByCell == null) {
+        synchronized (this) {
+          instancesByCell = _instancesByCell;
+          if (instancesByCell == null) {
+            instancesByCell = computeInstancesByCell(_index);
+            _instancesByCell = instancesByCell;
+          }
+        }
+      }
+      return instancesByCell;
+    }
+  }
+}
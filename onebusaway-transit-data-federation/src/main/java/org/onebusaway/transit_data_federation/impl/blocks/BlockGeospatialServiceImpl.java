@@ -93,6 +93,18 @@ class BlockGeospatialServiceImpl implements BlockGeospatialService {
 
   private ScheduledBlockLocationService _scheduledBlockLocationService;
 
+  private boolean _useActiveBlockGridIndex = true;
+
+  private double _gridCellSize = 1000;
+
+  private int _timeBucketSize = 15 * 60;
+
+  private int _maxCachedTimeBuckets = 12;
+
+  private int _maxTimeBucketsPerQuery = 4;
+
+  private volatile ActiveBlockGridIndex _activeBlockGridIndex;
+
   @Autowired
   public void setBundle(FederatedTransitDataBundle bundle) {
     _bundle = bundle;
@@ -129,38 +141,90 @@ class BlockGeospatialServiceImpl implements BlockGeospatialService {
     _scheduledBlockLocationService = scheduledBlockLocationService;
   }
 
+  /**
+   * Answer {@link #getActiveScheduledBlocksPassingThroughBounds} from a
+   * time-sliced grid index of active blocks instead of resolving the stops and
+   * the calendar on each request. Defaults to true.
+   * 
+   * @param useActiveBlockGridIndex
+   */
+  public void setUseActiveBlockGridIndex(boolean useActiveBlockGridIndex) {
+    _useActiveBlockGridIndex = useActiveBlockGridIndex;
+  }
+
+  /**
+   * @param gridCellSize edge length of a grid index cell, in meters
+   */
+  public void setGridCellSize(double gridCellSize) {
+    _gridCellSize = gridCellSize;
+  }
+
+  /**
+   * @param timeBucketSize length of a grid index time bucket, in seconds
+   */
+  public void setTimeBucketSize(int timeBucketSize) {
+    _timeBucketSize = timeBucketSize;
+  }
+
+  /**
+   * @param maxCachedTimeBuckets the number of time buckets of active blocks to
+   *          keep in memory
+   */
+  public void setMaxCachedTimeBuckets(int maxCachedTimeBuckets) {
+    _maxCachedTimeBuckets = maxCachedTimeBuckets;
+  }
+
+  /**
+   * @param maxTimeBucketsPerQuery queries spanning more time buckets than this
+   *          bypass the grid index
+   */
+  public void setMaxTimeBucketsPerQuery(int maxTimeBucketsPerQuery) {
+    _maxTimeBucketsPerQuery = maxTimeBucketsPerQuery;
+  }
+
   @PostConstruct
   @Refreshable(dependsOn = {
       RefreshableResources.SHAPE_GEOSPATIAL_INDEX,
-      RefreshableResources.BLOCK_INDEX_SERVICE})
+      RefreshableResources.BLOCK_INDEX_SERVICE}, after = {
+      RefreshableResources.BLOCK_INDEX_DATA,
+      RefreshableResources.CALENDAR_DATA, RefreshableResources.NARRATIVE_DATA})
   public void setup() throws IOException, ClassNotFoundException {
     _blockSequenceIndicesByShapeId.clear();
     groupBlockSequenceIndicesByShapeIds();
 
     buildShapeSpatialIndex();
+    buildActiveBlockGridIndex();
+  }
+
+  @Refreshable(dependsOn = RefreshableResources.CALENDAR_DATA)
+  public void clearActiveBlockGridIndexTimeBuckets() {
+    ActiveBlockGridIndex index = _activeBlockGridIndex;
+    if (index != null)
+      index.clearBuckets();
   }
 
   @Override
   public List<BlockInstance> getActiveScheduledBlocksPassingThroughBounds(
       CoordinateBounds bounds, long timeFrom, long timeTo) {
 
+    ActiveBlockGridIndex index = _activeBlockGridIndex;
+    if (index != null) {
+      List<BlockInstance> instances = index.getActiveBlocks(bounds, timeFrom,
+          timeTo);
+      if (instances != null)
+        return instances;
+    }
+
     List<StopEntry> stops = _transitGraphDao.getStopsByLocation(bounds);
 
     Set<AgencyAndId> blockIds = new HashSet<AgencyAndId>();
 
     for (StopEntry stop : stops) {
       List<BlockStopTimeIndex> stopTimeIndices = _blockIndexService.getStopTimeIndicesForStop(stop);
-      
-      Set<BlockConfigurationEntry> blockConfigs = new HashSet<BlockConfigurationEntry>();
-      
-      List<List<BlockConfigurationEntry>> blockConfigsList = MappingLibrary.map(stopTimeIndices, "blockConfigs");
-      
-      for (List<BlockConfigurationEntry> l: blockConfigsList) {
-        blockConfigs.addAll(l);
+      for (BlockStopTimeIndex stopTimeIndex : stopTimeIndices) {
+        for (BlockConfigurationEntry blockConfig : stopTimeIndex.getBlockConfigs())
+          blockIds.add(blockConfig.getBlock().getId());
       }
-     
-      List<AgencyAndId> stopBlockIds = MappingLibrary.map(blockConfigs, "block.id");
-      blockIds.addAll(stopBlockIds);      
     }
 
     Set<BlockTripIndex> blockIndices = new HashSet<BlockTripIndex>();
@@ -310,6 +374,25 @@ class BlockGeospatialServiceImpl implements BlockGeospatialService {
     }
   }
 
+  private void buildActiveBlockGridIndex() {
+
+    if (!_useActiveBlockGridIndex) {
+      _activeBlockGridIndex = null;
+      return;
+    }
+
+    _log.info("building active block grid index...");
+
+    ActiveBlockGridIndex index = ActiveBlockGridIndex.create(
+        _transitGraphDao.getAllStops(), _blockIndexService,
+        _blockCalendarService, _gridCellSize, _timeBucketSize * 1000L,
+        _maxCachedTimeBuckets, _maxTimeBucketsPerQuery);
+
+    _log.info("active block grid index cells: " + index.getCellCount());
+
+    _activeBlockGridIndex = index;
+  }
+
   private void buildShapeSpatialIndex() throws IOException,
       ClassNotFoundException {
 
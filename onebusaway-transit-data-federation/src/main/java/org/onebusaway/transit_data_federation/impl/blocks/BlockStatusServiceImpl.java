@@ -261,10 +261,45 @@ public class BlockStatusServiceImpl implements BlockStatusService {
 
   private List<BlockLocation> getAsLocations(Iterable<BlockInstance> instances,
       long time) {
-    List<BlockLocation> locations = new ArrayList<BlockLocation>();
-    for (BlockInstance instance : instances)
-      computeLocations(instance, null, time, locations);
-    return locations;
+
+    TargetTime target = new TargetTime(time, time);
+
+    List<List<BlockLocation>> realTimeLocations = new ArrayList<List<BlockLocation>>();
+    List<BlockInstance> scheduledInstances = new ArrayList<BlockInstance>();
+
+    for (BlockInstance instance : instances) {
+      if (instance == null)
+        continue;
+      List<BlockLocation> locations = _blockLocationService.getLocationsForBlockInstance(
+          instance, target);
+      realTimeLocations.add(locations);
+      if (locations.isEmpty())
+        scheduledInstances.add(instance);
+    }
+
+    /**
+     * Block instances without real-time data are located on their schedule in
+     * one batch, so blocks running the same shape share its index lookup
+     */
+    List<BlockLocation> scheduledLocations = Collections.emptyList();
+    if (!scheduledInstances.isEmpty())
+      scheduledLocations = _blockLocationService.getScheduledLocationsForBlockInstances(
+          scheduledInstances, time);
+
+    List<BlockLocation> results = new ArrayList<BlockLocation>();
+    int scheduledIndex = 0;
+
+    for (List<BlockLocation> locations : realTimeLocations) {
+      if (!locations.isEmpty()) {
+        results.addAll(locations);
+      } else {
+        BlockLocation location = scheduledLocations.get(scheduledIndex++);
+        if (location != null && location.isInService())
+          results.add(location);
+      }
+    }
+
+    return results;
   }
 
   /**
@@ -15,13 +15,22 @@
  */
 package org.onebusaway.transit_data_federation.impl.blocks;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.onebusaway.container.refresh.Refreshable;
 import org.onebusaway.geospatial.model.CoordinatePoint;
 import org.onebusaway.geospatial.services.SphericalGeometryLibrary;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.transit_data_federation.impl.RefreshableResources;
 import org.onebusaway.transit_data_federation.impl.shapes.DistanceTraveledShapePointIndex;
 import org.onebusaway.transit_data_federation.impl.shapes.PointAndOrientation;
+import org.onebusaway.transit_data_federation.impl.shapes.ShapeDistanceIndex;
 import org.onebusaway.transit_data_federation.impl.shapes.ShapePointIndex;
 import org.onebusaway.transit_data_federation.impl.time.GenericBinarySearch;
 import org.onebusaway.transit_data_federation.model.ShapePoints;
@@ -44,11 +53,38 @@ public class ScheduledBlockLocationServiceImpl implements
 
   private ShapePointService _shapePointService;
 
+  private int _maxCachedShapePoints = 1000000;
+
+  private ConcurrentMap<AgencyAndId, ShapeDistanceIndex> _shapeIndices = new ConcurrentHashMap<AgencyAndId, ShapeDistanceIndex>();
+
+  private AtomicInteger _cachedShapePoints = new AtomicInteger();
+
   @Autowired
   public void setShapePointService(ShapePointService shapePointService) {
     _shapePointService = shapePointService;
   }
 
+  /**
+   * Shapes are indexed by distance traveled on first use. This bounds the
+   * total number of shape points held by the index cache. Once exceeded, the
+   * cache is cleared and refilled on demand. Set to zero to disable the cache.
+   * 
+   * @param maxCachedShapePoints
+   */
+  public void setMaxCachedShapePoints(int maxCachedShapePoints) {
+    _maxCachedShapePoints = maxCachedShapePoints;
+  }
+
+  public int getCachedShapePoints() {
+    return _cachedShapePoints.get();
+  }
+
+  @Refreshable(dependsOn = RefreshableResources.NARRATIVE_DATA)
+  public void clearShapeIndexCache() {
+    _shapeIndices.clear();
+    _cachedShapePoints.set(0);
+  }
+
   /****
    * {@link ScheduledBlockLocationService} Interface
    ****/
@@ -105,6 +141,72 @@ public class ScheduledBlockLocationServiceImpl implements
   @Override
   public ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime(
       BlockConfigurationEntry blockConfig, int scheduleTime) {
+    return getScheduledBlockLocationFromScheduledTime(blockConfig,
+        scheduleTime, null);
+  }
+
+  @Override
+  public ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime(
+      ScheduledBlockLocation previousLocation, int scheduleTime) {
+    return getScheduledBlockLocationFromScheduledTime(previousLocation,
+        scheduleTime, null);
+  }
+
+  @Override
+  public List<ScheduledBlockLocation> getScheduledBlockLocationsFromScheduledTimes(
+      List<BlockConfigurationEntry> blockConfigs, int[] scheduleTimes) {
+
+    if (blockConfigs.size() != scheduleTimes.length)
+      throw new IllegalArgumentException(
+          "expected a schedule time for each block configuration");
+
+    List<ScheduledBlockLocation> locations = new ArrayList<ScheduledBlockLocation>(
+        blockConfigs.size());
+
+    /**
+     * Blocks running the same pattern share a shape, so each shape index is
+     * looked up (or built, when the shared cache is disabled) once per batch
+     */
+    Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices = new HashMap<AgencyAndId, ShapeDistanceIndex>();
+
+    BlockConfigurationEntry prevBlockConfig = null;
+    ScheduledBlockLocation prevLocation = null;
+
+    for (int i = 0; i < scheduleTimes.length; i++) {
+
+      BlockConfigurationEntry blockConfig = blockConfigs.get(i);
+      int scheduleTime = scheduleTimes[i];
+
+      ScheduledBlockLocation location = null;
+
+      /**
+       * Successive queries along the same block pick up the stop time search
+       * where the previous one left off
+       */
+      if (blockConfig == prevBlockConfig && prevLocation != null
+          && prevLocation.getScheduledTime() <= scheduleTime)
+        location = getScheduledBlockLocationFromScheduledTime(prevLocation,
+            scheduleTime, batchShapeIndices);
+      else
+        location = getScheduledBlockLocationFromScheduledTime(blockConfig,
+            scheduleTime, batchShapeIndices);
+
+      locations.add(location);
+
+      prevBlockConfig = blockConfig;
+      prevLocation = location;
+    }
+
+    return locations;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime(
+      BlockConfigurationEntry blockConfig, int scheduleTime,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
 
     List<BlockStopTimeEntry> stopTimes = blockConfig.getStopTimes();
     int n = stopTimes.size();
@@ -112,12 +214,12 @@ public class ScheduledBlockLocationServiceImpl implements
         IndexAdapters.BLOCK_STOP_TIME_DEPARTURE_INSTANCE);
 
     return getScheduledBlockLocationFromScheduleTimeAndStopTimeIndex(stopTimes,
-        scheduleTime, index);
+        scheduleTime, index, batchShapeIndices);
   }
 
-  @Override
-  public ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime(
-      ScheduledBlockLocation previousLocation, int scheduleTime) {
+  private ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime(
+      ScheduledBlockLocation previousLocation, int scheduleTime,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
 
     if (previousLocation.getScheduledTime() > scheduleTime)
       throw new IllegalStateException(
@@ -138,13 +240,9 @@ public class ScheduledBlockLocationServiceImpl implements
     }
 
     return getScheduledBlockLocationFromScheduleTimeAndStopTimeIndex(stopTimes,
-        scheduleTime, index);
+        scheduleTime, index, batchShapeIndices);
   }
 
-  /****
-   * Private Methods
-   ****/
-
   private ScheduledBlockLocation getScheduledBlockLocationFromDistanceAlongBlockAndStopTimeIndex(
       List<BlockStopTimeEntry> stopTimes, double distanceAlongBlock,
       int stopTimeIndex) {
@@ -196,11 +294,12 @@ public class ScheduledBlockLocationServiceImpl implements
         * ratio);
 
     return getScheduledBlockLocationFromScheduleTimeAndStopTimeIndex(stopTimes,
-        scheduleTime, stopTimeIndex);
+        scheduleTime, stopTimeIndex, null);
   }
 
   private ScheduledBlockLocation getScheduledBlockLocationFromScheduleTimeAndStopTimeIndex(
-      List<BlockStopTimeEntry> stopTimes, int scheduleTime, int stopTimeIndex) {
+      List<BlockStopTimeEntry> stopTimes, int scheduleTime, int stopTimeIndex,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
 
     // Did we have a direct hit?
     if (0 <= stopTimeIndex && stopTimeIndex < stopTimes.size()) {
@@ -220,7 +319,7 @@ public class ScheduledBlockLocationServiceImpl implements
           && scheduleTime <= stopTime.getDepartureTime()) {
 
         return getScheduledBlockLocationWhenAtStopTime(blockStopTime, previousBlockStopTime,
-        		stopTime, scheduleTime, stopTimeIndex);
+        		stopTime, scheduleTime, stopTimeIndex, batchShapeIndices);
       }
     }
 
@@ -231,7 +330,7 @@ public class ScheduledBlockLocationServiceImpl implements
      */
     if (stopTimeIndex == 0) {
       return getScheduledBlockLocationBeforeStartOfBlock(stopTimes,
-          scheduleTime);
+          scheduleTime, batchShapeIndices);
     }
 
     /**
@@ -244,12 +343,13 @@ public class ScheduledBlockLocationServiceImpl implements
     }
 
     return getScheduledBlockLocationBetweenStopTimes(stopTimes, scheduleTime,
-        stopTimeIndex);
+        stopTimeIndex, batchShapeIndices);
   }
 
   private ScheduledBlockLocation getScheduledBlockLocationWhenAtStopTime(
       BlockStopTimeEntry blockStopTime, BlockStopTimeEntry previousBlockStopTime,
-      StopTimeEntry stopTime, int scheduleTime, int stopTimeIndex) {
+      StopTimeEntry stopTime, int scheduleTime, int stopTimeIndex,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
     StopEntry stop = stopTime.getStop();
 
     ScheduledBlockLocation result = new ScheduledBlockLocation();
@@ -258,7 +358,7 @@ public class ScheduledBlockLocationServiceImpl implements
 
     PointAndOrientation po = getLocationAlongShape(blockStopTime.getTrip(),
         blockStopTime.getDistanceAlongBlock(), shapePointIndex,
-        shapePointIndex + 1);
+        shapePointIndex + 1, batchShapeIndices);
     if (po != null) {
       result.setLocation(po.getPoint());
       result.setOrientation(po.getOrientation());
@@ -288,7 +388,8 @@ public class ScheduledBlockLocationServiceImpl implements
   }
 
   private ScheduledBlockLocation getScheduledBlockLocationBetweenStopTimes(
-      List<BlockStopTimeEntry> stopTimes, int scheduleTime, int stopTimeIndex) {
+      List<BlockStopTimeEntry> stopTimes, int scheduleTime, int stopTimeIndex,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
 
     BlockStopTimeEntry blockBefore = stopTimes.get(stopTimeIndex - 1);
     BlockStopTimeEntry blockAfter = stopTimes.get(stopTimeIndex);
@@ -354,7 +455,8 @@ public class ScheduledBlockLocationServiceImpl implements
     BlockTripEntry activeTrip = result.getActiveTrip();
 
     PointAndOrientation po = getLocationAlongShape(activeTrip,
-        distanceAlongBlock, shapePointIndexFrom, shapePointIndexTo);
+        distanceAlongBlock, shapePointIndexFrom, shapePointIndexTo,
+        batchShapeIndices);
 
     if (po != null) {
       result.setLocation(po.getPoint());
@@ -382,7 +484,8 @@ public class ScheduledBlockLocationServiceImpl implements
   }
 
   private ScheduledBlockLocation getScheduledBlockLocationBeforeStartOfBlock(
-      List<BlockStopTimeEntry> stopTimes, int scheduleTime) {
+      List<BlockStopTimeEntry> stopTimes, int scheduleTime,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
 
     /**
      * The first block stop time
@@ -417,7 +520,7 @@ public class ScheduledBlockLocationServiceImpl implements
 
     if (!Double.isNaN(distanceAlongBlock))
       po = getLocationAlongShape(blockStopTime.getTrip(), distanceAlongBlock,
-          0, nextShapePointIndex(stopTime));
+          0, nextShapePointIndex(stopTime), batchShapeIndices);
 
     ScheduledBlockLocation result = new ScheduledBlockLocation();
 
@@ -525,7 +628,7 @@ public class ScheduledBlockLocationServiceImpl implements
      */
 
     PointAndOrientation po = getLocationAlongShape(activeTrip,
-        distanceAlongBlock, shapePointIndexFrom, shapePointIndexTo);
+        distanceAlongBlock, shapePointIndexFrom, shapePointIndexTo, null);
 
     if (po != null) {
       location.setLocation(po.getPoint());
@@ -544,7 +647,8 @@ public class ScheduledBlockLocationServiceImpl implements
 
   private PointAndOrientation getLocationAlongShape(
       BlockTripEntry activeBlockTrip, double distanceAlongBlock,
-      int shapePointIndexFrom, int shapePointIndexTo) {
+      int shapePointIndexFrom, int shapePointIndexTo,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
 
     TripEntry activeTrip = activeBlockTrip.getTrip();
     AgencyAndId shapeId = activeTrip.getShapeId();
@@ -552,6 +656,19 @@ public class ScheduledBlockLocationServiceImpl implements
     if (shapeId == null)
       return null;
 
+    double distanceAlongTrip = distanceAlongBlock
+        - activeBlockTrip.getDistanceAlongBlock();
+
+    ShapeDistanceIndex shapeIndex = batchShapeIndices != null
+        ? getBatchShapeIndex(shapeId, batchShapeIndices)
+        : getShapeIndex(shapeId);
+
+    if (shapeIndex != null) {
+      int n = shapeIndex.getSize();
+      return shapeIndex.getPointAndOrientation(distanceAlongTrip,
+          Math.min(shapePointIndexFrom, n), Math.min(shapePointIndexTo, n));
+    }
+
     ShapePoints shapePoints = _shapePointService.getShapePointsForShapeId(shapeId);
 
     if (shapePoints == null || shapePoints.isEmpty())
@@ -564,11 +681,62 @@ public class ScheduledBlockLocationServiceImpl implements
     shapePointIndexFrom = Math.min(shapePointIndexFrom, shapePoints.getSize());
     shapePointIndexTo = Math.min(shapePointIndexTo, shapePoints.getSize());
 
-    double distanceAlongTrip = distanceAlongBlock
-        - activeBlockTrip.getDistanceAlongBlock();
-
     ShapePointIndex shapePointIndexMethod = new DistanceTraveledShapePointIndex(
         distanceAlongTrip, shapePointIndexFrom, shapePointIndexTo);
     return shapePointIndexMethod.getPointAndOrientation(shapePoints);
   }
+
+  /**
+   * Looks up the shape index through the shared cache at most once per batch.
+   * When the shared cache is disabled, the index is built for the batch alone
+   * so that blocks on the same shape still share it.
+   */
+  private ShapeDistanceIndex getBatchShapeIndex(AgencyAndId shapeId,
+      Map<AgencyAndId, ShapeDistanceIndex> batchShapeIndices) {
+
+    if (batchShapeIndices.containsKey(shapeId))
+      return batchShapeIndices.get(shapeId);
+
+    ShapeDistanceIndex shapeIndex = null;
+    if (_maxCachedShapePoints > 0) {
+      shapeIndex = getShapeIndex(shapeId);
+    } else {
+      ShapePoints shapePoints = _shapePointService.getShapePointsForShapeId(shapeId);
+      shapeIndex = ShapeDistanceIndex.create(shapePoints);
+    }
+
+    batchShapeIndices.put(shapeId, shapeIndex);
+    return shapeIndex;
+  }
+
+  private ShapeDistanceIndex getShapeIndex(AgencyAndId shapeId) {
+
+    if (_maxCachedShapePoints <= 0)
+      return null;
+
+    ShapeDistanceIndex shapeIndex = _shapeIndices.get(shapeId);
+    if (shapeIndex != null)
+      return shapeIndex;
+
+    ShapePoints shapePoints = _shapePointService.getShapePointsForShapeId(shapeId);
+    shapeIndex = ShapeDistanceIndex.create(shapePoints);
+
+    if (shapeIndex == null)
+      return null;
+
+    int size = shapeIndex.getSize();
+    if (_cachedShapePoints.addAndGet(size) > _maxCachedShapePoints) {
+      clearShapeIndexCache();
+      _cachedShapePoints.addAndGet(size);
+    }
+
+    ShapeDistanceIndex existing = _shapeIndices.putIfAbsent(shapeId,
+        shapeIndex);
+    if (existing != null) {
+      _cachedShapePoints.addAndGet(-size);
+      return existing;
+    }
+
+    return shapeIndex;
+  }
 }
@@ -34,8 +34,10 @@ import org.onebusaway.transit_data_federation.impl.config.BundleConfigDao;
 import org.onebusaway.transit_data_federation.model.bundle.BundleItem;
 import org.onebusaway.util.AgencyAndIdLibrary;
 import org.onebusaway.transit_data_federation.services.FederatedTransitDataBundle;
+import org.onebusaway.transit_data_federation.services.bundle.BundleGeneration;
 import org.onebusaway.transit_data_federation.services.bundle.BundleManagementService;
 import org.onebusaway.transit_data_federation.services.bundle.BundleStoreService;
+import org.onebusaway.transit_data_federation.services.bundle.BundleWarmupService;
 import org.onebusaway.transit_data_federation.services.transit_graph.TransitGraphDao;
 import org.onebusaway.transit_data_federation.services.transit_graph.TripEntry;
 import org.onebusaway.transit_data_federation.util.HttpServiceClient;
@@ -47,6 +49,7 @@ import org.springframework.scheduling.TriggerContext;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -58,7 +61,14 @@ import java.util.Set;
 import java.util.TimerTask;
 import java.util.concurrent.Future;
 
-
+/**
+ * Discovers the bundles applicable to the current service date and switches to
+ * the best of them.
+ * 
+ * With a {@link BundleWarmupService}, caches are cleared and the new bundle is
+ * warmed up before it is reported ready; otherwise, or when the warm-up stops
+ * short, caches are rebuilt after.
+ */
 public class BundleManagementServiceImpl implements BundleManagementService {
 
   // how long to wait for inference threads to exit before forcefully stopping
@@ -87,7 +97,10 @@ public class BundleManagementServiceImpl implements BundleManagementService {
   
   protected boolean _builderMode = false;
 
-  protected boolean _bundleIsReady = false;
+  private volatile BundleGeneration _bundleGeneration = new BundleGeneration(0,
+      null, false);
+
+  private final Object _bundleGenerationLock = new Object();
 
   protected String _currentBundleId = null;
 
@@ -110,6 +123,8 @@ public class BundleManagementServiceImpl implements BundleManagementService {
   @Autowired
   protected RefreshService _refreshService;
 
+  private BundleWarmupService _bundleWarmupService;
+
   @Autowired
   public void set_restApiLibrary(HttpServiceClient _restApiLibrary) {
     this._restApiLibrary = _restApiLibrary;
@@ -120,6 +135,11 @@ public class BundleManagementServiceImpl implements BundleManagementService {
     _bundleConfigDao = bundleConfigDao;
   }
 
+  @Autowired(required = false)
+  public void setBundleWarmupService(BundleWarmupService bundleWarmupService) {
+    _bundleWarmupService = bundleWarmupService;
+  }
+
   @PostConstruct
   protected void setup() throws Exception {  
     if (_builderMode) {
@@ -259,7 +279,7 @@ public class BundleManagementServiceImpl implements BundleManagementService {
   public void setBuilderMode(boolean builderMode) {
     _builderMode = builderMode;
   }
-  
+
   /********************
    * Service Methods
    ********************/
@@ -315,9 +335,14 @@ public class BundleManagementServiceImpl implements BundleManagementService {
   // Can messages be processed using this bundle and current state?
   @Override
   public Boolean bundleIsReady() {
+    return getBundleGeneration().isReady();
+  }
+
+  @Override
+  public BundleGeneration getBundleGeneration() {
     if (!_builderMode)
-      return _bundleIsReady;
-    return true;
+      return _bundleGeneration;
+    return BundleGeneration.ALWAYS_READY;
   }
 
   // register inference processing thread with the bundle manager--
@@ -351,7 +376,8 @@ public class BundleManagementServiceImpl implements BundleManagementService {
     }
 
     _log.info("Switching to bundle " + bundleName + " (" + bundleId + ")...");
-    _bundleIsReady = false;
+
+    publishBundleGeneration(_currentBundleId, false);
 
     // wait until all inference processing threads have exited...
     int t = INFERENCE_PROCESSING_THREAD_WAIT_TIMEOUT_IN_SECONDS / 5;
@@ -398,17 +424,19 @@ public class BundleManagementServiceImpl implements BundleManagementService {
       // give child classes a chance to do work here
       timingHook();
 
-      _refreshService.refresh(RefreshableResources.CALENDAR_DATA);
-      _refreshService.refresh(RefreshableResources.ROUTE_COLLECTIONS_DATA);
-      _refreshService
-          .refresh(RefreshableResources.ROUTE_COLLECTION_SEARCH_DATA);
-      _refreshService.refresh(RefreshableResources.STOP_SEARCH_DATA);
-      _refreshService.refresh(RefreshableResources.BLOCK_INDEX_DATA);
-      _refreshService.refresh(RefreshableResources.BLOCK_INDEX_SERVICE);
-      _refreshService.refresh(RefreshableResources.SHAPE_GEOSPATIAL_INDEX);
-      _refreshService.refresh(RefreshableResources.STOP_GEOSPATIAL_INDEX);
-      _refreshService.refresh(RefreshableResources.NARRATIVE_DATA);
-      _refreshService.refresh(RefreshableResources.STOP_CONSOLIDATION_FILE);
+      // everything else only needs the transit graph, so independent
+      // resources are loaded concurrently (see Refreshable.after)
+      _refreshService.refresh(Arrays.asList(
+          RefreshableResources.CALENDAR_DATA,
+          RefreshableResources.ROUTE_COLLECTIONS_DATA,
+          RefreshableResources.ROUTE_COLLECTION_SEARCH_DATA,
+          RefreshableResources.STOP_SEARCH_DATA,
+          RefreshableResources.BLOCK_INDEX_DATA,
+          RefreshableResources.BLOCK_INDEX_SERVICE,
+          RefreshableResources.SHAPE_GEOSPATIAL_INDEX,
+          RefreshableResources.STOP_GEOSPATIAL_INDEX,
+          RefreshableResources.NARRATIVE_DATA,
+          RefreshableResources.STOP_CONSOLIDATION_FILE));
 
     } catch (Exception e) {
       _log.error("Bundle " + bundleName + "(" + bundleId + ")"
@@ -431,13 +459,28 @@ public class BundleManagementServiceImpl implements BundleManagementService {
     System.gc();
     _log.info("Garbage collection after bundle switch complete.");
 
+    boolean warmedUp = false;
+    if (_bundleWarmupService != null) {
+      // entries computed from the previous bundle must not survive the warm-up
+      clearCaches();
+      warmedUp = _bundleWarmupService.warmup();
+    }
+
     _currentBundleId = bundleId;
-    _bundleIsReady = true;
+    publishBundleGeneration(bundleId, true);
     _log.info("New bundle is now ready.");
 
-    // need to do after bundle is ready so TDS can not block
-    removeAndRebuildCache();
-    _log.info("Cache rebuild complete.");
+    if (_bundleWarmupService == null) {
+      // need to do after bundle is ready so TDS can not block
+      clearCaches();
+      rebuildCache();
+      _log.info("Cache rebuild complete.");
+    } else if (!warmedUp) {
+      // the caches only hold entries of the new bundle, so fill in whatever
+      // the warm-up didn't get to
+      rebuildCache();
+      _log.info("Cache rebuild after partial warm-up complete.");
+    }
 
     return;
   }
@@ -450,7 +493,19 @@ public class BundleManagementServiceImpl implements BundleManagementService {
    * Private Helper Methods
    *************************/
 
-  private void removeAndRebuildCache() {
+  /**
+   * Publish the new generation before releasing the threads parked on the
+   * previous one, so they wake up to see it.
+   */
+  private void publishBundleGeneration(String bundleId, boolean ready) {
+    synchronized (_bundleGenerationLock) {
+      BundleGeneration previous = _bundleGeneration;
+      _bundleGeneration = previous.next(bundleId, ready);
+      previous.supersede();
+    }
+  }
+
+  private void clearCaches() {
     // give subclasses a chance to do work
     timingHook();
 
@@ -460,14 +515,15 @@ public class BundleManagementServiceImpl implements BundleManagementService {
 
       for (String cacheName : cacheManager.getCacheNames()) {
         _log.info(" > Cache: " + cacheName);
-        cacheManager.getCache(cacheName).flush();
+        cacheManager.getEhcache(cacheName).flush();
         cacheManager.clearAllStartingWith(cacheName);
       }
 
       cacheManager.clearAll(); // why not?
     }
+  }
 
-    // Rebuild cache
+  private void rebuildCache() {
     try {
       List<AgencyWithCoverageBean> agenciesWithCoverage = _transitDataService
           .getAgenciesWithCoverage();
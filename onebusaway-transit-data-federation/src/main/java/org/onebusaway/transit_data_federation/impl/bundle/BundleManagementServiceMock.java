@@ -22,6 +22,7 @@ import java.util.concurrent.Future;
 import org.onebusaway.gtfs.model.calendar.ServiceDate;
 import org.onebusaway.transit_data.model.config.BundleMetadata;
 import org.onebusaway.transit_data_federation.model.bundle.BundleItem;
+import org.onebusaway.transit_data_federation.services.bundle.BundleGeneration;
 import org.onebusaway.transit_data_federation.services.bundle.BundleManagementService;
 
 public class BundleManagementServiceMock implements BundleManagementService {
@@ -128,6 +129,11 @@ public class BundleManagementServiceMock implements BundleManagementService {
 		return true;
 	}
 
+	@Override
+	public BundleGeneration getBundleGeneration() {
+		return BundleGeneration.ALWAYS_READY;
+	}
+
 	@Override
 	public void registerInferenceProcessingThread(Future thread) {
 		// TODO Auto-generated method stub
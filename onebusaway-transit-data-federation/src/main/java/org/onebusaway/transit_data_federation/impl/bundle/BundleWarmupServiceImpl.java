@@ -0,0 +1,449 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.bundle;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.transit_data.model.AgencyWithCoverageBean;
+import org.onebusaway.transit_data.model.ArrivalsAndDeparturesQueryBean;
+import org.onebusaway.transit_data.model.SearchQueryBean;
+import org.onebusaway.transit_data.model.SearchQueryBean.EQueryType;
+import org.onebusaway.transit_data_federation.impl.federated.TransitDataServiceTemplateImpl;
+import org.onebusaway.transit_data_federation.services.bundle.BundleWarmupService;
+import org.onebusaway.transit_data_federation.services.transit_graph.TransitGraphDao;
+import org.onebusaway.transit_data_federation.services.transit_graph.TripEntry;
+import org.onebusaway.util.AgencyAndIdLibrary;
+import org.onebusaway.util.SystemTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Warms up a new bundle by replaying a request profile against the transit
+ * data service, bypassing the readiness check that holds back regular
+ * requests.
+ * 
+ * The profile is a text file with one request per line; blank lines and lines
+ * starting with '#' are ignored:
+ * 
+ * <pre>
+ * # the stop, and its arrivals and departures
+ * stop 1_75403
+ * # the route, and its stops
+ * route 1_100
+ * # stops and routes in minLat,minLon,maxLat,maxLon
+ * bounds 47.60,-122.34,47.62,-122.32
+ * </pre>
+ * 
+ * Without a profile, every stop, route and shape of the bundle is requested,
+ * as the post-load cache rebuild does. Requests still outstanding when the
+ * time budget runs out are skipped, and the warm-up reports that it stopped
+ * short. Progress is logged and published over JMX.
+ * 
+ * @see BundleManagementServiceImpl
+ */
+@ManagedResource("org.onebusaway.transit_data_federation.impl.bundle:name=BundleWarmupServiceImpl")
+public class BundleWarmupServiceImpl implements BundleWarmupService {
+
+  private static Logger _log = LoggerFactory.getLogger(BundleWarmupServiceImpl.class);
+
+  private static final int ARRIVALS_MINUTES_BEFORE = 5;
+
+  private static final int ARRIVALS_MINUTES_AFTER = 35;
+
+  private static final int BOUNDS_MAX_COUNT = 100;
+
+  /**
+   * How long to wait, in seconds, for requests still running at the end of the
+   * time budget
+   */
+  private static final int SHUTDOWN_TIMEOUT = 10;
+
+  private TransitDataServiceTemplateImpl _transitDataService;
+
+  private TransitGraphDao _transitGraphDao;
+
+  private File _profilePath;
+
+  private int _timeBudget = 60;
+
+  private int _threads = 2;
+
+  private volatile int _requestCount = 0;
+
+  private final AtomicInteger _completedRequests = new AtomicInteger();
+
+  private final AtomicInteger _failedRequests = new AtomicInteger();
+
+  private volatile long _lastWarmupTime = -1;
+
+  private volatile boolean _lastWarmupCompleted = false;
+
+  @Autowired
+  public void setTransitDataService(
+      TransitDataServiceTemplateImpl transitDataService) {
+    _transitDataService = transitDataService;
+  }
+
+  @Autowired
+  public void setTransitGraphDao(TransitGraphDao transitGraphDao) {
+    _transitGraphDao = transitGraphDao;
+  }
+
+  /**
+   * 
+   * @param profilePath the request profile; when unset or missing, every stop,
+   *          route and shape is requested
+   */
+  public void setProfilePath(File profilePath) {
+    _profilePath = profilePath;
+  }
+
+  /**
+   * 
+   * @param timeBudget the longest a warm-up may delay the bundle becoming
+   *          ready, in seconds. Default is 60.
+   */
+  public void setTimeBudget(int timeBudget) {
+    _timeBudget = timeBudget;
+  }
+
+  public void setThreads(int threads) {
+    _threads = threads;
+  }
+
+  @ManagedAttribute
+  public int getRequestCount() {
+    return _requestCount;
+  }
+
+  @ManagedAttribute
+  public int getCompletedRequests() {
+    return _completedRequests.get();
+  }
+
+  @ManagedAttribute
+  public int getFailedRequests() {
+    return _failedRequests.get();
+  }
+
+  /**
+   * 
+   * @return the percentage of the current or last warm-up's requests that have
+   *         been replayed
+   */
+  @ManagedAttribute
+  public int getProgress() {
+    int count = _requestCount;
+    return count == 0 ? 100 : _completedRequests.get() * 100 / count;
+  }
+
+  /**
+   * 
+   * @return the duration of the last warm-up, in ms
+   */
+  @ManagedAttribute
+  public long getLastWarmupTime() {
+    return _lastWarmupTime;
+  }
+
+  /**
+   * 
+   * @return false if the last warm-up ran out of time
+   */
+  @ManagedAttribute
+  public boolean isLastWarmupCompleted() {
+    return _lastWarmupCompleted;
+  }
+
+  /****
+   * {@link BundleWarmupService} Interface
+   ****/
+
+  @Override
+  public boolean warmup() {
+
+    long start = SystemTime.currentTimeMillis();
+    final long deadline = start + _timeBudget * 1000L;
+
+    List<Runnable> requests;
+    try {
+      requests = getRequests();
+    } catch (IOException ex) {
+      _log.error("error reading warm-up profile " + _profilePath, ex);
+      _lastWarmupCompleted = false;
+      return false;
+    }
+
+    _requestCount = requests.size();
+    _completedRequests.set(0);
+    _failedRequests.set(0);
+    _log.info("warming up bundle with " + requests.size()
+        + " requests, time budget " + _timeBudget + " s");
+
+    final int progressStep = Math.max(1, requests.size() / 10);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+        _threads));
+
+    for (final Runnable request : requests) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (SystemTime.currentTimeMillis() > deadline)
+            return;
+          try {
+            request.run();
+          } catch (Throwable ex) {
+            // a bad profile entry should not hold up the bundle
+            _failedRequests.incrementAndGet();
+            if (_log.isDebugEnabled())
+              _log.debug("warm-up request failed: " + request, ex);
+          }
+          int completed = _completedRequests.incrementAndGet();
+          if (completed % progressStep == 0)
+            _log.info("warm-up " + getProgress() + "% complete");
+        }
+      });
+    }
+
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(
+          Math.max(0, deadline - SystemTime.currentTimeMillis()),
+          TimeUnit.MILLISECONDS)) {
+        // drop the queued requests, and give the running ones a chance to
+        // finish so they don't overlap with regular requests
+        executor.shutdownNow();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS))
+          _log.warn("warm-up requests still running after " + SHUTDOWN_TIMEOUT
+              + " s past the time budget");
+      }
+    } catch (InterruptedException ex) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+
+    boolean completed = _completedRequests.get() == requests.size();
+    _lastWarmupCompleted = completed;
+    _lastWarmupTime = SystemTime.currentTimeMillis() - start;
+    _log.info("warm-up " + (completed ? "complete" : "stopped at time budget")
+        + ": " + _completedRequests.get() + " of " + requests.size()
+        + " requests (" + _failedRequests.get() + " failed) in "
+        + _lastWarmupTime + " ms");
+    return completed;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private List<Runnable> getRequests() throws IOException {
+    if (_profilePath != null && _profilePath.exists())
+      return readProfile(_profilePath);
+    if (_profilePath != null)
+      _log.warn("warm-up profile " + _profilePath
+          + " not found, requesting the whole bundle");
+    return getRequestsForBundle();
+  }
+
+  private List<Runnable> readProfile(File path) throws IOException {
+
+    List<Runnable> requests = new ArrayList<Runnable>();
+    BufferedReader reader = new BufferedReader(new FileReader(path));
+
+    try {
+      String line = null;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.length() == 0 || line.startsWith("#"))
+          continue;
+        String[] tokens = line.split("\\s+", 2);
+        if (tokens.length != 2) {
+          _log.warn("invalid warm-up profile line " + lineNumber + ": " + line);
+          continue;
+        }
+        String type = tokens[0];
+        String value = tokens[1].trim();
+        if (type.equals("stop")) {
+          requests.add(new StopRequest(value, true));
+        } else if (type.equals("route")) {
+          requests.add(new RouteRequest(value));
+        } else if (type.equals("bounds")) {
+          CoordinateBounds bounds = parseBounds(value);
+          if (bounds == null)
+            _log.warn("invalid warm-up bounds on line " + lineNumber + ": "
+                + value);
+          else
+            requests.add(new BoundsRequest(bounds));
+        } else {
+          _log.warn("unknown warm-up request type on line " + lineNumber
+              + ": " + type);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    return requests;
+  }
+
+  private List<Runnable> getRequestsForBundle() {
+
+    List<Runnable> requests = new ArrayList<Runnable>();
+
+    for (AgencyWithCoverageBean agencyWithCoverage : _transitDataService.getAgenciesWithCoverage()) {
+      String agencyId = agencyWithCoverage.getAgency().getId();
+      for (String stopId : _transitDataService.getStopIdsForAgencyId(agencyId).getList())
+        requests.add(new StopRequest(stopId, false));
+      for (String routeId : _transitDataService.getRouteIdsForAgencyId(agencyId).getList())
+        requests.add(new RouteRequest(routeId));
+    }
+
+    Set<AgencyAndId> shapeIds = new HashSet<AgencyAndId>();
+    for (TripEntry trip : _transitGraphDao.getAllTrips()) {
+      AgencyAndId shapeId = trip.getShapeId();
+      if (shapeId != null && shapeId.hasValues())
+        shapeIds.add(shapeId);
+    }
+    for (AgencyAndId shapeId : shapeIds)
+      requests.add(new ShapeRequest(AgencyAndIdLibrary.convertToString(shapeId)));
+
+    return requests;
+  }
+
+  private static CoordinateBounds parseBounds(String value) {
+    String[] tokens = value.split(",");
+    if (tokens.length != 4)
+      return null;
+    try {
+      return new CoordinateBounds(Double.parseDouble(tokens[0].trim()),
+          Double.parseDouble(tokens[1].trim()),
+          Double.parseDouble(tokens[2].trim()),
+          Double.parseDouble(tokens[3].trim()));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private class StopRequest implements Runnable {
+
+    private final String _stopId;
+
+    private final boolean _arrivalsAndDepartures;
+
+    public StopRequest(String stopId, boolean arrivalsAndDepartures) {
+      _stopId = stopId;
+      _arrivalsAndDepartures = arrivalsAndDepartures;
+    }
+
+    @Override
+    public void run() {
+      _transitDataService.getStop(_stopId);
+      if (_arrivalsAndDepartures) {
+        ArrivalsAndDeparturesQueryBean query = new ArrivalsAndDeparturesQueryBean();
+        query.setTime(System.currentTimeMillis());
+        query.setMinutesBefore(ARRIVALS_MINUTES_BEFORE);
+        query.setMinutesAfter(ARRIVALS_MINUTES_AFTER);
+        _transitDataService.getStopWithArrivalsAndDepartures(_stopId, query);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "stop " + _stopId;
+    }
+  }
+
+  private class RouteRequest implements Runnable {
+
+    private final String _routeId;
+
+    public RouteRequest(String routeId) {
+      _routeId = routeId;
+    }
+
+    @Override
+    public void run() {
+      _transitDataService.getRouteForId(_routeId);
+      _transitDataService.getStopsForRoute(_routeId);
+    }
+
+    @Override
+    public String toString() {
+      return "route " + _routeId;
+    }
+  }
+
+  private class BoundsRequest implements Runnable {
+
+    private final CoordinateBounds _bounds;
+
+    public BoundsRequest(CoordinateBounds bounds) {
+      _bounds = bounds;
+    }
+
+    @Override
+    public void run() {
+      SearchQueryBean query = new SearchQueryBean();
+      query.setType(EQueryType.BOUNDS);
+      query.setBounds(_bounds);
+      query.setMaxCount(BOUNDS_MAX_COUNT);
+      _transitDataService.getStops(query);
+      _transitDataService.getRoutes(query);
+    }
+
+    @Override
+    public String toString() {
+      return "bounds " + _bounds;
+    }
+  }
+
+  private class ShapeRequest implements Runnable {
+
+    private final String _shapeId;
+
+    public ShapeRequest(String shapeId) {
+      _shapeId = shapeId;
+    }
+
+    @Override
+    public void run() {
+      _transitDataService.getShapeForId(_shapeId);
+    }
+
+    @Override
+    public String toString() {
+      return "shape " + _shapeId;
+    }
+  }
+}
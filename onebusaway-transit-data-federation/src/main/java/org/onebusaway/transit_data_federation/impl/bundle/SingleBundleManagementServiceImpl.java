@@ -19,6 +19,7 @@ import org.onebusaway.gtfs.model.calendar.ServiceDate;
 import org.onebusaway.transit_data.model.config.BundleMetadata;
 import org.onebusaway.transit_data_federation.impl.config.BundleConfigDao;
 import org.onebusaway.transit_data_federation.model.bundle.BundleItem;
+import org.onebusaway.transit_data_federation.services.bundle.BundleGeneration;
 import org.onebusaway.transit_data_federation.services.bundle.BundleManagementService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -93,6 +94,11 @@ public class SingleBundleManagementServiceImpl implements
     return true;
   }
 
+  @Override
+  public BundleGeneration getBundleGeneration() {
+    return BundleGeneration.ALWAYS_READY;
+  }
+
   // register inference processing thread with the bundle manager--
   // bundles cannot be changed as long as threads are actively using it.
   @Override
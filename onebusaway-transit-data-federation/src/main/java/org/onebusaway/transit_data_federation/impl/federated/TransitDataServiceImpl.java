@@ -21,8 +21,11 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.onebusaway.exceptions.ServiceException;
+import org.onebusaway.exceptions.ServiceUnavailableServiceException;
 import org.onebusaway.federations.annotations.FederatedByAgencyIdMethod;
 import org.onebusaway.federations.annotations.FederatedByEntityIdMethod;
 import org.onebusaway.geospatial.model.CoordinateBounds;
@@ -59,14 +62,18 @@ import org.onebusaway.transit_data.model.trips.TripsForAgencyQueryBean;
 import org.onebusaway.transit_data.model.trips.TripsForBoundsQueryBean;
 import org.onebusaway.transit_data.model.trips.TripsForRouteQueryBean;
 import org.onebusaway.transit_data.services.TransitDataService;
+import org.onebusaway.transit_data_federation.services.bundle.BundleGeneration;
 import org.onebusaway.transit_data_federation.services.bundle.BundleManagementService;
 import org.onebusaway.transit_data_federation.services.bundle.BundleSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
 @Component
+@ManagedResource("org.onebusaway.transit_data_federation.impl.federated:name=TransitDataServiceImpl")
 public class TransitDataServiceImpl implements TransitDataService {
   
   private static Logger _log = LoggerFactory.getLogger(TransitDataServiceImpl.class);
@@ -85,34 +92,91 @@ public class TransitDataServiceImpl implements TransitDataService {
     this._bundleManagementService = _bundleManagementService;
   }
 
-  private int _blockedRequestCounter = 0;
+  private boolean _failFastWhenBundleNotReady = false;
+
+  private long _bundleReadyTimeout = 0;
+
+  private final AtomicLong _blockedRequestCount = new AtomicLong();
+
+  private final AtomicLong _rejectedRequestCount = new AtomicLong();
+
+  /**
+   * Instead of parking request threads while a bundle loads, fail them
+   * immediately with a {@link ServiceUnavailableServiceException}, which the
+   * API reports as a 503. Keeps the web container's worker pool free for
+   * requests that don't need the bundle.
+   * 
+   * @param failFastWhenBundleNotReady true to fail fast (default is false)
+   */
+  public void setFailFastWhenBundleNotReady(boolean failFastWhenBundleNotReady) {
+    _failFastWhenBundleNotReady = failFastWhenBundleNotReady;
+  }
+
+  /**
+   * 
+   * @param bundleReadyTimeout maximum time in ms a request waits for the
+   *          bundle before failing with a
+   *          {@link ServiceUnavailableServiceException}, or 0 (the default)
+   *          to wait indefinitely
+   */
+  public void setBundleReadyTimeout(long bundleReadyTimeout) {
+    _bundleReadyTimeout = bundleReadyTimeout;
+  }
+
+  @ManagedAttribute
+  public long getBlockedRequestCount() {
+    return _blockedRequestCount.get();
+  }
+
+  @ManagedAttribute
+  public long getRejectedRequestCount() {
+    return _rejectedRequestCount.get();
+  }
 
   /**
    * This method blocks until the bundle is ready--this method is called as part of the proxy to each of the underlying
    * methods of the TDS to ensure all calls to those bundle-backed methods succeed (i.e. the bundle is ready
-   * to be queried.)
+   * to be queried.)  Once a bundle is ready this is a single volatile read; no lock is taken on any path.
    */
   private void blockUntilBundleIsReady() {
+    if (_bundleManagementService == null)
+      return;
+    BundleGeneration generation = _bundleManagementService.getBundleGeneration();
+    if (!generation.isReady())
+      waitForBundle(generation);
+  }
+
+  private void waitForBundle(BundleGeneration generation) {
+
+    // only print this every 25 times so we don't fill up the logs!
+    if (_blockedRequestCount.incrementAndGet() % 25 == 0)
+      _log.warn("Bundle is not ready or none is loaded--we've blocked 25 TDS requests since last log event.");
+
+    if (_failFastWhenBundleNotReady)
+      rejectRequest();
+
+    long deadline = _bundleReadyTimeout > 0 ? System.currentTimeMillis()
+        + _bundleReadyTimeout : Long.MAX_VALUE;
+
     try {
-      while(_bundleManagementService != null && !_bundleManagementService.bundleIsReady()) {
-        _blockedRequestCounter++;
-
-        // only print this every 25 times so we don't fill up the logs!
-        if(_blockedRequestCounter > 25) {
-          _log.warn("Bundle is not ready or none is loaded--we've blocked 25 TDS requests since last log event.");
-          _blockedRequestCounter = 0;
-        }
-
-        synchronized(this) {
-          Thread.sleep(250);
-          Thread.yield();
-        }
+      while (!generation.isReady()) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0)
+          rejectRequest();
+        generation.awaitSuperseded(remaining, TimeUnit.MILLISECONDS);
+        generation = _bundleManagementService.getBundleGeneration();
       }
-    } catch(InterruptedException e) {
-      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejectRequest();
     }
   }
 
+  private void rejectRequest() {
+    _rejectedRequestCount.incrementAndGet();
+    throw new ServiceUnavailableServiceException("transit data bundle is not ready");
+  }
+
   /****
    * {@link TransitDataService} Interface
    ****/
@@ -155,6 +219,13 @@ public class TransitDataServiceImpl implements TransitDataService {
     return _transitDataService.getStopsByName(stopName);
   }
 
+  @Override
+  public StopsBean getStopsByNamePrefix(String namePrefix, int maxCount)
+      throws ServiceException {
+    blockUntilBundleIsReady();
+    return _transitDataService.getStopsByNamePrefix(namePrefix, maxCount);
+  }
+
     @Override
   public StopBean getStop(String stopId) throws ServiceException {
     blockUntilBundleIsReady();
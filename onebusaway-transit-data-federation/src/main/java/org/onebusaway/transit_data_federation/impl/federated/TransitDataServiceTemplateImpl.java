@@ -224,6 +224,12 @@ public class TransitDataServiceTemplateImpl implements TransitDataServiceTemplat
     return _stopsBeanService.getStopsByName(stopName);
   }
 
+  //@Override
+  public StopsBean getStopsByNamePrefix(String namePrefix, int maxCount)
+      throws ServiceException {
+    return _stopsBeanService.getStopsByNamePrefix(namePrefix, maxCount);
+  }
+
 
   //@Override
   public StopBean getStop(String stopId) throws ServiceException {
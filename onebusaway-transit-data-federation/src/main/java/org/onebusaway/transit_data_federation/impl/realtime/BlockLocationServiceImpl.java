@@ -58,6 +58,7 @@ import org.onebusaway.transit_data_federation.services.realtime.BlockLocationLis
 import org.onebusaway.transit_data_federation.services.realtime.BlockLocationService;
 import org.onebusaway.transit_data_federation.services.realtime.RealTimeHistoryService;
 import org.onebusaway.transit_data_federation.services.realtime.ScheduleDeviationSamples;
+import org.onebusaway.transit_data_federation.services.realtime.StopRealtimeGenerationService;
 import org.onebusaway.transit_data_federation.services.realtime.VehicleLocationCacheElement;
 import org.onebusaway.transit_data_federation.services.realtime.VehicleLocationCacheElements;
 import org.onebusaway.transit_data_federation.services.realtime.VehicleLocationRecordCache;
@@ -106,6 +107,8 @@ public class BlockLocationServiceImpl implements BlockLocationService,
 
   private List<BlockLocationListener> _blockLocationListeners = Collections.emptyList();
 
+  private StopRealtimeGenerationService _stopRealtimeGenerationService;
+
   /**
    * By default, we keep around 20 minutes of cache entries
    */
@@ -208,6 +211,12 @@ public class BlockLocationServiceImpl implements BlockLocationService,
     _blockLocationListeners = listeners;
   }
 
+  @Autowired
+  public void setStopRealtimeGenerationService(
+      StopRealtimeGenerationService stopRealtimeGenerationService) {
+    _stopRealtimeGenerationService = stopRealtimeGenerationService;
+  }
+
   /**
    * Controls how far back in time we include records in the
    * {@link BlockLocationRecordCollection} for each active trip.
@@ -332,7 +341,10 @@ public class BlockLocationServiceImpl implements BlockLocationService,
 
   @Override
   public void resetVehicleLocation(AgencyAndId vehicleId) {
+    VehicleLocationCacheElements elements = _cache.getRecordForVehicleId(vehicleId);
     _cache.clearRecordsForVehicleId(vehicleId);
+    if (elements != null && _stopRealtimeGenerationService != null)
+      _stopRealtimeGenerationService.handleBlockInstanceUpdate(elements.getBlockInstance());
   }
 
   /****
@@ -407,6 +419,38 @@ public class BlockLocationServiceImpl implements BlockLocationService,
     return getBlockLocation(blockInstance, null, null, targetTime);
   }
 
+  @Override
+  public List<BlockLocation> getScheduledLocationsForBlockInstances(
+      List<BlockInstance> blockInstances, long targetTime) {
+
+    List<BlockConfigurationEntry> blockConfigs = new ArrayList<BlockConfigurationEntry>(
+        blockInstances.size());
+    int[] scheduledTimes = new int[blockInstances.size()];
+
+    for (int i = 0; i < scheduledTimes.length; i++) {
+      BlockInstance blockInstance = blockInstances.get(i);
+      blockConfigs.add(blockInstance.getBlock());
+      scheduledTimes[i] = (int) ((targetTime - blockInstance.getServiceDate()) / 1000);
+    }
+
+    List<ScheduledBlockLocation> scheduledLocations = _scheduledBlockLocationService.getScheduledBlockLocationsFromScheduledTimes(
+        blockConfigs, scheduledTimes);
+
+    List<BlockLocation> locations = new ArrayList<BlockLocation>(
+        blockInstances.size());
+
+    for (int i = 0; i < scheduledTimes.length; i++) {
+      ScheduledBlockLocation scheduledLocation = scheduledLocations.get(i);
+      BlockLocation location = null;
+      if (scheduledLocation != null)
+        location = getBlockLocation(blockInstances.get(i), null,
+            scheduledLocation, targetTime);
+      locations.add(location);
+    }
+
+    return locations;
+  }
+
   @Override
   public BlockLocation getLocationForVehicleAndTime(AgencyAndId vehicleId,
       TargetTime targetTime) {
@@ -503,6 +547,9 @@ public class BlockLocationServiceImpl implements BlockLocationService,
     VehicleLocationCacheElements elements = _cache.addRecord(blockInstance,
         record, scheduledBlockLocation, samples);
 
+    if (_stopRealtimeGenerationService != null)
+      _stopRealtimeGenerationService.handleBlockInstanceUpdate(blockInstance);
+
     if (!CollectionsLibrary.isEmpty(_blockLocationListeners)) {
 
       /**
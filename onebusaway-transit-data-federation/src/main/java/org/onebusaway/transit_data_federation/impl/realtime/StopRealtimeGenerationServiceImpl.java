@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.realtime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.onebusaway.container.refresh.Refreshable;
+import org.onebusaway.transit_data_federation.impl.RefreshableResources;
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.onebusaway.transit_data_federation.services.realtime.StopRealtimeGenerationService;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopEntry;
+import org.springframework.stereotype.Component;
+
+/**
+ * All generations are drawn from a single sequence, so a stop's generation
+ * never repeats, even across {@link #invalidateAll()}.
+ */
+@Component
+public class StopRealtimeGenerationServiceImpl implements
+    StopRealtimeGenerationService {
+
+  private final AtomicLong _sequence = new AtomicLong();
+
+  private final ConcurrentMap<StopEntry, Long> _generationsByStop = new ConcurrentHashMap<StopEntry, Long>();
+
+  /**
+   * The generation of stops without a recorded update
+   */
+  private volatile long _baseGeneration = 0;
+
+  @Override
+  public long getGenerationForStop(StopEntry stop) {
+    Long generation = _generationsByStop.get(stop);
+    return generation != null ? generation : _baseGeneration;
+  }
+
+  @Override
+  public void handleBlockInstanceUpdate(BlockInstance blockInstance) {
+    if (blockInstance == null)
+      return;
+    BlockConfigurationEntry blockConfig = blockInstance.getBlock();
+    Long generation = _sequence.incrementAndGet();
+    for (BlockStopTimeEntry blockStopTime : blockConfig.getStopTimes())
+      advance(blockStopTime.getStopTime().getStop(), generation);
+  }
+
+  @Override
+  @Refreshable(dependsOn = RefreshableResources.TRANSIT_GRAPH)
+  public void invalidateAll() {
+    _baseGeneration = _sequence.incrementAndGet();
+    _generationsByStop.clear();
+  }
+
+  /**
+   * Concurrent updates may finish out of order, so never move a stop back to
+   * an older generation.
+   */
+  private void advance(StopEntry stop, Long generation) {
+    while (true) {
+      Long current = _generationsByStop.putIfAbsent(stop, generation);
+      if (current == null || current >= generation
+          || _generationsByStop.replace(stop, current, generation))
+        return;
+    }
+  }
+}
@@ -16,18 +16,20 @@
 package org.onebusaway.transit_data_federation.impl.realtime;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -44,6 +46,8 @@ import org.onebusaway.transit_data_federation.services.realtime.VehicleLocationR
 import org.onebusaway.util.SystemTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
 /**
@@ -52,9 +56,18 @@ import org.springframework.stereotype.Component;
  * condition issues. If we DO get lots of back to back updates, we'll just have
  * to assume some amount of data loss.
  * 
+ * Stale records are evicted with a time wheel: each vehicle id is filed under
+ * the time bucket of its most recent update, so eviction only visits the
+ * vehicles filed under buckets that have fallen out of the cache window rather
+ * than every entry in the cache. A vehicle that hasn't been updated since the
+ * start of the window is evicted outright, records, raw position and all,
+ * whatever the timestamps of its records. The number of vehicles and the number of
+ * records kept per vehicle can be bounded to put a hard limit on memory use.
+ * 
  * @param record record to add
  */
 @Component
+@ManagedResource("org.onebusaway.transit_data_federation.impl.realtime:name=VehicleLocationRecordCacheImpl")
 public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCache {
 
   private static Logger _log = LoggerFactory.getLogger(VehicleLocationRecordCacheImpl.class);
@@ -63,7 +76,16 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
 
   private ConcurrentMap<BlockInstance, Set<AgencyAndId>> _vehicleIdsByBlockInstance = new ConcurrentHashMap<BlockInstance, Set<AgencyAndId>>();
 
-  private Map<AgencyAndId, VehicleLocationRecord> rawPositionMap = new HashMap<>();
+  private ConcurrentMap<AgencyAndId, RawPosition> _rawPositionsByVehicleId = new ConcurrentHashMap<AgencyAndId, RawPosition>();
+
+  /**
+   * Vehicle ids keyed by the time bucket in which they were updated. A vehicle
+   * may appear in more than one bucket, but is always in the bucket of its most
+   * recent update.
+   */
+  private ConcurrentNavigableMap<Long, Set<AgencyAndId>> _vehicleIdsByUpdateBucket = new ConcurrentSkipListMap<Long, Set<AgencyAndId>>();
+
+  private ConcurrentMap<AgencyAndId, Long> _lastUpdateByVehicleId = new ConcurrentHashMap<AgencyAndId, Long>();
 
   /**
    * By default, we keep around 20 minutes of cache entries
@@ -72,6 +94,18 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
 
   private int _cacheEvictionFrequency = 1;
 
+  private int _evictionBucketSize = 60;
+
+  private int _maxVehicles = 100000;
+
+  private int _maxRecordsPerVehicle = 0;
+
+  private AtomicLong _evictions = new AtomicLong();
+
+  private AtomicLong _capacityEvictions = new AtomicLong();
+
+  private AtomicLong _contentionRetries = new AtomicLong();
+
   private ScheduledExecutorService _executor;
 
   private ScheduledFuture<?> _evictionHandler;
@@ -94,6 +128,68 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
     _cacheEvictionFrequency = cacheEvictionFrequency;
   }
 
+  /**
+   * 
+   * @param evictionBucketSize the width of an eviction time bucket, in seconds
+   */
+  public void setEvictionBucketSize(int evictionBucketSize) {
+    _evictionBucketSize = evictionBucketSize;
+  }
+
+  /**
+   * When more vehicles than this are cached, the least recently updated
+   * vehicles are evicted. Zero or less means no limit.
+   * 
+   * @param maxVehicles
+   */
+  public void setMaxVehicles(int maxVehicles) {
+    _maxVehicles = maxVehicles;
+  }
+
+  /**
+   * Keep at most this many records per vehicle, in addition to the cache
+   * window limit. Zero or less means no limit.
+   * 
+   * @param maxRecordsPerVehicle
+   */
+  public void setMaxRecordsPerVehicle(int maxRecordsPerVehicle) {
+    _maxRecordsPerVehicle = maxRecordsPerVehicle;
+  }
+
+  @ManagedAttribute
+  public int getVehicleCount() {
+    return _entriesByVehicleId.size();
+  }
+
+  @ManagedAttribute
+  public int getRawPositionCount() {
+    return _rawPositionsByVehicleId.size();
+  }
+
+  @ManagedAttribute
+  public int getEvictionBucketCount() {
+    return _vehicleIdsByUpdateBucket.size();
+  }
+
+  @ManagedAttribute
+  public long getEvictions() {
+    return _evictions.get();
+  }
+
+  @ManagedAttribute
+  public long getCapacityEvictions() {
+    return _capacityEvictions.get();
+  }
+
+  /**
+   * @return the number of times adding a record had to retry because the entry
+   *         for the vehicle was closed concurrently
+   */
+  @ManagedAttribute
+  public long getContentionRetries() {
+    return _contentionRetries.get();
+  }
+
   @PostConstruct
   public void start() {
     _executor = Executors.newScheduledThreadPool(1);
@@ -115,12 +211,20 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
    ****/
   @Override
   public void addRawPosition(AgencyAndId vehicleId, VehicleLocationRecord point) {
-    rawPositionMap.put(vehicleId, point);
+    long now = SystemTime.currentTimeMillis();
+    RawPosition previous = _rawPositionsByVehicleId.put(vehicleId,
+        new RawPosition(point, now));
+    touch(vehicleId, now);
+    if (previous == null)
+      enforceCapacity(vehicleId);
   }
 
   @Override
   public VehicleLocationRecord getRawPosition(AgencyAndId vehicleId) {
-    return rawPositionMap.get(vehicleId);
+    RawPosition position = _rawPositionsByVehicleId.get(vehicleId);
+    if (position == null)
+      return null;
+    return position.getRecord();
   }
 
 
@@ -159,11 +263,15 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
       ScheduleDeviationSamples samples) {
 
     AgencyAndId vehicleId = record.getVehicleId();
+    boolean added = false;
 
-    while (true) {
+    for (int attempt = 0;; attempt++) {
+
+      if (attempt > 0)
+        _contentionRetries.incrementAndGet();
 
       VehicleLocationCacheEntry newCacheEntry = new VehicleLocationCacheEntry(
-          blockInstance);
+          blockInstance, _maxRecordsPerVehicle);
 
       VehicleLocationCacheEntry cacheEntry = _entriesByVehicleId.putIfAbsent(
           vehicleId, newCacheEntry);
@@ -178,6 +286,7 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
          */
         ConcurrentCollectionsLibrary.addToMapValueSet(
             _vehicleIdsByBlockInstance, blockInstance, vehicleId);
+        added = true;
       }
 
       /**
@@ -210,6 +319,10 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
 
       // Ensure the block => vehicle mapping is set
 
+      touch(vehicleId, SystemTime.currentTimeMillis());
+      if (added)
+        enforceCapacity(vehicleId);
+
       return cacheEntry.getElements();
 
     }
@@ -226,26 +339,45 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
     }
   }
 
+  /**
+   * Evict all records last updated before the specified time, and every
+   * vehicle that hasn't been updated since then.
+   * 
+   * @param time
+   */
   public void clearStaleRecords(long time) {
 
-    Iterator<Entry<AgencyAndId, VehicleLocationCacheEntry>> it = _entriesByVehicleId.entrySet().iterator();
+    long cutoffBucket = getBucket(time);
 
-    while (it.hasNext()) {
+    while (true) {
 
-      Entry<AgencyAndId, VehicleLocationCacheEntry> entry = it.next();
-      AgencyAndId vehicleId = entry.getKey();
-      VehicleLocationCacheEntry cacheEntry = entry.getValue();
+      Entry<Long, Set<AgencyAndId>> bucket = _vehicleIdsByUpdateBucket.firstEntry();
+      if (bucket == null || bucket.getKey() > cutoffBucket)
+        return;
 
-      if (cacheEntry.closeIfStale(time)) {
+      /**
+       * Vehicles in an expired bucket are either stale, and evicted, or have
+       * been updated since, and are filed under the bucket of their last
+       * update instead.  Vehicles last updated in the bucket spanning the
+       * cutoff time may still be current and stay in that bucket.
+       */
+      boolean spansCutoff = bucket.getKey() == cutoffBucket;
+
+      Iterator<AgencyAndId> it = bucket.getValue().iterator();
+      while (it.hasNext()) {
+        AgencyAndId vehicleId = it.next();
+        if (evictIfStale(vehicleId, time)
+            || !isLastUpdateBucket(vehicleId, bucket.getKey()))
+          it.remove();
+      }
 
-        if (_log.isDebugEnabled())
-          _log.debug("pruning block location record cache for vehicle="
-              + vehicleId + " block=" + cacheEntry.getBlockInstance());
-        it.remove();
-        ConcurrentCollectionsLibrary.removeFromMapValueSet(
-            _vehicleIdsByBlockInstance, cacheEntry.getBlockInstance(),
-            vehicleId);
+      if (spansCutoff) {
+        if (bucket.getValue().isEmpty())
+          _vehicleIdsByUpdateBucket.remove(bucket.getKey(), bucket.getValue());
+        return;
       }
+
+      _vehicleIdsByUpdateBucket.remove(bucket.getKey(), bucket.getValue());
     }
   }
 
@@ -253,6 +385,181 @@ public class VehicleLocationRecordCacheImpl implements VehicleLocationRecordCach
    * Private Methods
    ****/
 
+  private long getBucket(long time) {
+    return time / (Math.max(_evictionBucketSize, 1) * 1000L);
+  }
+
+  private void touch(AgencyAndId vehicleId, long time) {
+    _lastUpdateByVehicleId.put(vehicleId, time);
+    file(vehicleId, getBucket(time));
+  }
+
+  /**
+   * Add the vehicle to the specified time bucket
+   */
+  private void file(AgencyAndId vehicleId, Long bucket) {
+    Set<AgencyAndId> vehicleIds = _vehicleIdsByUpdateBucket.get(bucket);
+    if (vehicleIds == null) {
+      Set<AgencyAndId> newVehicleIds = Collections.newSetFromMap(new ConcurrentHashMap<AgencyAndId, Boolean>());
+      vehicleIds = _vehicleIdsByUpdateBucket.putIfAbsent(bucket, newVehicleIds);
+      if (vehicleIds == null)
+        vehicleIds = newVehicleIds;
+    }
+    vehicleIds.add(vehicleId);
+  }
+
+  /**
+   * @return true if the vehicle is still filed under the specified bucket
+   *         after making sure it is filed under the bucket of its last update
+   */
+  private boolean isLastUpdateBucket(AgencyAndId vehicleId, long bucket) {
+    Long lastUpdate = _lastUpdateByVehicleId.get(vehicleId);
+    if (lastUpdate == null)
+      return false;
+    long lastUpdateBucket = getBucket(lastUpdate);
+    if (lastUpdateBucket == bucket)
+      return true;
+    file(vehicleId, lastUpdateBucket);
+    return false;
+  }
+
+  /**
+   * Evict the vehicle if it hasn't been updated since the specified time, or
+   * else just its records and raw position from before then.
+   * 
+   * @return true if the vehicle was evicted
+   */
+  private boolean evictIfStale(AgencyAndId vehicleId, long time) {
+
+    Long lastUpdate = _lastUpdateByVehicleId.get(vehicleId);
+    if (lastUpdate == null || lastUpdate < time) {
+      evict(vehicleId, lastUpdate);
+      return true;
+    }
+
+    VehicleLocationCacheEntry cacheEntry = _entriesByVehicleId.get(vehicleId);
+
+    if (cacheEntry != null && cacheEntry.closeIfStale(time)) {
+
+      if (_log.isDebugEnabled())
+        _log.debug("pruning block location record cache for vehicle="
+            + vehicleId + " block=" + cacheEntry.getBlockInstance());
+
+      if (_entriesByVehicleId.remove(vehicleId, cacheEntry)) {
+        ConcurrentCollectionsLibrary.removeFromMapValueSet(
+            _vehicleIdsByBlockInstance, cacheEntry.getBlockInstance(),
+            vehicleId);
+        _evictions.incrementAndGet();
+      }
+    }
+
+    RawPosition position = _rawPositionsByVehicleId.get(vehicleId);
+    if (position != null && position.getUpdateTime() < time)
+      _rawPositionsByVehicleId.remove(vehicleId, position);
+
+    return false;
+  }
+
+  /**
+   * Evict everything cached for a vehicle that hasn't been updated since the
+   * start of the cache window.
+   * 
+   * @param lastUpdate the last update time of the vehicle, may be null
+   */
+  private void evict(AgencyAndId vehicleId, Long lastUpdate) {
+
+    VehicleLocationCacheEntry cacheEntry = _entriesByVehicleId.get(vehicleId);
+
+    if (cacheEntry != null) {
+
+      if (_log.isDebugEnabled())
+        _log.debug("evicting stale vehicle=" + vehicleId + " block="
+            + cacheEntry.getBlockInstance());
+
+      cacheEntry.close();
+
+      if (_entriesByVehicleId.remove(vehicleId, cacheEntry)) {
+        ConcurrentCollectionsLibrary.removeFromMapValueSet(
+            _vehicleIdsByBlockInstance, cacheEntry.getBlockInstance(),
+            vehicleId);
+        _evictions.incrementAndGet();
+      }
+    }
+
+    _rawPositionsByVehicleId.remove(vehicleId);
+
+    if (lastUpdate != null)
+      _lastUpdateByVehicleId.remove(vehicleId, lastUpdate);
+  }
+
+  /**
+   * Evict the least recently updated vehicles until we are back under the
+   * vehicle limit. Vehicles are evicted oldest bucket first, in no particular
+   * order within a bucket. Since a bucket spans many updates, the vehicle that
+   * pushed us over the limit may share the oldest bucket with the vehicles we
+   * evict, so it is skipped.
+   * 
+   * @param addedVehicleId the vehicle whose update triggered the check
+   */
+  private void enforceCapacity(AgencyAndId addedVehicleId) {
+
+    if (_maxVehicles <= 0)
+      return;
+
+    for (Entry<Long, Set<AgencyAndId>> bucket : _vehicleIdsByUpdateBucket.entrySet()) {
+
+      if (!isOverCapacity())
+        return;
+
+      Iterator<AgencyAndId> it = bucket.getValue().iterator();
+      while (it.hasNext() && isOverCapacity()) {
+        AgencyAndId vehicleId = it.next();
+        if (vehicleId.equals(addedVehicleId))
+          continue;
+        it.remove();
+        if (isInNewerBucket(vehicleId, bucket.getKey()))
+          continue;
+        clearRecordsForVehicleId(vehicleId);
+        _rawPositionsByVehicleId.remove(vehicleId);
+        _lastUpdateByVehicleId.remove(vehicleId);
+        _capacityEvictions.incrementAndGet();
+      }
+
+      if (bucket.getValue().isEmpty())
+        _vehicleIdsByUpdateBucket.remove(bucket.getKey(), bucket.getValue());
+    }
+  }
+
+  private boolean isOverCapacity() {
+    return _entriesByVehicleId.size() > _maxVehicles
+        || _rawPositionsByVehicleId.size() > _maxVehicles;
+  }
+
+  private boolean isInNewerBucket(AgencyAndId vehicleId, long bucket) {
+    Long lastUpdate = _lastUpdateByVehicleId.get(vehicleId);
+    return lastUpdate != null && getBucket(lastUpdate) > bucket;
+  }
+
+  private static class RawPosition {
+
+    private final VehicleLocationRecord _record;
+
+    private final long _updateTime;
+
+    public RawPosition(VehicleLocationRecord record, long updateTime) {
+      _record = record;
+      _updateTime = updateTime;
+    }
+
+    public VehicleLocationRecord getRecord() {
+      return _record;
+    }
+
+    public long getUpdateTime() {
+      return _updateTime;
+    }
+  }
+
   private class CacheEvictionHandler implements Runnable {
 
     @Override
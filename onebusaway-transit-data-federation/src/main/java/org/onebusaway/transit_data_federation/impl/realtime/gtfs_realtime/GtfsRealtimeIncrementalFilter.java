@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.realtime.gtfs_realtime;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.protobuf.ByteString;
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+
+/**
+ * Supports the incremental update mode of {@link GtfsRealtimeSource}. Feed
+ * entities are grouped by vehicle id and each group is fingerprinted with a
+ * 64-bit hash of the serialized entities. Groups whose fingerprint matches the
+ * previous poll are filtered out, so they are not re-matched by
+ * {@link GtfsRealtimeTripLibrary} and not re-sent to the vehicle location
+ * listener.
+ * 
+ * Entities without a vehicle id are matched by block in
+ * {@link GtfsRealtimeTripLibrary} and cannot be grouped safely, so they are
+ * always passed through. Groups with an entity that lacks a timestamp are
+ * also passed through, because their records depend on the current time.
+ */
+class GtfsRealtimeIncrementalFilter {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private Map<String, Long> _fingerprintsByVehicleId = new HashMap<String, Long>();
+
+  /**
+   * Filter the trip updates and vehicle positions down to the entities that
+   * changed since the last committed poll. The new fingerprints only take
+   * effect once {@link FilteredUpdates#commit()} is called, so a failure while
+   * processing the updates does not cause them to be skipped on the next poll.
+   * 
+   * @param tripUpdates the full trip updates feed
+   * @param vehiclePositions the full vehicle positions feed
+   * @return the filtered feeds
+   */
+  public FilteredUpdates filter(FeedMessage tripUpdates,
+      FeedMessage vehiclePositions) {
+
+    Map<String, Long> fingerprints = new HashMap<String, Long>();
+    Set<String> alwaysUpdate = new HashSet<String>();
+
+    fingerprint(tripUpdates, fingerprints, alwaysUpdate, 1);
+    fingerprint(vehiclePositions, fingerprints, alwaysUpdate, 2);
+
+    FilteredUpdates filtered = new FilteredUpdates(fingerprints);
+    filtered.tripUpdates = filterMessage(tripUpdates, fingerprints,
+        alwaysUpdate, filtered);
+    filtered.vehiclePositions = filterMessage(vehiclePositions, fingerprints,
+        alwaysUpdate, filtered);
+    return filtered;
+  }
+
+  /**
+   * Forget all fingerprints, so the next poll is processed in full.
+   */
+  public void reset() {
+    _fingerprintsByVehicleId = new HashMap<String, Long>();
+  }
+
+  public int size() {
+    return _fingerprintsByVehicleId.size();
+  }
+
+  class FilteredUpdates {
+
+    private final Map<String, Long> _fingerprints;
+
+    private FeedMessage tripUpdates;
+
+    private FeedMessage vehiclePositions;
+
+    private final Set<String> _unchangedVehicleIds = new LinkedHashSet<String>();
+
+    private FilteredUpdates(Map<String, Long> fingerprints) {
+      _fingerprints = fingerprints;
+    }
+
+    public FeedMessage getTripUpdates() {
+      return tripUpdates;
+    }
+
+    public FeedMessage getVehiclePositions() {
+      return vehiclePositions;
+    }
+
+    /**
+     * @return the ids of vehicles whose entities were unchanged and filtered
+     *         out
+     */
+    public Set<String> getUnchangedVehicleIds() {
+      return _unchangedVehicleIds;
+    }
+
+    public void commit() {
+      _fingerprintsByVehicleId = _fingerprints;
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private FeedMessage filterMessage(FeedMessage message,
+      Map<String, Long> fingerprints, Set<String> alwaysUpdate,
+      FilteredUpdates filtered) {
+
+    FeedMessage.Builder builder = FeedMessage.newBuilder();
+    builder.setHeader(message.getHeader());
+
+    for (FeedEntity entity : message.getEntityList()) {
+      String vehicleId = getVehicleId(entity);
+      if (vehicleId == null || alwaysUpdate.contains(vehicleId)) {
+        builder.addEntity(entity);
+        continue;
+      }
+      Long previous = _fingerprintsByVehicleId.get(vehicleId);
+      if (previous == null || !previous.equals(fingerprints.get(vehicleId))) {
+        builder.addEntity(entity);
+      } else {
+        filtered._unchangedVehicleIds.add(vehicleId);
+      }
+    }
+
+    return builder.build();
+  }
+
+  private void fingerprint(FeedMessage message, Map<String, Long> fingerprints,
+      Set<String> alwaysUpdate, long salt) {
+
+    for (FeedEntity entity : message.getEntityList()) {
+      String vehicleId = getVehicleId(entity);
+      if (vehicleId == null)
+        continue;
+
+      if (!hasTimestamp(entity))
+        alwaysUpdate.add(vehicleId);
+
+      /**
+       * Entity hashes are summed so the group fingerprint does not depend on
+       * the order in which a vehicle's entities appear in the feed
+       */
+      long hash = hash(entity.toByteString(), salt);
+      Long existing = fingerprints.get(vehicleId);
+      fingerprints.put(vehicleId, existing == null ? hash : existing + hash);
+    }
+  }
+
+  private static String getVehicleId(FeedEntity entity) {
+    if (entity.hasTripUpdate()) {
+      TripUpdate tu = entity.getTripUpdate();
+      if (tu.hasVehicle() && tu.getVehicle().hasId()
+          && StringUtils.isNotBlank(tu.getVehicle().getId()))
+        return tu.getVehicle().getId();
+    } else if (entity.hasVehicle()) {
+      VehiclePosition vp = entity.getVehicle();
+      if (vp.hasVehicle() && vp.getVehicle().hasId()
+          && StringUtils.isNotBlank(vp.getVehicle().getId()))
+        return vp.getVehicle().getId();
+    }
+    return null;
+  }
+
+  private static boolean hasTimestamp(FeedEntity entity) {
+    if (entity.hasTripUpdate())
+      return entity.getTripUpdate().hasTimestamp();
+    if (entity.hasVehicle())
+      return entity.getVehicle().hasTimestamp();
+    return false;
+  }
+
+  private static long hash(ByteString bytes, long salt) {
+    long h = FNV_OFFSET_BASIS ^ salt;
+    for (int i = 0; i < bytes.size(); i++) {
+      h ^= bytes.byteAt(i) & 0xff;
+      h *= FNV_PRIME;
+    }
+    return h;
+  }
+}
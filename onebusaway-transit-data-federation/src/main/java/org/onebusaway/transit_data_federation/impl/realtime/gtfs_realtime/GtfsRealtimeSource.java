@@ -29,8 +29,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
@@ -171,6 +174,28 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
 
   private boolean _ignoreAlertTripId = false;
 
+  private boolean _incrementalUpdates = false;
+
+  private int _incrementalFullRefreshInterval = 10;
+
+  private int _incrementalCycle = 0;
+
+  private GtfsRealtimeIncrementalFilter _incrementalFilter = new GtfsRealtimeIncrementalFilter();
+
+  /**
+   * In incremental mode, the monitoring data each vehicle of the previous poll
+   * contributed, so it can be carried over while the vehicle is unchanged
+   */
+  private Map<String, MonitoredResult> _monitoredResultsByVehicleId = new HashMap<String, MonitoredResult>();
+
+  private boolean _isolatedExecutor = false;
+
+  private ScheduledExecutorService _isolatedExecutorService;
+
+  private ExecutorService _matchingExecutorService;
+
+  private int _matchingPartitions = 1;
+
   @Autowired
   public void setAgencyService(AgencyService agencyService) {
     _agencyService = agencyService;
@@ -351,6 +376,64 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
     _ignoreAlertTripId = ignore;
   }
 
+  /**
+   * Only re-match and re-send vehicles whose trip updates or vehicle position
+   * changed since the previous poll.
+   * @param incrementalUpdates
+   */
+  public void setIncrementalUpdates(boolean incrementalUpdates) {
+    _incrementalUpdates = incrementalUpdates;
+  }
+
+  public boolean isIncrementalUpdates() {
+    return _incrementalUpdates;
+  }
+
+  /**
+   * In incremental mode, process the full feed every n-th poll to refresh
+   * monitoring data and recover from any missed update.  A value of zero or
+   * less disables the periodic full refresh.
+   * @param incrementalFullRefreshInterval
+   */
+  public void setIncrementalFullRefreshInterval(int incrementalFullRefreshInterval) {
+    _incrementalFullRefreshInterval = incrementalFullRefreshInterval;
+  }
+
+  /**
+   * Poll this feed on its own dedicated thread rather than the shared
+   * scheduled executor, so that a slow or very large feed does not delay the
+   * refresh of other feeds.
+   * @param isolatedExecutor
+   */
+  public void setIsolatedExecutor(boolean isolatedExecutor) {
+    _isolatedExecutor = isolatedExecutor;
+  }
+
+  public boolean isIsolatedExecutor() {
+    return _isolatedExecutor;
+  }
+
+  /**
+   * Executor used to match trip updates and vehicle positions to blocks in
+   * parallel.  Typically shared between all sources of a federated
+   * deployment.  See {@link #setMatchingPartitions(int)}.
+   * @param matchingExecutorService
+   */
+  public void setMatchingExecutorService(ExecutorService matchingExecutorService) {
+    _matchingExecutorService = matchingExecutorService;
+  }
+
+  /**
+   * The number of partitions that the block lookups and record creation of a
+   * single feed are split across, each with its own copy of the trip library.
+   * Only used when a matching executor is set.  Defaults to 1, which matches
+   * on the polling thread.
+   * @param matchingPartitions
+   */
+  public void setMatchingPartitions(int matchingPartitions) {
+    _matchingPartitions = matchingPartitions;
+  }
+
   public GtfsRealtimeTripLibrary getGtfsRealtimeTripLibrary() {
     return _tripsLibrary;
   }
@@ -386,14 +469,23 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
     _alertLibrary = new GtfsRealtimeAlertLibrary();
     _alertLibrary.setEntitySource(_entitySource);
 
+    ScheduledExecutorService executor = _scheduledExecutorService;
+    if (_isolatedExecutor) {
+      _isolatedExecutorService = Executors.newSingleThreadScheduledExecutor(
+          new NamedThreadFactory("gtfs-realtime-" + (_feedId != null ? _feedId : _agencyIds)));
+      executor = _isolatedExecutorService;
+    }
+
     if (_refreshInterval > 0) {
-      _refreshTask = _scheduledExecutorService.scheduleAtFixedRate(
+      _refreshTask = executor.scheduleAtFixedRate(
           new RefreshTask(), 0, _refreshInterval, TimeUnit.SECONDS);
     }
   }
   
   public void reset() {
     _lastVehicleUpdate.clear();
+    _incrementalFilter.reset();
+    _monitoredResultsByVehicleId = new HashMap<String, MonitoredResult>();
   }
 
   @PreDestroy
@@ -402,6 +494,10 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
       _refreshTask.cancel(true);
       _refreshTask = null;
     }
+    if (_isolatedExecutorService != null) {
+      _isolatedExecutorService.shutdownNow();
+      _isolatedExecutorService = null;
+    }
   }
 
   public void refresh() throws IOException {
@@ -409,6 +505,7 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
       _log.warn("skipping update " + getAgencyIds() + ", bundle not ready");
       return;
     }
+    long fetchStart = System.currentTimeMillis();
     FeedMessage tripUpdates = _sftpTripUpdatesUrl != null ?
         readOrReturnDefault(_sftpTripUpdatesUrl)
         : readOrReturnDefault(_tripUpdatesUrl);
@@ -420,7 +517,15 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
         : readOrReturnDefault(_alertsUrl);
     MonitoredResult result = new MonitoredResult();
     result.setAgencyIds(_agencyIds);
+    result.setFetchTime(System.currentTimeMillis() - fetchStart);
     handleUpdates(result, tripUpdates, vehiclePositions, alerts);
+    if (tripUpdates.getHeader().hasTimestamp()) {
+      result.setFeedLatency(System.currentTimeMillis()
+          - tripUpdates.getHeader().getTimestamp() * 1000);
+    }
+    _log.info("[" + getFeedId() + "] fetch=" + result.getFetchTime() + "ms match="
+        + result.getMatchTime() + "ms apply=" + result.getApplyTime()
+        + "ms latency=" + result.getFeedLatency() + "ms");
     // update reference in a thread safe manner
     _monitoredResult = result;
   }
@@ -453,14 +558,74 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
 	long time = tripUpdates.getHeader().getTimestamp() * 1000;
 	_tripsLibrary.setCurrentTime(time);
 
+    GtfsRealtimeIncrementalFilter.FilteredUpdates filtered = null;
+    FeedMessage tripUpdatesToMatch = tripUpdates;
+    FeedMessage vehiclePositionsToMatch = vehiclePositions;
+    int unchangedVehicles = 0;
+    Map<String, MonitoredResult> resultsByVehicleId = null;
+
+    if (_incrementalUpdates) {
+      filtered = _incrementalFilter.filter(tripUpdates, vehiclePositions);
+      resultsByVehicleId = new HashMap<String, MonitoredResult>();
+      if (!isFullRefreshCycle()) {
+        tripUpdatesToMatch = filtered.getTripUpdates();
+        vehiclePositionsToMatch = filtered.getVehiclePositions();
+        unchangedVehicles = filtered.getUnchangedVehicleIds().size();
+        carryOverMonitoredResults(filtered.getUnchangedVehicleIds(), result,
+            resultsByVehicleId);
+      }
+    }
+
+    long matchStart = System.currentTimeMillis();
     List<CombinedTripUpdatesAndVehiclePosition> combinedUpdates = _tripsLibrary.groupTripUpdatesAndVehiclePositions(result,
-            tripUpdates, vehiclePositions);
-    result.setRecordsTotal(combinedUpdates.size());
-    handleCombinedUpdates(result, combinedUpdates);
+            tripUpdatesToMatch, vehiclePositionsToMatch, _matchingExecutorService, _matchingPartitions,
+            resultsByVehicleId);
+    result.setRecordsTotal(combinedUpdates.size() + unchangedVehicles);
+    // exit if we are configured in alerts mode
+    if (_tripUpdatesUrl != null) {
+      List<VehicleLocationRecord> records = matchCombinedUpdates(result,
+          combinedUpdates, resultsByVehicleId);
+      long applyStart = System.currentTimeMillis();
+      result.setMatchTime(applyStart - matchStart);
+      applyVehicleLocationRecords(result, records, combinedUpdates.size());
+      result.setApplyTime(System.currentTimeMillis() - applyStart);
+    }
+    if (filtered != null) {
+      filtered.commit();
+      _monitoredResultsByVehicleId = resultsByVehicleId;
+      _log.debug("[" + getFeedId() + "] incremental update skipped "
+          + unchangedVehicles + " unchanged vehicles");
+    }
     cacheVehicleLocations(vehiclePositions);
     handleAlerts(alerts);
   }
 
+  private boolean isFullRefreshCycle() {
+    if (_incrementalFullRefreshInterval <= 0)
+      return false;
+    boolean full = _incrementalCycle == 0;
+    _incrementalCycle = (_incrementalCycle + 1) % _incrementalFullRefreshInterval;
+    return full;
+  }
+
+  /**
+   * Vehicles skipped by an incremental update don't contribute to the new
+   * result, so carry over the monitoring data they contributed to the previous
+   * poll.  Only unchanged vehicles are carried over, so the entries of a
+   * vehicle that changed or disappeared are replaced or dropped right away.
+   */
+  private void carryOverMonitoredResults(Set<String> unchangedVehicleIds,
+      MonitoredResult result, Map<String, MonitoredResult> resultsByVehicleId) {
+    Map<String, MonitoredResult> previous = _monitoredResultsByVehicleId;
+    for (String vehicleId : unchangedVehicleIds) {
+      MonitoredResult vehicleResult = previous.get(vehicleId);
+      if (vehicleResult == null)
+        continue;
+      result.addAll(vehicleResult);
+      resultsByVehicleId.put(vehicleId, vehicleResult);
+    }
+  }
+
   private void cacheVehicleLocations(FeedMessage vehiclePositions) {
 
 
@@ -476,20 +641,31 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
     }
   }
 
-  private void handleCombinedUpdates(MonitoredResult result,
-      List<CombinedTripUpdatesAndVehiclePosition> updates) {
-
-    // exit if we are configured in alerts mode
-    if (_tripUpdatesUrl == null) return;
-
-    Set<AgencyAndId> seenVehicles = new HashSet<AgencyAndId>();
-
-    for (CombinedTripUpdatesAndVehiclePosition update : updates) {
-      VehicleLocationRecord record = _tripsLibrary.createVehicleLocationRecordForUpdate(result, update);
+  /**
+   * Match updates to vehicle location records, split across the matching
+   * executor when one is configured.  Records are returned in the order of the
+   * updates, so all updates for a given block are still applied in feed order.
+   */
+  private List<VehicleLocationRecord> matchCombinedUpdates(MonitoredResult result,
+      List<CombinedTripUpdatesAndVehiclePosition> updates,
+      Map<String, MonitoredResult> resultsByVehicleId) {
+
+    List<VehicleLocationRecord> matched = _tripsLibrary.createVehicleLocationRecordsForUpdates(
+        result, updates, _matchingExecutorService, _matchingPartitions,
+        resultsByVehicleId);
+    List<VehicleLocationRecord> records = new ArrayList<VehicleLocationRecord>(updates.size());
+
+    for (int i = 0; i < updates.size(); i++) {
+      CombinedTripUpdatesAndVehiclePosition update = updates.get(i);
+      VehicleLocationRecord record = matched.get(i);
       if (record != null) {
         if (record.getTripId() != null) {
           // tripId will be null if block was matched
           result.addUnmatchedTripId(record.getTripId().toString());
+          MonitoredResult vehicleResult = resultsByVehicleId == null ? null
+              : resultsByVehicleId.get(GtfsRealtimeTripLibrary.getFeedVehicleId(update));
+          if (vehicleResult != null)
+            vehicleResult.addUnmatchedTripId(record.getTripId().toString());
         }
         AgencyAndId vehicleId = record.getVehicleId();
         // here we try to get a more accurate count of updates
@@ -503,16 +679,28 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
           _log.debug("discarding v: " + vehicleId + " as location is bad");
           continue;
         }
-        seenVehicles.add(vehicleId);
-        Date timestamp = new Date(record.getTimeOfRecord());
-        Date prev = _lastVehicleUpdate.get(vehicleId);
-        if (prev == null || prev.before(timestamp)) {
-          _log.debug("matched vehicle " + vehicleId + " on block=" + record.getBlockId() + " with scheduleDeviation=" + record.getScheduleDeviation());
-          _vehicleLocationListener.handleVehicleLocationRecord(record);
-          _lastVehicleUpdate.put(vehicleId, timestamp);
-        } else {
-          _log.debug("discarding: update for vehicle " + vehicleId + " as timestamp in past");
-        }
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private void applyVehicleLocationRecords(MonitoredResult result,
+      List<VehicleLocationRecord> records, int updateCount) {
+
+    Set<AgencyAndId> seenVehicles = new HashSet<AgencyAndId>();
+
+    for (VehicleLocationRecord record : records) {
+      AgencyAndId vehicleId = record.getVehicleId();
+      seenVehicles.add(vehicleId);
+      Date timestamp = new Date(record.getTimeOfRecord());
+      Date prev = _lastVehicleUpdate.get(vehicleId);
+      if (prev == null || prev.before(timestamp)) {
+        _log.debug("matched vehicle " + vehicleId + " on block=" + record.getBlockId() + " with scheduleDeviation=" + record.getScheduleDeviation());
+        _vehicleLocationListener.handleVehicleLocationRecord(record);
+        _lastVehicleUpdate.put(vehicleId, timestamp);
+      } else {
+        _log.debug("discarding: update for vehicle " + vehicleId + " as timestamp in past");
       }
     }
 
@@ -537,7 +725,7 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
     // NOTE: this implies receiving stale updates is equivalent to not being updated at all
     result.setLastUpdate(newestUpdate);
     _log.info("Agency " + this.getAgencyIds().get(0) + " has active vehicles=" + seenVehicles.size()
-        + " for updates=" + updates.size() + " with most recent timestamp " + new Date(newestUpdate));
+        + " for updates=" + updateCount + " with most recent timestamp " + new Date(newestUpdate));
   }
 
   private boolean isValidLocation(VehicleLocationRecord record, CombinedTripUpdatesAndVehiclePosition update) {
@@ -984,6 +1172,22 @@ public class GtfsRealtimeSource implements MonitoredDataSource {
    *
    ****/
 
+  private static class NamedThreadFactory implements ThreadFactory {
+
+    private final String _name;
+
+    public NamedThreadFactory(String name) {
+      _name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, _name);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   private class RefreshTask implements Runnable {
 
     @Override
@@ -19,15 +19,22 @@ package org.onebusaway.transit_data_federation.impl.realtime.gtfs_realtime;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -166,6 +173,40 @@ public class GtfsRealtimeTripLibrary {
   
   public List<CombinedTripUpdatesAndVehiclePosition> groupTripUpdatesAndVehiclePositions(MonitoredResult result,
       FeedMessage tripUpdateMessage, FeedMessage vehiclePositionsMessage) {
+    return groupTripUpdatesAndVehiclePositions(result, tripUpdateMessage,
+        vehiclePositionsMessage, null, 1);
+  }
+
+  /**
+   * As {@link #groupTripUpdatesAndVehiclePositions(MonitoredResult, FeedMessage, FeedMessage)},
+   * but the block lookups for trip updates with a vehicle id, which is where
+   * most of the time goes for large feeds, are split across the executor.
+   * The updates are partitioned by the block of their trip, so all the updates
+   * of a block are looked up by the same partition, and each partition runs
+   * on its own {@link #copy()} of this library.
+   *
+   * @param executor may be null, to group on the calling thread
+   * @param partitions the number of partitions to split the lookups across
+   */
+  public List<CombinedTripUpdatesAndVehiclePosition> groupTripUpdatesAndVehiclePositions(MonitoredResult result,
+      FeedMessage tripUpdateMessage, FeedMessage vehiclePositionsMessage,
+      ExecutorService executor, int partitions) {
+    return groupTripUpdatesAndVehiclePositions(result, tripUpdateMessage,
+        vehiclePositionsMessage, executor, partitions, null);
+  }
+
+  /**
+   * As {@link #groupTripUpdatesAndVehiclePositions(MonitoredResult, FeedMessage, FeedMessage, ExecutorService, int)},
+   * but the monitoring data of each trip update with a vehicle id is also
+   * collected on its own, keyed by the vehicle id of the feed.
+   *
+   * @param resultsByVehicleId may be null, receives the monitoring data by
+   *          vehicle id
+   */
+  public List<CombinedTripUpdatesAndVehiclePosition> groupTripUpdatesAndVehiclePositions(MonitoredResult result,
+      FeedMessage tripUpdateMessage, FeedMessage vehiclePositionsMessage,
+      ExecutorService executor, int partitions,
+      Map<String, MonitoredResult> resultsByVehicleId) {
 
     List<CombinedTripUpdatesAndVehiclePosition> updates = new ArrayList<CombinedTripUpdatesAndVehiclePosition>();
     Map<String, TripUpdate> bestTripByVehicleId = new HashMap<String, TripUpdate>();
@@ -296,6 +337,30 @@ public class GtfsRealtimeTripLibrary {
     }
 
     // Map updates by vehicle ID
+    List<TripUpdate> bestTrips = new ArrayList<TripUpdate>();
+    for (String vehicleId : tripUpdatesByVehicleId.asMap().keySet())
+      bestTrips.add(bestTripByVehicleId.get(vehicleId));
+    BlockDescriptor[] blocks = new BlockDescriptor[bestTrips.size()];
+    MonitoredResult[] blockResults = resultsByVehicleId == null ? null
+        : new MonitoredResult[blocks.length];
+    List<AgencyAndId> tripBlockIds = new ArrayList<AgencyAndId>();
+    if (executor != null && partitions > 1) {
+      for (TripUpdate tu : bestTrips)
+        tripBlockIds.add(getBlockIdForTrip(tu.getTrip()));
+    }
+    List<Partition> blockPartitions = new ArrayList<Partition>();
+    for (int[] indices : getPartitionIndices(blocks.length, tripBlockIds,
+        executor, partitions))
+      blockPartitions.add(new BlockDescriptorPartition(bestTrips, blocks,
+          blockResults, indices));
+    runPartitions(result, blockPartitions, executor);
+    if (blockResults != null) {
+      for (int i = 0; i < blockResults.length; i++)
+        addResultForVehicle(resultsByVehicleId,
+            bestTrips.get(i).getVehicle().getId(), blockResults[i]);
+    }
+
+    int index = 0;
     for (Map.Entry<String, Collection<TripUpdate>> e : tripUpdatesByVehicleId.asMap().entrySet()) {
       CombinedTripUpdatesAndVehiclePosition update = new CombinedTripUpdatesAndVehiclePosition();
 
@@ -303,8 +368,7 @@ public class GtfsRealtimeTripLibrary {
       Collection<TripUpdate> tripUpdates = e.getValue();
       TripUpdate tu = bestTripByVehicleId.get(vehicleId);
 
-      long time = tu.hasTimestamp() ? tu.getTimestamp() * 1000 : currentTime();
-      update.block = getTripDescriptorAsBlockDescriptor(result, tu.getTrip(), time);
+      update.block = blocks[index++];
       update.tripUpdates = new ArrayList<TripUpdate>(tripUpdates);
       update.bestTrip = tu.getTrip().getTripId();
 
@@ -408,6 +472,82 @@ public class GtfsRealtimeTripLibrary {
     return createVehicleLocationRecordForUpdate(null, update);
   }    
 
+  /**
+   * Creates the records for a batch of updates, split across the executor.
+   * The updates are partitioned by block, so all the updates of a block are
+   * handled by the same partition, in feed order. Each partition runs on its
+   * own {@link #copy()} of this library, since the library itself isn't
+   * thread-safe.
+   *
+   * @param executor may be null, to create the records on the calling thread
+   * @param partitions the number of partitions to split the updates across
+   * @return a record for each update, in the same order, or null where
+   *         {@link #createVehicleLocationRecordForUpdate(MonitoredResult, CombinedTripUpdatesAndVehiclePosition)}
+   *         returns null
+   */
+  public List<VehicleLocationRecord> createVehicleLocationRecordsForUpdates(
+      MonitoredResult result,
+      List<CombinedTripUpdatesAndVehiclePosition> updates,
+      ExecutorService executor, int partitions) {
+    return createVehicleLocationRecordsForUpdates(result, updates, executor,
+        partitions, null);
+  }
+
+  /**
+   * As {@link #createVehicleLocationRecordsForUpdates(MonitoredResult, List, ExecutorService, int)},
+   * but the monitoring data of each update with a vehicle id is also collected
+   * on its own, keyed by the vehicle id of the feed.
+   *
+   * @param resultsByVehicleId may be null, receives the monitoring data by
+   *          vehicle id, added to any data already collected for the vehicle
+   */
+  public List<VehicleLocationRecord> createVehicleLocationRecordsForUpdates(
+      MonitoredResult result,
+      List<CombinedTripUpdatesAndVehiclePosition> updates,
+      ExecutorService executor, int partitions,
+      Map<String, MonitoredResult> resultsByVehicleId) {
+    VehicleLocationRecord[] records = new VehicleLocationRecord[updates.size()];
+    MonitoredResult[] recordResults = resultsByVehicleId == null ? null
+        : new MonitoredResult[records.length];
+    List<AgencyAndId> updateBlockIds = new ArrayList<AgencyAndId>();
+    if (executor != null && partitions > 1) {
+      for (CombinedTripUpdatesAndVehiclePosition update : updates)
+        updateBlockIds.add(getBlockIdForUpdate(update));
+    }
+    List<Partition> recordPartitions = new ArrayList<Partition>();
+    for (int[] indices : getPartitionIndices(records.length, updateBlockIds,
+        executor, partitions))
+      recordPartitions.add(new RecordPartition(updates, records, recordResults,
+          indices));
+    runPartitions(result, recordPartitions, executor);
+    if (recordResults != null) {
+      for (int i = 0; i < recordResults.length; i++)
+        addResultForVehicle(resultsByVehicleId,
+            getFeedVehicleId(updates.get(i)), recordResults[i]);
+    }
+    return Arrays.asList(records);
+  }
+
+  /**
+   * @return the vehicle id of the update as it appears in the feed, before any
+   *         label substitution, or null for an anonymous update
+   */
+  static String getFeedVehicleId(CombinedTripUpdatesAndVehiclePosition update) {
+    if (update.tripUpdates != null) {
+      for (TripUpdate tu : update.tripUpdates) {
+        if (tu.hasVehicle() && tu.getVehicle().hasId()
+            && StringUtils.isNotBlank(tu.getVehicle().getId()))
+          return tu.getVehicle().getId();
+      }
+    }
+    if (update.vehiclePosition != null
+        && update.vehiclePosition.hasVehicle()
+        && update.vehiclePosition.getVehicle().hasId()
+        && StringUtils.isNotBlank(update.vehiclePosition.getVehicle().getId()))
+      return update.vehiclePosition.getVehicle().getId();
+    return null;
+  }
+
   public VehicleLocationRecord createVehicleLocationRecordForUpdate(MonitoredResult result,
         CombinedTripUpdatesAndVehiclePosition update) {
 
@@ -966,6 +1106,166 @@ public class GtfsRealtimeTripLibrary {
     return min;
   }
 
+  /**
+   * A library with the same services, configuration and current time as this
+   * one, for use on another thread.  The current time is validated first, so
+   * that the copies don't each override it.
+   */
+  GtfsRealtimeTripLibrary copy() {
+    currentTime();
+    GtfsRealtimeTripLibrary copy = new GtfsRealtimeTripLibrary();
+    copy._entitySource = _entitySource;
+    copy._blockCalendarService = _blockCalendarService;
+    copy._blockGeospatialService = _blockGeospatialService;
+    copy._currentTime = _currentTime;
+    copy._validateCurrentTime = _validateCurrentTime;
+    copy._stopModificationStrategy = _stopModificationStrategy;
+    copy._scheduleAdherenceFromLocation = _scheduleAdherenceFromLocation;
+    copy._useLabelAsVehicleId = _useLabelAsVehicleId;
+    return copy;
+  }
+
+  private BlockDescriptor getTripUpdateAsBlockDescriptor(MonitoredResult result,
+      TripUpdate tu) {
+    long time = tu.hasTimestamp() ? tu.getTimestamp() * 1000 : currentTime();
+    return getTripDescriptorAsBlockDescriptor(result, tu.getTrip(), time);
+  }
+
+  /**
+   * @return the id of the block of the trip, or null if the trip isn't known
+   */
+  private AgencyAndId getBlockIdForTrip(TripDescriptor td) {
+    if (!td.hasTripId())
+      return null;
+    TripEntry trip = _entitySource.getTrip(td.getTripId());
+    if (trip == null || trip.getBlock() == null)
+      return null;
+    return trip.getBlock().getId();
+  }
+
+  private static AgencyAndId getBlockIdForUpdate(
+      CombinedTripUpdatesAndVehiclePosition update) {
+    if (update.block == null || update.block.getBlockInstance() == null)
+      return null;
+    return update.block.getBlockInstance().getBlock().getBlock().getId();
+  }
+
+  /**
+   * Splits the indices of a batch into partitions, keeping all the indices
+   * with the same block id in the same partition. Each block goes to the
+   * partition with the fewest indices so far, and indices without a block id
+   * are spread the same way on their own.
+   *
+   * @param blockIds the block id of each index, may contain nulls; ignored
+   *          when there is a single partition
+   * @return the ascending indices of each partition, a single partition when
+   *         there is no executor
+   */
+  static List<int[]> getPartitionIndices(int count,
+      List<AgencyAndId> blockIds, ExecutorService executor, int partitions) {
+
+    if (executor == null)
+      partitions = 1;
+    partitions = Math.max(1, Math.min(partitions, count));
+
+    if (partitions == 1) {
+      int[] indices = new int[count];
+      for (int i = 0; i < count; i++)
+        indices[i] = i;
+      return Collections.singletonList(indices);
+    }
+
+    Map<Object, List<Integer>> indicesByBlock = new LinkedHashMap<Object, List<Integer>>();
+    for (int i = 0; i < count; i++) {
+      AgencyAndId blockId = blockIds.get(i);
+      // an update without a block can go anywhere
+      Object key = blockId != null ? blockId : Integer.valueOf(i);
+      List<Integer> indices = indicesByBlock.get(key);
+      if (indices == null) {
+        indices = new ArrayList<Integer>();
+        indicesByBlock.put(key, indices);
+      }
+      indices.add(i);
+    }
+
+    List<List<Integer>> partitionIndices = new ArrayList<List<Integer>>();
+    for (int i = 0; i < partitions; i++)
+      partitionIndices.add(new ArrayList<Integer>());
+    for (List<Integer> indices : indicesByBlock.values()) {
+      List<Integer> smallest = partitionIndices.get(0);
+      for (List<Integer> partition : partitionIndices) {
+        if (partition.size() < smallest.size())
+          smallest = partition;
+      }
+      smallest.addAll(indices);
+    }
+
+    List<int[]> results = new ArrayList<int[]>(partitions);
+    for (List<Integer> partition : partitionIndices) {
+      if (partition.isEmpty())
+        continue;
+      Collections.sort(partition);
+      int[] indices = new int[partition.size()];
+      for (int i = 0; i < indices.length; i++)
+        indices[i] = partition.get(i);
+      results.add(indices);
+    }
+    return results;
+  }
+
+  /**
+   * Runs a single partition on the calling thread, with this library and
+   * result.  Otherwise every partition gets its own library copy and result,
+   * and the results are merged once all partitions are done.
+   */
+  private void runPartitions(MonitoredResult result, List<Partition> partitions,
+      ExecutorService executor) {
+
+    if (partitions.size() == 1) {
+      partitions.get(0).run(this, result);
+      return;
+    }
+
+    List<MonitoredResult> partitionResults = new ArrayList<MonitoredResult>();
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (Partition partition : partitions) {
+      MonitoredResult partitionResult = result == null ? null
+          : new MonitoredResult();
+      partitionResults.add(partitionResult);
+      futures.add(executor.submit(new PartitionTask(partition, copy(),
+          partitionResult)));
+    }
+
+    try {
+      for (Future<?> future : futures)
+        future.get();
+    } catch (InterruptedException ex) {
+      for (Future<?> future : futures)
+        future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while matching updates", ex);
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException("error matching updates", ex.getCause());
+    }
+
+    if (result != null) {
+      for (MonitoredResult partitionResult : partitionResults)
+        result.addAll(partitionResult);
+    }
+  }
+
+  private static void addResultForVehicle(
+      Map<String, MonitoredResult> resultsByVehicleId, String vehicleId,
+      MonitoredResult vehicleResult) {
+    if (vehicleId == null || vehicleResult == null)
+      return;
+    MonitoredResult existing = resultsByVehicleId.get(vehicleId);
+    if (existing == null)
+      resultsByVehicleId.put(vehicleId, vehicleResult);
+    else
+      existing.addAll(vehicleResult);
+  }
+
   private long currentTime() {
     if (_currentTime != 0) {
       // if the feed clock is off by more than an hour we most likely have a timezone issue
@@ -989,6 +1289,107 @@ public class GtfsRealtimeTripLibrary {
     return vp.getVehicle().getId();
   }
 
+  /**
+   * A set of indices of a batch, processed in order with one library and
+   * result and writing into its own slots of a shared output array.  When an
+   * array of index results is given, each item is processed with its own
+   * result, which is then added to the partition result.
+   */
+  private static abstract class Partition {
+
+    private final int[] _indices;
+
+    private final MonitoredResult[] _indexResults;
+
+    public Partition(MonitoredResult[] indexResults, int[] indices) {
+      _indexResults = indexResults;
+      _indices = indices;
+    }
+
+    public void run(GtfsRealtimeTripLibrary library, MonitoredResult result) {
+      for (int i : _indices) {
+        if (_indexResults == null) {
+          process(library, result, i);
+          continue;
+        }
+        MonitoredResult indexResult = new MonitoredResult();
+        process(library, indexResult, i);
+        _indexResults[i] = indexResult;
+        if (result != null)
+          result.addAll(indexResult);
+      }
+    }
+
+    protected abstract void process(GtfsRealtimeTripLibrary library,
+        MonitoredResult result, int index);
+  }
+
+  private static class BlockDescriptorPartition extends Partition {
+
+    private final List<TripUpdate> _tripUpdates;
+
+    private final BlockDescriptor[] _blocks;
+
+    public BlockDescriptorPartition(List<TripUpdate> tripUpdates,
+        BlockDescriptor[] blocks, MonitoredResult[] indexResults,
+        int[] indices) {
+      super(indexResults, indices);
+      _tripUpdates = tripUpdates;
+      _blocks = blocks;
+    }
+
+    @Override
+    protected void process(GtfsRealtimeTripLibrary library,
+        MonitoredResult result, int index) {
+      _blocks[index] = library.getTripUpdateAsBlockDescriptor(result,
+          _tripUpdates.get(index));
+    }
+  }
+
+  private static class RecordPartition extends Partition {
+
+    private final List<CombinedTripUpdatesAndVehiclePosition> _updates;
+
+    private final VehicleLocationRecord[] _records;
+
+    public RecordPartition(List<CombinedTripUpdatesAndVehiclePosition> updates,
+        VehicleLocationRecord[] records, MonitoredResult[] indexResults,
+        int[] indices) {
+      super(indexResults, indices);
+      _updates = updates;
+      _records = records;
+    }
+
+    @Override
+    protected void process(GtfsRealtimeTripLibrary library,
+        MonitoredResult result, int index) {
+      _records[index] = library.createVehicleLocationRecordForUpdate(result,
+          _updates.get(index));
+    }
+  }
+
+  private static class PartitionTask implements Callable<Void> {
+
+    private final Partition _partition;
+
+    private final GtfsRealtimeTripLibrary _library;
+
+    private final MonitoredResult _result;
+
+    public PartitionTask(Partition partition, GtfsRealtimeTripLibrary library,
+        MonitoredResult result) {
+      _partition = partition;
+      _library = library;
+      _result = result;
+    }
+
+    @Override
+    public Void call() {
+      _partition.run(_library, _result);
+      return null;
+    }
+  }
+
   private static class BestScheduleDeviation {
     public int delta = Integer.MAX_VALUE;
     public int scheduleDeviation = 0;
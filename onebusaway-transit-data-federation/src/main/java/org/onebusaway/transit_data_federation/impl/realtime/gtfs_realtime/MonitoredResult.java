@@ -35,6 +35,10 @@ public class MonitoredResult {
   private Set<CoordinatePoint> _allCoordinates = new HashSet<CoordinatePoint>();
   private int _recordsTotal = 0;
   private long _lastUpdate = 0; // we want the default to be very very old, to catch stale updates
+  private long _fetchTime = 0;
+  private long _matchTime = 0;
+  private long _applyTime = 0;
+  private long _feedLatency = 0;
   
   public void addUnmatchedTripId(String tripId) {
     _unmatchedTripIds.add(tripId);
@@ -126,4 +130,63 @@ public class MonitoredResult {
     CoordinatePoint cp = new CoordinatePoint(latitude, longitude);
     _allCoordinates.add(cp);
   }
+
+  /**
+   * @return time in milliseconds spent downloading and parsing the feeds
+   */
+  public long getFetchTime() {
+    return _fetchTime;
+  }
+
+  public void setFetchTime(long fetchTime) {
+    _fetchTime = fetchTime;
+  }
+
+  /**
+   * @return time in milliseconds spent grouping and matching updates to blocks
+   */
+  public long getMatchTime() {
+    return _matchTime;
+  }
+
+  public void setMatchTime(long matchTime) {
+    _matchTime = matchTime;
+  }
+
+  /**
+   * @return time in milliseconds spent dispatching matched records to the
+   *         vehicle location listener
+   */
+  public long getApplyTime() {
+    return _applyTime;
+  }
+
+  public void setApplyTime(long applyTime) {
+    _applyTime = applyTime;
+  }
+
+  /**
+   * @return end-to-end ingestion latency in milliseconds, from the feed header
+   *         timestamp until its updates were applied
+   */
+  public long getFeedLatency() {
+    return _feedLatency;
+  }
+
+  public void setFeedLatency(long feedLatency) {
+    _feedLatency = feedLatency;
+  }
+
+  /**
+   * Add the matched and unmatched entities of another result to this one.
+   * Totals and timings are left untouched.
+   */
+  void addAll(MonitoredResult other) {
+    _matchedTripIds.addAll(other.getMatchedTripIds());
+    _unmatchedTripIds.addAll(other.getUnmatchedTripIds());
+    _matchedStopIds.addAll(other.getMatchedStopIds());
+    _unmatchedStopIds.addAll(other.getUnmatchedStopIds());
+    _unmatchedBlockIds.addAll(other.getUnmatchedBlockIds());
+    _allCoordinates.addAll(other.getAllCoordinates());
+  }
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.shapes;
+
+import java.util.Arrays;
+
+import org.onebusaway.geospatial.services.SphericalGeometryLibrary;
+import org.onebusaway.transit_data_federation.model.ShapePoints;
+
+/**
+ * A precomputed lookup of points along a shape by distance traveled. The
+ * lat-lon and distance arrays are shared with the source {@link ShapePoints},
+ * and the orientation of each segment is computed once up front, so a lookup
+ * is a binary search plus a linear interpolation.
+ * 
+ * Returns the same results as {@link DistanceTraveledShapePointIndex}.
+ */
+public final class ShapeDistanceIndex {
+
+  private final double[] _lats;
+
+  private final double[] _lons;
+
+  private final double[] _distances;
+
+  /**
+   * The orientation of the segment from point i to point i+1
+   */
+  private final double[] _orientations;
+
+  private ShapeDistanceIndex(double[] lats, double[] lons, double[] distances) {
+    _lats = lats;
+    _lons = lons;
+    _distances = distances;
+
+    int n = lats.length;
+    _orientations = new double[Math.max(n - 1, 0)];
+    for (int i = 0; i < n - 1; i++)
+      _orientations[i] = SphericalGeometryLibrary.getOrientation(lats[i],
+          lons[i], lats[i + 1], lons[i + 1]);
+  }
+
+  /**
+   * 
+   * @param shapePoints
+   * @return the index, or null if the shape points are empty or have no
+   *         distance traveled
+   */
+  public static ShapeDistanceIndex create(ShapePoints shapePoints) {
+    if (shapePoints == null || shapePoints.isEmpty())
+      return null;
+    shapePoints.ensureDistTraveled();
+    double[] distances = shapePoints.getDistTraveled();
+    if (distances == null || distances.length != shapePoints.getSize())
+      return null;
+    return new ShapeDistanceIndex(shapePoints.getLats(),
+        shapePoints.getLons(), distances);
+  }
+
+  public int getSize() {
+    return _lats.length;
+  }
+
+  /**
+   * 
+   * @param distanceTraveled distance along the shape, in meters
+   * @param fromIndex index hint, inclusive, or -1 to search the whole shape
+   * @param toIndex index hint, exclusive, or -1 to search the whole shape
+   * @return the interpolated point along the shape with the orientation of the
+   *         segment it falls on
+   */
+  public PointAndOrientation getPointAndOrientation(double distanceTraveled,
+      int fromIndex, int toIndex) {
+
+    int n = _lats.length;
+
+    if (n == 1)
+      return new PointAndOrientation(_lats[0], _lons[0], Double.NaN);
+
+    int index = getIndex(distanceTraveled, fromIndex, toIndex);
+
+    if (index == 0)
+      return new PointAndOrientation(_lats[0], _lons[0], _orientations[0]);
+    if (index == n)
+      return new PointAndOrientation(_lats[n - 1], _lons[n - 1],
+          _orientations[n - 2]);
+
+    double[] dist = _distances;
+
+    if (dist[index] == dist[index - 1])
+      return new PointAndOrientation(_lats[index], _lons[index], 0);
+
+    double ratio = (distanceTraveled - dist[index - 1])
+        / (dist[index] - dist[index - 1]);
+    double lat = ratio * (_lats[index] - _lats[index - 1]) + _lats[index - 1];
+    double lon = ratio * (_lons[index] - _lons[index - 1]) + _lons[index - 1];
+
+    return new PointAndOrientation(lat, lon, _orientations[index - 1]);
+  }
+
+  private int getIndex(double distanceTraveled, int fromIndex, int toIndex) {
+
+    int index = 0;
+
+    if (fromIndex < 0 || toIndex < 0 || fromIndex > toIndex)
+      index = Arrays.binarySearch(_distances, distanceTraveled);
+    else
+      index = Arrays.binarySearch(_distances, fromIndex, toIndex,
+          distanceTraveled);
+
+    if (index < 0)
+      index = -(index + 1);
+    return index;
+  }
+}
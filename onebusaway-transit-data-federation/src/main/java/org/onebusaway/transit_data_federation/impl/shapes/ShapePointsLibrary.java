@@ -175,4 +175,97 @@ public class ShapePointsLibrary {
 
     return localMins;
   }
+
+  /**
+   * 
+   * @param projectedShapePoints
+   * @return a segment index for use with
+   *         {@link #computePotentialAssignments(List, double[], ShapeSegmentIndex, XYPoint, int, int)}
+   *         , with a grid cell the size of the {@link #_localMinimumThreshold}
+   */
+  public ShapeSegmentIndex createSegmentIndex(List<XYPoint> projectedShapePoints) {
+    return new ShapeSegmentIndex(projectedShapePoints, Math.max(
+        _localMinimumThreshold, 1.0));
+  }
+
+  /**
+   * Returns the same potential assignments as
+   * {@link #computePotentialAssignments(List, double[], XYPoint, int, int)},
+   * but only examines the segments that the index places within
+   * {@link #_localMinimumThreshold} of the target point. Segments further away
+   * than that never contribute to a local min, they only end the run of the
+   * one before them. If there are no local mins at all, we need the global min
+   * and fall back to the full scan.
+   * 
+   * @param projectedShapePoints
+   * @param shapePointDistance
+   * @param index a segment index built from the projectedShapePoints with
+   *          {@link #createSegmentIndex(List)}
+   * @param targetPoint
+   * @param fromIndex
+   * @param toIndex
+   * @return
+   */
+  public List<PointAndIndex> computePotentialAssignments(
+      List<XYPoint> projectedShapePoints, double[] shapePointDistance,
+      ShapeSegmentIndex index, XYPoint targetPoint, int fromIndex, int toIndex) {
+
+    int[] candidates = index.getSegmentIndicesNear(targetPoint,
+        _localMinimumThreshold);
+
+    Min<PointAndIndex> localMin = new Min<PointAndIndex>();
+    List<PointAndIndex> localMins = new ArrayList<PointAndIndex>();
+
+    /**
+     * Same bookkeeping as the full scan, but it only carries over between
+     * adjacent segments that are both within the threshold
+     */
+    int previousSegment = -1;
+    boolean previousEndpointDistanceGreaterThanSnappedDistance = false;
+    double previousEndpointDistance = Double.POSITIVE_INFINITY;
+
+    for (int i : candidates) {
+
+      if (i < fromIndex || i >= toIndex - 1)
+        continue;
+
+      XYPoint from = projectedShapePoints.get(i);
+      XYPoint to = projectedShapePoints.get(i + 1);
+
+      XYPoint location = GeometryLibrary.projectPointToSegment(targetPoint,
+          from, to);
+      double d = location.getDistance(targetPoint);
+
+      if (!(d <= _localMinimumThreshold))
+        continue;
+
+      if (previousSegment != i - 1) {
+        if (!localMin.isEmpty()) {
+          localMins.add(localMin.getMinElement());
+          localMin = new Min<PointAndIndex>();
+        }
+      } else if (previousEndpointDistanceGreaterThanSnappedDistance
+          && d < previousEndpointDistance && !localMin.isEmpty()) {
+        localMins.add(localMin.getMinElement());
+        localMin = new Min<PointAndIndex>();
+      }
+
+      double distanceAlongShape = shapePointDistance[i]
+          + location.getDistance(from);
+      localMin.add(d, new PointAndIndex(location, i, d, distanceAlongShape));
+
+      previousSegment = i;
+      previousEndpointDistance = to.getDistance(targetPoint);
+      previousEndpointDistanceGreaterThanSnappedDistance = previousEndpointDistance > d;
+    }
+
+    if (!localMin.isEmpty())
+      localMins.add(localMin.getMinElement());
+
+    if (localMins.isEmpty())
+      return computePotentialAssignments(projectedShapePoints,
+          shapePointDistance, targetPoint, fromIndex, toIndex);
+
+    return localMins;
+  }
 }
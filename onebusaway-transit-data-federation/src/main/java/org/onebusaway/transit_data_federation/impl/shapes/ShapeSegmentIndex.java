@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.shapes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.onebusaway.geospatial.model.XYPoint;
+
+/**
+ * A uniform grid over the segments of a projected shape. Segment i runs from
+ * shape point i to shape point i+1 and is registered in every grid cell its
+ * bounding box overlaps, so a lookup only has to consider the segments in the
+ * cells around a target point instead of the whole shape.
+ * 
+ * Segments whose bounding box covers more than {@link #MAX_CELLS_PER_SEGMENT}
+ * cells (long straight runs, or a bad shape point far off the route) are kept
+ * in a separate list that is returned with every lookup.
+ */
+public final class ShapeSegmentIndex {
+
+  static final int MAX_CELLS_PER_SEGMENT = 64;
+
+  private static final int[] EMPTY = new int[0];
+
+  private final double _cellSize;
+
+  private final int _segmentCount;
+
+  private final Map<Long, int[]> _segmentsByCell;
+
+  private final int[] _unindexedSegments;
+
+  public ShapeSegmentIndex(List<XYPoint> projectedShapePoints, double cellSize) {
+
+    if (!(cellSize > 0))
+      throw new IllegalArgumentException("cellSize must be positive: "
+          + cellSize);
+
+    _cellSize = cellSize;
+    _segmentCount = Math.max(projectedShapePoints.size() - 1, 0);
+
+    Map<Long, List<Integer>> segmentsByCell = new HashMap<Long, List<Integer>>();
+    List<Integer> unindexedSegments = new ArrayList<Integer>();
+
+    for (int i = 0; i < _segmentCount; i++) {
+
+      XYPoint from = projectedShapePoints.get(i);
+      XYPoint to = projectedShapePoints.get(i + 1);
+
+      long minX = cell(Math.min(from.getX(), to.getX()));
+      long maxX = cell(Math.max(from.getX(), to.getX()));
+      long minY = cell(Math.min(from.getY(), to.getY()));
+      long maxY = cell(Math.max(from.getY(), to.getY()));
+
+      if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_SEGMENT) {
+        unindexedSegments.add(i);
+        continue;
+      }
+
+      for (long x = minX; x <= maxX; x++) {
+        for (long y = minY; y <= maxY; y++) {
+          Long key = key(x, y);
+          List<Integer> segments = segmentsByCell.get(key);
+          if (segments == null) {
+            segments = new ArrayList<Integer>(4);
+            segmentsByCell.put(key, segments);
+          }
+          segments.add(i);
+        }
+      }
+    }
+
+    _segmentsByCell = new HashMap<Long, int[]>(segmentsByCell.size() * 2);
+    for (Map.Entry<Long, List<Integer>> entry : segmentsByCell.entrySet())
+      _segmentsByCell.put(entry.getKey(), toArray(entry.getValue()));
+    _unindexedSegments = toArray(unindexedSegments);
+  }
+
+  public int getSegmentCount() {
+    return _segmentCount;
+  }
+
+  /**
+   * 
+   * @param point the target point, in the same projection as the shape
+   * @param radius search radius, in the units of the projection
+   * @return the sorted, distinct indices of every segment whose bounding box
+   *         comes within the radius of the point. This is a superset of the
+   *         segments that are actually within the radius.
+   */
+  public int[] getSegmentIndicesNear(XYPoint point, double radius) {
+
+    long minX = cell(point.getX() - radius);
+    long maxX = cell(point.getX() + radius);
+    long minY = cell(point.getY() - radius);
+    long maxY = cell(point.getY() + radius);
+
+    int[] results = new int[Math.max(_unindexedSegments.length, 16)];
+    int count = 0;
+
+    for (int segment : _unindexedSegments)
+      results[count++] = segment;
+
+    for (long x = minX; x <= maxX; x++) {
+      for (long y = minY; y <= maxY; y++) {
+        int[] segments = _segmentsByCell.get(key(x, y));
+        if (segments == null)
+          continue;
+        if (count + segments.length > results.length)
+          results = Arrays.copyOf(results,
+              Math.max(results.length * 2, count + segments.length));
+        System.arraycopy(segments, 0, results, count, segments.length);
+        count += segments.length;
+      }
+    }
+
+    if (count == 0)
+      return EMPTY;
+
+    Arrays.sort(results, 0, count);
+
+    int distinct = 1;
+    for (int i = 1; i < count; i++) {
+      if (results[i] != results[distinct - 1])
+        results[distinct++] = results[i];
+    }
+    return Arrays.copyOf(results, distinct);
+  }
+
+  private long cell(double value) {
+    return (long) Math.floor(value / _cellSize);
+  }
+
+  private static Long key(long x, long y) {
+    return (x << 32) ^ (y & 0xffffffffL);
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++)
+      array[i] = values.get(i);
+    return array;
+  }
+}
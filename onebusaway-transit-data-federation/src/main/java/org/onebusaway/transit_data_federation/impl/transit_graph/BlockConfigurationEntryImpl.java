@@ -36,6 +36,17 @@ public class BlockConfigurationEntryImpl implements BlockConfigurationEntry,
 
   private static final long serialVersionUID = 1L;
 
+  /**
+   * Set this system property to "true" to answer
+   * {@link #getArrivalTimeForIndex(int)}, {@link #getDepartureTimeForIndex(int)}
+   * and {@link #getDistanceAlongBlockForIndex(int)} from a
+   * {@link BlockStopTimeArrays} lookup cache instead of walking the
+   * {@link BlockTripEntry} and {@link StopTimeEntry} object graph.
+   */
+  public static final String STOP_TIME_ARRAYS_PROPERTY = "org.onebusaway.transit_data_federation.blockStopTimeArrays";
+
+  private static final boolean USE_STOP_TIME_ARRAYS = Boolean.getBoolean(STOP_TIME_ARRAYS_PROPERTY);
+
   private final BlockEntry block;
 
   private final ServiceIdActivation serviceIds;
@@ -56,6 +67,8 @@ public class BlockConfigurationEntryImpl implements BlockConfigurationEntry,
    */
   private List<FrequencyEntry> frequencies;
 
+  private transient volatile BlockStopTimeArrays stopTimeArrays;
+
   private BlockConfigurationEntryImpl(Builder builder) {
     this.block = builder.block;
     this.serviceIds = builder.serviceIds;
@@ -74,6 +87,19 @@ public class BlockConfigurationEntryImpl implements BlockConfigurationEntry,
     this.frequencies = frequencies;
   }
 
+  /**
+   * @return the lookup cache of this block configuration's stop time values,
+   *         built on first access
+   */
+  public BlockStopTimeArrays getStopTimeArrays() {
+    BlockStopTimeArrays arrays = stopTimeArrays;
+    if (arrays == null) {
+      arrays = new BlockStopTimeArrays(trips);
+      stopTimeArrays = arrays;
+    }
+    return arrays;
+  }
+
   /****
    * {@link BlockConfigurationEntry} Interface
    ****/
@@ -110,12 +136,16 @@ public class BlockConfigurationEntryImpl implements BlockConfigurationEntry,
 
   @Override
   public int getArrivalTimeForIndex(int index) {
+    if (USE_STOP_TIME_ARRAYS)
+      return getStopTimeArrays().getArrivalTime(index);
     StopTimeEntry stopTime = getStopTimeForIndex(index);
     return stopTime.getArrivalTime();
   }
 
   @Override
   public int getDepartureTimeForIndex(int index) {
+    if (USE_STOP_TIME_ARRAYS)
+      return getStopTimeArrays().getDepartureTime(index);
     StopTimeEntry stopTime = getStopTimeForIndex(index);
     return stopTime.getDepartureTime();
   }
@@ -123,6 +153,9 @@ public class BlockConfigurationEntryImpl implements BlockConfigurationEntry,
   @Override
   public double getDistanceAlongBlockForIndex(int index) {
 
+    if (USE_STOP_TIME_ARRAYS)
+      return getStopTimeArrays().getDistanceAlongBlock(index);
+
     int tripIndex = tripIndices[index];
 
     BlockTripEntry blockTrip = trips.get(tripIndex);
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.transit_graph;
+
+import java.util.List;
+
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockTripEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopTimeEntry;
+import org.onebusaway.transit_data_federation.services.transit_graph.TripEntry;
+
+/**
+ * A lookup cache of the arrival and departure times and the distances along
+ * block of a {@link BlockConfigurationEntryImpl}'s stop times, in parallel
+ * primitive arrays indexed by block sequence. Each lookup becomes a single
+ * array read instead of a walk through the {@link BlockTripEntry} and
+ * {@link StopTimeEntry} object graph.
+ * 
+ * This is not an alternative storage for stop times: the values are copied
+ * out of the {@link StopTimeEntry} objects, which stay in the graph as the only
+ * real copy since {@link TripEntry#getStopTimes()} is used throughout the
+ * federation. The cache costs {@link #BYTES_PER_STOP_TIME} bytes of heap per
+ * stop time of every block configuration that has been accessed, on top of
+ * the object graph, which is why it is opt-in.
+ * 
+ * @see BlockConfigurationEntryImpl#STOP_TIME_ARRAYS_PROPERTY
+ */
+public final class BlockStopTimeArrays {
+
+  /**
+   * An int arrival time, an int departure time and a double distance along
+   * block
+   */
+  public static final int BYTES_PER_STOP_TIME = 4 + 4 + 8;
+
+  private final int[] _arrivalTimes;
+
+  private final int[] _departureTimes;
+
+  private final double[] _distancesAlongBlock;
+
+  BlockStopTimeArrays(List<BlockTripEntry> trips) {
+
+    int n = 0;
+    for (BlockTripEntry blockTrip : trips)
+      n += blockTrip.getTrip().getStopTimes().size();
+
+    _arrivalTimes = new int[n];
+    _departureTimes = new int[n];
+    _distancesAlongBlock = new double[n];
+
+    int index = 0;
+    for (BlockTripEntry blockTrip : trips) {
+      for (StopTimeEntry stopTime : blockTrip.getTrip().getStopTimes()) {
+        _arrivalTimes[index] = stopTime.getArrivalTime();
+        _departureTimes[index] = stopTime.getDepartureTime();
+        _distancesAlongBlock[index] = blockTrip.getDistanceAlongBlock()
+            + stopTime.getShapeDistTraveled();
+        index++;
+      }
+    }
+  }
+
+  public int size() {
+    return _arrivalTimes.length;
+  }
+
+  public int getArrivalTime(int index) {
+    return _arrivalTimes[index];
+  }
+
+  public int getDepartureTime(int index) {
+    return _departureTimes[index];
+  }
+
+  public double getDistanceAlongBlock(int index) {
+    return _distancesAlongBlock[index];
+  }
+
+  /**
+   * @return the approximate heap footprint of the arrays, in bytes, all of it
+   *         in addition to the stop time objects
+   */
+  public long getApproximateSizeInBytes() {
+    return (long) _arrivalTimes.length * BYTES_PER_STOP_TIME;
+  }
+}
@@ -0,0 +1,441 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.transit_graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.onebusaway.collections.adapter.IAdapter;
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.gtfs.model.AgencyAndId;
+
+/**
+ * An id and stop location index written alongside the serialized
+ * {@link TransitGraphImpl}. The runtime maps the file with a
+ * {@link MappedByteBuffer} and reads it in place, so loading a bundle no longer
+ * has to rebuild the per-entity id {@link java.util.HashMap}s and the stop
+ * {@link com.vividsolutions.jts.index.strtree.STRtree} on the heap. It is only
+ * an index: the graph itself is still deserialized onto the heap.
+ *
+ * Entity ids are stored as sorted 64-bit hashes paired with the position of
+ * the entity in the corresponding {@link TransitGraphImpl} list. A hash match
+ * is always confirmed against the actual entity id, so collisions are handled
+ * correctly. Stops are additionally stored sorted by longitude so that a
+ * bounds query is a binary search plus a scan over a contiguous strip.
+ *
+ * The header carries the fingerprint of the serialized graph file the index
+ * was written for (see {@link #fingerprint(File)}). Positions in the index are
+ * only meaningful for that exact file, so an index is only used when the
+ * fingerprint of the loaded file matches (see {@link #isIndexFor(long)}).
+ *
+ * @see TransitGraphImpl#initialize(MappedTransitGraphIndex, long)
+ */
+public class MappedTransitGraphIndex {
+
+  private static final int MAGIC = 0x4f424147;
+
+  private static final int VERSION = 3;
+
+  private static final int HEADER_SIZE = 16;
+
+  public enum EIdTable {
+    STOPS, TRIPS, BLOCKS, ROUTES, ROUTE_COLLECTIONS
+  }
+
+  private final MappedByteBuffer _buffer;
+
+  private final long _fingerprint;
+
+  private final int _stopCount;
+
+  private final int _sortedLonOffset;
+
+  private final int _lonOrderOffset;
+
+  private final int _sortedLatOffset;
+
+  private final int[] _tableCounts = new int[EIdTable.values().length];
+
+  private final int[] _tableHashOffsets = new int[EIdTable.values().length];
+
+  private final int[] _tablePositionOffsets = new int[EIdTable.values().length];
+
+  private MappedTransitGraphIndex(MappedByteBuffer buffer) throws IOException {
+    _buffer = buffer;
+
+    if (buffer.getInt(0) != MAGIC)
+      throw new IOException("invalid transit graph index: bad magic number");
+    int version = buffer.getInt(4);
+    if (version != VERSION)
+      throw new IOException("unsupported transit graph index version: "
+          + version);
+    _fingerprint = buffer.getLong(8);
+
+    int offset = HEADER_SIZE;
+    _stopCount = buffer.getInt(offset);
+    offset += 4;
+    _sortedLonOffset = offset;
+    offset += 8 * _stopCount;
+    _lonOrderOffset = offset;
+    offset += 4 * _stopCount;
+    _sortedLatOffset = offset;
+    offset += 8 * _stopCount;
+
+    for (EIdTable table : EIdTable.values()) {
+      int index = table.ordinal();
+      int count = buffer.getInt(offset);
+      offset += 4;
+      _tableCounts[index] = count;
+      _tableHashOffsets[index] = offset;
+      offset += 8 * count;
+      _tablePositionOffsets[index] = offset;
+      offset += 4 * count;
+    }
+  }
+
+  /**
+   * Map an index file written by {@link #write(File, TransitGraphImpl)}
+   * read-only into memory.
+   *
+   * @param path the index file
+   * @return the mapped index
+   * @throws IOException
+   */
+  public static MappedTransitGraphIndex open(File path) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          channel.size());
+      return new MappedTransitGraphIndex(buffer);
+    } finally {
+      // The mapping remains valid after the underlying channel is closed
+      file.close();
+    }
+  }
+
+  /**
+   * Write the index for an initialized graph. Positions in the index refer to
+   * the order of the entity lists in the graph, so the index must be written
+   * from the same graph instance that was serialized to the fingerprinted
+   * file.
+   *
+   * @param path the target index file
+   * @param graph the graph to index
+   * @param graphFingerprint the {@link #fingerprint(File)} of the serialized
+   *          graph file
+   * @throws IOException
+   */
+  public static void write(File path, TransitGraphImpl graph,
+      long graphFingerprint) throws IOException {
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(path)));
+
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(graphFingerprint);
+
+      List<StopEntryImpl> stops = graph.getStops();
+      int n = stops.size();
+      double[] lons = new double[n];
+      for (int i = 0; i < n; i++)
+        lons[i] = stops.get(i).getStopLon();
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++)
+        order[i] = i;
+      Arrays.sort(order, new IndexComparator(lons));
+
+      out.writeInt(n);
+      for (int i = 0; i < n; i++)
+        out.writeDouble(lons[order[i]]);
+      for (int i = 0; i < n; i++)
+        out.writeInt(order[i]);
+      for (int i = 0; i < n; i++)
+        out.writeDouble(stops.get(order[i]).getStopLat());
+
+      List<AgencyAndId> stopIds = new ArrayList<AgencyAndId>(n);
+      for (StopEntryImpl stop : stops)
+        stopIds.add(stop.getId());
+      writeIdTable(out, stopIds);
+
+      List<AgencyAndId> tripIds = new ArrayList<AgencyAndId>();
+      for (TripEntryImpl trip : graph.getTrips())
+        tripIds.add(trip.getId());
+      writeIdTable(out, tripIds);
+
+      List<AgencyAndId> blockIds = new ArrayList<AgencyAndId>();
+      for (BlockEntryImpl block : graph.getBlocks())
+        blockIds.add(block.getId());
+      writeIdTable(out, blockIds);
+
+      List<AgencyAndId> routeIds = new ArrayList<AgencyAndId>();
+      for (RouteEntryImpl route : graph.getRoutes())
+        routeIds.add(route.getId());
+      writeIdTable(out, routeIds);
+
+      List<AgencyAndId> routeCollectionIds = new ArrayList<AgencyAndId>();
+      for (RouteCollectionEntryImpl routeCollection : graph.getRouteCollections())
+        routeCollectionIds.add(routeCollection.getId());
+      writeIdTable(out, routeCollectionIds);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Determine if this index was written for the serialized graph file with the
+   * specified fingerprint. This only compares the fingerprint in the header,
+   * nothing is rehashed.
+   *
+   * @param graphFingerprint the fingerprint of the loaded graph file
+   * @return true if the index positions refer to that graph's entity lists
+   */
+  public boolean isIndexFor(long graphFingerprint) {
+    return _fingerprint == graphFingerprint;
+  }
+
+  /**
+   * @param graph a deserialized graph
+   * @return true if the entity counts of the index match those of the graph, a
+   *         cheap sanity check on top of {@link #isIndexFor(long)}
+   */
+  public boolean hasCountsOf(TransitGraphImpl graph) {
+    return _stopCount == graph.getStops().size()
+        && getCount(EIdTable.STOPS) == graph.getStops().size()
+        && getCount(EIdTable.TRIPS) == graph.getTrips().size()
+        && getCount(EIdTable.BLOCKS) == graph.getBlocks().size()
+        && getCount(EIdTable.ROUTES) == graph.getRoutes().size()
+        && getCount(EIdTable.ROUTE_COLLECTIONS) == graph.getRouteCollections().size();
+  }
+
+  /**
+   * Compute the fingerprint of a serialized graph file: its length and the
+   * CRC32 of its bytes.
+   *
+   * @param graphPath the serialized graph file
+   * @return the fingerprint
+   * @throws IOException
+   */
+  public static long fingerprint(File graphPath) throws IOException {
+    CheckedInputStream in = new CheckedInputStream(new FileInputStream(
+        graphPath), new CRC32());
+    try {
+      drain(in);
+      return fingerprint(graphPath.length(), in.getChecksum().getValue());
+    } finally {
+      in.close();
+    }
+  }
+
+  public long getFingerprint() {
+    return _fingerprint;
+  }
+
+  /**
+   * @param table the id table
+   * @return the number of entities indexed in the specified table
+   */
+  public int getCount(EIdTable table) {
+    return _tableCounts[table.ordinal()];
+  }
+
+  public int getStopCount() {
+    return _stopCount;
+  }
+
+  /**
+   * Find the entity with the specified id.
+   *
+   * @param table the id table to search
+   * @param id the target id
+   * @param entries the entity list the table was built from
+   * @param idAdapter extracts the id from an entity
+   * @return the matching entity, or null if not found
+   */
+  public <T> T find(EIdTable table, AgencyAndId id, List<T> entries,
+      IAdapter<T, AgencyAndId> idAdapter) {
+
+    if (id == null)
+      return null;
+
+    int index = table.ordinal();
+    int count = _tableCounts[index];
+    int hashOffset = _tableHashOffsets[index];
+    int positionOffset = _tablePositionOffsets[index];
+    long hash = hash(id);
+
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long value = _buffer.getLong(hashOffset + 8 * mid);
+      if (value < hash)
+        low = mid + 1;
+      else
+        high = mid - 1;
+    }
+
+    for (int i = low; i < count; i++) {
+      if (_buffer.getLong(hashOffset + 8 * i) != hash)
+        break;
+      T entry = entries.get(_buffer.getInt(positionOffset + 4 * i));
+      if (id.equals(idAdapter.adapt(entry)))
+        return entry;
+    }
+
+    return null;
+  }
+
+  /**
+   * @param bounds the query bounds
+   * @param stops the stop list the index was built from
+   * @return the stops located within the specified bounds
+   */
+  public <T> List<T> getStopsByLocation(CoordinateBounds bounds,
+      List<? extends T> stops) {
+
+    if (_stopCount == 0)
+      return Collections.emptyList();
+
+    int low = 0;
+    int high = _stopCount - 1;
+    double minLon = bounds.getMinLon();
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (_buffer.getDouble(_sortedLonOffset + 8 * mid) < minLon)
+        low = mid + 1;
+      else
+        high = mid - 1;
+    }
+
+    List<T> results = new ArrayList<T>();
+    double maxLon = bounds.getMaxLon();
+    double minLat = bounds.getMinLat();
+    double maxLat = bounds.getMaxLat();
+
+    for (int i = low; i < _stopCount; i++) {
+      if (_buffer.getDouble(_sortedLonOffset + 8 * i) > maxLon)
+        break;
+      double lat = _buffer.getDouble(_sortedLatOffset + 8 * i);
+      if (minLat <= lat && lat <= maxLat)
+        results.add(stops.get(_buffer.getInt(_lonOrderOffset + 4 * i)));
+    }
+
+    return results;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static void writeIdTable(DataOutputStream out, List<AgencyAndId> ids)
+      throws IOException {
+    int n = ids.size();
+    long[] hashes = new long[n];
+    for (int i = 0; i < n; i++)
+      hashes[i] = hash(ids.get(i));
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++)
+      order[i] = i;
+    Arrays.sort(order, new HashComparator(hashes));
+
+    out.writeInt(n);
+    for (int i = 0; i < n; i++)
+      out.writeLong(hashes[order[i]]);
+    for (int i = 0; i < n; i++)
+      out.writeInt(order[i]);
+  }
+
+  static long fingerprint(long length, long crc) {
+    return (length << 32) ^ crc;
+  }
+
+  static void drain(InputStream in) throws IOException {
+    byte[] buffer = new byte[8192];
+    while (in.read(buffer) != -1)
+      ;
+  }
+
+  /**
+   * 64-bit FNV-1a hash of the agency id and id. The hash is written to disk, so
+   * it must not depend on {@link Object#hashCode()}.
+   */
+  static long hash(AgencyAndId id) {
+    long h = 0xcbf29ce484222325L;
+    h = hash(h, id.getAgencyId());
+    h ^= 0x1f;
+    h *= 0x100000001b3L;
+    h = hash(h, id.getId());
+    return h;
+  }
+
+  private static long hash(long h, String value) {
+    if (value == null)
+      return h;
+    for (int i = 0; i < value.length(); i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  private static class IndexComparator implements Comparator<Integer> {
+
+    private final double[] _values;
+
+    public IndexComparator(double[] values) {
+      _values = values;
+    }
+
+    @Override
+    public int compare(Integer o1, Integer o2) {
+      return Double.compare(_values[o1], _values[o2]);
+    }
+  }
+
+  private static class HashComparator implements Comparator<Integer> {
+
+    private final long[] _values;
+
+    public HashComparator(long[] values) {
+      _values = values;
+    }
+
+    @Override
+    public int compare(Integer o1, Integer o2) {
+      long a = _values[o1];
+      long b = _values[o2];
+      return a < b ? -1 : (a == b ? 0 : 1);
+    }
+  }
+}
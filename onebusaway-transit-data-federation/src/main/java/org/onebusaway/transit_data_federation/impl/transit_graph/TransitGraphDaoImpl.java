@@ -16,9 +16,14 @@
  */
 package org.onebusaway.transit_data_federation.impl.transit_graph;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import javax.annotation.PostConstruct;
 
@@ -37,13 +42,16 @@ import org.onebusaway.transit_data_federation.services.transit_graph.StopEntry;
 import org.onebusaway.transit_data_federation.services.transit_graph.TransitGraphDao;
 import org.onebusaway.transit_data_federation.services.transit_graph.TripEntry;
 import org.onebusaway.transit_data_federation.model.transit_graph.TransitGraph;
-import org.onebusaway.utility.ObjectSerializationLibrary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TransitGraphDaoImpl implements TransitGraphDao {
 
+  private static Logger _log = LoggerFactory.getLogger(TransitGraphDaoImpl.class);
+
   private FederatedTransitDataBundle _bundle;
 
   private TransitGraph _graph;
@@ -69,14 +77,48 @@ public class TransitGraphDaoImpl implements TransitGraphDao {
     }
     
     if (path.exists()) {
-      TransitGraphImpl graph = ObjectSerializationLibrary.readObject(path);
-      graph.initialize();
+      /**
+       * The graph file is checksummed as it is deserialized, so matching it
+       * against the fingerprint in the index header costs no second pass
+       */
+      CheckedInputStream in = new CheckedInputStream(new FileInputStream(path),
+          new CRC32());
+      TransitGraphImpl graph;
+      long fingerprint;
+      try {
+        ObjectInputStream ois = new ObjectInputStream(
+            new BufferedInputStream(in));
+        graph = (TransitGraphImpl) ois.readObject();
+        MappedTransitGraphIndex.drain(in);
+        fingerprint = MappedTransitGraphIndex.fingerprint(path.length(),
+            in.getChecksum().getValue());
+      } finally {
+        in.close();
+      }
+      graph.initialize(openIndex(), fingerprint);
       _graph = graph;
     } else {
       _graph = new TransitGraphImpl();
     }
   }
 
+  /**
+   * @return the mapped columnar index written alongside the graph, or null if
+   *         the bundle does not include one or it could not be opened
+   */
+  private MappedTransitGraphIndex openIndex() {
+    File indexPath = _bundle.getTransitGraphIndexPath();
+    if (indexPath == null || !indexPath.exists())
+      return null;
+    try {
+      return MappedTransitGraphIndex.open(indexPath);
+    } catch (IOException ex) {
+      _log.warn("error opening transit graph index " + indexPath
+          + ", falling back to on-heap lookups", ex);
+      return null;
+    }
+  }
+
   /****
    * {@link TransitGraphDao} Interface
    ****/
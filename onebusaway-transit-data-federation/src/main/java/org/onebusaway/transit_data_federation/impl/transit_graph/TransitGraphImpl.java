@@ -30,6 +30,7 @@ import org.onebusaway.collections.adapter.IAdapter;
 import org.onebusaway.collections.adapter.ListAdapter;
 import org.onebusaway.geospatial.model.CoordinateBounds;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.transit_data_federation.impl.transit_graph.MappedTransitGraphIndex.EIdTable;
 import org.onebusaway.transit_data_federation.services.serialization.EntryCallback;
 import org.onebusaway.transit_data_federation.services.serialization.EntryIdAndCallback;
 import org.onebusaway.transit_data_federation.services.transit_graph.AgencyEntry;
@@ -64,6 +65,16 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
 
   private static final RouteEntryAdapter _routeEntryAdapter = new RouteEntryAdapter();
 
+  private static final StopEntryIdAdapter _stopEntryIdAdapter = new StopEntryIdAdapter();
+
+  private static final TripEntryIdAdapter _tripEntryIdAdapter = new TripEntryIdAdapter();
+
+  private static final BlockEntryIdAdapter _blockEntryIdAdapter = new BlockEntryIdAdapter();
+
+  private static final RouteEntryIdAdapter _routeEntryIdAdapter = new RouteEntryIdAdapter();
+
+  private static final RouteCollectionEntryIdAdapter _routeCollectionEntryIdAdapter = new RouteCollectionEntryIdAdapter();
+
   private transient static ReadHelper _helper;
 
   private List<AgencyEntryImpl> _agencies = new ArrayList<AgencyEntryImpl>();
@@ -80,6 +91,12 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
 
   private transient STRtree _stopLocationTree = null;
 
+  /**
+   * When set, id and location lookups are served from the memory-mapped index
+   * and the id maps below are left unpopulated
+   */
+  private transient MappedTransitGraphIndex _index = null;
+
   private transient Map<String, AgencyEntryImpl> _agencyEntriesById = new HashMap<String, AgencyEntryImpl>();
 
   private transient Map<AgencyAndId, StopEntryImpl> _stopEntriesById = new HashMap<AgencyAndId, StopEntryImpl>();
@@ -97,12 +114,12 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
   }
 
   public void empty() {
-    _agencyEntriesById.clear();
-    _stopEntriesById.clear();
-    _tripEntriesById.clear();
-    _blockEntriesById.clear();
-    _routeCollectionEntriesById.clear();
-    _routeEntriesById.clear();
+    clearMap(_agencyEntriesById);
+    clearMap(_stopEntriesById);
+    clearMap(_tripEntriesById);
+    clearMap(_blockEntriesById);
+    clearMap(_routeCollectionEntriesById);
+    clearMap(_routeEntriesById);
     
     _routeCollections.clear();
     _blocks.clear();
@@ -112,9 +129,50 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
     _agencies.clear();
 
     _stopLocationTree = null;        
+    _index = null;
   }
   
   public void initialize() {
+    initialize(null, 0);
+  }
+
+  /**
+   * Initialize the graph's lookup structures. If a {@link MappedTransitGraphIndex}
+   * written for the graph file this graph was read from is supplied, id and
+   * location lookups are served from it directly and the on-heap id maps and
+   * stop location tree are not built.
+   * 
+   * @param index a mapped index for this graph, or null
+   * @param graphFingerprint the {@link MappedTransitGraphIndex#fingerprint(java.io.File)}
+   *          of the graph file this graph was read from
+   */
+  public void initialize(MappedTransitGraphIndex index, long graphFingerprint) {
+
+    if (index != null && _index == null && index.isIndexFor(graphFingerprint)
+        && index.hasCountsOf(this)) {
+      _log.info("initializing transit graph from mapped index: stops="
+          + _stops.size() + " trips=" + _trips.size());
+      _index = index;
+      _stopLocationTree = null;
+      _stopEntriesById = null;
+      _tripEntriesById = null;
+      _blockEntriesById = null;
+      _routeCollectionEntriesById = null;
+      _routeEntriesById = null;
+    } else if (index != null && _index == null) {
+      _log.warn("mapped transit graph index was not written from this graph, building lookup tables in memory");
+    }
+
+    if (_index != null) {
+      if (_agencyEntriesById == null
+          || _agencyEntriesById.size() < _agencies.size())
+        refreshAgencyMapping();
+      int i = 0;
+      for (StopEntryImpl stop : _stops)
+        stop.setIndex(i++);
+      return;
+    }
+
     if (_stopLocationTree == null) {
       System.out.println("initializing transit graph...");
 
@@ -219,6 +277,10 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
     _routeCollections.add(routeCollection);
   }
 
+  public List<RouteCollectionEntryImpl> getRouteCollections() {
+    return _routeCollections;
+  }
+
   public void refreshAgencyMapping() {
     _agencyEntriesById = new HashMap<String, AgencyEntryImpl>();
     for (AgencyEntryImpl entry : _agencies)
@@ -298,31 +360,45 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
 
   @Override
   public StopEntryImpl getStopEntryForId(AgencyAndId id) {
+    if (_index != null)
+      return _index.find(EIdTable.STOPS, id, _stops, _stopEntryIdAdapter);
     return _stopEntriesById.get(id);
   }
 
   @Override
   public TripEntryImpl getTripEntryForId(AgencyAndId id) {
+    if (_index != null)
+      return _index.find(EIdTable.TRIPS, id, _trips, _tripEntryIdAdapter);
     return _tripEntriesById.get(id);
   }
 
   @Override
   public BlockEntry getBlockEntryForId(AgencyAndId blockId) {
+    if (_index != null)
+      return _index.find(EIdTable.BLOCKS, blockId, _blocks,
+          _blockEntryIdAdapter);
     return _blockEntriesById.get(blockId);
   }
 
   @Override
   public RouteCollectionEntry getRouteCollectionForId(AgencyAndId id) {
+    if (_index != null)
+      return _index.find(EIdTable.ROUTE_COLLECTIONS, id, _routeCollections,
+          _routeCollectionEntryIdAdapter);
     return _routeCollectionEntriesById.get(id);
   }
 
   @Override
   public RouteEntryImpl getRouteForId(AgencyAndId id) {
+    if (_index != null)
+      return _index.find(EIdTable.ROUTES, id, _routes, _routeEntryIdAdapter);
     return _routeEntriesById.get(id);
   }
 
   @Override
   public List<StopEntry> getStopsByLocation(CoordinateBounds bounds) {
+    if (_index != null)
+      return _index.<StopEntry> getStopsByLocation(bounds, _stops);
     if (_stopLocationTree == null)
       return Collections.emptyList();
     Envelope r = new Envelope(bounds.getMinLon(), bounds.getMaxLon(),
@@ -332,6 +408,11 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
     return go.getStops();
   }
 
+  private static void clearMap(Map<?, ?> map) {
+    if (map != null)
+      map.clear();
+  }
+
   private class StopRTreeVisitor implements ItemVisitor {
 
     private List<StopEntry> _nearbyStops = new ArrayList<StopEntry>();
@@ -375,7 +456,10 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
     _helper.flush();
     _helper = null;
 
-    initialize();
+    /**
+     * The lookup structures are built by a subsequent call to initialize(),
+     * which may use a mapped index instead of building them on the heap
+     */
 
     // Do a GC run, since the graph-reading process requires a lot of data to be
     // loaded
@@ -495,4 +579,49 @@ public class TransitGraphImpl implements Serializable, TransitGraph {
       return source;
     }
   }
+
+  private static class StopEntryIdAdapter implements
+      IAdapter<StopEntryImpl, AgencyAndId> {
+
+    @Override
+    public AgencyAndId adapt(StopEntryImpl source) {
+      return source.getId();
+    }
+  }
+
+  private static class TripEntryIdAdapter implements
+      IAdapter<TripEntryImpl, AgencyAndId> {
+
+    @Override
+    public AgencyAndId adapt(TripEntryImpl source) {
+      return source.getId();
+    }
+  }
+
+  private static class BlockEntryIdAdapter implements
+      IAdapter<BlockEntryImpl, AgencyAndId> {
+
+    @Override
+    public AgencyAndId adapt(BlockEntryImpl source) {
+      return source.getId();
+    }
+  }
+
+  private static class RouteEntryIdAdapter implements
+      IAdapter<RouteEntryImpl, AgencyAndId> {
+
+    @Override
+    public AgencyAndId adapt(RouteEntryImpl source) {
+      return source.getId();
+    }
+  }
+
+  private static class RouteCollectionEntryIdAdapter implements
+      IAdapter<RouteCollectionEntryImpl, AgencyAndId> {
+
+    @Override
+    public AgencyAndId adapt(RouteCollectionEntryImpl source) {
+      return source.getId();
+    }
+  }
 }
@@ -60,6 +60,10 @@ public class FederatedTransitDataBundle {
     return new File(_path, "TransitGraph.obj");
   }
 
+  public File getTransitGraphIndexPath() {
+    return new File(_path, "TransitGraphIndex.bin");
+  }
+
   public File getNarrativeProviderPath() {
     return new File(_path, "NarrativeProvider.obj");
   }
@@ -45,4 +45,19 @@ public interface RouteCollectionSearchService {
   public SearchResult<AgencyAndId> searchForRoutesByName(String nameQuery,
       int maxResultCount, double minScoreToKeep) throws IOException,
           ParseException;
+
+  /**
+   * Autocomplete search by route name, where the last word of the query may be
+   * incomplete. Matches are returned in descending score order.
+   * 
+   * @param prefix the partial route name, as typed so far
+   * @param maxResultCount maximum number of results to keep
+   * @param minScoreToKeep score tuning metric to prune result (implementation
+   *          dependent)
+   * @return a search result for {@link RouteCollectionEntry} ids matching the
+   *         specified partial name
+   * @throws IOException
+   */
+  public SearchResult<AgencyAndId> searchForRoutesByNamePrefix(String prefix,
+      int maxResultCount, double minScoreToKeep) throws IOException;
 }
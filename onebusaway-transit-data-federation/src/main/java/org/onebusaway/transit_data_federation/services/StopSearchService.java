@@ -62,4 +62,18 @@ public interface StopSearchService {
   public SearchResult<AgencyAndId> searchForStopsByName(String name,
       int maxResultCount, double minScoreToKeep) throws IOException,
       ParseException;
+
+  /**
+   * Autocomplete search for stop ids by stop name, where the last word of the
+   * query may be incomplete. Matches are returned in descending score order.
+   * 
+   * @param prefix the partial stop name, as typed so far
+   * @param maxResultCount maximum number of results to return
+   * @param minScoreToKeep implementation-specific score cutoff for search
+   *          results
+   * @return a search result for matching stop ids
+   * @throws IOException
+   */
+  public SearchResult<AgencyAndId> searchForStopsByNamePrefix(String prefix,
+      int maxResultCount, double minScoreToKeep) throws IOException;
 }
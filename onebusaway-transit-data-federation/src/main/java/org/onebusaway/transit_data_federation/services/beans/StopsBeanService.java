@@ -57,4 +57,15 @@ public interface StopsBeanService {
    * @throws ServiceException
    */
   public StopsBean getStopsByName(String stopName) throws ServiceException;
+
+  /**
+   * Autocomplete search for stops by name, for typeahead as the name is typed.
+   * 
+   * @param namePrefix the partial stop name
+   * @param maxCount maximum number of stops to return
+   * @return matching stops, best match first
+   * @throws ServiceException
+   */
+  public StopsBean getStopsByNamePrefix(String namePrefix, int maxCount)
+      throws ServiceException;
 }
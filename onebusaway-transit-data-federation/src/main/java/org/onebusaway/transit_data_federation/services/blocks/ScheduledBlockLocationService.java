@@ -15,6 +15,8 @@
  */
 package org.onebusaway.transit_data_federation.services.blocks;
 
+import java.util.List;
+
 import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
 
 /**
@@ -58,6 +60,24 @@ public interface ScheduledBlockLocationService {
   public ScheduledBlockLocation getScheduledBlockLocationFromScheduledTime(
       ScheduledBlockLocation previousLocation, int scheduleTime);
 
+  /**
+   * Batch version of
+   * {@link #getScheduledBlockLocationFromScheduledTime(BlockConfigurationEntry, int)}
+   * for locating many blocks at once, as when listing all the vehicles along a
+   * route. Blocks that share a shape share its distance index lookup, and
+   * consecutive queries for the same block configuration in increasing schedule
+   * time order are answered incrementally.
+   * 
+   * @param blockConfigs
+   * @param scheduleTimes the schedule time for each block configuration, in the
+   *          same order
+   * @return the schedule block position for each block configuration, in the
+   *         same order, with null entries where the schedule time is beyond the
+   *         end of the block
+   */
+  public List<ScheduledBlockLocation> getScheduledBlockLocationsFromScheduledTimes(
+      List<BlockConfigurationEntry> blockConfigs, int[] scheduleTimes);
+
   /**
    * 
    * @param stopTimes
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.services.bundle;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the bundle state, published by a
+ * {@link BundleManagementService} each time a bundle is taken offline or made
+ * ready. Request threads check readiness with a single read of the current
+ * generation, without locking. While a generation isn't ready, threads that
+ * must wait park on it until its successor is published, instead of polling.
+ * 
+ * @see BundleManagementService#getBundleGeneration()
+ */
+public final class BundleGeneration {
+
+  /**
+   * The generation of bundle managers that never take their bundle offline
+   */
+  public static final BundleGeneration ALWAYS_READY = new BundleGeneration(0,
+      null, true);
+
+  private final long _generation;
+
+  private final String _bundleId;
+
+  private final boolean _ready;
+
+  private final CountDownLatch _superseded = new CountDownLatch(1);
+
+  public BundleGeneration(long generation, String bundleId, boolean ready) {
+    _generation = generation;
+    _bundleId = bundleId;
+    _ready = ready;
+  }
+
+  /**
+   * 
+   * @return a number that increases with each published generation
+   */
+  public long getGeneration() {
+    return _generation;
+  }
+
+  /**
+   * 
+   * @return the id of the bundle being served, or null if there is none yet
+   */
+  public String getBundleId() {
+    return _bundleId;
+  }
+
+  public boolean isReady() {
+    return _ready;
+  }
+
+  /**
+   * 
+   * @param bundleId the id of the bundle of the next generation
+   * @param ready true if the bundle of the next generation can be queried
+   * @return the next generation, which must be published before
+   *         {@link #supersede()} is called on this one
+   */
+  public BundleGeneration next(String bundleId, boolean ready) {
+    return new BundleGeneration(_generation + 1, bundleId, ready);
+  }
+
+  /**
+   * Release the threads waiting on this generation, once its successor has
+   * been published.
+   */
+  public void supersede() {
+    _superseded.countDown();
+  }
+
+  /**
+   * 
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return true if a newer generation was published, false if the timeout
+   *         elapsed first
+   * @throws InterruptedException
+   */
+  public boolean awaitSuperseded(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return _superseded.await(timeout, unit);
+  }
+
+  @Override
+  public String toString() {
+    return "BundleGeneration(generation=" + _generation + " bundleId="
+        + _bundleId + " ready=" + _ready + ")";
+  }
+}
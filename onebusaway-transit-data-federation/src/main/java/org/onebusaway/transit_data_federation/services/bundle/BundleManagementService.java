@@ -88,6 +88,15 @@ public interface BundleManagementService {
   // is bundle finished loading? 
   public Boolean bundleIsReady();
 
+  /**
+   * Cheap enough to call on every request: implementations publish the
+   * current generation through a volatile field.
+   * 
+   * @return the current bundle generation, whose
+   *         {@link BundleGeneration#isReady()} matches {@link #bundleIsReady()}
+   */
+  public BundleGeneration getBundleGeneration();
+
   // thread reference keepers
   public void registerInferenceProcessingThread(Future thread);
 
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.services.bundle;
+
+/**
+ * Exercises a newly loaded bundle before {@link BundleManagementService}
+ * reports it ready, so that lazily built indices and caches are populated
+ * before the first requests arrive rather than by them.
+ */
+public interface BundleWarmupService {
+
+  /**
+   * Called once the services have been refreshed from a new bundle and its
+   * caches cleared, while requests are still being held back. Returns within
+   * the service's time budget.
+   * 
+   * @return true if every request of the warm-up completed, false if it
+   *         stopped at the time budget or could not be run
+   */
+  public boolean warmup();
+}
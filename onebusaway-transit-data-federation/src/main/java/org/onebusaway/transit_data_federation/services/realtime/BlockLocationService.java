@@ -77,6 +77,21 @@ public interface BlockLocationService {
   public BlockLocation getScheduledLocationForBlockInstance(
       BlockInstance blockInstance, long targetTime);
 
+  /**
+   * Batch version of
+   * {@link #getScheduledLocationForBlockInstance(BlockInstance, long)} for
+   * locating many block instances at once, as when listing all the vehicles
+   * along a route.
+   * 
+   * @param blockInstances
+   * @param targetTime
+   * @return the scheduled location of each block instance, in the same order,
+   *         with null entries for block instances not active at the specified
+   *         time
+   */
+  public List<BlockLocation> getScheduledLocationsForBlockInstances(
+      List<BlockInstance> blockInstances, long targetTime);
+
   public BlockLocation getLocationForVehicleAndTime(AgencyAndId vehicleId,
       TargetTime time);
 }
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.services.realtime;
+
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopEntry;
+
+/**
+ * Tracks a generation number per stop that changes whenever real-time data
+ * for a block serving the stop changes. Callers can use the generation as
+ * part of a cache key to safely reuse arrival and departure results computed
+ * for a stop until a relevant update arrives.
+ * 
+ * @see BlockLocationService
+ */
+public interface StopRealtimeGenerationService {
+
+  /**
+   * @param stop the stop
+   * @return the current generation for the stop. A generation value is never
+   *         reused, so two equal values indicate no intervening update.
+   */
+  public long getGenerationForStop(StopEntry stop);
+
+  /**
+   * Advance the generation of every stop served by the block instance.
+   * 
+   * @param blockInstance the block instance whose real-time state changed
+   */
+  public void handleBlockInstanceUpdate(BlockInstance blockInstance);
+
+  /**
+   * Advance the generation of all stops.
+   */
+  public void invalidateAll();
+}
@@ -87,6 +87,25 @@ public class VehicleLocationCacheElements {
     return new VehicleLocationCacheElements(_blockInstance, elements);
   }
 
+  /**
+   * @param maxSize the maximum number of elements to keep
+   * @return elements limited to the most recent maxSize elements
+   */
+  public VehicleLocationCacheElements pruneToMostRecent(int maxSize) {
+
+    if (_elements.size() <= maxSize)
+      return this;
+
+    List<VehicleLocationCacheElement> elements = new ArrayList<VehicleLocationCacheElement>(
+        _elements.subList(_elements.size() - maxSize, _elements.size()));
+
+    return new VehicleLocationCacheElements(_blockInstance, elements);
+  }
+
+  public int size() {
+    return _elements.size();
+  }
+
   public BlockInstance getBlockInstance() {
     return _blockInstance;
   }
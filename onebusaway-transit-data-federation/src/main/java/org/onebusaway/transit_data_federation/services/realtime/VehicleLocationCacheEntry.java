@@ -27,9 +27,21 @@ public class VehicleLocationCacheEntry {
 
   private boolean _closed = false;
 
+  private final int _maxElements;
+
   public VehicleLocationCacheEntry(BlockInstance blockInstance) {
+    this(blockInstance, 0);
+  }
+
+  /**
+   * @param blockInstance
+   * @param maxElements the maximum number of elements kept for the vehicle, or
+   *          zero for no limit
+   */
+  public VehicleLocationCacheEntry(BlockInstance blockInstance, int maxElements) {
     _blockInstance = blockInstance;
     _elements = new VehicleLocationCacheElements(blockInstance);
+    _maxElements = maxElements;
   }
 
   public BlockInstance getBlockInstance() {
@@ -59,6 +71,8 @@ public class VehicleLocationCacheEntry {
         record, scheduledBlockLocation, samples);
 
     _elements = _elements.extend(element);
+    if (_maxElements > 0)
+      _elements = _elements.pruneToMostRecent(_maxElements);
 
     return true;
   }
@@ -102,6 +116,13 @@ public class VehicleLocationCacheEntry {
     return false;
   }
 
+  /**
+   * Close the entry to new elements, whatever their age
+   */
+  public synchronized void close() {
+    _closed = true;
+  }
+
   public synchronized VehicleLocationCacheElements getElements() {
     return _elements;
   }
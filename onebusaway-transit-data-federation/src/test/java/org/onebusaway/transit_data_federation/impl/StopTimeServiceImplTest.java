@@ -450,6 +450,54 @@ public class StopTimeServiceImplTest {
 
   }
 
+  @Test
+  public void testDepartureIndexMatchesBlockStopTimeIndices() {
+
+    Date day = getTimeAsDay(date("2009-09-01 00:00"));
+
+    StopTimeEntryImpl stA = stopTime(0, _stop, trip("A", "sA"), time(10, 00), 0);
+    StopTimeEntryImpl stB = stopTime(1, _stop, trip("B", "sA"), time(10, 20), 0);
+    // long dwell: arrives before the window closes, departs after it
+    StopTimeEntryImpl stC = stopTime(2, _stop, trip("C", "sA"), time(10, 05),
+        time(10, 50), 0);
+    StopTimeEntryImpl stD = stopTime(3, _stop, trip("D", "sA"), time(10, 40), 0);
+
+    BlockConfigurationEntry bA = linkBlockTrips("bA", stA.getTrip());
+    BlockConfigurationEntry bB = linkBlockTrips("bB", stB.getTrip());
+    BlockConfigurationEntry bC = linkBlockTrips("bC", stC.getTrip());
+    BlockConfigurationEntry bD = linkBlockTrips("bD", stD.getTrip());
+
+    addFirstStopToBlockIndex(bA, bB, bD);
+    addFirstStopToBlockIndex(bC);
+
+    Date from = date("2009-09-01 10:10");
+    Date to = date("2009-09-01 10:30");
+
+    List<StopTimeInstance> results = _service.getStopTimeInstancesInTimeRange(
+        _stopId, from, to);
+    sort(results);
+
+    assertEquals(2, results.size());
+
+    StopTimeInstance sti = results.get(0);
+    assertEquals(day.getTime(), sti.getServiceDate());
+    assertEquals(date("2009-09-01 10:05").getTime(), sti.getArrivalTime());
+    assertEquals(date("2009-09-01 10:50").getTime(), sti.getDepartureTime());
+
+    sti = results.get(1);
+    assertEquals(day.getTime(), sti.getServiceDate());
+    assertEquals(date("2009-09-01 10:20").getTime(), sti.getArrivalTime());
+
+    _service.setUseDepartureIndex(false);
+    List<StopTimeInstance> expected = _service.getStopTimeInstancesInTimeRange(
+        _stopId, from, to);
+    sort(expected);
+
+    assertEquals(expected.size(), results.size());
+    for (int i = 0; i < expected.size(); i++)
+      assertSame(expected.get(i).getStopTime(), results.get(i).getStopTime());
+  }
+
   /****
    * Private Methods
    ****/
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.blocks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.block;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.blockTripIndices;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.dateAsLong;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.linkBlockTrips;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stop;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stopTime;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.time;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.geospatial.services.SphericalGeometryLibrary;
+import org.onebusaway.gtfs.impl.calendar.CalendarServiceImpl;
+import org.onebusaway.gtfs.model.calendar.CalendarServiceData;
+import org.onebusaway.transit_data_federation.impl.ExtendedCalendarServiceImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.BlockEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.TripEntryImpl;
+import org.onebusaway.transit_data_federation.services.blocks.BlockIndexService;
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.onebusaway.transit_data_federation.services.blocks.BlockStopTimeIndex;
+import org.onebusaway.transit_data_federation.services.blocks.BlockTripIndex;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopEntry;
+import org.onebusaway.transit_data_federation.testing.UnitTestingSupport;
+
+public class ActiveBlockGridIndexTest {
+
+  private StopEntryImpl _stopA = stop("stopA", 47.60, -122.30);
+
+  private StopEntryImpl _stopB = stop("stopB", 47.62, -122.30);
+
+  private StopEntryImpl _stopC = stop("stopC", 47.64, -122.30);
+
+  private BlockEntryImpl _blockA = block("blockA");
+
+  private BlockEntryImpl _blockB = block("blockB");
+
+  private ActiveBlockGridIndex _index;
+
+  @Before
+  public void before() {
+
+    CalendarServiceData calendarData = new CalendarServiceData();
+    UnitTestingSupport.addDates(calendarData, "sid",
+        UnitTestingSupport.date("2010-09-07 00:00"));
+
+    CalendarServiceImpl calendarService = new CalendarServiceImpl();
+    calendarService.setData(calendarData);
+
+    ExtendedCalendarServiceImpl extendedCalendarService = new ExtendedCalendarServiceImpl();
+    extendedCalendarService.setCalendarService(calendarService);
+
+    BlockCalendarServiceImpl blockCalendarService = new BlockCalendarServiceImpl();
+    blockCalendarService.setCalendarService(extendedCalendarService);
+
+    TripEntryImpl tripA = trip("tripA", "sid");
+    stopTime(0, _stopA, tripA, time(9, 00), time(9, 00), 0);
+    stopTime(1, _stopB, tripA, time(9, 30), time(9, 30), 2200);
+    linkBlockTrips(_blockA, tripA);
+
+    TripEntryImpl tripB = trip("tripB", "sid");
+    stopTime(2, _stopB, tripB, time(10, 00), time(10, 00), 0);
+    stopTime(3, _stopC, tripB, time(10, 30), time(10, 30), 2200);
+    linkBlockTrips(_blockB, tripB);
+
+    List<BlockTripIndex> indicesA = blockTripIndices(_blockA);
+    List<BlockTripIndex> indicesB = blockTripIndices(_blockB);
+
+    BlockIndexService blockIndexService = Mockito.mock(BlockIndexService.class);
+    Mockito.when(blockIndexService.getBlockTripIndicesForBlock(_blockA.getId())).thenReturn(
+        indicesA);
+    Mockito.when(blockIndexService.getBlockTripIndicesForBlock(_blockB.getId())).thenReturn(
+        indicesB);
+    Mockito.when(blockIndexService.getStopTimeIndicesForStop(_stopA)).thenReturn(
+        Arrays.asList(BlockStopTimeIndex.create(indicesA.get(0), 0)));
+    Mockito.when(blockIndexService.getStopTimeIndicesForStop(_stopB)).thenReturn(
+        Arrays.asList(BlockStopTimeIndex.create(indicesA.get(0), 1),
+            BlockStopTimeIndex.create(indicesB.get(0), 0)));
+    Mockito.when(blockIndexService.getStopTimeIndicesForStop(_stopC)).thenReturn(
+        Arrays.asList(BlockStopTimeIndex.create(indicesB.get(0), 1)));
+
+    List<StopEntry> stops = Arrays.<StopEntry> asList(_stopA, _stopB, _stopC);
+
+    _index = ActiveBlockGridIndex.create(stops, blockIndexService,
+        blockCalendarService, 500, 15 * 60 * 1000, 2, 4);
+  }
+
+  @Test
+  public void testGetActiveBlocks() {
+
+    assertEquals(3, _index.getCellCount());
+
+    List<BlockInstance> instances = _index.getActiveBlocks(bounds(_stopA),
+        dateAsLong("2010-09-07 09:10"), dateAsLong("2010-09-07 09:20"));
+    assertEquals(1, instances.size());
+    assertEquals(_blockA, instances.get(0).getBlock().getBlock());
+    assertEquals(dateAsLong("2010-09-07 00:00"),
+        instances.get(0).getServiceDate());
+
+    instances = _index.getActiveBlocks(bounds(_stopA),
+        dateAsLong("2010-09-07 10:10"), dateAsLong("2010-09-07 10:20"));
+    assertEquals(0, instances.size());
+
+    instances = _index.getActiveBlocks(bounds(_stopB),
+        dateAsLong("2010-09-07 10:10"), dateAsLong("2010-09-07 10:20"));
+    assertEquals(1, instances.size());
+    assertEquals(_blockB, instances.get(0).getBlock().getBlock());
+
+    instances = _index.getActiveBlocks(bounds(_stopB),
+        dateAsLong("2010-09-07 09:20"), dateAsLong("2010-09-07 10:10"));
+    assertEquals(2, instances.size());
+
+    instances = _index.getActiveBlocks(bounds(_stopC),
+        dateAsLong("2010-09-07 09:10"), dateAsLong("2010-09-07 09:20"));
+    assertEquals(0, instances.size());
+
+    /**
+     * The time bucket of the query includes tripA, but the trip ends before the
+     * start of the query
+     */
+    instances = _index.getActiveBlocks(bounds(_stopB),
+        dateAsLong("2010-09-07 09:31"), dateAsLong("2010-09-07 09:40"));
+    assertEquals(0, instances.size());
+
+    assertTrue(_index.getCachedBucketCount() <= 2);
+  }
+
+  @Test
+  public void testGetActiveBlocksWithLargeBounds() {
+
+    CoordinateBounds bounds = SphericalGeometryLibrary.bounds(47.62, -122.30,
+        50000);
+
+    List<BlockInstance> instances = _index.getActiveBlocks(bounds,
+        dateAsLong("2010-09-07 09:20"), dateAsLong("2010-09-07 10:10"));
+    assertEquals(2, instances.size());
+  }
+
+  @Test
+  public void testGetActiveBlocksWithLongTimeRange() {
+    assertNull(_index.getActiveBlocks(bounds(_stopB),
+        dateAsLong("2010-09-07 08:00"), dateAsLong("2010-09-07 11:00")));
+  }
+
+  @Test
+  public void testClearBuckets() {
+
+    _index.getActiveBlocks(bounds(_stopA), dateAsLong("2010-09-07 09:10"),
+        dateAsLong("2010-09-07 09:20"));
+    assertEquals(1, _index.getCachedBucketCount());
+
+    _index.clearBuckets();
+    assertEquals(0, _index.getCachedBucketCount());
+
+    List<BlockInstance> instances = _index.getActiveBlocks(bounds(_stopA),
+        dateAsLong("2010-09-07 09:10"), dateAsLong("2010-09-07 09:20"));
+    assertEquals(1, instances.size());
+  }
+
+  private static CoordinateBounds bounds(StopEntry stop) {
+    return SphericalGeometryLibrary.bounds(stop.getStopLat(),
+        stop.getStopLon(), 100);
+  }
+}
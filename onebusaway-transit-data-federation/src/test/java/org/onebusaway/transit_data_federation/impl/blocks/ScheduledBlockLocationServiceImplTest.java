@@ -27,6 +27,7 @@ import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.
 import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.time;
 import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Before;
@@ -583,4 +584,102 @@ public class ScheduledBlockLocationServiceImplTest {
 
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testShapeIndexCache() {
+
+    ScheduledBlockLocationServiceImpl uncached = new ScheduledBlockLocationServiceImpl();
+    uncached.setShapePointService(_shapePointService);
+    uncached.setMaxCachedShapePoints(0);
+
+    for (int t = time(9, 50); t <= time(10, 30); t += 15) {
+      ScheduledBlockLocation expected = uncached.getScheduledBlockLocationFromScheduledTime(
+          _blockConfig, t);
+      ScheduledBlockLocation actual = _service.getScheduledBlockLocationFromScheduledTime(
+          _blockConfig, t);
+      if (expected == null) {
+        assertNull(actual);
+        continue;
+      }
+      assertEquals(expected.getLocation().getLat(),
+          actual.getLocation().getLat(), 0.0);
+      assertEquals(expected.getLocation().getLon(),
+          actual.getLocation().getLon(), 0.0);
+      assertEquals(expected.getOrientation(), actual.getOrientation(), 0.0);
+    }
+
+    assertEquals(0, uncached.getCachedShapePoints());
+    assertEquals(9, _service.getCachedShapePoints());
+
+    _service.clearShapeIndexCache();
+    assertEquals(0, _service.getCachedShapePoints());
+  }
+
+  @Test
+  public void testShapeIndexCacheLimit() {
+
+    _service.setMaxCachedShapePoints(8);
+
+    _service.getScheduledBlockLocationFromScheduledTime(_blockConfig,
+        time(10, 5));
+    assertEquals(6, _service.getCachedShapePoints());
+
+    _service.getScheduledBlockLocationFromScheduledTime(_blockConfig,
+        time(10, 18));
+    assertEquals(3, _service.getCachedShapePoints());
+  }
+
+  @Test
+  public void testGetScheduledBlockLocationsFromScheduledTimes() {
+
+    List<BlockConfigurationEntry> blockConfigs = new ArrayList<BlockConfigurationEntry>();
+    int[] scheduleTimes = {time(9, 55), time(10, 5), time(10, 12), time(10, 0),
+        time(10, 40)};
+    for (int i = 0; i < scheduleTimes.length; i++)
+      blockConfigs.add(_blockConfig);
+
+    List<ScheduledBlockLocation> locations = _service.getScheduledBlockLocationsFromScheduledTimes(
+        blockConfigs, scheduleTimes);
+
+    assertEquals(scheduleTimes.length, locations.size());
+
+    for (int i = 0; i < scheduleTimes.length; i++) {
+      ScheduledBlockLocation expected = _service.getScheduledBlockLocationFromScheduledTime(
+          _blockConfig, scheduleTimes[i]);
+      ScheduledBlockLocation actual = locations.get(i);
+      if (expected == null) {
+        assertNull(actual);
+        continue;
+      }
+      assertEquals(expected.getScheduledTime(), actual.getScheduledTime());
+      assertEquals(expected.getStopTimeIndex(), actual.getStopTimeIndex());
+      assertEquals(expected.getDistanceAlongBlock(),
+          actual.getDistanceAlongBlock(), 0.0);
+      assertEquals(expected.getLocation().getLat(),
+          actual.getLocation().getLat(), 0.0);
+      assertEquals(expected.getLocation().getLon(),
+          actual.getLocation().getLon(), 0.0);
+    }
+  }
+
+  @Test
+  public void testGetScheduledBlockLocationsFromScheduledTimesSharesShapes() {
+
+    _service.setMaxCachedShapePoints(0);
+
+    List<BlockConfigurationEntry> blockConfigs = new ArrayList<BlockConfigurationEntry>();
+    int[] scheduleTimes = {time(10, 5), time(10, 2), time(10, 7)};
+    for (int i = 0; i < scheduleTimes.length; i++)
+      blockConfigs.add(_blockConfig);
+
+    List<ScheduledBlockLocation> locations = _service.getScheduledBlockLocationsFromScheduledTimes(
+        blockConfigs, scheduleTimes);
+
+    assertEquals(scheduleTimes.length, locations.size());
+    for (ScheduledBlockLocation location : locations)
+      assertEquals(_tripA, location.getActiveTrip());
+
+    Mockito.verify(_shapePointService, Mockito.times(1)).getShapePointsForShapeId(
+        aid("shapeA"));
+    assertEquals(0, _service.getCachedShapePoints());
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.onebusaway.exceptions.NoSuchStopServiceException;
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.transit_data.model.AgencyBean;
+import org.onebusaway.transit_data.model.AgencyWithCoverageBean;
+import org.onebusaway.transit_data.model.ArrivalsAndDeparturesQueryBean;
+import org.onebusaway.transit_data.model.ListBean;
+import org.onebusaway.transit_data.model.SearchQueryBean;
+import org.onebusaway.transit_data_federation.impl.federated.TransitDataServiceTemplateImpl;
+import org.onebusaway.transit_data_federation.services.transit_graph.TransitGraphDao;
+import org.onebusaway.transit_data_federation.services.transit_graph.TripEntry;
+import org.onebusaway.util.SystemTime;
+
+public class BundleWarmupServiceImplTest {
+
+  private BundleWarmupServiceImpl _service;
+
+  private TransitDataServiceTemplateImpl _transitDataService;
+
+  private TransitGraphDao _transitGraphDao;
+
+  private long _adjustment;
+
+  @Before
+  public void setup() {
+    _adjustment = SystemTime.getAdjustment();
+
+    _transitDataService = Mockito.mock(TransitDataServiceTemplateImpl.class);
+    _transitGraphDao = Mockito.mock(TransitGraphDao.class);
+
+    _service = new BundleWarmupServiceImpl();
+    _service.setTransitDataService(_transitDataService);
+    _service.setTransitGraphDao(_transitGraphDao);
+    _service.setThreads(1);
+  }
+
+  @After
+  public void teardown() {
+    SystemTime.setAdjustment(_adjustment);
+  }
+
+  @Test
+  public void testProfile() throws IOException {
+
+    _service.setProfilePath(profile("# a comment", "", "stop 1_75403",
+        "  route   1_100  ", "bounds 47.60,-122.34,47.62,-122.32",
+        "bounds 47.60,-122.34", "stop", "trip 1_1234"));
+
+    assertTrue(_service.warmup());
+
+    assertEquals(3, _service.getRequestCount());
+    assertEquals(3, _service.getCompletedRequests());
+    assertEquals(0, _service.getFailedRequests());
+    assertEquals(100, _service.getProgress());
+    assertTrue(_service.isLastWarmupCompleted());
+
+    Mockito.verify(_transitDataService).getStop("1_75403");
+    Mockito.verify(_transitDataService).getStopWithArrivalsAndDepartures(
+        Mockito.eq("1_75403"),
+        Mockito.any(ArrivalsAndDeparturesQueryBean.class));
+    Mockito.verify(_transitDataService).getRouteForId("1_100");
+    Mockito.verify(_transitDataService).getStopsForRoute("1_100");
+    Mockito.verify(_transitDataService).getStops(
+        Mockito.argThat(new BoundsMatcher(new CoordinateBounds(47.60, -122.34,
+            47.62, -122.32))));
+    Mockito.verify(_transitDataService).getRoutes(
+        Mockito.any(SearchQueryBean.class));
+    Mockito.verifyNoMoreInteractions(_transitDataService);
+  }
+
+  @Test
+  public void testFailedRequest() throws IOException {
+
+    Mockito.when(_transitDataService.getStop("1_a")).thenThrow(
+        new NoSuchStopServiceException("1_a"));
+
+    _service.setProfilePath(profile("stop 1_a", "stop 1_b"));
+
+    assertTrue(_service.warmup());
+
+    assertEquals(2, _service.getCompletedRequests());
+    assertEquals(1, _service.getFailedRequests());
+    Mockito.verify(_transitDataService).getStop("1_b");
+  }
+
+  @Test
+  public void testTimeBudget() throws IOException {
+
+    // the first request takes longer than the whole budget
+    Mockito.when(_transitDataService.getStop("1_a")).thenAnswer(
+        new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) {
+            SystemTime.setAdjustment(SystemTime.getAdjustment() + 2000);
+            return null;
+          }
+        });
+
+    _service.setProfilePath(profile("stop 1_a", "stop 1_b", "stop 1_c"));
+    _service.setTimeBudget(1);
+
+    assertFalse(_service.warmup());
+
+    assertEquals(3, _service.getRequestCount());
+    assertEquals(1, _service.getCompletedRequests());
+    assertEquals(33, _service.getProgress());
+    assertFalse(_service.isLastWarmupCompleted());
+
+    Mockito.verify(_transitDataService, Mockito.never()).getStop("1_b");
+    Mockito.verify(_transitDataService, Mockito.never()).getStop("1_c");
+  }
+
+  @Test
+  public void testWithoutProfile() {
+
+    AgencyBean agency = new AgencyBean();
+    agency.setId("1");
+    AgencyWithCoverageBean agencyWithCoverage = new AgencyWithCoverageBean();
+    agencyWithCoverage.setAgency(agency);
+    Mockito.when(_transitDataService.getAgenciesWithCoverage()).thenReturn(
+        Arrays.asList(agencyWithCoverage));
+    Mockito.when(_transitDataService.getStopIdsForAgencyId("1")).thenReturn(
+        new ListBean<String>(Arrays.asList("1_a", "1_b"), false));
+    Mockito.when(_transitDataService.getRouteIdsForAgencyId("1")).thenReturn(
+        new ListBean<String>(Arrays.asList("1_100"), false));
+    Mockito.when(_transitGraphDao.getAllTrips()).thenReturn(
+        Collections.<TripEntry> emptyList());
+
+    _service.setProfilePath(new File("/does/not/exist"));
+
+    assertTrue(_service.warmup());
+
+    assertEquals(3, _service.getRequestCount());
+    Mockito.verify(_transitDataService).getStop("1_a");
+    Mockito.verify(_transitDataService).getStop("1_b");
+    Mockito.verify(_transitDataService).getStopsForRoute("1_100");
+    Mockito.verify(_transitDataService, Mockito.never()).getStopWithArrivalsAndDepartures(
+        Mockito.anyString(), Mockito.any(ArrivalsAndDeparturesQueryBean.class));
+  }
+
+  private static File profile(String... lines) throws IOException {
+    File path = File.createTempFile(
+        BundleWarmupServiceImplTest.class.getName(), ".txt");
+    path.deleteOnExit();
+    Writer writer = new FileWriter(path);
+    try {
+      for (String line : lines)
+        writer.write(line + "\n");
+    } finally {
+      writer.close();
+    }
+    return path;
+  }
+
+  private static class BoundsMatcher extends ArgumentMatcher<SearchQueryBean> {
+
+    private final CoordinateBounds _bounds;
+
+    public BoundsMatcher(CoordinateBounds bounds) {
+      _bounds = bounds;
+    }
+
+    @Override
+    public boolean matches(Object argument) {
+      SearchQueryBean query = (SearchQueryBean) argument;
+      return query.getType() == SearchQueryBean.EQueryType.BOUNDS
+          && _bounds.equals(query.getBounds());
+    }
+  }
+}
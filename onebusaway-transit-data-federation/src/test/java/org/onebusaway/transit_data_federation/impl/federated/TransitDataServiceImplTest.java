@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.onebusaway.exceptions.ServiceUnavailableServiceException;
+import org.onebusaway.transit_data.model.AgencyBean;
+import org.onebusaway.transit_data_federation.services.bundle.BundleGeneration;
+import org.onebusaway.transit_data_federation.services.bundle.BundleManagementService;
+import org.onebusaway.transit_data_federation.services.bundle.BundleSearchService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TransitDataServiceImplTest {
+
+  @Mock
+  private TransitDataServiceTemplateImpl _template;
+
+  @Mock
+  private BundleManagementService _bundleManagementService;
+
+  @Mock
+  private BundleSearchService _bundleSearchService;
+
+  @InjectMocks
+  private TransitDataServiceImpl _service;
+
+  @Test
+  public void testReadyBundle() {
+    AgencyBean agency = new AgencyBean();
+    Mockito.when(_bundleManagementService.getBundleGeneration()).thenReturn(
+        BundleGeneration.ALWAYS_READY);
+    Mockito.when(_template.getAgency("1")).thenReturn(agency);
+
+    assertSame(agency, _service.getAgency("1"));
+    assertEquals(0, _service.getBlockedRequestCount());
+  }
+
+  @Test
+  public void testFailFast() {
+    Mockito.when(_bundleManagementService.getBundleGeneration()).thenReturn(
+        new BundleGeneration(1, null, false));
+    _service.setFailFastWhenBundleNotReady(true);
+
+    try {
+      _service.getAgency("1");
+      fail();
+    } catch (ServiceUnavailableServiceException ex) {
+
+    }
+
+    Mockito.verify(_template, Mockito.never()).getAgency("1");
+    assertEquals(1, _service.getBlockedRequestCount());
+    assertEquals(1, _service.getRejectedRequestCount());
+  }
+
+  @Test
+  public void testWaitForNextGeneration() throws InterruptedException {
+    final BundleGeneration loading = new BundleGeneration(1, null, false);
+    final BundleGeneration ready = loading.next("bundle", true);
+    Mockito.when(_bundleManagementService.getBundleGeneration()).thenReturn(
+        loading, ready);
+
+    Thread publisher = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException ex) {
+          return;
+        }
+        loading.supersede();
+      }
+    };
+    publisher.start();
+
+    _service.getAgency("1");
+    publisher.join();
+
+    Mockito.verify(_template).getAgency("1");
+    assertEquals(1, _service.getBlockedRequestCount());
+    assertEquals(0, _service.getRejectedRequestCount());
+  }
+
+  @Test
+  public void testBundleReadyTimeout() {
+    Mockito.when(_bundleManagementService.getBundleGeneration()).thenReturn(
+        new BundleGeneration(1, null, false));
+    _service.setBundleReadyTimeout(50);
+
+    try {
+      _service.getAgency("1");
+      fail();
+    } catch (ServiceUnavailableServiceException ex) {
+
+    }
+
+    Mockito.verify(_template, Mockito.never()).getAgency("1");
+    assertEquals(1, _service.getRejectedRequestCount());
+  }
+}
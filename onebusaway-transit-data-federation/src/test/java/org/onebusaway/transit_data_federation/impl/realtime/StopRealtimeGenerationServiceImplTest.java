@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.realtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.dateAsLong;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.linkBlockTrips;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stop;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stopTime;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.time;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
+
+import org.junit.Test;
+import org.onebusaway.transit_data_federation.impl.transit_graph.StopEntryImpl;
+import org.onebusaway.transit_data_federation.impl.transit_graph.TripEntryImpl;
+import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+
+public class StopRealtimeGenerationServiceImplTest {
+
+  @Test
+  public void test() {
+
+    StopRealtimeGenerationServiceImpl service = new StopRealtimeGenerationServiceImpl();
+
+    StopEntryImpl stopA = stop("stopA", 47.0, -122.0);
+    StopEntryImpl stopB = stop("stopB", 47.0, -122.0);
+    StopEntryImpl stopC = stop("stopC", 47.0, -122.0);
+
+    TripEntryImpl tripA = trip("tripA", "sA");
+    stopTime(0, stopA, tripA, time(9, 00), 0);
+    stopTime(1, stopB, tripA, time(9, 10), 100);
+
+    TripEntryImpl tripB = trip("tripB", "sA");
+    stopTime(2, stopC, tripB, time(9, 00), 0);
+
+    BlockConfigurationEntry blockA = linkBlockTrips("blockA", tripA);
+    BlockConfigurationEntry blockB = linkBlockTrips("blockB", tripB);
+    long serviceDate = dateAsLong("2010-10-05 00:00");
+
+    long a = service.getGenerationForStop(stopA);
+    long b = service.getGenerationForStop(stopB);
+    long c = service.getGenerationForStop(stopC);
+
+    service.handleBlockInstanceUpdate(new BlockInstance(blockA, serviceDate));
+
+    assertTrue(service.getGenerationForStop(stopA) != a);
+    assertTrue(service.getGenerationForStop(stopB) != b);
+    assertEquals(c, service.getGenerationForStop(stopC));
+
+    a = service.getGenerationForStop(stopA);
+    service.handleBlockInstanceUpdate(new BlockInstance(blockB, serviceDate));
+
+    assertEquals(a, service.getGenerationForStop(stopA));
+    assertFalse(service.getGenerationForStop(stopC) == c);
+
+    /**
+     * Generations are never reused, even for stops without updates
+     */
+    b = service.getGenerationForStop(stopB);
+    c = service.getGenerationForStop(stopC);
+    service.invalidateAll();
+
+    assertTrue(service.getGenerationForStop(stopA) > a);
+    assertTrue(service.getGenerationForStop(stopB) > b);
+    assertTrue(service.getGenerationForStop(stopC) > c);
+  }
+}
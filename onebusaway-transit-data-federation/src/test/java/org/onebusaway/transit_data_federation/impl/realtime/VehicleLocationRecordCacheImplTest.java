@@ -16,8 +16,10 @@
 package org.onebusaway.transit_data_federation.impl.realtime;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.aid;
 import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.block;
@@ -28,6 +30,8 @@ import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.
 
 import java.util.List;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.realtime.api.VehicleLocationRecord;
@@ -36,9 +40,22 @@ import org.onebusaway.transit_data_federation.impl.transit_graph.TripEntryImpl;
 import org.onebusaway.transit_data_federation.services.blocks.BlockInstance;
 import org.onebusaway.transit_data_federation.services.realtime.VehicleLocationCacheElements;
 import org.onebusaway.transit_data_federation.services.transit_graph.BlockConfigurationEntry;
+import org.onebusaway.util.SystemTime;
 
 public class VehicleLocationRecordCacheImplTest {
 
+  private long _adjustment;
+
+  @Before
+  public void setup() {
+    _adjustment = SystemTime.getAdjustment();
+  }
+
+  @After
+  public void teardown() {
+    SystemTime.setAdjustment(_adjustment);
+  }
+
   @Test
   public void testSimpleOperations() {
     long serviceDate = System.currentTimeMillis();
@@ -118,7 +135,7 @@ public class VehicleLocationRecordCacheImplTest {
   }
 
   @Test
-  public void testClearCache() throws InterruptedException {
+  public void testClearCache() {
 
     long serviceDate = System.currentTimeMillis();
 
@@ -140,22 +157,22 @@ public class VehicleLocationRecordCacheImplTest {
     cache.addRecord(instanceA,
         record(20, "blockA", serviceDate, "vehicleA", 10.0), null, null);
 
-    Thread.sleep(100);
+    advanceClock(100);
 
     cache.addRecord(instanceB,
         record(30, "blockB", serviceDate, "vehicleB", 20.0), null, null);
 
-    Thread.sleep(100);
+    advanceClock(100);
 
     cache.addRecord(instanceA,
         record(40, "blockA", serviceDate, "vehicleC", 20.0), null, null);
 
-    Thread.sleep(100);
+    advanceClock(100);
 
     cache.addRecord(instanceB,
         record(50, "blockB", serviceDate, "vehicleD", 20.0), null, null);
 
-    cache.clearStaleRecords(System.currentTimeMillis() - 150);
+    cache.clearStaleRecords(SystemTime.currentTimeMillis() - 150 * 1000);
 
     VehicleLocationCacheElements cacheRecord = cache.getRecordForVehicleId(aid("vehicleA"));
     assertNull(cacheRecord);
@@ -178,6 +195,123 @@ public class VehicleLocationRecordCacheImplTest {
     assertEquals(1, records.size());
   }
 
+  @Test
+  public void testBounds() {
+
+    long serviceDate = System.currentTimeMillis();
+
+    BlockEntryImpl block = block("blockA");
+    TripEntryImpl trip = trip("tripA", "serviceId");
+    stopTime(0, null, trip, time(9, 00), 0);
+    BlockConfigurationEntry blockConfig = linkBlockTrips(block, trip);
+    BlockInstance blockInstance = new BlockInstance(blockConfig, serviceDate);
+
+    VehicleLocationRecordCacheImpl cache = new VehicleLocationRecordCacheImpl();
+    cache.setMaxVehicles(2);
+    cache.setMaxRecordsPerVehicle(2);
+
+    cache.addRecord(blockInstance,
+        record(10, "blockA", serviceDate, "vehicleA", 10.0), null, null);
+    cache.addRecord(blockInstance,
+        record(20, "blockA", serviceDate, "vehicleA", 20.0), null, null);
+    cache.addRecord(blockInstance,
+        record(30, "blockA", serviceDate, "vehicleA", 30.0), null, null);
+
+    VehicleLocationCacheElements cacheRecord = cache.getRecordForVehicleId(aid("vehicleA"));
+    assertEquals(2, cacheRecord.getElements().size());
+    assertEquals(20, cacheRecord.getElements().get(0).getRecord().getTimeOfRecord());
+    assertEquals(30, cacheRecord.getLastElement().getRecord().getTimeOfRecord());
+
+    cache.addRecord(blockInstance,
+        record(30, "blockA", serviceDate, "vehicleB", 10.0), null, null);
+    cache.addRecord(blockInstance,
+        record(30, "blockA", serviceDate, "vehicleC", 10.0), null, null);
+
+    assertEquals(2, cache.getVehicleCount());
+    assertEquals(1, cache.getCapacityEvictions());
+    assertEquals(2, cache.getRecordsForBlockInstance(blockInstance).size());
+  }
+
+  @Test
+  public void testClearStaleRawPositions() {
+
+    VehicleLocationRecordCacheImpl cache = new VehicleLocationRecordCacheImpl();
+
+    cache.addRawPosition(aid("vehicleA"), new VehicleLocationRecord());
+
+    advanceClock(100);
+
+    cache.addRawPosition(aid("vehicleB"), new VehicleLocationRecord());
+
+    cache.clearStaleRecords(SystemTime.currentTimeMillis() - 50 * 1000);
+
+    assertNull(cache.getRawPosition(aid("vehicleA")));
+    assertNotNull(cache.getRawPosition(aid("vehicleB")));
+    assertEquals(1, cache.getRawPositionCount());
+  }
+
+  @Test
+  public void testClearStaleRecordsUsesLastUpdateTime() {
+
+    long serviceDate = System.currentTimeMillis();
+
+    BlockEntryImpl block = block("blockA");
+    TripEntryImpl trip = trip("tripA", "serviceId");
+    stopTime(0, null, trip, time(9, 00), 0);
+    BlockConfigurationEntry blockConfig = linkBlockTrips(block, trip);
+    BlockInstance blockInstance = new BlockInstance(blockConfig, serviceDate);
+
+    VehicleLocationRecordCacheImpl cache = new VehicleLocationRecordCacheImpl();
+
+    // the record claims to be from an hour from now, but arrives now
+    long future = SystemTime.currentTimeMillis() + 60 * 60 * 1000;
+    cache.addRecord(blockInstance,
+        record(future, "blockA", serviceDate, "vehicleA", 10.0), null, null);
+    cache.addRawPosition(aid("vehicleA"), new VehicleLocationRecord());
+    cache.addRawPosition(aid("vehicleB"), new VehicleLocationRecord());
+
+    advanceClock(200);
+
+    cache.addRawPosition(aid("vehicleB"), new VehicleLocationRecord());
+
+    cache.clearStaleRecords(SystemTime.currentTimeMillis() - 100 * 1000);
+
+    assertNull(cache.getRecordForVehicleId(aid("vehicleA")));
+    assertNull(cache.getRawPosition(aid("vehicleA")));
+    assertEquals(0, cache.getRecordsForBlockInstance(blockInstance).size());
+    assertEquals(1, cache.getEvictions());
+    assertNotNull(cache.getRawPosition(aid("vehicleB")));
+
+    advanceClock(200);
+
+    cache.clearStaleRecords(SystemTime.currentTimeMillis() - 100 * 1000);
+
+    assertNull(cache.getRawPosition(aid("vehicleB")));
+    assertEquals(0, cache.getVehicleCount());
+    assertEquals(0, cache.getRawPositionCount());
+    assertEquals(0, cache.getEvictionBucketCount());
+  }
+
+  @Test
+  public void testCapacityKeepsAddedVehicle() {
+
+    VehicleLocationRecordCacheImpl cache = new VehicleLocationRecordCacheImpl();
+    cache.setMaxVehicles(2);
+
+    /**
+     * The updates share an eviction bucket with the vehicles that get evicted,
+     * so nothing but the skip keeps the vehicle being added in the cache
+     */
+    for (int i = 0; i < 20; i++) {
+      AgencyAndId vehicleId = aid("vehicle" + i);
+      cache.addRawPosition(vehicleId, new VehicleLocationRecord());
+      assertNotNull(cache.getRawPosition(vehicleId));
+      assertTrue(cache.getRawPositionCount() <= 2);
+    }
+
+    assertEquals(18, cache.getCapacityEvictions());
+  }
+
   @Test
   public void testConcurrentOperations() {
 
@@ -206,6 +340,13 @@ public class VehicleLocationRecordCacheImplTest {
     }
   }
 
+  /**
+   * @param seconds how far to move {@link SystemTime} forward
+   */
+  private static void advanceClock(int seconds) {
+    SystemTime.setAdjustment(SystemTime.getAdjustment() + seconds * 1000L);
+  }
+
   private VehicleLocationRecord record(long t, String blockId,
       long serviceDate, String vehicleId, double distanceAlongBlock) {
     VehicleLocationRecord r = new VehicleLocationRecord();
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.realtime.gtfs_realtime;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.Position;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.VehicleDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+import com.google.transit.realtime.GtfsRealtimeConstants;
+
+public class GtfsRealtimeIncrementalFilterTest {
+
+  @Test
+  public void test() {
+
+    GtfsRealtimeIncrementalFilter filter = new GtfsRealtimeIncrementalFilter();
+
+    FeedMessage tripUpdates = feed(tripUpdate("tripA", "vehicleA", 100),
+        tripUpdate("tripB", "vehicleB", 100), tripUpdate("tripC", null, 100));
+    FeedMessage vehiclePositions = feed(vehiclePosition("vehicleA", 100,
+        47.0f), vehiclePosition("vehicleB", 100, 47.5f));
+
+    GtfsRealtimeIncrementalFilter.FilteredUpdates filtered = filter.filter(
+        tripUpdates, vehiclePositions);
+    assertEquals(3, filtered.getTripUpdates().getEntityCount());
+    assertEquals(2, filtered.getVehiclePositions().getEntityCount());
+    assertEquals(0, filtered.getUnchangedVehicleIds().size());
+    filtered.commit();
+
+    // Nothing changed, only the anonymous trip update is passed through
+    filtered = filter.filter(tripUpdates, vehiclePositions);
+    assertEquals(1, filtered.getTripUpdates().getEntityCount());
+    assertEquals("tripC",
+        filtered.getTripUpdates().getEntity(0).getTripUpdate().getTrip().getTripId());
+    assertEquals(0, filtered.getVehiclePositions().getEntityCount());
+    assertEquals(2, filtered.getUnchangedVehicleIds().size());
+    filtered.commit();
+
+    // vehicleB moved, so both its trip update and position are passed through
+    vehiclePositions = feed(vehiclePosition("vehicleA", 100, 47.0f),
+        vehiclePosition("vehicleB", 130, 47.6f));
+    filtered = filter.filter(tripUpdates, vehiclePositions);
+    assertEquals(2, filtered.getTripUpdates().getEntityCount());
+    assertEquals(1, filtered.getVehiclePositions().getEntityCount());
+    assertEquals("vehicleB",
+        filtered.getVehiclePositions().getEntity(0).getVehicle().getVehicle().getId());
+    assertEquals(1, filtered.getUnchangedVehicleIds().size());
+
+    // Without a commit the same change is reported again
+    filtered = filter.filter(tripUpdates, vehiclePositions);
+    assertEquals(1, filtered.getVehiclePositions().getEntityCount());
+    filtered.commit();
+
+    filtered = filter.filter(tripUpdates, vehiclePositions);
+    assertEquals(0, filtered.getVehiclePositions().getEntityCount());
+
+    filter.reset();
+    filtered = filter.filter(tripUpdates, vehiclePositions);
+    assertEquals(3, filtered.getTripUpdates().getEntityCount());
+    assertEquals(2, filtered.getVehiclePositions().getEntityCount());
+  }
+
+  @Test
+  public void testMissingTimestamp() {
+
+    GtfsRealtimeIncrementalFilter filter = new GtfsRealtimeIncrementalFilter();
+
+    FeedMessage tripUpdates = feed(tripUpdate("tripA", "vehicleA", 0));
+    FeedMessage vehiclePositions = feed();
+
+    filter.filter(tripUpdates, vehiclePositions).commit();
+    GtfsRealtimeIncrementalFilter.FilteredUpdates filtered = filter.filter(
+        tripUpdates, vehiclePositions);
+    assertEquals(1, filtered.getTripUpdates().getEntityCount());
+  }
+
+  private static FeedMessage feed(FeedEntity... entities) {
+    FeedMessage.Builder builder = FeedMessage.newBuilder();
+    FeedHeader.Builder header = FeedHeader.newBuilder();
+    header.setGtfsRealtimeVersion(GtfsRealtimeConstants.VERSION);
+    builder.setHeader(header);
+    for (FeedEntity entity : entities)
+      builder.addEntity(entity);
+    return builder.build();
+  }
+
+  private static FeedEntity tripUpdate(String tripId, String vehicleId,
+      long timestamp) {
+    TripUpdate.Builder tripUpdate = TripUpdate.newBuilder();
+    tripUpdate.setTrip(TripDescriptor.newBuilder().setTripId(tripId));
+    if (vehicleId != null)
+      tripUpdate.setVehicle(VehicleDescriptor.newBuilder().setId(vehicleId));
+    if (timestamp > 0)
+      tripUpdate.setTimestamp(timestamp);
+    FeedEntity.Builder entity = FeedEntity.newBuilder();
+    entity.setId(tripId);
+    entity.setTripUpdate(tripUpdate);
+    return entity.build();
+  }
+
+  private static FeedEntity vehiclePosition(String vehicleId, long timestamp,
+      float lat) {
+    VehiclePosition.Builder vehiclePosition = VehiclePosition.newBuilder();
+    vehiclePosition.setVehicle(VehicleDescriptor.newBuilder().setId(vehicleId));
+    vehiclePosition.setTimestamp(timestamp);
+    vehiclePosition.setPosition(Position.newBuilder().setLatitude(lat).setLongitude(
+        -122.0f));
+    FeedEntity.Builder entity = FeedEntity.newBuilder();
+    entity.setId(vehicleId);
+    entity.setVehicle(vehiclePosition);
+    return entity.build();
+  }
+}
@@ -25,6 +25,7 @@ import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.
 import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
 
 import com.google.transit.realtime.GtfsRealtime;
+import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.realtime.api.EVehicleStatus;
 import org.onebusaway.realtime.api.VehicleLocationRecord;
 import org.onebusaway.transit_data_federation.impl.transit_graph.BlockEntryImpl;
@@ -53,7 +54,13 @@ import org.mockito.Mockito;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class GtfsRealtimeTripLibraryTest {
@@ -166,6 +173,188 @@ public class GtfsRealtimeTripLibraryTest {
     assertEquals(blockB.getId(), record.getVehicleId());
   }
 
+  @Test
+  public void testPartitionedMatchingMatchesSerialMatching() throws Exception {
+
+    FeedMessage.Builder tripUpdates = createFeed();
+    StopEntryImpl stopA = stop("stopA", 0, 0);
+
+    for (int i = 0; i < 10; i++) {
+      TripEntryImpl tripEntry = trip("trip" + i);
+      stopTime(i, stopA, tripEntry, time(8, i), 0.0);
+      Mockito.when(_entitySource.getTrip("trip" + i)).thenReturn(tripEntry);
+
+      BlockEntryImpl block = block("block" + i);
+      BlockConfigurationEntry blockConfig = blockConfiguration(block,
+          serviceIds("s1"), tripEntry);
+      Mockito.when(
+          _blockCalendarService.getActiveBlocks(Mockito.eq(block.getId()),
+              Mockito.anyLong(), Mockito.anyLong())).thenReturn(
+          Arrays.asList(new BlockInstance(blockConfig, 0L)));
+
+      TripUpdate.Builder tu = tripUpdate("trip" + i, 0, 0,
+          stopTimeUpdateWithDepartureDelay("stopA", 30 * i));
+      tu.setVehicle(vehicle("v" + i));
+      tripUpdates.addEntity(feed(tu));
+    }
+
+    // an unknown trip, reported as unmatched by one of the partitions
+    TripUpdate.Builder unknown = tripUpdate("tripX", 0, 0);
+    unknown.setVehicle(vehicle("vX"));
+    tripUpdates.addEntity(feed(unknown));
+
+    FeedMessage vehiclePositions = createFeed().build();
+
+    MonitoredResult serialResult = new MonitoredResult();
+    List<CombinedTripUpdatesAndVehiclePosition> serialGroups = _library.groupTripUpdatesAndVehiclePositions(
+        serialResult, tripUpdates.build(), vehiclePositions);
+    List<VehicleLocationRecord> serialRecords = _library.createVehicleLocationRecordsForUpdates(
+        serialResult, serialGroups, null, 1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      MonitoredResult partitionedResult = new MonitoredResult();
+      List<CombinedTripUpdatesAndVehiclePosition> partitionedGroups = _library.groupTripUpdatesAndVehiclePositions(
+          partitionedResult, tripUpdates.build(), vehiclePositions, executor, 4);
+      List<VehicleLocationRecord> partitionedRecords = _library.createVehicleLocationRecordsForUpdates(
+          partitionedResult, partitionedGroups, executor, 4);
+
+      assertEquals(11, serialGroups.size());
+      assertEquals(serialGroups.size(), partitionedGroups.size());
+      for (int i = 0; i < serialGroups.size(); i++) {
+        CombinedTripUpdatesAndVehiclePosition serial = serialGroups.get(i);
+        CombinedTripUpdatesAndVehiclePosition partitioned = partitionedGroups.get(i);
+        assertEquals(serial.bestTrip, partitioned.bestTrip);
+        if (serial.block == null) {
+          assertNull(partitioned.block);
+        } else {
+          assertSame(serial.block.getBlockInstance(),
+              partitioned.block.getBlockInstance());
+          assertEquals(serial.block.getVehicleId(),
+              partitioned.block.getVehicleId());
+        }
+      }
+
+      assertEquals(11, serialRecords.size());
+      assertEquals(serialRecords.size(), partitionedRecords.size());
+      for (int i = 0; i < serialRecords.size(); i++) {
+        VehicleLocationRecord serial = serialRecords.get(i);
+        VehicleLocationRecord partitioned = partitionedRecords.get(i);
+        if (serial == null) {
+          assertNull(partitioned);
+          continue;
+        }
+        assertEquals(serial.getVehicleId(), partitioned.getVehicleId());
+        assertEquals(serial.getBlockId(), partitioned.getBlockId());
+        assertEquals(serial.getTripId(), partitioned.getTripId());
+        assertEquals(serial.getServiceDate(), partitioned.getServiceDate());
+        assertEquals(serial.getScheduleDeviation(),
+            partitioned.getScheduleDeviation(), 0.0);
+        assertEquals(serial.getTimeOfRecord(), partitioned.getTimeOfRecord());
+      }
+
+      assertEquals(Collections.singleton("tripX"),
+          serialResult.getUnmatchedTripIds());
+      assertEquals(serialResult.getUnmatchedTripIds(),
+          partitionedResult.getUnmatchedTripIds());
+      assertEquals(serialResult.getMatchedTripIds(),
+          partitionedResult.getMatchedTripIds());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPartitionsKeepBlocksTogether() {
+
+    AgencyAndId b1 = new AgencyAndId("1", "b1");
+    AgencyAndId b2 = new AgencyAndId("1", "b2");
+    AgencyAndId b3 = new AgencyAndId("1", "b3");
+    List<AgencyAndId> blockIds = Arrays.asList(b1, b2, b1, null, b2, b3, b1,
+        null);
+
+    List<int[]> partitions = GtfsRealtimeTripLibrary.getPartitionIndices(
+        blockIds.size(), blockIds, Mockito.mock(ExecutorService.class), 3);
+    assertEquals(3, partitions.size());
+
+    Map<AgencyAndId, Integer> partitionByBlock = new HashMap<AgencyAndId, Integer>();
+    Set<Integer> seen = new HashSet<Integer>();
+    for (int p = 0; p < partitions.size(); p++) {
+      int previous = -1;
+      for (int index : partitions.get(p)) {
+        assertTrue(index > previous);
+        previous = index;
+        assertTrue(seen.add(index));
+        AgencyAndId blockId = blockIds.get(index);
+        if (blockId == null)
+          continue;
+        Integer existing = partitionByBlock.put(blockId, p);
+        assertTrue(existing == null || existing == p);
+      }
+    }
+    assertEquals(blockIds.size(), seen.size());
+
+    // without an executor everything runs in order in a single partition
+    partitions = GtfsRealtimeTripLibrary.getPartitionIndices(blockIds.size(),
+        blockIds, null, 3);
+    assertEquals(1, partitions.size());
+    assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5, 6, 7}, partitions.get(0));
+  }
+
+  @Test
+  public void testMonitoredResultsByVehicleId() {
+
+    FeedMessage.Builder tripUpdates = createFeed();
+    StopEntryImpl stopA = stop("stopA", 0, 0);
+
+    for (int i = 0; i < 2; i++) {
+      TripEntryImpl tripEntry = trip("trip" + i);
+      stopTime(i, stopA, tripEntry, time(8, i), 0.0);
+      Mockito.when(_entitySource.getTrip("trip" + i)).thenReturn(tripEntry);
+
+      BlockEntryImpl block = block("block" + i);
+      BlockConfigurationEntry blockConfig = blockConfiguration(block,
+          serviceIds("s1"), tripEntry);
+      Mockito.when(
+          _blockCalendarService.getActiveBlocks(Mockito.eq(block.getId()),
+              Mockito.anyLong(), Mockito.anyLong())).thenReturn(
+          Arrays.asList(new BlockInstance(blockConfig, 0L)));
+
+      TripUpdate.Builder tu = tripUpdate("trip" + i, 0, 0,
+          stopTimeUpdateWithDepartureDelay("stopA", 30));
+      tu.setVehicle(vehicle("v" + i));
+      tripUpdates.addEntity(feed(tu));
+    }
+
+    TripUpdate.Builder unknown = tripUpdate("tripX", 0, 0);
+    unknown.setVehicle(vehicle("vX"));
+    tripUpdates.addEntity(feed(unknown));
+
+    MonitoredResult result = new MonitoredResult();
+    Map<String, MonitoredResult> resultsByVehicleId = new HashMap<String, MonitoredResult>();
+    List<CombinedTripUpdatesAndVehiclePosition> groups = _library.groupTripUpdatesAndVehiclePositions(
+        result, tripUpdates.build(), createFeed().build(), null, 1,
+        resultsByVehicleId);
+    _library.createVehicleLocationRecordsForUpdates(result, groups, null, 1,
+        resultsByVehicleId);
+
+    assertEquals(3, resultsByVehicleId.size());
+    assertEquals(Collections.singleton("tripX"),
+        resultsByVehicleId.get("vX").getUnmatchedTripIds());
+    assertTrue(resultsByVehicleId.get("vX").getMatchedTripIds().isEmpty());
+    assertTrue(resultsByVehicleId.get("v0").getUnmatchedTripIds().isEmpty());
+    assertFalse(resultsByVehicleId.get("v0").getMatchedTripIds().isEmpty());
+    assertFalse(resultsByVehicleId.get("v0").getMatchedTripIds().equals(
+        resultsByVehicleId.get("v1").getMatchedTripIds()));
+
+    // the shared result is still the union of the vehicle results
+    Set<String> matched = new HashSet<String>();
+    for (MonitoredResult vehicleResult : resultsByVehicleId.values())
+      matched.addAll(vehicleResult.getMatchedTripIds());
+    assertEquals(matched, result.getMatchedTripIds());
+    assertEquals(Collections.singleton("tripX"), result.getUnmatchedTripIds());
+  }
+
   @Test
   public void testCreateVehicleLocationRecordForUpdate_NoStopTimeUpdates() {
     TripUpdate tripUpdate = TripUpdate.newBuilder()
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 import org.onebusaway.geospatial.model.CoordinatePoint;
@@ -164,6 +165,52 @@ public class ShapePointsLibraryTest {
     assertEquals(6.2, assignment.distanceFromTarget, 0.1);
   }
 
+  @Test
+  public void testSegmentIndexMatchesFullScan() {
+
+    ShapePointsLibrary spl = new ShapePointsLibrary();
+    spl.setLocalMinimumThreshold(50);
+
+    /**
+     * A shape that loops around the same block three times, with a long
+     * straight run out and back that the index can't place in a small number
+     * of cells
+     */
+    List<XYPoint> points = new ArrayList<XYPoint>();
+    for (int loop = 0; loop < 3; loop++) {
+      for (int i = 0; i < 40; i++) {
+        double angle = 2 * Math.PI * i / 40;
+        points.add(p(200 * Math.cos(angle) + loop * 5, 200 * Math.sin(angle)));
+      }
+    }
+    points.add(p(5000, 0));
+    points.add(p(5000, 20));
+    points.add(p(0, 20));
+
+    double[] shapePointDistances = shapePointDistances(points);
+    ShapeSegmentIndex index = spl.createSegmentIndex(points);
+
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      XYPoint target = p(random.nextDouble() * 1000 - 400,
+          random.nextDouble() * 600 - 300);
+      int fromIndex = random.nextInt(10);
+      int toIndex = points.size() - random.nextInt(10);
+      List<PointAndIndex> expected = spl.computePotentialAssignments(points,
+          shapePointDistances, target, fromIndex, toIndex);
+      List<PointAndIndex> actual = spl.computePotentialAssignments(points,
+          shapePointDistances, index, target, fromIndex, toIndex);
+      assertEquals(expected.size(), actual.size());
+      for (int j = 0; j < expected.size(); j++) {
+        assertEquals(expected.get(j).index, actual.get(j).index);
+        assertEquals(expected.get(j).distanceAlongShape,
+            actual.get(j).distanceAlongShape, 0.0);
+        assertEquals(expected.get(j).distanceFromTarget,
+            actual.get(j).distanceFromTarget, 0.0);
+      }
+    }
+  }
+
   private XYPoint p(double x, double y) {
     return new XYPoint(x, y);
   }
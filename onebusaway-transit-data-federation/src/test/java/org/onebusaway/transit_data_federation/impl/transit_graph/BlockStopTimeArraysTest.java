@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.transit_graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.linkBlockTrips;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stop;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stopTime;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.time;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.onebusaway.transit_data_federation.services.transit_graph.BlockStopTimeEntry;
+
+public class BlockStopTimeArraysTest {
+
+  @Test
+  public void test() {
+
+    StopEntryImpl stopA = stop("stopA", 47.0, -122.0);
+    StopEntryImpl stopB = stop("stopB", 47.1, -122.1);
+    StopEntryImpl stopC = stop("stopC", 47.2, -122.2);
+    stopA.setIndex(0);
+    stopB.setIndex(1);
+    stopC.setIndex(2);
+
+    TripEntryImpl tripA = trip("A", "serviceId", 1000.0);
+    TripEntryImpl tripB = trip("B", "serviceId", 1000.0);
+
+    stopTime(1, stopA, tripA, time(10, 00), time(10, 00), 200);
+    stopTime(2, stopB, tripA, time(10, 10), time(10, 15), 800);
+    stopTime(3, stopC, tripB, time(10, 20), time(10, 20), 200);
+
+    BlockConfigurationEntryImpl blockConfig = (BlockConfigurationEntryImpl) linkBlockTrips(
+        "blockA", tripA, tripB);
+    BlockStopTimeArrays arrays = blockConfig.getStopTimeArrays();
+    assertSame(arrays, blockConfig.getStopTimeArrays());
+
+    List<BlockStopTimeEntry> stopTimes = blockConfig.getStopTimes();
+    assertEquals(stopTimes.size(), arrays.size());
+
+    for (int i = 0; i < stopTimes.size(); i++) {
+      BlockStopTimeEntry bst = stopTimes.get(i);
+      assertEquals(bst.getStopTime().getArrivalTime(), arrays.getArrivalTime(i));
+      assertEquals(bst.getStopTime().getDepartureTime(),
+          arrays.getDepartureTime(i));
+      assertEquals(bst.getDistanceAlongBlock(),
+          arrays.getDistanceAlongBlock(i), 0.0);
+      assertEquals(blockConfig.getDistanceAlongBlockForIndex(i),
+          arrays.getDistanceAlongBlock(i), 0.0);
+    }
+
+    assertEquals(1200.0, arrays.getDistanceAlongBlock(2), 0.0);
+    assertEquals(3 * BlockStopTimeArrays.BYTES_PER_STOP_TIME,
+        arrays.getApproximateSizeInBytes());
+  }
+}
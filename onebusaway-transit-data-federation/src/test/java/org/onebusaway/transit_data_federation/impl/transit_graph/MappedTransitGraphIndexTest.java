@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.transit_data_federation.impl.transit_graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.agency;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.aid;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.block;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.route;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.routeCollection;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.stop;
+import static org.onebusaway.transit_data_federation.testing.UnitTestingSupport.trip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import org.onebusaway.geospatial.model.CoordinateBounds;
+import org.onebusaway.transit_data_federation.services.transit_graph.StopEntry;
+import org.onebusaway.utility.ObjectSerializationLibrary;
+
+public class MappedTransitGraphIndexTest {
+
+  @Test
+  public void test() throws IOException {
+
+    TransitGraphImpl graph = new TransitGraphImpl();
+
+    graph.putAgencyEntry(agency("1"));
+
+    StopEntryImpl stopA = stop("stopA", 47.0, -122.0);
+    StopEntryImpl stopB = stop("stopB", 47.5, -122.5);
+    StopEntryImpl stopC = stop("stopC", 48.0, -121.0);
+    graph.putStopEntry(stopA);
+    graph.putStopEntry(stopB);
+    graph.putStopEntry(stopC);
+
+    TripEntryImpl tripA = trip("tripA");
+    graph.putTripEntry(tripA);
+
+    BlockEntryImpl blockA = block("blockA");
+    graph.putBlockEntry(blockA);
+
+    RouteEntryImpl routeA = route("routeA");
+    graph.putRouteEntry(routeA);
+    RouteCollectionEntryImpl routeCollectionA = routeCollection("routeA",
+        routeA);
+    graph.putRouteCollectionEntry(routeCollectionA);
+
+    graph.initialize();
+
+    long fingerprint = MappedTransitGraphIndex.fingerprint(writeGraph(graph));
+    File path = File.createTempFile(
+        MappedTransitGraphIndexTest.class.getName(), ".bin");
+    path.deleteOnExit();
+    MappedTransitGraphIndex.write(path, graph, fingerprint);
+
+    TransitGraphImpl mapped = new TransitGraphImpl();
+    mapped.putAgencyEntry(agency("1"));
+    mapped.putStopEntry(stopA);
+    mapped.putStopEntry(stopB);
+    mapped.putStopEntry(stopC);
+    mapped.putTripEntry(tripA);
+    mapped.putBlockEntry(blockA);
+    mapped.putRouteEntry(routeA);
+    mapped.putRouteCollectionEntry(routeCollectionA);
+    MappedTransitGraphIndex index = MappedTransitGraphIndex.open(path);
+    assertTrue(index.isIndexFor(fingerprint));
+    mapped.initialize(index, fingerprint);
+
+    assertSame(stopA, mapped.getStopEntryForId(aid("stopA")));
+    assertSame(stopB, mapped.getStopEntryForId(aid("stopB")));
+    assertSame(stopC, mapped.getStopEntryForId(aid("stopC")));
+    assertNull(mapped.getStopEntryForId(aid("stopD")));
+    assertSame(tripA, mapped.getTripEntryForId(aid("tripA")));
+    assertSame(blockA, mapped.getBlockEntryForId(aid("blockA")));
+    assertSame(routeA, mapped.getRouteForId(aid("routeA")));
+    assertSame(routeCollectionA, mapped.getRouteCollectionForId(aid("routeA")));
+    assertNull(mapped.getTripEntryForId(aid("stopA")));
+
+    List<StopEntry> stops = mapped.getStopsByLocation(new CoordinateBounds(
+        46.9, -122.6, 47.6, -121.9));
+    assertEquals(2, stops.size());
+    assertTrue(stops.contains(stopA));
+    assertTrue(stops.contains(stopB));
+
+    stops = mapped.getStopsByLocation(new CoordinateBounds(47.9, -121.1, 48.1,
+        -120.9));
+    assertEquals(1, stops.size());
+    assertSame(stopC, stops.get(0));
+
+    stops = mapped.getStopsByLocation(new CoordinateBounds(40.0, -100.0, 41.0,
+        -99.0));
+    assertEquals(0, stops.size());
+  }
+
+  @Test
+  public void testIndexFromDifferentGraphWithSameCounts() throws IOException {
+
+    TransitGraphImpl graph = new TransitGraphImpl();
+    graph.putAgencyEntry(agency("1"));
+    graph.putStopEntry(stop("stopA", 47.0, -122.0));
+    graph.putStopEntry(stop("stopB", 47.5, -122.5));
+    graph.putTripEntry(trip("tripA"));
+    graph.initialize();
+
+    File path = File.createTempFile(
+        MappedTransitGraphIndexTest.class.getName(), ".bin");
+    path.deleteOnExit();
+    MappedTransitGraphIndex.write(path, graph,
+        MappedTransitGraphIndex.fingerprint(writeGraph(graph)));
+
+    /**
+     * Same entity counts, but the stops are listed in a different order and
+     * the trip was replaced
+     */
+    StopEntryImpl stopA = stop("stopA", 47.0, -122.0);
+    StopEntryImpl stopB = stop("stopB", 47.5, -122.5);
+    TripEntryImpl tripB = trip("tripB");
+
+    TransitGraphImpl other = new TransitGraphImpl();
+    other.putAgencyEntry(agency("1"));
+    other.putStopEntry(stopB);
+    other.putStopEntry(stopA);
+    other.putTripEntry(tripB);
+
+    long otherFingerprint = MappedTransitGraphIndex.fingerprint(writeGraph(other));
+
+    MappedTransitGraphIndex index = MappedTransitGraphIndex.open(path);
+    assertTrue(index.hasCountsOf(other));
+    assertFalse(index.isIndexFor(otherFingerprint));
+
+    other.initialize(index, otherFingerprint);
+
+    assertSame(stopA, other.getStopEntryForId(aid("stopA")));
+    assertSame(stopB, other.getStopEntryForId(aid("stopB")));
+    assertSame(tripB, other.getTripEntryForId(aid("tripB")));
+    assertNull(other.getTripEntryForId(aid("tripA")));
+
+    List<StopEntry> stops = other.getStopsByLocation(new CoordinateBounds(
+        46.9, -122.1, 47.1, -121.9));
+    assertEquals(1, stops.size());
+    assertSame(stopA, stops.get(0));
+  }
+
+  private static File writeGraph(TransitGraphImpl graph) throws IOException {
+    File path = File.createTempFile(
+        MappedTransitGraphIndexTest.class.getName(), ".obj");
+    path.deleteOnExit();
+    ObjectSerializationLibrary.writeObject(path, graph);
+    return path;
+  }
+}
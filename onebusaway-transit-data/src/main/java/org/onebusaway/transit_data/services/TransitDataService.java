@@ -339,6 +339,19 @@ public interface TransitDataService extends FederatedService {
   @FederatedByAggregateMethod
   public StopsBean getStopsByName(String stopName) throws ServiceException;
 
+  /**
+   * Autocomplete search for stops by name, for typeahead as the name is typed.
+   * The last word of the prefix may be incomplete.
+   * 
+   * @param namePrefix the partial stop name
+   * @param maxCount maximum number of stops to return
+   * @return matching stops, best match first
+   * @throws ServiceException
+   */
+  @FederatedByAggregateMethod
+  public StopsBean getStopsByNamePrefix(String namePrefix, int maxCount)
+      throws ServiceException;
+
 
     /**
      * @param stopId
@@ -15,49 +15,381 @@
  */
 package org.onebusaway.users.impl;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.onebusaway.users.services.ApiKeyPermissionService;
+import org.onebusaway.users.services.ApiKeyUsageStore;
 import org.onebusaway.users.services.UserService;
 import org.onebusaway.util.SystemTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-
+/**
+ * Rate limits API keys with a {@link TokenBucket} per key. The sustained rate
+ * of a key is one request per its minApiRequestInterval; the burst is
+ * {@link #setDefaultBurst(int)} unless overridden for the key with
+ * {@link #setBurstsByKey(Map)}.
+ * 
+ * The limits of each key are looked up in the {@link UserService} the first
+ * time the key is seen and then kept in memory, where a background task
+ * refreshes them every {@link #setRefreshInterval(int)} seconds and drops keys
+ * that have been deleted or not used for {@link #setIdleTimeout(int)} seconds.
+ * A permission check for a known key therefore never leaves the JVM or takes a
+ * lock.
+ * 
+ * On its own, each node of a cluster enforces the limits separately, so a key
+ * can make as many requests as there are nodes. With an {@link ApiKeyUsageStore}
+ * the nodes share the load: every {@link #setUsageSyncInterval(int)}
+ * milliseconds each node adds the requests it accepted to the shared counters,
+ * in one batch for all its keys, and charges the requests accepted by the other
+ * nodes to its own buckets. The limits then hold across the cluster, give or
+ * take the requests accepted during one sync interval.
+ * 
+ * @author bdferris
+ */
 @Component
+@ManagedResource("org.onebusaway.users.impl:name=ApiKeyPermissionServiceImpl")
 public class ApiKeyPermissionServiceImpl implements ApiKeyPermissionService {
 
-  private HashMap<String, Long> _lastVisitForUser;
+  private static Logger _log = LoggerFactory.getLogger(ApiKeyPermissionServiceImpl.class);
+
+  private final ConcurrentMap<String, KeyEntry> _entriesByKey = new ConcurrentHashMap<String, KeyEntry>();
+
+  private final LongAdder _accepted = new LongAdder();
+
+  private final LongAdder _rejected = new LongAdder();
+
+  private final LongAdder _chargedFromOtherNodes = new LongAdder();
+
   private UserService _userService;
 
+  private ApiKeyUsageStore _usageStore;
+
+  private int _usageSyncInterval = 1000;
+
+  private int _defaultBurst = 1;
+
+  private Map<String, Integer> _burstsByKey = Collections.emptyMap();
+
+  private int _refreshInterval = 60;
+
+  private int _idleTimeout = 60 * 60;
+
+  private ScheduledExecutorService _executor;
+
   @Autowired
   public void setUserService(UserService userService) {
     _userService = userService;
   }
 
-  public ApiKeyPermissionServiceImpl() {
-    _lastVisitForUser = new HashMap<String, Long>();
+  /**
+   * @param usageStore shares key usage with the other nodes of a cluster
+   */
+  @Autowired(required = false)
+  public void setUsageStore(ApiKeyUsageStore usageStore) {
+    _usageStore = usageStore;
+  }
+
+  /**
+   * @param usageSyncInterval how often usage is exchanged with the
+   *          {@link ApiKeyUsageStore}, in milliseconds
+   */
+  public void setUsageSyncInterval(int usageSyncInterval) {
+    _usageSyncInterval = usageSyncInterval;
+  }
+
+  /**
+   * @param defaultBurst how many requests a key may make back to back before
+   *          it is held to its minApiRequestInterval
+   */
+  public void setDefaultBurst(int defaultBurst) {
+    _defaultBurst = defaultBurst;
+  }
+
+  /**
+   * @param burstsByKey burst overrides for individual keys
+   */
+  public void setBurstsByKey(Map<String, Integer> burstsByKey) {
+    _burstsByKey = burstsByKey;
+  }
+
+  /**
+   * @param refreshInterval how often the limits of known keys are reloaded, in
+   *          seconds
+   */
+  public void setRefreshInterval(int refreshInterval) {
+    _refreshInterval = refreshInterval;
+  }
+
+  /**
+   * @param idleTimeout how long an unused key is kept in memory, in seconds
+   */
+  public void setIdleTimeout(int idleTimeout) {
+    _idleTimeout = idleTimeout;
+  }
+
+  @PostConstruct
+  public void start() {
+    _executor = Executors.newScheduledThreadPool(_usageStore != null ? 2 : 1);
+    _executor.scheduleWithFixedDelay(new RefreshTask(), _refreshInterval,
+        _refreshInterval, TimeUnit.SECONDS);
+    if (_usageStore != null)
+      _executor.scheduleWithFixedDelay(new UsageSyncTask(),
+          _usageSyncInterval, _usageSyncInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (_executor != null)
+      _executor.shutdownNow();
+  }
+
+  @ManagedAttribute
+  public int getKeyCount() {
+    return _entriesByKey.size();
+  }
+
+  @ManagedAttribute
+  public long getAcceptedCount() {
+    return _accepted.sum();
+  }
+
+  @ManagedAttribute
+  public long getRejectedCount() {
+    return _rejected.sum();
+  }
+
+  /**
+   * @return the number of requests accepted by other nodes and charged to the
+   *         buckets of this one
+   */
+  @ManagedAttribute
+  public long getChargedFromOtherNodesCount() {
+    return _chargedFromOtherNodes.sum();
+  }
+
+  /**
+   * @return the number of requests accepted for the key since it was last
+   *         loaded, or -1 if the key is not in memory
+   */
+  @ManagedOperation
+  public long getAcceptedCountForKey(String key) {
+    KeyEntry entry = _entriesByKey.get(key);
+    return entry != null ? entry.accepted.sum() : -1;
+  }
 
+  /**
+   * @return the number of requests rejected for the key since it was last
+   *         loaded, or -1 if the key is not in memory
+   */
+  @ManagedOperation
+  public long getRejectedCountForKey(String key) {
+    KeyEntry entry = _entriesByKey.get(key);
+    return entry != null ? entry.rejected.sum() : -1;
   }
 
+  /****
+   * {@link ApiKeyPermissionService} Interface
+   ****/
+
   @Override
   public Status getPermission(String key, String service) {
 
-    Long minRequestInterval = _userService.getMinApiRequestIntervalForKey(key,false);
-    if (minRequestInterval == null) {
-      return Status.UNAUTHORIZED;
+    KeyEntry entry = _entriesByKey.get(key);
+
+    if (entry == null) {
+      Long minRequestInterval = _userService.getMinApiRequestIntervalForKey(
+          key, false);
+      if (minRequestInterval == null)
+        return Status.UNAUTHORIZED;
+      KeyEntry newEntry = new KeyEntry(createBucket(key, minRequestInterval));
+      entry = _entriesByKey.putIfAbsent(key, newEntry);
+      if (entry == null)
+        entry = newEntry;
     }
-    
+
     long now = SystemTime.currentTimeMillis();
-    Long lastVisit = _lastVisitForUser.get(key);
-    
-    Status ok = Status.RATE_EXCEEDED;
-    
-    if (lastVisit == null || lastVisit + minRequestInterval <= now) {
-      ok = Status.AUTHORIZED;
-    }
-    
-    _lastVisitForUser.put(key, now);
-    return ok;
-  }
-  
+    /**
+     * Only needs to be accurate to the idle timeout, so avoid a volatile write
+     * from every request thread on a busy key
+     */
+    if (now - entry.lastAccess > 1000)
+      entry.lastAccess = now;
+
+    TokenBucket bucket = entry.bucket;
+    if (bucket.tryAcquire(now)) {
+      entry.accepted.increment();
+      _accepted.increment();
+      /**
+       * Unlimited keys have nothing to share with the other nodes
+       */
+      if (_usageStore != null && bucket.getInterval() != 0)
+        entry.unreported.incrementAndGet();
+      return Status.AUTHORIZED;
+    }
+
+    entry.rejected.increment();
+    _rejected.increment();
+    return Status.RATE_EXCEEDED;
+  }
+
+  /****
+   * Package-Private Methods
+   ****/
+
+  void refreshKeys() {
+
+    long idleSince = SystemTime.currentTimeMillis() - _idleTimeout * 1000L;
+
+    for (Iterator<Map.Entry<String, KeyEntry>> it = _entriesByKey.entrySet().iterator(); it.hasNext();) {
+
+      Map.Entry<String, KeyEntry> mapEntry = it.next();
+      String key = mapEntry.getKey();
+      KeyEntry entry = mapEntry.getValue();
+
+      if (entry.lastAccess < idleSince) {
+        it.remove();
+        continue;
+      }
+
+      Long minRequestInterval;
+      try {
+        minRequestInterval = _userService.getMinApiRequestIntervalForKey(key,
+            true);
+      } catch (RuntimeException ex) {
+        _log.warn("error refreshing limits for api key " + key, ex);
+        continue;
+      }
+
+      if (minRequestInterval == null) {
+        it.remove();
+        continue;
+      }
+
+      TokenBucket bucket = entry.bucket;
+      if (bucket.getInterval() != Math.max(minRequestInterval, 0)
+          || bucket.getBurst() != getBurst(key))
+        entry.bucket = createBucket(key, minRequestInterval);
+    }
+  }
+
+  void syncUsage() {
+
+    Map<String, KeyEntry> entries = new HashMap<String, KeyEntry>();
+    Map<String, Long> usageByKey = new HashMap<String, Long>();
+
+    for (Map.Entry<String, KeyEntry> mapEntry : _entriesByKey.entrySet()) {
+      KeyEntry entry = mapEntry.getValue();
+      if (entry.bucket.getInterval() == 0)
+        continue;
+      entries.put(mapEntry.getKey(), entry);
+      usageByKey.put(mapEntry.getKey(), entry.unreported.getAndSet(0));
+    }
+
+    if (usageByKey.isEmpty())
+      return;
+
+    Map<String, Long> totals;
+    try {
+      totals = _usageStore.addUsage(usageByKey);
+    } catch (RuntimeException ex) {
+      _log.warn("error syncing api key usage, limits are per node until the"
+          + " next sync", ex);
+      for (Map.Entry<String, Long> usage : usageByKey.entrySet())
+        entries.get(usage.getKey()).unreported.addAndGet(usage.getValue());
+      return;
+    }
+
+    long now = SystemTime.currentTimeMillis();
+
+    for (Map.Entry<String, Long> usage : usageByKey.entrySet()) {
+      Long total = totals.get(usage.getKey());
+      if (total == null)
+        continue;
+      KeyEntry entry = entries.get(usage.getKey());
+      long previousTotal = entry.lastReportedTotal;
+      entry.lastReportedTotal = total;
+      /**
+       * Nothing to charge on the first sync of a key, or if the store has
+       * started the counter over
+       */
+      if (previousTotal < 0 || total < previousTotal)
+        continue;
+      long fromOtherNodes = total - previousTotal - usage.getValue();
+      if (fromOtherNodes > 0) {
+        entry.bucket.charge(fromOtherNodes, now);
+        _chargedFromOtherNodes.add(fromOtherNodes);
+      }
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private TokenBucket createBucket(String key, long minRequestInterval) {
+    return new TokenBucket(minRequestInterval, getBurst(key));
+  }
+
+  private int getBurst(String key) {
+    Integer burst = _burstsByKey.get(key);
+    return burst != null ? burst : _defaultBurst;
+  }
+
+  private static class KeyEntry {
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Requests accepted since the last sync with the usage store
+     */
+    private final AtomicLong unreported = new AtomicLong();
+
+    /**
+     * The cluster-wide total after the last sync, only used by the sync task
+     */
+    private long lastReportedTotal = -1;
+
+    private volatile TokenBucket bucket;
+
+    private volatile long lastAccess;
+
+    public KeyEntry(TokenBucket bucket) {
+      this.bucket = bucket;
+    }
+  }
+
+  private class RefreshTask implements Runnable {
+    @Override
+    public void run() {
+      refreshKeys();
+    }
+  }
+
+  private class UsageSyncTask implements Runnable {
+    @Override
+    public void run() {
+      syncUsage();
+    }
+  }
 }
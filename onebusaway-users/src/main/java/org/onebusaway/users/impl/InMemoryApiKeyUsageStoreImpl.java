@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.users.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.onebusaway.users.services.ApiKeyUsageStore;
+
+/**
+ * An {@link ApiKeyUsageStore} kept in the memory of this JVM. It only shares
+ * usage between the {@link ApiKeyPermissionServiceImpl} instances of one
+ * process, which makes it a stand-in for a store backed by a shared counter
+ * service, for tests and single node installations.
+ */
+public class InMemoryApiKeyUsageStoreImpl implements ApiKeyUsageStore {
+
+  private final ConcurrentMap<String, AtomicLong> _usageByKey = new ConcurrentHashMap<String, AtomicLong>();
+
+  @Override
+  public Map<String, Long> addUsage(Map<String, Long> usageByKey) {
+    Map<String, Long> totals = new HashMap<String, Long>();
+    for (Map.Entry<String, Long> entry : usageByKey.entrySet()) {
+      String key = entry.getKey();
+      AtomicLong usage = _usageByKey.get(key);
+      if (usage == null) {
+        AtomicLong newUsage = new AtomicLong();
+        usage = _usageByKey.putIfAbsent(key, newUsage);
+        if (usage == null)
+          usage = newUsage;
+      }
+      totals.put(key, usage.addAndGet(entry.getValue()));
+    }
+    return totals;
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.users.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket holding up to {@code burst} tokens and refilled
+ * with one token every {@code interval} milliseconds. It is implemented as a
+ * generic cell rate algorithm: instead of a token count and a refill time, the
+ * bucket keeps a single "theoretical arrival time" that a compare-and-set
+ * moves forward by one interval per accepted request, so concurrent callers
+ * never block each other.
+ */
+final class TokenBucket {
+
+  private final long _interval;
+
+  private final int _burst;
+
+  /**
+   * How far the theoretical arrival time may run ahead of now
+   */
+  private final long _tolerance;
+
+  private final AtomicLong _theoreticalArrivalTime = new AtomicLong(
+      Long.MIN_VALUE);
+
+  /**
+   * @param interval the sustained rate, as milliseconds per token; zero or
+   *          less means unlimited
+   * @param burst the capacity of the bucket, at least one
+   */
+  public TokenBucket(long interval, int burst) {
+    if (burst < 1)
+      throw new IllegalArgumentException("burst must be at least 1: " + burst);
+    _interval = Math.max(interval, 0);
+    _burst = burst;
+    _tolerance = (burst - 1) * _interval;
+  }
+
+  public long getInterval() {
+    return _interval;
+  }
+
+  public int getBurst() {
+    return _burst;
+  }
+
+  /**
+   * @param now the current time, in milliseconds
+   * @return true if a token was available and has been taken
+   */
+  public boolean tryAcquire(long now) {
+    if (_interval == 0)
+      return true;
+    while (true) {
+      long tat = _theoreticalArrivalTime.get();
+      long start = Math.max(tat, now);
+      if (start - now > _tolerance)
+        return false;
+      if (_theoreticalArrivalTime.compareAndSet(tat, start + _interval))
+        return true;
+    }
+  }
+
+  /**
+   * Takes tokens whether or not they are available, e.g. for requests that
+   * were accepted elsewhere. The bucket can go into debt, and then refuses
+   * requests until it has been paid back.
+   * 
+   * @param count the number of tokens to take
+   * @param now the current time, in milliseconds
+   */
+  public void charge(long count, long now) {
+    if (_interval == 0 || count <= 0)
+      return;
+    long amount = count > Long.MAX_VALUE / 4 / _interval ? Long.MAX_VALUE / 4
+        : count * _interval;
+    while (true) {
+      long tat = _theoreticalArrivalTime.get();
+      long start = Math.max(tat, now);
+      if (_theoreticalArrivalTime.compareAndSet(tat, start + amount))
+        return;
+    }
+  }
+}
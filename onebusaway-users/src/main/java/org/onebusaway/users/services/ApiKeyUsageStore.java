@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.users.services;
+
+import java.util.Map;
+
+/**
+ * Counters of API key usage shared by all the API nodes of a cluster. Each
+ * node periodically adds the requests it accepted for its keys, in one batch,
+ * and learns from the returned totals how many requests the other nodes
+ * accepted in the meantime.
+ * 
+ * A counter only ever grows, but an implementation may expire counters that
+ * have not been updated for a while; callers treat a total that went down as a
+ * fresh start.
+ */
+public interface ApiKeyUsageStore {
+
+  /**
+   * Adds to the usage counters of a batch of keys.
+   * 
+   * @param usageByKey the number of requests to add for each key, possibly
+   *          zero
+   * @return the total number of requests counted for each of the keys, across
+   *         all nodes, after the addition
+   */
+  public Map<String, Long> addUsage(Map<String, Long> usageByKey);
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.users.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.onebusaway.users.services.ApiKeyPermissionService.Status;
+import org.onebusaway.users.services.UserService;
+
+public class ApiKeyPermissionServiceImplTest {
+
+  private static final long HOUR = 60 * 60 * 1000L;
+
+  private ApiKeyPermissionServiceImpl _service;
+
+  private UserService _userService;
+
+  @Before
+  public void setup() {
+    _userService = Mockito.mock(UserService.class);
+    _service = new ApiKeyPermissionServiceImpl();
+    _service.setUserService(_userService);
+  }
+
+  @Test
+  public void testUnknownKey() {
+    assertEquals(Status.UNAUTHORIZED, _service.getPermission("nokey", "api"));
+    assertEquals(0, _service.getKeyCount());
+  }
+
+  @Test
+  public void testRateLimit() {
+
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", false)).thenReturn(
+        HOUR);
+
+    assertEquals(Status.AUTHORIZED, _service.getPermission("key", "api"));
+    assertEquals(Status.RATE_EXCEEDED, _service.getPermission("key", "api"));
+    assertEquals(Status.RATE_EXCEEDED, _service.getPermission("key", "api"));
+
+    assertEquals(1, _service.getAcceptedCountForKey("key"));
+    assertEquals(2, _service.getRejectedCountForKey("key"));
+    assertEquals(1, _service.getAcceptedCount());
+    assertEquals(2, _service.getRejectedCount());
+
+    /**
+     * The limits are loaded once and then served from memory
+     */
+    Mockito.verify(_userService, Mockito.times(1)).getMinApiRequestIntervalForKey(
+        "key", false);
+  }
+
+  @Test
+  public void testUnlimitedKey() {
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", false)).thenReturn(
+        0L);
+    for (int i = 0; i < 100; i++)
+      assertEquals(Status.AUTHORIZED, _service.getPermission("key", "api"));
+  }
+
+  @Test
+  public void testBurst() {
+
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("a", false)).thenReturn(
+        HOUR);
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("b", false)).thenReturn(
+        HOUR);
+    _service.setDefaultBurst(2);
+    _service.setBurstsByKey(Collections.singletonMap("b", 3));
+
+    assertEquals(Status.AUTHORIZED, _service.getPermission("a", "api"));
+    assertEquals(Status.AUTHORIZED, _service.getPermission("a", "api"));
+    assertEquals(Status.RATE_EXCEEDED, _service.getPermission("a", "api"));
+
+    assertEquals(Status.AUTHORIZED, _service.getPermission("b", "api"));
+    assertEquals(Status.AUTHORIZED, _service.getPermission("b", "api"));
+    assertEquals(Status.AUTHORIZED, _service.getPermission("b", "api"));
+    assertEquals(Status.RATE_EXCEEDED, _service.getPermission("b", "api"));
+  }
+
+  @Test
+  public void testRefresh() {
+
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", false)).thenReturn(
+        HOUR);
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", true)).thenReturn(
+        0L);
+
+    assertEquals(Status.AUTHORIZED, _service.getPermission("key", "api"));
+    assertEquals(Status.RATE_EXCEEDED, _service.getPermission("key", "api"));
+
+    _service.refreshKeys();
+    assertEquals(Status.AUTHORIZED, _service.getPermission("key", "api"));
+    assertEquals(Status.AUTHORIZED, _service.getPermission("key", "api"));
+
+    /**
+     * The key is deleted
+     */
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", true)).thenReturn(
+        null);
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", false)).thenReturn(
+        null);
+    _service.refreshKeys();
+    assertEquals(0, _service.getKeyCount());
+    assertEquals(Status.UNAUTHORIZED, _service.getPermission("key", "api"));
+  }
+
+  @Test
+  public void testIdleKeysAreDropped() {
+
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", false)).thenReturn(
+        HOUR);
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", true)).thenReturn(
+        HOUR);
+    assertEquals(Status.AUTHORIZED, _service.getPermission("key", "api"));
+
+    _service.refreshKeys();
+    assertEquals(1, _service.getKeyCount());
+
+    _service.setIdleTimeout(-1);
+    _service.refreshKeys();
+    assertEquals(0, _service.getKeyCount());
+    assertEquals(-1, _service.getAcceptedCountForKey("key"));
+  }
+
+  @Test
+  public void testUsageIsSharedBetweenNodes() {
+
+    Mockito.when(_userService.getMinApiRequestIntervalForKey("key", false)).thenReturn(
+        HOUR);
+
+    InMemoryApiKeyUsageStoreImpl usageStore = new InMemoryApiKeyUsageStoreImpl();
+
+    ApiKeyPermissionServiceImpl nodeA = _service;
+    nodeA.setDefaultBurst(2);
+    nodeA.setUsageStore(usageStore);
+
+    ApiKeyPermissionServiceImpl nodeB = new ApiKeyPermissionServiceImpl();
+    nodeB.setUserService(_userService);
+    nodeB.setDefaultBurst(2);
+    nodeB.setUsageStore(usageStore);
+
+    assertEquals(Status.AUTHORIZED, nodeA.getPermission("key", "api"));
+    assertEquals(Status.AUTHORIZED, nodeB.getPermission("key", "api"));
+    nodeA.syncUsage();
+    nodeB.syncUsage();
+
+    /**
+     * Node B has one token left of its own, but node A takes the last token of
+     * the key's burst
+     */
+    assertEquals(Status.AUTHORIZED, nodeA.getPermission("key", "api"));
+    nodeA.syncUsage();
+    nodeB.syncUsage();
+
+    assertEquals(Status.RATE_EXCEEDED, nodeB.getPermission("key", "api"));
+    assertEquals(Status.RATE_EXCEEDED, nodeA.getPermission("key", "api"));
+    /**
+     * Node A is charged for the first request of node B, which B reported
+     * after A's first sync
+     */
+    assertEquals(1, nodeA.getChargedFromOtherNodesCount());
+    assertEquals(1, nodeB.getChargedFromOtherNodesCount());
+
+    assertEquals(Long.valueOf(3),
+        usageStore.addUsage(Collections.singletonMap("key", 0L)).get("key"));
+  }
+}
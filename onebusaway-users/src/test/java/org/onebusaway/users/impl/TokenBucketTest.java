@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2026 Cambridge Systematics, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.users.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+  @Test
+  public void testSustainedRate() {
+    TokenBucket bucket = new TokenBucket(1000, 1);
+    assertTrue(bucket.tryAcquire(10000));
+    assertFalse(bucket.tryAcquire(10000));
+    assertFalse(bucket.tryAcquire(10999));
+    assertTrue(bucket.tryAcquire(11000));
+    assertFalse(bucket.tryAcquire(11500));
+    assertTrue(bucket.tryAcquire(15000));
+  }
+
+  @Test
+  public void testRejectedRequestsDoNotDelayTheNextToken() {
+    TokenBucket bucket = new TokenBucket(1000, 1);
+    assertTrue(bucket.tryAcquire(10000));
+    for (int i = 0; i < 100; i++)
+      assertFalse(bucket.tryAcquire(10000 + i * 9));
+    assertTrue(bucket.tryAcquire(11000));
+  }
+
+  @Test
+  public void testBurst() {
+    TokenBucket bucket = new TokenBucket(1000, 3);
+    assertTrue(bucket.tryAcquire(10000));
+    assertTrue(bucket.tryAcquire(10000));
+    assertTrue(bucket.tryAcquire(10000));
+    assertFalse(bucket.tryAcquire(10000));
+
+    /**
+     * One token back per interval
+     */
+    assertTrue(bucket.tryAcquire(11000));
+    assertFalse(bucket.tryAcquire(11000));
+
+    /**
+     * A full bucket after an idle period, but never more than the burst
+     */
+    for (int i = 0; i < 3; i++)
+      assertTrue(bucket.tryAcquire(60000));
+    assertFalse(bucket.tryAcquire(60000));
+  }
+
+  @Test
+  public void testUnlimited() {
+    TokenBucket bucket = new TokenBucket(0, 1);
+    for (int i = 0; i < 1000; i++)
+      assertTrue(bucket.tryAcquire(10000));
+  }
+
+  @Test
+  public void testConcurrentCallersShareTheBurst() throws InterruptedException {
+
+    final TokenBucket bucket = new TokenBucket(60 * 60 * 1000, 50);
+    final AtomicInteger accepted = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException ex) {
+            return;
+          }
+          for (int j = 0; j < 1000; j++) {
+            if (bucket.tryAcquire(10000))
+              accepted.incrementAndGet();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads)
+      thread.join();
+
+    assertEquals(50, accepted.get());
+  }
+
+  @Test
+  public void testCharge() {
+    TokenBucket bucket = new TokenBucket(1000, 3);
+
+    bucket.charge(2, 10000);
+    assertTrue(bucket.tryAcquire(10000));
+    assertFalse(bucket.tryAcquire(10000));
+
+    /**
+     * Charging an empty bucket puts it into debt
+     */
+    bucket.charge(2, 10000);
+    assertFalse(bucket.tryAcquire(12000));
+    assertTrue(bucket.tryAcquire(13000));
+
+    TokenBucket unlimited = new TokenBucket(0, 1);
+    unlimited.charge(100, 10000);
+    assertTrue(unlimited.tryAcquire(10000));
+  }
+}
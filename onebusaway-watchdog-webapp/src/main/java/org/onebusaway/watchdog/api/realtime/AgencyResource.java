@@ -59,4 +59,32 @@ public class AgencyResource extends MetricResource {
     }
   }
 
+  @Path("{agencyId}/feed-latency")
+  @GET
+  @Produces("application/json")
+  public Response getFeedLatency(@PathParam("agencyId") String agencyId, @QueryParam("feedId") String feedId) {
+    try {
+      long latency = 0;
+      if (this.getDataSources() == null || this.getDataSources().isEmpty()) {
+        _log.error("no configured data sources");
+        return Response.ok(error("feed-latency", "no configured data sources")).build();
+      }
+
+      // report the slowest feed serving the agency
+      for (MonitoredDataSource mds : getDataSources()) {
+        MonitoredResult result = mds.getMonitoredResult();
+        if (result == null) continue;
+        if (feedId == null || feedId.equals(mds.getFeedId())) {
+          if (result.getAgencyIds().contains(agencyId)) {
+            latency = Math.max(latency, result.getFeedLatency());
+          }
+        }
+      }
+      return Response.ok(ok("feed-latency", latency / 1000)).build();
+    } catch (Exception e) {
+      _log.error("getFeedLatency broke", e);
+      return Response.ok(error("feed-latency", e)).build();
+    }
+  }
+
 }